@@ -0,0 +1,74 @@
+package com.your.affectedtestsplugin.benchmark;
+
+/**
+ * Generates synthetic Java sources of a given size for the benchmarks.
+ * A source declares a single class whose methods cycle through primitive, array, generic, wildcard and varargs
+ * parameters, with bodies made of loops, conditions and calls. The same arguments always give the same source,
+ * and a revision changes the bodies of every n-th method, so the old and new versions of a file can be diffed.
+ */
+public final class SyntheticSources {
+    /**
+     * The package of the generated classes.
+     */
+    public static final String PACKAGE = "bench.generated";
+    private static final String[] PARAMETERS = {
+            "",
+            "int count",
+            "String name, long id",
+            "java.util.Map<String, java.util.List<Integer>> index, int depth",
+            "java.util.List<? extends Number> values, String... labels",
+            "int[] data, Object lock",
+            "java.util.function.Function<String, Integer> parser, java.util.Set<String> names",
+    };
+
+    private SyntheticSources() {
+    }
+
+    /**
+     * Generates the baseline version of a source.
+     *
+     * @param className   The simple name of the generated class.
+     * @param targetBytes The approximate size of the source in bytes; the source is at least this large.
+     * @return The source.
+     */
+    public static String generate(String className, int targetBytes) {
+        return generate(className, targetBytes, 0);
+    }
+
+    /**
+     * Generates a revision of a source.
+     *
+     * @param className    The simple name of the generated class.
+     * @param targetBytes  The approximate size of the source in bytes; the source is at least this large.
+     * @param changedEvery The body of every n-th method differs from the baseline, 0 for the baseline itself.
+     * @return The source.
+     */
+    public static String generate(String className, int targetBytes, int changedEvery) {
+        final StringBuilder source = new StringBuilder(targetBytes + 1024);
+        source.append("package ").append(PACKAGE).append(";\n\n")
+                .append("import java.util.*;\n\n")
+                .append("public class ").append(className).append(" {\n")
+                .append("    private final Map<String, Integer> counters = new HashMap<>();\n\n");
+        for (int method = 0; source.length() < targetBytes; method++) {
+            final boolean changed = changedEvery > 0 && method % changedEvery == 0;
+            appendMethod(source, method, changed);
+        }
+        return source.append("}\n").toString();
+    }
+
+    private static void appendMethod(StringBuilder source, int method, boolean changed) {
+        final String parameters = PARAMETERS[method % PARAMETERS.length];
+        source.append("    /**\n     * Generated method ").append(method).append(".\n     */\n")
+                .append("    public int method").append(method).append('(').append(parameters).append(") {\n")
+                .append("        int total = ").append(changed ? method + 1 : method).append(";\n")
+                .append("        for (int i = 0; i < ").append(method % 17 + 3).append("; i++) {\n")
+                .append("            if (i % 3 == 0) {\n")
+                .append("                total += counters.getOrDefault(\"key").append(method).append("\", i);\n")
+                .append("            } else {\n")
+                .append("                total ^= Integer.rotateLeft(total, i);\n")
+                .append("            }\n")
+                .append("        }\n")
+                .append("        return total").append(changed ? " + 1" : "").append(";\n")
+                .append("    }\n\n");
+    }
+}
@@ -0,0 +1,89 @@
+package com.your.affectedtestsplugin.diff;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.your.affectedtestsplugin.benchmark.SyntheticSources;
+import com.your.affectedtestsplugin.graph.MethodKey;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the detection of the changed methods of a file between two synthetic revisions of it.
+ * The new revision changes the body of every twentieth method. The full JavaParser parse and compare is measured
+ * next to the token fingerprint scan the pipeline uses, and the pipeline itself is measured end to end on one thread
+ * without its baseline cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MethodDiffBenchmark {
+    private static final String SIMPLE_NAME = "Diffed";
+    private static final String CLASS_NAME = SyntheticSources.PACKAGE + "." + SIMPLE_NAME;
+    private static final int CHANGED_EVERY = 20;
+
+    /**
+     * The size of the synthetic source in kilobytes.
+     */
+    @Param({"1", "64", "1024", "5120"})
+    public int kilobytes;
+
+    private String oldContent;
+    private String newContent;
+    private MethodDiffPipeline pipeline;
+    private List<MethodDiffPipeline.FileRevision> revisions;
+
+    /**
+     * Generates the two revisions of the synthetic source.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        oldContent = SyntheticSources.generate(SIMPLE_NAME, kilobytes * 1024);
+        newContent = SyntheticSources.generate(SIMPLE_NAME, kilobytes * 1024, CHANGED_EVERY);
+        pipeline = new MethodDiffPipeline(1);
+        revisions = List.of(new MethodDiffPipeline.FileRevision(CLASS_NAME, oldContent, newContent));
+    }
+
+    /**
+     * Shuts down the pool of the pipeline.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pipeline.close();
+    }
+
+    /**
+     * Parses both revisions with JavaParser and compares their method declarations.
+     *
+     * @return The changed methods.
+     */
+    @Benchmark
+    public List<MethodKey> parseAndCompareMethods() {
+        final JavaParser parser = new JavaParser();
+        final CompilationUnit oldCompilationUnit = parser.parse(oldContent).getResult().orElseThrow();
+        final CompilationUnit newCompilationUnit = parser.parse(newContent).getResult().orElseThrow();
+        return MethodDiffPipeline.compareMethods(oldCompilationUnit, newCompilationUnit, CLASS_NAME);
+    }
+
+    /**
+     * Scans both revisions into method fingerprints and compares them.
+     *
+     * @return The changed methods.
+     */
+    @Benchmark
+    public List<MethodKey> scanAndCompareFingerprints() {
+        return MethodDiffPipeline.compareFingerprints(MethodFingerprinter.scan(oldContent).fingerprints(),
+                MethodFingerprinter.scan(newContent).fingerprints());
+    }
+
+    /**
+     * Diffs the revisions through the pipeline.
+     *
+     * @return The result of the diff.
+     */
+    @Benchmark
+    public MethodDiffPipeline.Result pipelineDiff() {
+        return pipeline.diff(revisions);
+    }
+}
@@ -0,0 +1,106 @@
+package com.your.affectedtestsplugin.helperandutils;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.your.affectedtestsplugin.benchmark.SyntheticSources;
+import com.your.affectedtestsplugin.graph.MethodKey;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the signature helpers of {@link CustomUtil} over every method of a synthetic source.
+ * An operation handles all the methods of the source once, so the throughput of the sizes can be compared per byte.
+ * The parameter matching is measured through its PSI-free overloads, with the types as written in source standing
+ * in for the presentable types of the PSI methods.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SignatureBenchmark {
+    private static final String CLASS_NAME = SyntheticSources.PACKAGE + ".Signatures";
+
+    /**
+     * The size of the synthetic source in kilobytes.
+     */
+    @Param({"1", "64", "1024", "5120"})
+    public int kilobytes;
+
+    private List<MethodDeclaration> methods;
+    private String[] signatures;
+    private String[][] presentableTypes;
+    private String[][] parameterTypes;
+    private MethodKey[] keys;
+
+    /**
+     * Parses the synthetic source and precomputes the inputs of every benchmark.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        final CompilationUnit compilationUnit = new JavaParser()
+                .parse(SyntheticSources.generate("Signatures", kilobytes * 1024))
+                .getResult().orElseThrow();
+        methods = compilationUnit.findAll(MethodDeclaration.class);
+        signatures = new String[methods.size()];
+        presentableTypes = new String[methods.size()][];
+        parameterTypes = new String[methods.size()][];
+        keys = new MethodKey[methods.size()];
+        for (int i = 0; i < methods.size(); i++) {
+            signatures[i] = CustomUtil.getSignOfMethodDeclaration(methods.get(i), CLASS_NAME);
+            presentableTypes[i] = CustomUtil.extractParameterTypes(signatures[i]);
+            parameterTypes[i] = presentableTypes[i].clone();
+            keys[i] = MethodKey.of(methods.get(i), CLASS_NAME);
+        }
+    }
+
+    /**
+     * Builds the signature of every method declaration.
+     *
+     * @param blackhole The sink of the signatures.
+     */
+    @Benchmark
+    public void getSignOfMethodDeclaration(Blackhole blackhole) {
+        for (MethodDeclaration method : methods) {
+            blackhole.consume(CustomUtil.getSignOfMethodDeclaration(method, CLASS_NAME));
+        }
+    }
+
+    /**
+     * Splits the parameter types out of every signature.
+     *
+     * @param blackhole The sink of the parameter types.
+     */
+    @Benchmark
+    public void extractParameterTypes(Blackhole blackhole) {
+        for (String signature : signatures) {
+            blackhole.consume(CustomUtil.extractParameterTypes(signature));
+        }
+    }
+
+    /**
+     * Matches the parameter types of every method against the types extracted from its signature.
+     *
+     * @param blackhole The sink of the match results.
+     */
+    @Benchmark
+    public void isMatchingParametersBySignature(Blackhole blackhole) {
+        for (int i = 0; i < presentableTypes.length; i++) {
+            blackhole.consume(CustomUtil.isMatchingParameters(presentableTypes[i], parameterTypes[i]));
+        }
+    }
+
+    /**
+     * Matches the parameter types of every method against its method key.
+     *
+     * @param blackhole The sink of the match results.
+     */
+    @Benchmark
+    public void isMatchingParametersByKey(Blackhole blackhole) {
+        for (int i = 0; i < presentableTypes.length; i++) {
+            blackhole.consume(CustomUtil.isMatchingParameters(presentableTypes[i], keys[i]));
+        }
+    }
+}
@@ -2,16 +2,17 @@ package com.your.affectedtestsplugin.action;
 
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.IconLoader;
+import com.your.affectedtestsplugin.helperandutils.CustomDialog;
 import com.your.affectedtestsplugin.helperandutils.CustomUtil;
-import com.your.affectedtestsplugin.runner.IntelliJTestRunner;
+import com.your.affectedtestsplugin.service.AnalysisSession;
 import com.your.affectedtestsplugin.service.ChangeTrackingService;
+import com.your.affectedtestsplugin.settings.AffectedTestsSettings;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
@@ -28,7 +29,18 @@ public class RunChangeTrackingAction extends AnAction {
     }
 
     /**
-     * Invokes the action performed by the plugin when we get an action event by the user like a click on plugin option
+     * Constructs an action with its own text and description.
+     *
+     * @param text        the text of the action
+     * @param description the description of the action
+     */
+    protected RunChangeTrackingAction(String text, String description) {
+        super(text, description, ICON);
+    }
+
+    /**
+     * Invokes the action performed by the plugin when we get an action event by the user like a click on plugin option.
+     * Asks for the depth of the usage search first, remembering it in the settings.
      *
      * @param e the action event made by the user
      */
@@ -36,62 +48,73 @@ public class RunChangeTrackingAction extends AnAction {
     public void actionPerformed(@NotNull AnActionEvent e) {
         final Project project = e.getProject();
         if (project != null) {
+            final AffectedTestsSettings.State settings = AffectedTestsSettings.getInstance(project).getState();
+            final CustomDialog dialog = new CustomDialog(settings.maxDepth, settings.adaptiveDepth);
+            if (!dialog.showAndGet()) {
+                return;
+            }
+            settings.maxDepth = Integer.parseInt(dialog.getDepth().trim());
+            settings.adaptiveDepth = dialog.isAdaptiveDepth();
             CustomUtil.displayNotification(project, "Affected Tests Plugin", "Stage : Started");
-            runChangeDetectionTask(project);
+            startChangeTrackingTask(project, settings.maxDepth, settings.adaptiveDepth);
         } else {
             logger.info("Inside actionPerformed, project is null");
         }
     }
 
     /**
+     * Detects the changes and the tests they affect. Runs in the background.
      *
-     * @param project the current project
+     * @param changeTrackingService the change tracking service of the project
+     * @param maxDepth              the maximum depth of the usage search
+     * @param adaptiveDepth         true to stop deepening the usage search once its budget is spent
+     * @return the results of the analysis
      */
-    private void runChangeDetectionTask(Project project) {
-        try {
-            final ChangeTrackingService changeTrackingService = project.getService(ChangeTrackingService.class);
-            boolean changedDetected = changeTrackingService.trackChangesAndTests(1);
-            if (!changedDetected) {
-                return;
-            }
-            startChangeTrackingTask(project);
-        }
-        catch (Exception eX){
-            logger.error("Error Unit Test Finder", eX);
-            CustomUtil.displayNotification(project, "Error Occurred while Running", eX.getMessage() + " " + eX.getStackTrace());
-        }
+    protected AnalysisSession detectChanges(ChangeTrackingService changeTrackingService, int maxDepth, boolean adaptiveDepth) {
+        return changeTrackingService.trackChangesAndTests(maxDepth, adaptiveDepth);
     }
 
     /**
-     * Starts the background task for change tracking.
+     * Starts the cancellable background task detecting the changes and selecting the affected tests.
+     * Git, parsing and the usage searches never run on the event dispatch thread; the tests are launched there once
+     * the task succeeded.
      *
      * @param project       the current project
+     * @param maxDepth      the maximum depth of the usage search
+     * @param adaptiveDepth true to stop deepening the usage search once its budget is spent
      */
-    private void startChangeTrackingTask(Project project) {
-        Task.Backgroundable task = new Task.Backgroundable(project, "Running change tracking") {
+    private void startChangeTrackingTask(Project project, int maxDepth, boolean adaptiveDepth) {
+        final ChangeTrackingService changeTrackingService = project.getService(ChangeTrackingService.class);
+        Task.Backgroundable task = new Task.Backgroundable(project, "Finding affected tests", true) {
+            private ChangeTrackingService.TestSelection selection;
+
             @Override
             public void run(@NotNull ProgressIndicator indicator) {
-                runChangeTracking(project);
+                indicator.setIndeterminate(false);
+                final AnalysisSession session = detectChanges(changeTrackingService, maxDepth, adaptiveDepth);
+                if (session.hasTests()) {
+                    selection = changeTrackingService.selectTestsToRun(session);
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                if (selection != null) {
+                    changeTrackingService.runTests(selection);
+                }
+            }
+
+            @Override
+            public void onCancel() {
+                CustomUtil.displayNotification(project, "Affected Tests Plugin", "Stage : Cancelled");
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                logger.error("Error Unit Test Finder", error);
+                CustomUtil.displayNotification(project, "Error Occurred while Running", error.getMessage());
             }
         };
         ProgressManager.getInstance().run(task);
     }
-
-    /**
-     * Runs the change tracking process and handles the latch synchronization
-     * @param project       the current project
-     */
-    private void runChangeTracking(Project project) {
-        IntelliJTestRunner.TEST_PATTERNS.clear();
-        trackChangesAndNotify(project);
-    }
-    /**
-     * Tracks changes and notifies the user.
-     *
-     * @param project the current project
-     */
-    private void trackChangesAndNotify(Project project) {
-        final ChangeTrackingService changeTrackingService = project.getService(ChangeTrackingService.class);
-        ApplicationManager.getApplication().invokeLater(changeTrackingService::runTestsOnCurrentState);
-    }
 }
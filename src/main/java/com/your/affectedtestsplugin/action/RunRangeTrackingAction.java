@@ -0,0 +1,27 @@
+package com.your.affectedtestsplugin.action;
+
+import com.your.affectedtestsplugin.service.AnalysisSession;
+import com.your.affectedtestsplugin.service.ChangeTrackingService;
+
+/**
+ * An action to run the tests affected by the commits of the configured range, such as a branch since its merge base.
+ */
+public class RunRangeTrackingAction extends RunChangeTrackingAction {
+
+    public RunRangeTrackingAction() {
+        super("Run Affected Tests From Commit Range", "Tracks the changes of the configured commit range and runs the tests affected by them");
+    }
+
+    /**
+     * Detects the changes of the configured commit range and the tests they affect. Runs in the background.
+     *
+     * @param changeTrackingService the change tracking service of the project
+     * @param maxDepth              the maximum depth of the usage search
+     * @param adaptiveDepth         true to stop deepening the usage search once its budget is spent
+     * @return the results of the analysis
+     */
+    @Override
+    protected AnalysisSession detectChanges(ChangeTrackingService changeTrackingService, int maxDepth, boolean adaptiveDepth) {
+        return changeTrackingService.trackRangeAndTests(maxDepth, adaptiveDepth);
+    }
+}
@@ -0,0 +1,136 @@
+package com.your.affectedtestsplugin.coverage;
+
+import com.intellij.execution.RunnerAndConfigurationSettings;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.CompilerModuleExtension;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.your.affectedtestsplugin.graph.MethodKey;
+import org.jacoco.agent.AgentJar;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Coverage-backed test selection engine of the project.
+ * Test runs launched by the plugin attach a JaCoCo agent and record which methods every test executes; the
+ * recorded coverage is merged into a {@link CoverageImpactMap} stored under the IDE system directory, replacing the
+ * previous coverage of the tests that ran. Selecting tests is then an in-memory lookup instead of reference searches,
+ * and it also sees calls made through reflection, proxies or dependency injection.
+ */
+@Service(Service.Level.PROJECT)
+public final class CoverageImpactIndex implements Disposable {
+    private static final Logger LOG = Logger.getInstance(CoverageImpactIndex.class);
+    private final Project project;
+    private final Path storageFile;
+    private CoverageImpactMap map;
+    private File agentJar;
+
+    /**
+     * Constructs a CoverageImpactIndex instance for the specified project.
+     *
+     * @param project The IntelliJ project instance.
+     */
+    public CoverageImpactIndex(Project project) {
+        this.project = project;
+        this.storageFile = Path.of(PathManager.getSystemPath(), "affected-tests", project.getLocationHash(), "coverage-impact.idx");
+    }
+
+    /**
+     * Selects the tests executing any of the given methods in their latest recorded run.
+     *
+     * @param changedMethods The keys of the changed methods.
+     * @return The selected tests and the changed methods no recorded test executed.
+     */
+    public synchronized CoverageImpactMap.Lookup lookup(Collection<MethodKey> changedMethods) {
+        return loadIfNeeded().lookup(changedMethods);
+    }
+
+    /**
+     * Starts recording the coverage of the next run of a test configuration. Must be called right before the
+     * configuration is launched, since the recording listens to the test events from then on.
+     *
+     * @param settings The test run configuration about to be launched.
+     * @return The VM option attaching the coverage agent, or null if the agent is unavailable.
+     */
+    public synchronized String startRecording(RunnerAndConfigurationSettings settings) {
+        final int port;
+        try {
+            if (agentJar == null) {
+                agentJar = AgentJar.extractToTempLocation();
+            }
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            }
+        } catch (IOException e) {
+            LOG.info("Cannot set up the coverage agent, the run is not recorded", e);
+            return null;
+        }
+        new CoverageRecordingSession(project, this, settings, port, new JacocoCoverageAnalyzer(classDirectories())).start(this);
+        return "\"-javaagent:" + agentJar.getAbsolutePath() + "=output=tcpserver,address=127.0.0.1,port=" + port + "\"";
+    }
+
+    /**
+     * Merges the coverage recorded by a run and saves the map.
+     *
+     * @param coverageByTest The methods executed by every test of the run.
+     */
+    synchronized void commit(Map<MethodKey, Set<MethodKey>> coverageByTest) {
+        final CoverageImpactMap impactMap = loadIfNeeded();
+        coverageByTest.forEach(impactMap::recordTest);
+        try {
+            impactMap.save(storageFile);
+        } catch (IOException e) {
+            LOG.info("Cannot save the coverage impact map", e);
+        }
+        LOG.info("Recorded the coverage of " + coverageByTest.size() + " tests");
+    }
+
+    private CoverageImpactMap loadIfNeeded() {
+        if (map == null) {
+            try {
+                map = CoverageImpactMap.load(storageFile);
+            } catch (IOException e) {
+                LOG.info("Cannot read the coverage impact map, starting from scratch", e);
+                map = new CoverageImpactMap();
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Collects the production and test output directories of every module.
+     *
+     * @return The class directories.
+     */
+    private List<Path> classDirectories() {
+        return ReadAction.compute(() -> {
+            final List<Path> directories = new ArrayList<>();
+            for (Module module : ModuleManager.getInstance(project).getModules()) {
+                final CompilerModuleExtension extension = CompilerModuleExtension.getInstance(module);
+                if (extension == null) {
+                    continue;
+                }
+                for (String url : new String[]{extension.getCompilerOutputUrl(), extension.getCompilerOutputUrlForTests()}) {
+                    if (url != null) {
+                        directories.add(Path.of(VfsUtilCore.urlToPath(url)));
+                    }
+                }
+            }
+            return directories;
+        });
+    }
+
+    @Override
+    public void dispose() {
+    }
+}
@@ -0,0 +1,169 @@
+package com.your.affectedtestsplugin.coverage;
+
+import com.your.affectedtestsplugin.graph.MethodKey;
+import com.your.affectedtestsplugin.graph.MethodKeyTable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Map from every method executed by a recorded test to the tests executing it, built from per-test coverage.
+ * Methods and tests are interned to dense ids and each method keeps the ids of its tests in a bitset, so selecting
+ * the tests of a set of changed methods is a few hash lookups and bitset unions.
+ * Method keys recorded from bytecode carry erased parameter types, as do the keys of changed methods since method
+ * keys are normalized to their erasure; a changed method whose key does not match, such as one taking a type
+ * variable, matches every recorded method of its class with the same name and arity.
+ */
+public final class CoverageImpactMap {
+    private final MethodKeyTable methods = new MethodKeyTable();
+    private final MethodKeyTable tests = new MethodKeyTable();
+    private final List<BitSet> testsByMethod = new ArrayList<>();
+    private final Map<String, List<Integer>> methodsByNameAndArity = new HashMap<>();
+
+    /**
+     * The tests selected for a set of changed methods.
+     *
+     * @param tests           The tests executing at least one of the changed methods.
+     * @param unmappedMethods The changed methods no recorded test executed, such as new methods.
+     */
+    public record Lookup(SortedSet<MethodKey> tests, SortedSet<MethodKey> unmappedMethods) {
+    }
+
+    /**
+     * Loads a map from its file.
+     *
+     * @param file The path of the map file.
+     * @return The loaded map, empty if the file does not exist or has another version.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static CoverageImpactMap load(Path file) throws IOException {
+        return CoverageImpactStorage.read(file);
+    }
+
+    /**
+     * Saves the map to its file, replacing any previous version atomically.
+     *
+     * @param file The path of the map file.
+     * @throws IOException If an I/O error occurs.
+     */
+    public synchronized void save(Path file) throws IOException {
+        CoverageImpactStorage.write(file, this);
+    }
+
+    /**
+     * Replaces the coverage of a test with the methods it executed in its latest run.
+     *
+     * @param test           The key of the test method.
+     * @param coveredMethods The keys of the methods the test executed, with erased parameter types.
+     */
+    public synchronized void recordTest(MethodKey test, Collection<MethodKey> coveredMethods) {
+        final int testId = tests.intern(test);
+        for (BitSet methodTests : testsByMethod) {
+            methodTests.clear(testId);
+        }
+        for (MethodKey coveredMethod : coveredMethods) {
+            testsByMethod.get(internMethod(coveredMethod)).set(testId);
+        }
+    }
+
+    /**
+     * Selects the tests executing any of the given methods.
+     *
+     * @param changedMethods The keys of the changed methods.
+     * @return The selected tests and the changed methods absent from the map.
+     */
+    public synchronized Lookup lookup(Collection<MethodKey> changedMethods) {
+        final BitSet selected = new BitSet(tests.size());
+        final SortedSet<MethodKey> unmappedMethods = new TreeSet<>();
+        for (MethodKey changedMethod : changedMethods) {
+            final List<Integer> ids = idsOf(changedMethod);
+            if (ids.isEmpty()) {
+                unmappedMethods.add(changedMethod);
+            }
+            for (int id : ids) {
+                selected.or(testsByMethod.get(id));
+            }
+        }
+        final SortedSet<MethodKey> selectedTests = new TreeSet<>();
+        selected.stream().forEach(testId -> selectedTests.add(tests.get(testId)));
+        return new Lookup(selectedTests, unmappedMethods);
+    }
+
+    /**
+     * Checks whether any coverage was recorded.
+     *
+     * @return True if no test run was recorded yet.
+     */
+    public synchronized boolean isEmpty() {
+        return tests.size() == 0;
+    }
+
+    private List<Integer> idsOf(MethodKey method) {
+        final int exactId = methods.idOf(method);
+        if (exactId >= 0) {
+            return List.of(exactId);
+        }
+        return methodsByNameAndArity.getOrDefault(nameAndArity(method), List.of());
+    }
+
+    private int internMethod(MethodKey method) {
+        final int id = methods.intern(method);
+        if (id == testsByMethod.size()) {
+            testsByMethod.add(new BitSet());
+            methodsByNameAndArity.computeIfAbsent(nameAndArity(method), key -> new ArrayList<>()).add(id);
+        }
+        return id;
+    }
+
+    private static String nameAndArity(MethodKey method) {
+        return method.className() + "#" + method.methodName() + "/" + method.parameterTypes().size();
+    }
+
+    /**
+     * Gets the interned methods, for the storage.
+     *
+     * @return The method table.
+     */
+    MethodKeyTable methods() {
+        return methods;
+    }
+
+    /**
+     * Gets the interned tests, for the storage.
+     *
+     * @return The test table.
+     */
+    MethodKeyTable tests() {
+        return tests;
+    }
+
+    /**
+     * Gets the tests executing a method, for the storage.
+     *
+     * @param methodId The id of the method.
+     * @return The ids of the tests executing the method.
+     */
+    BitSet testsOf(int methodId) {
+        return testsByMethod.get(methodId);
+    }
+
+    /**
+     * Restores a test read from the storage.
+     *
+     * @param test The key of the test.
+     */
+    void restoreTest(MethodKey test) {
+        tests.intern(test);
+    }
+
+    /**
+     * Restores a method and its tests read from the storage.
+     *
+     * @param method      The key of the method.
+     * @param methodTests The ids of the tests executing the method.
+     */
+    void restoreMethod(MethodKey method, BitSet methodTests) {
+        testsByMethod.get(internMethod(method)).or(methodTests);
+    }
+}
@@ -0,0 +1,143 @@
+package com.your.affectedtestsplugin.coverage;
+
+import com.your.affectedtestsplugin.graph.MethodKey;
+import com.your.affectedtestsplugin.graph.MethodKeyTable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Reads and writes the coverage impact map file.
+ * The file holds a string table, the test table and the method table built from it, followed by one column per
+ * method holding the words of the bitset of its test ids. It is read through a memory mapping.
+ */
+final class CoverageImpactStorage {
+    private static final int MAGIC = 0x41544349;
+    private static final int VERSION = 1;
+
+    private CoverageImpactStorage() {
+    }
+
+    /**
+     * Reads the map file.
+     *
+     * @param file The path of the map file.
+     * @return The map, empty if the file does not exist or has another version.
+     * @throws IOException If an I/O error occurs.
+     */
+    static CoverageImpactMap read(Path file) throws IOException {
+        final CoverageImpactMap map = new CoverageImpactMap();
+        if (!Files.isRegularFile(file)) {
+            return map;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return map;
+            }
+            final String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(buffer);
+            }
+            for (int i = buffer.getInt(); i > 0; i--) {
+                map.restoreTest(readKey(buffer, strings));
+            }
+            for (int i = buffer.getInt(); i > 0; i--) {
+                final MethodKey method = readKey(buffer, strings);
+                final long[] words = new long[buffer.getInt()];
+                for (int w = 0; w < words.length; w++) {
+                    words[w] = buffer.getLong();
+                }
+                map.restoreMethod(method, BitSet.valueOf(words));
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Writes the map file, replacing any previous version atomically.
+     * Must be called while holding the lock of the map.
+     *
+     * @param file The path of the map file.
+     * @param map  The map to write.
+     * @throws IOException If an I/O error occurs.
+     */
+    static void write(Path file, CoverageImpactMap map) throws IOException {
+        final MethodKeyTable tests = map.tests();
+        final MethodKeyTable methods = map.methods();
+        final Map<String, Integer> stringIds = new LinkedHashMap<>();
+        internStrings(tests, stringIds);
+        internStrings(methods, stringIds);
+
+        Files.createDirectories(file.getParent());
+        final Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(stringIds.size());
+            for (String string : stringIds.keySet()) {
+                final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.writeInt(tests.size());
+            for (int i = 0; i < tests.size(); i++) {
+                writeKey(out, tests.get(i), stringIds);
+            }
+            out.writeInt(methods.size());
+            for (int i = 0; i < methods.size(); i++) {
+                writeKey(out, methods.get(i), stringIds);
+                final long[] words = map.testsOf(i).toLongArray();
+                out.writeInt(words.length);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void internStrings(MethodKeyTable keys, Map<String, Integer> stringIds) {
+        for (int i = 0; i < keys.size(); i++) {
+            final MethodKey key = keys.get(i);
+            stringIds.putIfAbsent(key.className(), stringIds.size());
+            stringIds.putIfAbsent(key.methodName(), stringIds.size());
+            key.parameterTypes().forEach(type -> stringIds.putIfAbsent(type, stringIds.size()));
+        }
+    }
+
+    private static void writeKey(DataOutputStream out, MethodKey key, Map<String, Integer> stringIds) throws IOException {
+        out.writeInt(stringIds.get(key.className()));
+        out.writeInt(stringIds.get(key.methodName()));
+        out.writeInt(key.parameterTypes().size());
+        for (String type : key.parameterTypes()) {
+            out.writeInt(stringIds.get(type));
+        }
+    }
+
+    private static MethodKey readKey(ByteBuffer buffer, String[] strings) {
+        final String className = strings[buffer.getInt()];
+        final String methodName = strings[buffer.getInt()];
+        final List<String> parameterTypes = new ArrayList<>();
+        for (int p = buffer.getInt(); p > 0; p--) {
+            parameterTypes.add(strings[buffer.getInt()]);
+        }
+        return new MethodKey(className, methodName, parameterTypes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
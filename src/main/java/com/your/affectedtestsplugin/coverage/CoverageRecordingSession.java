@@ -0,0 +1,186 @@
+package com.your.affectedtestsplugin.coverage;
+
+import com.intellij.execution.ExecutionListener;
+import com.intellij.execution.ExecutionManager;
+import com.intellij.execution.RunnerAndConfigurationSettings;
+import com.intellij.execution.process.ProcessHandler;
+import com.intellij.execution.runners.ExecutionEnvironment;
+import com.intellij.execution.testframework.TestConsoleProperties;
+import com.intellij.execution.testframework.sm.runner.SMTRunnerEventsAdapter;
+import com.intellij.execution.testframework.sm.runner.SMTRunnerEventsListener;
+import com.intellij.execution.testframework.sm.runner.SMTestProxy;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.messages.MessageBusConnection;
+import com.your.affectedtestsplugin.graph.MethodKey;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.tools.ExecDumpClient;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Records the per-test coverage of a single test run.
+ * The JaCoCo agent of the test JVM serves its execution data over a local socket; the data is dumped and reset
+ * whenever a test of the recorded configuration starts or finishes, and the dump is attributed to that test; the events
+ * of other runs, such as the other shards of a sharded run, are ignored. Dumps are taken in event order on a
+ * single thread and only analyzed once the run terminates, so the test JVM is never kept waiting for an analysis.
+ * Test events reach the IDE asynchronously, so the first instructions of a fast test may be attributed to the test
+ * before it; every recorded run refreshes the coverage of the tests it ran.
+ */
+final class CoverageRecordingSession {
+    private static final Logger LOG = Logger.getInstance(CoverageRecordingSession.class);
+    private static final String TEST_LOCATION_PREFIX = "java:test://";
+    private static final String AGENT_ADDRESS = "127.0.0.1";
+
+    private final Project project;
+    private final CoverageImpactIndex index;
+    private final RunnerAndConfigurationSettings settings;
+    private final int port;
+    private final JacocoCoverageAnalyzer analyzer;
+    private final ExecutorService dumpExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Affected Tests Coverage Dumps", 1);
+    private final List<Map.Entry<MethodKey, ExecutionDataStore>> dumps = new ArrayList<>();
+    private Disposable listeners;
+
+    /**
+     * Constructs a CoverageRecordingSession.
+     *
+     * @param project  The IntelliJ project instance.
+     * @param index    The index receiving the recorded coverage.
+     * @param settings The run configuration whose run is recorded.
+     * @param port     The port the agent of the test JVM listens on.
+     * @param analyzer The analyzer reducing execution data to method keys.
+     */
+    CoverageRecordingSession(Project project, CoverageImpactIndex index, RunnerAndConfigurationSettings settings, int port,
+                             JacocoCoverageAnalyzer analyzer) {
+        this.project = project;
+        this.index = index;
+        this.settings = settings;
+        this.port = port;
+        this.analyzer = analyzer;
+    }
+
+    /**
+     * Starts listening to the test events and to the termination of the run. Must be called when the run is launched,
+     * so the agent is only dumped once the test JVM is starting.
+     *
+     * @param parent The disposable the listeners are disposed with if the run never terminates.
+     */
+    void start(Disposable parent) {
+        listeners = Disposer.newDisposable("Affected Tests Coverage Recording");
+        Disposer.register(parent, listeners);
+        final MessageBusConnection connection = project.getMessageBus().connect(listeners);
+        connection.subscribe(SMTRunnerEventsListener.TEST_STATUS, new SMTRunnerEventsAdapter() {
+            @Override
+            public void onTestStarted(@NotNull SMTestProxy test) {
+                dumpFor(test);
+            }
+
+            @Override
+            public void onTestFinished(@NotNull SMTestProxy test) {
+                dumpFor(test);
+            }
+        });
+        connection.subscribe(ExecutionManager.EXECUTION_TOPIC, new ExecutionListener() {
+            @Override
+            public void processNotStarted(@NotNull String executorId, @NotNull ExecutionEnvironment env) {
+                if (env.getRunnerAndConfigurationSettings() == settings) {
+                    finish(false);
+                }
+            }
+
+            @Override
+            public void processTerminated(@NotNull String executorId, @NotNull ExecutionEnvironment env,
+                                          @NotNull ProcessHandler handler, int exitCode) {
+                if (env.getRunnerAndConfigurationSettings() == settings) {
+                    finish(true);
+                }
+            }
+        });
+    }
+
+    private void dumpFor(SMTestProxy test) {
+        final MethodKey testKey = testKey(test.getLocationUrl());
+        if (testKey == null || !isRecorded(test)) {
+            return;
+        }
+        dumpExecutor.execute(() -> {
+            final ExecDumpClient client = new ExecDumpClient();
+            client.setReset(true);
+            client.setRetryCount(3);
+            try {
+                dumps.add(Map.entry(testKey, client.dump(AGENT_ADDRESS, port).getExecutionDataStore()));
+            } catch (IOException e) {
+                LOG.info("Cannot dump the coverage of " + testKey, e);
+            }
+        });
+    }
+
+    /**
+     * Checks whether a test belongs to the recorded run, by the configuration of the root of its test tree.
+     *
+     * @param test The test.
+     * @return True if the test runs in the recorded configuration
+     */
+    private boolean isRecorded(SMTestProxy test) {
+        SMTestProxy root = test;
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        final TestConsoleProperties properties = root instanceof SMTestProxy.SMRootTestProxy rootProxy ? rootProxy.getTestConsoleProperties() : null;
+        return properties != null && properties.getConfiguration() == settings.getConfiguration();
+    }
+
+    /**
+     * Stops listening and hands the coverage of every recorded test to the index.
+     *
+     * @param started False if the run could not be started.
+     */
+    private void finish(boolean started) {
+        Disposer.dispose(listeners);
+        if (!started) {
+            return;
+        }
+        dumpExecutor.execute(() -> {
+            final Map<MethodKey, Set<MethodKey>> coverageByTest = new LinkedHashMap<>();
+            for (Map.Entry<MethodKey, ExecutionDataStore> dump : dumps) {
+                try {
+                    coverageByTest.computeIfAbsent(dump.getKey(), test -> new HashSet<>()).addAll(analyzer.coveredMethods(dump.getValue()));
+                } catch (IOException e) {
+                    LOG.info("Cannot analyze the coverage of " + dump.getKey(), e);
+                }
+            }
+            dumps.clear();
+            index.commit(coverageByTest);
+        });
+    }
+
+    /**
+     * Builds the key of a test from its location URL, such as {@code java:test://p.FooTest/testBar}.
+     * Test keys carry no parameter types, since locations do not name them.
+     *
+     * @param locationUrl The location URL of the test.
+     * @return The key of the test method, or null if the location is not a Java test method.
+     */
+    static MethodKey testKey(String locationUrl) {
+        if (locationUrl == null || !locationUrl.startsWith(TEST_LOCATION_PREFIX)) {
+            return null;
+        }
+        final String location = locationUrl.substring(TEST_LOCATION_PREFIX.length());
+        final int separator = location.indexOf('/');
+        if (separator <= 0 || separator == location.length() - 1) {
+            return null;
+        }
+        String methodName = location.substring(separator + 1);
+        final int parameters = methodName.indexOf('(');
+        if (parameters >= 0) {
+            methodName = methodName.substring(0, parameters);
+        }
+        return new MethodKey(location.substring(0, separator).replace('$', '.'), methodName, List.of());
+    }
+}
@@ -0,0 +1,110 @@
+package com.your.affectedtestsplugin.coverage;
+
+import com.your.affectedtestsplugin.graph.MethodKey;
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.objectweb.asm.Type;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reduces JaCoCo execution data to the keys of the executed methods.
+ * Only the classes with probe hits are analyzed, and their class files are read once per recording.
+ * Constructors are named after their class like the other method keys; static initializers, synthetic methods
+ * such as lambda bodies and the methods of anonymous or local classes are skipped, since the diff attributes their
+ * code to the enclosing method, which the same test executes too.
+ */
+final class JacocoCoverageAnalyzer {
+    private final List<Path> classDirectories;
+    private final Map<String, Optional<byte[]>> classFiles = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a JacocoCoverageAnalyzer.
+     *
+     * @param classDirectories The output directories holding the class files the tests ran against.
+     */
+    JacocoCoverageAnalyzer(List<Path> classDirectories) {
+        this.classDirectories = classDirectories;
+    }
+
+    /**
+     * Finds the methods with at least one executed instruction.
+     *
+     * @param executionData The execution data dumped by the agent.
+     * @return The keys of the executed methods, with erased parameter types.
+     * @throws IOException If a class file cannot be analyzed.
+     */
+    Set<MethodKey> coveredMethods(ExecutionDataStore executionData) throws IOException {
+        final CoverageBuilder coverageBuilder = new CoverageBuilder();
+        final Analyzer analyzer = new Analyzer(executionData, coverageBuilder);
+        for (ExecutionData data : executionData.getContents()) {
+            if (!data.hasHits()) {
+                continue;
+            }
+            final Optional<byte[]> classFile = classFile(data.getName());
+            if (classFile.isPresent()) {
+                analyzer.analyzeClass(classFile.get(), data.getName());
+            }
+        }
+
+        final Set<MethodKey> coveredMethods = new HashSet<>();
+        for (IClassCoverage classCoverage : coverageBuilder.getClasses()) {
+            for (IMethodCoverage methodCoverage : classCoverage.getMethods()) {
+                if (methodCoverage.getMethodCounter().getCoveredCount() == 0) {
+                    continue;
+                }
+                final MethodKey key = methodKey(classCoverage.getName(), methodCoverage.getName(), methodCoverage.getDesc());
+                if (key != null) {
+                    coveredMethods.add(key);
+                }
+            }
+        }
+        return coveredMethods;
+    }
+
+    /**
+     * Builds the key of a method from its bytecode names.
+     *
+     * @param internalClassName The internal name of the class, such as {@code p/Outer$Inner}.
+     * @param methodName        The name of the method.
+     * @param descriptor        The descriptor of the method.
+     * @return The key of the method, or null if the method has no source-level counterpart.
+     */
+    static MethodKey methodKey(String internalClassName, String methodName, String descriptor) {
+        final String className = internalClassName.replace('/', '.').replace('$', '.');
+        final String simpleClassName = className.substring(className.lastIndexOf('.') + 1);
+        if (simpleClassName.isEmpty() || Character.isDigit(simpleClassName.charAt(0))
+                || methodName.equals("<clinit>") || methodName.indexOf('$') >= 0) {
+            return null;
+        }
+        final List<String> parameterTypes = new ArrayList<>();
+        for (Type argumentType : Type.getArgumentTypes(descriptor)) {
+            parameterTypes.add(argumentType.getClassName().replace('$', '.'));
+        }
+        return new MethodKey(className, methodName.equals("<init>") ? simpleClassName : methodName, parameterTypes);
+    }
+
+    private Optional<byte[]> classFile(String internalClassName) {
+        return classFiles.computeIfAbsent(internalClassName, name -> {
+            for (Path classDirectory : classDirectories) {
+                final Path classFile = classDirectory.resolve(name + ".class");
+                if (Files.isRegularFile(classFile)) {
+                    try {
+                        return Optional.of(Files.readAllBytes(classFile));
+                    } catch (IOException e) {
+                        return Optional.empty();
+                    }
+                }
+            }
+            return Optional.empty();
+        });
+    }
+}
@@ -0,0 +1,130 @@
+package com.your.affectedtestsplugin.diff;
+
+import com.your.affectedtestsplugin.graph.MethodKey;
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Localizes the changes of a file with line-level diff hunks.
+ * Only the methods spanned by a hunk are candidates for a change; every other method of the file is never compared.
+ * Changed lines holding code outside of any method are classified instead of being dropped.
+ */
+final class HunkLocalizer {
+    private static final DiffAlgorithm ALGORITHM = DiffAlgorithm.getAlgorithm(DiffAlgorithm.SupportedAlgorithm.HISTOGRAM);
+
+    private HunkLocalizer() {
+    }
+
+    /**
+     * Computes the line-level diff hunks between two versions of a file.
+     *
+     * @param oldContent The old content of the file.
+     * @param newContent The new content of the file.
+     * @return The edits turning the old content into the new one.
+     */
+    static EditList diffLines(String oldContent, String newContent) {
+        final RawText oldText = new RawText(oldContent.getBytes(StandardCharsets.UTF_8));
+        final RawText newText = new RawText(newContent.getBytes(StandardCharsets.UTF_8));
+        return ALGORITHM.diff(RawTextComparator.DEFAULT, oldText, newText);
+    }
+
+    /**
+     * Finds the methods spanned by the hunks whose fingerprints differ between the two versions.
+     *
+     * @param edits   The diff hunks of the file.
+     * @param oldScan The scan of the old version.
+     * @param newScan The scan of the new version.
+     * @return The keys of the added, removed and modified methods.
+     */
+    static List<MethodKey> changedMethods(EditList edits, MethodFingerprinter.ScannedFile oldScan, MethodFingerprinter.ScannedFile newScan) {
+        final Set<MethodKey> candidates = new LinkedHashSet<>();
+        for (Edit edit : edits) {
+            collectIntersecting(newScan, edit.getBeginB() + 1, edit.getEndB(), candidates);
+            collectIntersecting(oldScan, edit.getBeginA() + 1, edit.getEndA(), candidates);
+        }
+        final List<MethodKey> changes = new ArrayList<>();
+        for (MethodKey candidate : candidates) {
+            if (!Objects.equals(oldScan.fingerprints().get(candidate), newScan.fingerprints().get(candidate))) {
+                changes.add(candidate);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Classifies the changed code lines of every hunk that are not part of a method.
+     * Blank and comment lines are ignored.
+     *
+     * @param className The name of the class declared by the file.
+     * @param edits     The diff hunks of the file.
+     * @param oldScan   The scan of the old version.
+     * @param newScan   The scan of the new version.
+     * @return One entry per hunk and kind of code changed outside of methods.
+     */
+    static List<UnscopedHunk> unscopedHunks(String className, EditList edits, MethodFingerprinter.ScannedFile oldScan,
+                                            MethodFingerprinter.ScannedFile newScan) {
+        final List<UnscopedHunk> hunks = new ArrayList<>();
+        for (Edit edit : edits) {
+            final EnumSet<UnscopedHunk.Scope> scopes = EnumSet.noneOf(UnscopedHunk.Scope.class);
+            collectScopes(newScan, edit.getBeginB() + 1, edit.getEndB(), scopes);
+            collectScopes(oldScan, edit.getBeginA() + 1, edit.getEndA(), scopes);
+            final boolean deletion = edit.getLengthB() == 0;
+            final int firstLine = deletion ? edit.getBeginA() + 1 : edit.getBeginB() + 1;
+            final int lastLine = deletion ? edit.getEndA() : edit.getEndB();
+            for (UnscopedHunk.Scope scope : scopes) {
+                hunks.add(new UnscopedHunk(className, scope, firstLine, lastLine));
+            }
+        }
+        return hunks;
+    }
+
+    private static void collectIntersecting(MethodFingerprinter.ScannedFile scan, int firstLine, int lastLine, Set<MethodKey> collector) {
+        if (firstLine > lastLine) {
+            return;
+        }
+        for (Map.Entry<MethodKey, MethodFingerprinter.LineRange> entry : scan.methodLines().entrySet()) {
+            if (entry.getValue().intersects(firstLine, lastLine)) {
+                collector.add(entry.getKey());
+            }
+        }
+    }
+
+    private static void collectScopes(MethodFingerprinter.ScannedFile scan, int firstLine, int lastLine, Set<UnscopedHunk.Scope> collector) {
+        for (int line = scan.codeLines().nextSetBit(firstLine); line >= 0 && line <= lastLine; line = scan.codeLines().nextSetBit(line + 1)) {
+            final UnscopedHunk.Scope scope = classify(scan, line);
+            if (scope != null) {
+                collector.add(scope);
+            }
+        }
+    }
+
+    /**
+     * Classifies a code line of a file.
+     *
+     * @param scan The scan of the file.
+     * @param line The 1-based line.
+     * @return The kind of code outside of methods on the line, or null if the line belongs to a method.
+     */
+    private static UnscopedHunk.Scope classify(MethodFingerprinter.ScannedFile scan, int line) {
+        for (MethodFingerprinter.LineRange methodLines : scan.methodLines().values()) {
+            if (methodLines.contains(line)) {
+                return null;
+            }
+        }
+        if (line < scan.firstTypeLine()) {
+            return UnscopedHunk.Scope.IMPORTS;
+        }
+        for (MethodFingerprinter.LineRange header : scan.typeHeaders()) {
+            if (header.contains(line)) {
+                return UnscopedHunk.Scope.TYPE_HEADER;
+            }
+        }
+        return UnscopedHunk.Scope.MEMBER;
+    }
+}
@@ -0,0 +1,328 @@
+package com.your.affectedtestsplugin.diff;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
+import com.your.affectedtestsplugin.graph.MethodKey;
+import org.eclipse.jgit.diff.EditList;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Staged pipeline detecting the changed methods of a set of files.
+ * Baseline and working copy contents are supplied up front; the old and new versions of every file are then
+ * fingerprinted in parallel on a bounded fork-join pool, their method fingerprints are diffed,
+ * and the changed method keys are merged into a concurrent sorted set so the output order is deterministic.
+ * Baseline scans are cached by blob id. Files the fingerprinter cannot scan are parsed with one JavaParser
+ * per worker thread and diffed by comparing method bodies.
+ * In hunk scoped mode, line-level diff hunks are computed first and only the methods they span are compared.
+ * A pipeline owns its pool and must be closed once it is no longer used.
+ */
+public final class MethodDiffPipeline implements AutoCloseable {
+    private static final ThreadLocal<JavaParser> PARSER = ThreadLocal.withInitial(JavaParser::new);
+    private static final MethodFingerprintCache OLD_SCANS = new MethodFingerprintCache(500_000);
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructs a MethodDiffPipeline using all but one of the available processors.
+     */
+    public MethodDiffPipeline() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * Constructs a MethodDiffPipeline.
+     *
+     * @param parallelism The maximum number of files parsed concurrently.
+     */
+    public MethodDiffPipeline(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Shuts down the pool of the pipeline. Diffs already running are completed.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * The old and new contents of a single changed file.
+     *
+     * @param className  The name of the class declared by the file, used for methods of types without a qualified name.
+     * @param oldBlobId  The git blob id of the baseline content, or null if it is unknown.
+     * @param oldContent The baseline content, empty for an added file.
+     * @param newContent The working copy content, empty for a deleted file.
+     */
+    public record FileRevision(String className, String oldBlobId, String oldContent, String newContent) {
+        /**
+         * Constructs a FileRevision whose baseline content has no blob id.
+         *
+         * @param className  The name of the class declared by the file.
+         * @param oldContent The baseline content, empty for an added file.
+         * @param newContent The working copy content, empty for a deleted file.
+         */
+        public FileRevision(String className, String oldContent, String newContent) {
+            this(className, null, oldContent, newContent);
+        }
+    }
+
+    /**
+     * The outcome of diffing a set of files.
+     *
+     * @param changedMethods The keys of all changed methods in sorted order.
+     * @param unparsedFiles  The class names of files whose old or new version could not be parsed.
+     * @param unscopedHunks  The hunks changing code outside of methods, only collected in hunk scoped mode.
+     * @param parseNanos     The time spent scanning and parsing both versions of the files, summed over the workers.
+     * @param compareNanos   The time spent diffing lines and comparing methods, summed over the workers.
+     */
+    public record Result(SortedSet<MethodKey> changedMethods, List<String> unparsedFiles, List<UnscopedHunk> unscopedHunks,
+                         long parseNanos, long compareNanos) {
+    }
+
+    /**
+     * Diffs all the given files and collects the keys of their changed methods.
+     *
+     * @param revisions The old and new contents of the changed files.
+     * @return The changed method keys and the files that could not be parsed.
+     */
+    public Result diff(List<FileRevision> revisions) {
+        return diff(revisions, false);
+    }
+
+    /**
+     * Diffs all the given files and collects the keys of their changed methods.
+     *
+     * @param revisions  The old and new contents of the changed files.
+     * @param hunkScoped True to only compare the methods spanned by line-level diff hunks.
+     * @return The changed method keys, the files that could not be parsed and the hunks outside of methods.
+     */
+    public Result diff(List<FileRevision> revisions, boolean hunkScoped) {
+        final ConcurrentSkipListSet<MethodKey> changedMethods = new ConcurrentSkipListSet<>();
+        final ConcurrentLinkedQueue<String> unparsedFiles = new ConcurrentLinkedQueue<>();
+        final ConcurrentLinkedQueue<UnscopedHunk> unscopedHunks = new ConcurrentLinkedQueue<>();
+        final LongAdder parseNanos = new LongAdder();
+        final LongAdder compareNanos = new LongAdder();
+        final List<FileDiffTask> tasks = new ArrayList<>(revisions.size());
+        for (FileRevision revision : revisions) {
+            tasks.add(new FileDiffTask(revision, hunkScoped, changedMethods, unparsedFiles, unscopedHunks, parseNanos, compareNanos));
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        final List<String> sortedUnparsed = new ArrayList<>(unparsedFiles);
+        Collections.sort(sortedUnparsed);
+        final List<UnscopedHunk> sortedHunks = new ArrayList<>(unscopedHunks);
+        sortedHunks.sort(Comparator.comparing(UnscopedHunk::className).thenComparingInt(UnscopedHunk::firstLine)
+                .thenComparing(UnscopedHunk::scope));
+        return new Result(changedMethods, sortedUnparsed, sortedHunks, parseNanos.sum(), compareNanos.sum());
+    }
+
+    /**
+     * Fingerprints and diffs a single file, forking the work on the old version alongside the new one.
+     */
+    private static final class FileDiffTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final FileRevision revision;
+        private final boolean hunkScoped;
+        private final Set<MethodKey> changedMethods;
+        private final Queue<String> unparsedFiles;
+        private final Queue<UnscopedHunk> unscopedHunks;
+        private final LongAdder parseNanos;
+        private final LongAdder compareNanos;
+
+        private FileDiffTask(FileRevision revision, boolean hunkScoped, Set<MethodKey> changedMethods, Queue<String> unparsedFiles,
+                             Queue<UnscopedHunk> unscopedHunks, LongAdder parseNanos, LongAdder compareNanos) {
+            this.revision = revision;
+            this.hunkScoped = hunkScoped;
+            this.changedMethods = changedMethods;
+            this.unparsedFiles = unparsedFiles;
+            this.unscopedHunks = unscopedHunks;
+            this.parseNanos = parseNanos;
+            this.compareNanos = compareNanos;
+        }
+
+        @Override
+        protected void compute() {
+            final EditList edits = hunkScoped ? timed(compareNanos, () -> HunkLocalizer.diffLines(revision.oldContent(), revision.newContent())) : null;
+            if (edits != null && edits.isEmpty()) {
+                return;
+            }
+            final ForkJoinTask<MethodFingerprinter.ScannedFile> oldScanTask = ForkJoinTask.adapt(() -> timed(parseNanos, () -> scanOld(revision))).fork();
+            final MethodFingerprinter.ScannedFile newScan = timed(parseNanos, () -> MethodFingerprinter.scan(revision.newContent()));
+            final MethodFingerprinter.ScannedFile oldScan = oldScanTask.join();
+            if (oldScan != null && newScan != null) {
+                if (edits == null) {
+                    changedMethods.addAll(timed(compareNanos, () -> compareFingerprints(oldScan.fingerprints(), newScan.fingerprints())));
+                } else {
+                    changedMethods.addAll(timed(compareNanos, () -> HunkLocalizer.changedMethods(edits, oldScan, newScan)));
+                    unscopedHunks.addAll(timed(compareNanos, () -> HunkLocalizer.unscopedHunks(revision.className(), edits, oldScan, newScan)));
+                }
+                return;
+            }
+
+            final ForkJoinTask<CompilationUnit> oldParse = ForkJoinTask.adapt(() -> timed(parseNanos, () -> parseContent(revision.oldContent()))).fork();
+            final CompilationUnit newCompilationUnit = timed(parseNanos, () -> parseContent(revision.newContent()));
+            final CompilationUnit oldCompilationUnit = oldParse.join();
+            if (oldCompilationUnit == null || newCompilationUnit == null) {
+                unparsedFiles.add(revision.className());
+                return;
+            }
+            changedMethods.addAll(timed(compareNanos, () -> compareMethods(oldCompilationUnit, newCompilationUnit, revision.className())));
+        }
+    }
+
+    /**
+     * Runs a step of a file diff and adds its duration to a timer.
+     *
+     * @param nanos The timer of the step.
+     * @param step  The step.
+     * @param <T>   The type of the result of the step.
+     * @return The result of the step.
+     */
+    private static <T> T timed(LongAdder nanos, Supplier<T> step) {
+        final long start = System.nanoTime();
+        try {
+            return step.get();
+        } finally {
+            nanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Scans the baseline version of a file, reusing the scan cached for its blob.
+     *
+     * @param revision The revision of the file.
+     * @return The scanned baseline, or null if the baseline content cannot be scanned.
+     */
+    private static MethodFingerprinter.ScannedFile scanOld(FileRevision revision) {
+        if (revision.oldBlobId() == null) {
+            return MethodFingerprinter.scan(revision.oldContent());
+        }
+        MethodFingerprinter.ScannedFile scannedFile = OLD_SCANS.get(revision.oldBlobId());
+        if (scannedFile == null) {
+            scannedFile = MethodFingerprinter.scan(revision.oldContent());
+            if (scannedFile != null) {
+                OLD_SCANS.put(revision.oldBlobId(), scannedFile);
+            }
+        }
+        return scannedFile;
+    }
+
+    /**
+     * Compares the method fingerprints of the old and new versions of a file.
+     *
+     * @param oldFingerprints The fingerprints of the old version keyed by method.
+     * @param newFingerprints The fingerprints of the new version keyed by method.
+     * @return The keys of the added, removed and modified methods.
+     */
+    static List<MethodKey> compareFingerprints(Map<MethodKey, Long> oldFingerprints, Map<MethodKey, Long> newFingerprints) {
+        final List<MethodKey> changes = new ArrayList<>();
+        for (Map.Entry<MethodKey, Long> entry : newFingerprints.entrySet()) {
+            if (!entry.getValue().equals(oldFingerprints.get(entry.getKey()))) {
+                changes.add(entry.getKey());
+            }
+        }
+        for (MethodKey oldMethod : oldFingerprints.keySet()) {
+            if (!newFingerprints.containsKey(oldMethod)) {
+                changes.add(oldMethod);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Parses the content of a file into a CompilationUnit with the parser of the current thread.
+     *
+     * @param content The content to be parsed.
+     * @return The parsed CompilationUnit, or null if the content cannot be parsed.
+     */
+    private static CompilationUnit parseContent(String content) {
+        return PARSER.get().parse(content).getResult().orElse(null);
+    }
+
+    /**
+     * Compares the methods in the old and new versions of a compilation unit.
+     *
+     * @param oldCompilationUnit The old compilation unit.
+     * @param newCompilationUnit The new compilation unit.
+     * @param className          The name of the class containing the methods.
+     * @return The keys of the added, removed and modified methods.
+     */
+    static List<MethodKey> compareMethods(CompilationUnit oldCompilationUnit, CompilationUnit newCompilationUnit, String className) {
+        final List<MethodKey> changes = new ArrayList<>();
+        final Map<MethodKey, MethodDeclaration> oldMethodsMap = extractMethodsToMap(oldCompilationUnit, className);
+        final List<MethodDeclaration> newMethods = extractMethods(newCompilationUnit);
+        for (MethodDeclaration newMethod : newMethods) {
+            MethodKey methodSignature = MethodKey.of(newMethod, className);
+            if (!oldMethodsMap.containsKey(methodSignature)) {
+                changes.add(methodSignature);
+            } else {
+                MethodDeclaration oldMethod = oldMethodsMap.get(methodSignature);
+                if (!oldMethod.getBody().equals(newMethod.getBody())) {
+                    changes.add(methodSignature);
+                }
+                oldMethodsMap.remove(methodSignature);
+            }
+        }
+        changes.addAll(oldMethodsMap.keySet());
+        return changes;
+    }
+
+    /**
+     * Extracts methods from the compilation unit and maps them by their key.
+     *
+     * @param compilationUnit The compilation unit to extract methods from.
+     * @param className       The name of the class containing the methods.
+     * @return A map of method keys to method declarations.
+     */
+    private static Map<MethodKey, MethodDeclaration> extractMethodsToMap(CompilationUnit compilationUnit, String className) {
+        List<MethodDeclaration> methods = extractMethods(compilationUnit);
+        Map<MethodKey, MethodDeclaration> methodsMap = new HashMap<>();
+        for (MethodDeclaration method : methods) {
+            MethodKey methodSignature = MethodKey.of(method, className);
+            methodsMap.put(methodSignature, method);
+        }
+        return methodsMap;
+    }
+
+    /**
+     * Extracts methods from the compilation unit.
+     *
+     * @param compilationUnit The compilation unit to extract methods from.
+     * @return A list of method declarations.
+     */
+    private static List<MethodDeclaration> extractMethods(CompilationUnit compilationUnit) {
+        List<MethodDeclaration> methods = new ArrayList<>();
+        compilationUnit.accept(new MethodVisitor(), methods);
+        return methods;
+    }
+
+    /**
+     * Visitor class for extracting method declarations from a compilation unit.
+     */
+    private static class MethodVisitor extends VoidVisitorAdapter<List<MethodDeclaration>> {
+        @Override
+        public void visit(ClassOrInterfaceDeclaration classOrInterfaceDeclaration, List<MethodDeclaration> collector) {
+            super.visit(classOrInterfaceDeclaration, collector);
+            classOrInterfaceDeclaration.getMembers().forEach(member -> {
+                if (member instanceof MethodDeclaration method) {
+                    collector.add(method);
+                }
+            });
+        }
+    }
+}
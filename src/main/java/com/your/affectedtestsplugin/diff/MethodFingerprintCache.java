@@ -0,0 +1,61 @@
+package com.your.affectedtestsplugin.diff;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Bounded least-recently-used cache of the scans of baseline files keyed by their git blob id.
+ * A blob id identifies its content exactly, so entries never need invalidation; they are only evicted
+ * once the total number of cached methods exceeds the configured budget.
+ */
+final class MethodFingerprintCache {
+    private final int maxMethods;
+    private final LinkedHashMap<String, MethodFingerprinter.ScannedFile> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private int currentMethods;
+
+    /**
+     * Constructs a MethodFingerprintCache.
+     *
+     * @param maxMethods The maximum number of method fingerprints kept across all cached blobs.
+     */
+    MethodFingerprintCache(int maxMethods) {
+        this.maxMethods = maxMethods;
+    }
+
+    /**
+     * Returns the cached scan of a blob.
+     *
+     * @param blobId The id of the blob.
+     * @return The scanned file, or null if it is not cached.
+     */
+    synchronized MethodFingerprinter.ScannedFile get(String blobId) {
+        return entries.get(blobId);
+    }
+
+    /**
+     * Caches the scan of a blob, evicting the least recently used entries if needed.
+     *
+     * @param blobId      The id of the blob.
+     * @param scannedFile The scan of the blob content.
+     */
+    synchronized void put(String blobId, MethodFingerprinter.ScannedFile scannedFile) {
+        final int methods = scannedFile.fingerprints().size();
+        if (methods > maxMethods) {
+            return;
+        }
+        final MethodFingerprinter.ScannedFile previous = entries.put(blobId, scannedFile);
+        if (previous != null) {
+            currentMethods -= previous.fingerprints().size();
+        }
+        currentMethods += methods;
+        evictIfNeeded();
+    }
+
+    private void evictIfNeeded() {
+        final Iterator<MethodFingerprinter.ScannedFile> iterator = entries.values().iterator();
+        while (currentMethods > maxMethods && iterator.hasNext()) {
+            currentMethods -= iterator.next().fingerprints().size();
+            iterator.remove();
+        }
+    }
+}
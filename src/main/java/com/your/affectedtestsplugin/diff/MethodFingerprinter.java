@@ -0,0 +1,408 @@
+package com.your.affectedtestsplugin.diff;
+
+import com.github.javaparser.GeneratedJavaParserTokenManager;
+import com.github.javaparser.SimpleCharStream;
+import com.github.javaparser.StringProvider;
+import com.github.javaparser.Token;
+import com.your.affectedtestsplugin.graph.MethodKey;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.javaparser.GeneratedJavaParserConstants.*;
+
+/**
+ * Computes a fingerprint of every method of a source file from its token stream.
+ * The file is only lexed, never parsed into a syntax tree: a lightweight scanner follows type declarations and
+ * method headers at member level and hashes the tokens of each method body. Whitespace and comments are not
+ * tokens, so they do not affect the fingerprints. The scan also records the lines spanned by every method and
+ * type declaration header, so line-level diff hunks can be mapped back to them.
+ */
+final class MethodFingerprinter {
+    private static final long NO_BODY = 0L;
+
+    private final int[] kinds;
+    private final String[] images;
+    private final int[] beginLines;
+    private final int[] endLines;
+    private final Map<MethodKey, Long> fingerprints = new HashMap<>();
+    private final Map<MethodKey, LineRange> methodLines = new HashMap<>();
+    private final List<LineRange> typeHeaders = new ArrayList<>();
+    private int firstTypeLine = Integer.MAX_VALUE;
+    private int pos;
+    private String packageName = "";
+
+    private MethodFingerprinter(int[] kinds, String[] images, int[] beginLines, int[] endLines) {
+        this.kinds = kinds;
+        this.images = images;
+        this.beginLines = beginLines;
+        this.endLines = endLines;
+    }
+
+    /**
+     * An inclusive range of 1-based lines.
+     *
+     * @param first The first line of the range.
+     * @param last  The last line of the range.
+     */
+    record LineRange(int first, int last) {
+        /**
+         * Checks if the range contains a line.
+         *
+         * @param line The 1-based line.
+         * @return True if the line is within the range.
+         */
+        boolean contains(int line) {
+            return first <= line && line <= last;
+        }
+
+        /**
+         * Checks if the range overlaps another inclusive range of lines.
+         *
+         * @param otherFirst The first line of the other range.
+         * @param otherLast  The last line of the other range.
+         * @return True if the ranges share at least one line.
+         */
+        boolean intersects(int otherFirst, int otherLast) {
+            return first <= otherLast && otherFirst <= last;
+        }
+    }
+
+    /**
+     * The outcome of scanning a file.
+     *
+     * @param fingerprints  The body fingerprint of every method keyed by the method.
+     * @param methodLines   The lines of every method, from its first annotation or modifier to its end.
+     * @param typeHeaders   The lines of every type declaration header, up to its opening brace.
+     * @param firstTypeLine The first line of the first top level type declaration, or Integer.MAX_VALUE if there is none.
+     * @param codeLines     The lines holding at least one token, as opposed to blank and comment lines.
+     */
+    record ScannedFile(Map<MethodKey, Long> fingerprints, Map<MethodKey, LineRange> methodLines, List<LineRange> typeHeaders,
+                       int firstTypeLine, BitSet codeLines) {
+    }
+
+    /**
+     * Scans a file and computes the fingerprints of all methods declared in its named classes, interfaces, enums
+     * and records. Methods of anonymous and local classes are part of the body of their enclosing method.
+     *
+     * @param content The content of the file.
+     * @return The scanned file, or null if the content cannot be scanned.
+     */
+    static ScannedFile scan(String content) {
+        final List<Token> tokens = new ArrayList<>();
+        try {
+            final GeneratedJavaParserTokenManager lexer = new GeneratedJavaParserTokenManager(new SimpleCharStream(new StringProvider(content)));
+            for (Token token = lexer.getNextToken(); token.kind != EOF; token = lexer.getNextToken()) {
+                tokens.add(token);
+            }
+        } catch (RuntimeException e) {
+            return null;
+        }
+
+        final int[] kinds = new int[tokens.size()];
+        final String[] images = new String[tokens.size()];
+        final int[] beginLines = new int[tokens.size()];
+        final int[] endLines = new int[tokens.size()];
+        final BitSet codeLines = new BitSet();
+        for (int i = 0; i < kinds.length; i++) {
+            final Token token = tokens.get(i);
+            kinds[i] = token.kind;
+            // The lexer splits ">>" and ">>>" into single ">" tokens but keeps the image of the whole operator
+            images[i] = token.kind == GT ? ">" : token.image;
+            beginLines[i] = token.beginLine;
+            endLines[i] = token.endLine;
+            codeLines.set(token.beginLine, token.endLine + 1);
+        }
+        final MethodFingerprinter fingerprinter = new MethodFingerprinter(kinds, images, beginLines, endLines);
+        try {
+            fingerprinter.scanMembers(null);
+        } catch (IllegalStateException e) {
+            return null;
+        }
+        return new ScannedFile(fingerprinter.fingerprints, fingerprinter.methodLines, fingerprinter.typeHeaders,
+                fingerprinter.firstTypeLine, codeLines);
+    }
+
+    /**
+     * Scans the members of a type body, or the top level of the file, up to the closing brace.
+     *
+     * @param owner The fully qualified name of the enclosing type, or null at the top level.
+     */
+    private void scanMembers(String owner) {
+        final List<Integer> memberTokens = new ArrayList<>();
+        int memberStart = pos;
+        boolean memberHasAssign = false;
+        String typeName = null;
+        while (pos < kinds.length) {
+            final int kind = kinds[pos];
+            if (kind == RBRACE) {
+                if (owner == null) {
+                    throw new IllegalStateException("Unbalanced closing brace");
+                }
+                pos++;
+                return;
+            } else if (kind == SEMICOLON) {
+                if (owner == null && !memberTokens.isEmpty() && kinds[memberTokens.get(0)] == PACKAGE) {
+                    packageName = joinImages(memberTokens.subList(1, memberTokens.size()));
+                }
+                pos++;
+                memberTokens.clear();
+                memberStart = pos;
+                memberHasAssign = false;
+                typeName = null;
+            } else if (kind == AT && !isKind(pos + 1, INTERFACE)) {
+                skipAnnotation();
+            } else if (kind == LBRACE) {
+                if (typeName != null) {
+                    typeHeaders.add(new LineRange(beginLines[memberStart], beginLines[pos]));
+                    if (owner == null) {
+                        firstTypeLine = Math.min(firstTypeLine, beginLines[memberStart]);
+                    }
+                    pos++;
+                    scanMembers(owner == null ? qualify(packageName, typeName) : owner + "." + typeName);
+                } else {
+                    skipBalanced(LBRACE, RBRACE);
+                    if (memberHasAssign) {
+                        continue;
+                    }
+                }
+                memberTokens.clear();
+                memberStart = pos;
+                memberHasAssign = false;
+                typeName = null;
+            } else if (kind == LPAREN) {
+                if (owner != null && typeName == null && !memberHasAssign && isMethodHeader(memberTokens, owner)) {
+                    scanMethod(owner, images[memberTokens.get(memberTokens.size() - 1)], memberStart);
+                    memberTokens.clear();
+                    memberStart = pos;
+                } else {
+                    skipBalanced(LPAREN, RPAREN);
+                }
+            } else {
+                if (kind == ASSIGN) {
+                    memberHasAssign = true;
+                } else if (typeName == null && !memberHasAssign && isTypeKeyword(pos)) {
+                    typeName = images[pos + 1];
+                }
+                memberTokens.add(pos++);
+            }
+        }
+        if (owner != null) {
+            throw new IllegalStateException("Unbalanced opening brace");
+        }
+    }
+
+    /**
+     * Scans a method from the opening parenthesis of its parameters and records the fingerprint of its body.
+     *
+     * @param owner       The fully qualified name of the declaring type.
+     * @param methodName  The name of the method.
+     * @param memberStart The index of the first token of the method declaration.
+     */
+    private void scanMethod(String owner, String methodName, int memberStart) {
+        final int parametersStart = pos + 1;
+        skipBalanced(LPAREN, RPAREN);
+        final List<String> parameterTypes = parameterTypes(parametersStart, pos - 1);
+        while (pos < kinds.length && kinds[pos] != LBRACE && kinds[pos] != SEMICOLON) {
+            if (kinds[pos] == LPAREN) {
+                skipBalanced(LPAREN, RPAREN);
+            } else if (kinds[pos] == _DEFAULT && isKind(pos + 1, LBRACE)) {
+                // Annotation element with an array default value
+                pos++;
+                skipBalanced(LBRACE, RBRACE);
+            } else {
+                pos++;
+            }
+        }
+        if (pos == kinds.length) {
+            throw new IllegalStateException("Method without body or semicolon");
+        }
+
+        long fingerprint = NO_BODY;
+        if (kinds[pos] == LBRACE) {
+            final int bodyStart = pos;
+            skipBalanced(LBRACE, RBRACE);
+            fingerprint = hash(bodyStart, pos);
+        } else {
+            pos++;
+        }
+        final MethodKey key = new MethodKey(owner, methodName, parameterTypes);
+        fingerprints.put(key, fingerprint);
+        methodLines.put(key, new LineRange(beginLines[memberStart], endLines[pos - 1]));
+    }
+
+    /**
+     * Extracts the parameter types of a method header, as written in source, without annotations and modifiers.
+     *
+     * @param start The index of the first token inside the parentheses.
+     * @param end   The index of the closing parenthesis.
+     * @return The parameter types.
+     */
+    private List<String> parameterTypes(int start, int end) {
+        final List<String> parameterTypes = new ArrayList<>();
+        final List<Integer> parameterTokens = new ArrayList<>();
+        int angleDepth = 0;
+        for (int i = start; i <= end; i++) {
+            if (i == end || (kinds[i] == COMMA && angleDepth == 0)) {
+                addParameterType(parameterTokens, parameterTypes);
+                parameterTokens.clear();
+            } else if (kinds[i] == AT && !isKind(i + 1, INTERFACE)) {
+                i = skipAnnotationAt(i) - 1;
+            } else if (kinds[i] != FINAL) {
+                if (kinds[i] == LT) {
+                    angleDepth++;
+                } else if (kinds[i] == GT) {
+                    angleDepth--;
+                }
+                parameterTokens.add(i);
+            }
+        }
+        return parameterTypes;
+    }
+
+    private void addParameterType(List<Integer> parameterTokens, List<String> parameterTypes) {
+        int last = parameterTokens.size() - 1;
+        int dimensions = 0;
+        while (last >= 2 && kinds[parameterTokens.get(last)] == RBRACKET && kinds[parameterTokens.get(last - 1)] == LBRACKET) {
+            dimensions++;
+            last -= 2;
+        }
+        // The last token is the parameter name; a receiver parameter named "this" is not a parameter
+        if (last < 1 || kinds[parameterTokens.get(last)] == THIS) {
+            return;
+        }
+        parameterTypes.add(joinImages(parameterTokens.subList(0, last)) + "[]".repeat(dimensions));
+    }
+
+    /**
+     * Checks if the member tokens seen so far end with a method header "type name".
+     * Constructors, enum constants and annotations do not match.
+     *
+     * @param memberTokens The tokens of the current member.
+     * @param owner        The fully qualified name of the enclosing type.
+     * @return True if the following parenthesis opens the parameters of a method.
+     */
+    private boolean isMethodHeader(List<Integer> memberTokens, String owner) {
+        if (memberTokens.size() < 2) {
+            return false;
+        }
+        final int name = memberTokens.get(memberTokens.size() - 1);
+        final int type = memberTokens.get(memberTokens.size() - 2);
+        if (!isIdentifier(kinds[name]) || images[name].equals(owner.substring(owner.lastIndexOf('.') + 1))) {
+            return false;
+        }
+        return switch (kinds[type]) {
+            case GT, RBRACKET, VOID, BOOLEAN, BYTE, CHAR, SHORT, INT, LONG, FLOAT, DOUBLE -> true;
+            default -> isIdentifier(kinds[type]);
+        };
+    }
+
+    private boolean isTypeKeyword(int index) {
+        if (index + 1 >= kinds.length || !isIdentifier(kinds[index + 1])) {
+            return false;
+        }
+        return switch (kinds[index]) {
+            case CLASS, INTERFACE, ENUM -> index == 0 || kinds[index - 1] != DOT;
+            // "record" is a restricted identifier, so it only starts a declaration when a header follows the name
+            case RECORD -> isKind(index + 2, LPAREN) || isKind(index + 2, LT);
+            default -> false;
+        };
+    }
+
+    private static boolean isIdentifier(int kind) {
+        return switch (kind) {
+            case IDENTIFIER, RECORD, SEALED, PERMITS, YIELD, REQUIRES, TO, WITH, OPEN, OPENS, USES, MODULE, EXPORTS,
+                 PROVIDES, TRANSITIVE, WHEN -> true;
+            default -> false;
+        };
+    }
+
+    private boolean isKind(int index, int kind) {
+        return index < kinds.length && kinds[index] == kind;
+    }
+
+    private void skipAnnotation() {
+        pos = skipAnnotationAt(pos);
+    }
+
+    /**
+     * Finds the end of an annotation with its optional arguments.
+     *
+     * @param index The index of the "@" token.
+     * @return The index of the first token after the annotation.
+     */
+    private int skipAnnotationAt(int index) {
+        int next = index + 2;
+        while (isKind(next, DOT) && next + 1 < kinds.length && isIdentifier(kinds[next + 1])) {
+            next += 2;
+        }
+        if (isKind(next, LPAREN)) {
+            final int saved = pos;
+            pos = next;
+            skipBalanced(LPAREN, RPAREN);
+            next = pos;
+            pos = saved;
+        }
+        return next;
+    }
+
+    /**
+     * Moves past a balanced pair of delimiters starting at the current token.
+     *
+     * @param open  The kind of the opening delimiter.
+     * @param close The kind of the closing delimiter.
+     */
+    private void skipBalanced(int open, int close) {
+        int depth = 0;
+        do {
+            if (pos == kinds.length) {
+                throw new IllegalStateException("Unbalanced delimiters");
+            }
+            if (kinds[pos] == open) {
+                depth++;
+            } else if (kinds[pos] == close) {
+                depth--;
+            }
+            pos++;
+        } while (depth > 0);
+    }
+
+    /**
+     * Computes a 64-bit FNV-1a hash of the kinds and images of a range of tokens.
+     *
+     * @param start The index of the first token.
+     * @param end   The index after the last token.
+     * @return The hash of the tokens.
+     */
+    private long hash(int start, int end) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            hash ^= kinds[i] + 0x10000L;
+            hash *= 0x100000001b3L;
+            final String image = images[i];
+            for (int c = 0; c < image.length(); c++) {
+                hash ^= image.charAt(c);
+                hash *= 0x100000001b3L;
+            }
+        }
+        return hash == NO_BODY ? 1L : hash;
+    }
+
+    private String joinImages(List<Integer> tokenIndexes) {
+        final StringBuilder joined = new StringBuilder();
+        for (int index : tokenIndexes) {
+            if (joined.length() > 0 && isIdentifier(kinds[index]) && Character.isJavaIdentifierPart(joined.charAt(joined.length() - 1))) {
+                joined.append(' ');
+            }
+            joined.append(images[index]);
+        }
+        return joined.toString();
+    }
+
+    private static String qualify(String packageName, String typeName) {
+        return packageName.isEmpty() ? typeName : packageName + "." + typeName;
+    }
+}
@@ -0,0 +1,35 @@
+package com.your.affectedtestsplugin.diff;
+
+/**
+ * A diff hunk, or the part of one, that changes code outside of any method.
+ *
+ * @param className The name of the class declared by the changed file.
+ * @param scope     The kind of code the hunk changes.
+ * @param firstLine The first changed line, in the working copy unless the hunk only deletes lines.
+ * @param lastLine  The last changed line.
+ */
+public record UnscopedHunk(String className, Scope scope, int firstLine, int lastLine) {
+
+    /**
+     * The kinds of code outside of methods a hunk can change.
+     */
+    public enum Scope {
+        /**
+         * The package declaration and imports preceding the first type declaration.
+         */
+        IMPORTS,
+        /**
+         * A type declaration header: modifiers, annotations, name, type parameters, supertypes or record components.
+         */
+        TYPE_HEADER,
+        /**
+         * A type member other than a method: a field, constructor, initializer block or enum constant.
+         */
+        MEMBER
+    }
+
+    @Override
+    public String toString() {
+        return className + " " + scope + " lines " + firstLine + "-" + lastLine;
+    }
+}
@@ -0,0 +1,533 @@
+package com.your.affectedtestsplugin.graph;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.search.FileTypeIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.your.affectedtestsplugin.helperandutils.CustomUtil;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Persistent reverse call graph of the project, mapping every method to the methods calling it.
+ * Each source file contributes an entry stamped with the modification time, length and content hash it was indexed
+ * from, so an update only re-resolves the calls of files edited since the last update, also across IDE restarts.
+ * Every file is indexed in its own non-blocking read action, so an update never holds off write actions for longer
+ * than a single file. When a file adds or removes methods, the files calling methods of the same name are indexed
+ * again, since their calls may now resolve to another overload. The graph is stored under the IDE system directory
+ * and answers usage traversals in memory without running reference searches; methods are interned to dense ids and
+ * the graph is queried straight from the stored file until the next edit. Every save writes a new generation of the
+ * file and switches to it, since the mapped generation cannot be replaced on every platform.
+ */
+@Service(Service.Level.PROJECT)
+public final class CallGraphIndex {
+    private static final Logger LOG = Logger.getInstance(CallGraphIndex.class);
+    private final Project project;
+    private final Path storageDirectory;
+    private final Map<String, CallGraphStorage.FileStamp> stamps = new LinkedHashMap<>();
+    private final Map<String, CallGraphStorage.FileEntry> fileEntries = new HashMap<>();
+    private final Map<String, Long> documentStamps = new HashMap<>();
+    private final Set<String> movedMethodNames = new HashSet<>();
+    private CallGraphStorage.Snapshot snapshot;
+    private long generation = -1;
+    private ReverseCallGraph graph = new HeapGraph(new MethodKeyTable(), new int[0][], new BitSet());
+    private boolean modifiedSinceRebuild;
+    private boolean modifiedSinceSave;
+
+    /**
+     * The outcome of reading a file whose stamp changed.
+     *
+     * @param stamp         The stamp of the content read.
+     * @param documentStamp The modification stamp of the unsaved document the content was read from, or null.
+     * @param entry         The entry indexed from the content, or null if its hash did not change.
+     */
+    private record IndexedFile(CallGraphStorage.FileStamp stamp, Long documentStamp, CallGraphStorage.FileEntry entry) {
+    }
+
+    /**
+     * Constructs a CallGraphIndex instance for the specified project.
+     *
+     * @param project The IntelliJ project instance.
+     */
+    public CallGraphIndex(Project project) {
+        this.project = project;
+        this.storageDirectory = Path.of(PathManager.getSystemPath(), "affected-tests", project.getLocationHash());
+    }
+
+    /**
+     * Brings the index up to date with the project sources, re-indexing only files whose stamp changed.
+     * Files are read in non-blocking read actions that restart when a write action comes in, so it must be called
+     * in the background; called inside a read action, the files are read in that read action instead.
+     * A cancelled update keeps the files indexed so far, and the next update rebuilds the graph from them.
+     *
+     * @return True if the index is ready to be queried, false while the IDE is indexing.
+     */
+    public synchronized boolean update() {
+        if (DumbService.isDumb(project)) {
+            return false;
+        }
+        loadIfNeeded();
+
+        final Map<String, VirtualFile> files = new LinkedHashMap<>();
+        for (VirtualFile file : readAction(() -> FileTypeIndex.getFiles(JavaFileType.INSTANCE, GlobalSearchScope.projectScope(project)))) {
+            files.put(file.getPath(), file);
+        }
+        final Set<String> indexedPaths = new HashSet<>();
+        for (Map.Entry<String, VirtualFile> file : files.entrySet()) {
+            ProgressManager.checkCanceled();
+            if (!isUpToDate(file.getKey(), file.getValue())) {
+                final CallGraphStorage.FileStamp previous = stamps.get(file.getKey());
+                apply(file.getKey(), readAction(() -> indexFile(file.getValue(), previous)));
+                indexedPaths.add(file.getKey());
+            }
+        }
+        for (Iterator<String> paths = stamps.keySet().iterator(); paths.hasNext(); ) {
+            final String path = paths.next();
+            if (!files.containsKey(path)) {
+                entry(path).declaredMethods().forEach(method -> movedMethodNames.add(method.methodName()));
+                paths.remove();
+                fileEntries.remove(path);
+                documentStamps.remove(path);
+                modifiedSinceRebuild = true;
+            }
+        }
+        if (!movedMethodNames.isEmpty()) {
+            reindexCallers(files, indexedPaths);
+        }
+
+        if (modifiedSinceRebuild) {
+            rebuildReverseGraph();
+            modifiedSinceRebuild = false;
+            modifiedSinceSave = true;
+        }
+        if (modifiedSinceSave) {
+            modifiedSinceSave = false;
+            save();
+        }
+        return true;
+    }
+
+    /**
+     * Walks the reverse call graph breadth first from the given changed methods.
+     * Every method is visited once, at the minimal depth it can be reached at.
+     *
+     * @param changedMethods The keys of the changed methods.
+     * @param maxDepth       The maximum depth for the walk.
+     * @return The keys of all affected methods mapped to the depth they were reached at.
+     */
+    public Map<MethodKey, Integer> collectAffectedMethods(Collection<MethodKey> changedMethods, int maxDepth) {
+        return collectAffectedMethods(changedMethods, TraversalBudget.fixed(maxDepth), new HashMap<>());
+    }
+
+    /**
+     * Walks the reverse call graph breadth first from the given changed methods, recording the walked edges.
+     * Every method is visited once, at the minimal depth it can be reached at. The budget is asked before every level
+     * that has unvisited callers left, so a walk ending on its own is never reported as stopped by the budget.
+     *
+     * @param changedMethods The keys of the changed methods.
+     * @param budget         The budget bounding the walk.
+     * @param walkedCallees  Receives the edges the walk went through, from every reached caller to the reached
+     *                       methods it calls.
+     * @return The keys of all affected methods mapped to the depth they were reached at.
+     */
+    public synchronized Map<MethodKey, Integer> collectAffectedMethods(Collection<MethodKey> changedMethods, TraversalBudget budget,
+                                                                      Map<MethodKey, Set<MethodKey>> walkedCallees) {
+        final Map<MethodKey, Integer> affectedMethods = new LinkedHashMap<>();
+        final int[] depths = new int[graph.size()];
+        Arrays.fill(depths, -1);
+        int[] frontier = new int[graph.size()];
+        int frontierSize = 0;
+        for (MethodKey changedMethod : changedMethods) {
+            final int id = graph.idOf(changedMethod);
+            if (id < 0) {
+                affectedMethods.putIfAbsent(changedMethod, 0);
+            } else if (depths[id] < 0) {
+                depths[id] = 0;
+                frontier[frontierSize++] = id;
+            }
+        }
+
+        int testsReached = 0;
+        int[] nextFrontier = new int[graph.size()];
+        for (int depth = 0; frontierSize > 0; depth++) {
+            int callersLeft = 0;
+            for (int i = 0; i < frontierSize; i++) {
+                ProgressManager.checkCanceled();
+                final int id = frontier[i];
+                affectedMethods.put(graph.key(id), depth);
+                if (graph.isTest(id)) {
+                    testsReached++;
+                }
+                for (int caller : graph.callers(id)) {
+                    if (depths[caller] < 0) {
+                        callersLeft++;
+                    }
+                }
+            }
+            if (depth >= budget.maxDepth() || (callersLeft > 0 && !budget.allowsLevel(depth + 1, testsReached, callersLeft))) {
+                break;
+            }
+
+            int nextSize = 0;
+            for (int i = 0; i < frontierSize; i++) {
+                final int id = frontier[i];
+                for (int caller : graph.callers(id)) {
+                    walkedCallees.computeIfAbsent(graph.key(caller), method -> new LinkedHashSet<>()).add(graph.key(id));
+                    if (depths[caller] < 0) {
+                        depths[caller] = depth + 1;
+                        nextFrontier[nextSize++] = caller;
+                    }
+                }
+            }
+            final int[] swap = frontier;
+            frontier = nextFrontier;
+            nextFrontier = swap;
+            frontierSize = nextSize;
+        }
+        return affectedMethods;
+    }
+
+    /**
+     * Checks if the given key belongs to an indexed test method.
+     *
+     * @param method The method key.
+     * @return True if the method is annotated as a test.
+     */
+    public synchronized boolean isTestMethod(MethodKey method) {
+        final int id = graph.idOf(method);
+        return id >= 0 && graph.isTest(id);
+    }
+
+    /**
+     * Checks whether a file is unchanged since it was indexed, without reading it. Files on disk are compared by
+     * modification time and length, which survive IDE restarts, and unsaved documents by their modification stamp.
+     *
+     * @param path The path of the file.
+     * @param file The file.
+     * @return True if the file does not need to be read
+     */
+    private boolean isUpToDate(String path, VirtualFile file) {
+        final FileDocumentManager documentManager = FileDocumentManager.getInstance();
+        final Document document = documentManager.getCachedDocument(file);
+        if (document != null && documentManager.isDocumentUnsaved(document)) {
+            return Objects.equals(documentStamps.get(path), document.getModificationStamp());
+        }
+        final CallGraphStorage.FileStamp stamp = stamps.get(path);
+        return stamp != null && stamp.timeStamp() == file.getTimeStamp() && stamp.length() == file.getLength();
+    }
+
+    /**
+     * Reads a file whose stamp changed and resolves its calls if its content changed. Runs in a read action that may
+     * be restarted, so it does not touch the index.
+     *
+     * @param file     The file.
+     * @param previous The stamp the file was indexed with before, or null to index it in any case.
+     * @return The stamp and the entry of the file.
+     */
+    private IndexedFile indexFile(VirtualFile file, CallGraphStorage.FileStamp previous) {
+        if (!file.isValid()) {
+            return new IndexedFile(new CallGraphStorage.FileStamp(0, -1, -1), null, CallGraphStorage.FileEntry.EMPTY);
+        }
+        final FileDocumentManager documentManager = FileDocumentManager.getInstance();
+        final Document document = documentManager.getCachedDocument(file);
+        final boolean unsaved = document != null && documentManager.isDocumentUnsaved(document);
+        final CharSequence text = document != null ? document.getImmutableCharSequence() : LoadTextUtil.loadText(file);
+        final long contentHash = hash(text);
+        final CallGraphStorage.FileStamp stamp = unsaved ? new CallGraphStorage.FileStamp(contentHash, -1, -1)
+                : new CallGraphStorage.FileStamp(contentHash, file.getTimeStamp(), file.getLength());
+        final Long documentStamp = unsaved ? document.getModificationStamp() : null;
+        if (previous != null && previous.contentHash() == contentHash) {
+            return new IndexedFile(stamp, documentStamp, null);
+        }
+        if (PsiManager.getInstance(project).findFile(file) instanceof PsiJavaFile javaFile) {
+            return new IndexedFile(stamp, documentStamp, indexFile(javaFile));
+        }
+        return new IndexedFile(stamp, documentStamp, CallGraphStorage.FileEntry.EMPTY);
+    }
+
+    /**
+     * Resolves every call made in a file and records it as an edge from the calling to the called method.
+     *
+     * @param javaFile The file to index.
+     * @return The index entry of the file.
+     */
+    private CallGraphStorage.FileEntry indexFile(PsiJavaFile javaFile) {
+        final List<MethodKey> declaredMethods = new ArrayList<>();
+        final List<MethodKey> fileTestMethods = new ArrayList<>();
+        final List<MethodKey[]> edges = new ArrayList<>();
+        javaFile.accept(new JavaRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitMethod(PsiMethod method) {
+                final MethodKey key = CustomUtil.getMethodKey(method);
+                if (key != null) {
+                    declaredMethods.add(key);
+                    if (CustomUtil.isTestMethod(method)) {
+                        fileTestMethods.add(key);
+                    }
+                }
+                super.visitMethod(method);
+            }
+
+            @Override
+            public void visitMethodCallExpression(PsiMethodCallExpression expression) {
+                addEdge(expression, expression.resolveMethod(), edges);
+                super.visitMethodCallExpression(expression);
+            }
+
+            @Override
+            public void visitMethodReferenceExpression(PsiMethodReferenceExpression expression) {
+                if (expression.resolve() instanceof PsiMethod method) {
+                    addEdge(expression, method, edges);
+                }
+                super.visitMethodReferenceExpression(expression);
+            }
+        });
+        return new CallGraphStorage.FileEntry(declaredMethods, fileTestMethods, edges);
+    }
+
+    private void addEdge(PsiElement callSite, PsiMethod callee, List<MethodKey[]> edges) {
+        final PsiMethod caller = PsiTreeUtil.getParentOfType(callSite, PsiMethod.class);
+        if (caller == null || callee == null) {
+            return;
+        }
+        final MethodKey callerKey = CustomUtil.getMethodKey(caller);
+        final MethodKey calleeKey = CustomUtil.getMethodKey(callee);
+        if (callerKey != null && calleeKey != null) {
+            edges.add(new MethodKey[]{callerKey, calleeKey});
+        }
+    }
+
+    /**
+     * Records a read file in the index. The names of the methods it added or removed are kept, so the files calling
+     * methods of those names are indexed again.
+     *
+     * @param path    The path of the file.
+     * @param indexed The stamp and the entry of the file.
+     */
+    private void apply(String path, IndexedFile indexed) {
+        if (indexed.documentStamp() != null) {
+            documentStamps.put(path, indexed.documentStamp());
+        } else {
+            documentStamps.remove(path);
+        }
+        modifiedSinceSave |= !indexed.stamp().equals(stamps.put(path, indexed.stamp()));
+        if (indexed.entry() == null) {
+            return;
+        }
+        final CallGraphStorage.FileEntry previous = entry(path);
+        final Set<MethodKey> declaredMethods = new HashSet<>(indexed.entry().declaredMethods());
+        final Set<MethodKey> previousMethods = previous != null ? new HashSet<>(previous.declaredMethods()) : Set.of();
+        for (MethodKey method : declaredMethods) {
+            if (!previousMethods.contains(method)) {
+                movedMethodNames.add(method.methodName());
+            }
+        }
+        for (MethodKey method : previousMethods) {
+            if (!declaredMethods.contains(method)) {
+                movedMethodNames.add(method.methodName());
+            }
+        }
+        fileEntries.put(path, indexed.entry());
+        modifiedSinceRebuild = true;
+    }
+
+    /**
+     * Indexes again the files calling a method whose name is in the moved method names, since their calls may now
+     * resolve to an added overload or away from a removed one.
+     *
+     * @param files        The project files keyed by path.
+     * @param indexedPaths The paths of the files already indexed by this update.
+     */
+    private void reindexCallers(Map<String, VirtualFile> files, Set<String> indexedPaths) {
+        for (String path : new ArrayList<>(stamps.keySet())) {
+            ProgressManager.checkCanceled();
+            final VirtualFile file = files.get(path);
+            if (file == null || indexedPaths.contains(path)) {
+                continue;
+            }
+            for (MethodKey[] edge : entry(path).edges()) {
+                if (movedMethodNames.contains(edge[1].methodName())) {
+                    apply(path, readAction(() -> indexFile(file, null)));
+                    break;
+                }
+            }
+        }
+        movedMethodNames.clear();
+    }
+
+    /**
+     * Gets the entry of an indexed file, decoding it from the stored index if it was not indexed in this session.
+     *
+     * @param path The path of the file.
+     * @return The entry of the file, or null if the file is not indexed.
+     */
+    private CallGraphStorage.FileEntry entry(String path) {
+        CallGraphStorage.FileEntry entry = fileEntries.get(path);
+        if (entry == null && stamps.containsKey(path)) {
+            entry = snapshot.entry(path);
+            if (entry == null) {
+                entry = CallGraphStorage.FileEntry.EMPTY;
+            }
+            fileEntries.put(path, entry);
+        }
+        return entry;
+    }
+
+    private void rebuildReverseGraph() {
+        final MethodKeyTable table = new MethodKeyTable();
+        final Map<Integer, Set<Integer>> callers = new HashMap<>();
+        final BitSet tests = new BitSet();
+        for (String path : stamps.keySet()) {
+            final CallGraphStorage.FileEntry entry = entry(path);
+            entry.declaredMethods().forEach(table::intern);
+            for (MethodKey testMethod : entry.testMethods()) {
+                tests.set(table.intern(testMethod));
+            }
+            for (MethodKey[] edge : entry.edges()) {
+                final int caller = table.intern(edge[0]);
+                callers.computeIfAbsent(table.intern(edge[1]), callee -> new LinkedHashSet<>()).add(caller);
+            }
+        }
+        final int[][] callerIds = new int[table.size()][];
+        for (int id = 0; id < callerIds.length; id++) {
+            final Set<Integer> methodCallers = callers.getOrDefault(id, Collections.emptySet());
+            callerIds[id] = methodCallers.stream().mapToInt(Integer::intValue).toArray();
+        }
+        graph = new HeapGraph(table, callerIds, tests);
+    }
+
+    private void loadIfNeeded() {
+        if (snapshot != null) {
+            return;
+        }
+        try {
+            generation = CallGraphStorage.latestGeneration(storageDirectory);
+            snapshot = generation < 0 ? CallGraphStorage.empty()
+                    : CallGraphStorage.read(CallGraphStorage.generationFile(storageDirectory, generation));
+            CallGraphStorage.deleteGenerationsBefore(storageDirectory, generation);
+        } catch (IOException | RuntimeException e) {
+            LOG.info("Cannot read call graph index, rebuilding it", e);
+            snapshot = CallGraphStorage.empty();
+        }
+        stamps.putAll(snapshot.stamps());
+        if (snapshot.graph() != null) {
+            graph = snapshot.graph();
+        } else {
+            modifiedSinceRebuild = true;
+        }
+    }
+
+    /**
+     * Writes the index to a new generation of the file and queries the graph from it from then on, releasing the
+     * previous generation and the entries decoded from it.
+     */
+    private void save() {
+        final long nextGeneration = generation + 1;
+        final CallGraphStorage.Snapshot saved;
+        try {
+            for (String path : stamps.keySet()) {
+                entry(path);
+            }
+            final Path file = CallGraphStorage.generationFile(storageDirectory, nextGeneration);
+            CallGraphStorage.write(file, stamps, fileEntries, graph);
+            saved = CallGraphStorage.read(file);
+        } catch (IOException | RuntimeException e) {
+            LOG.info("Cannot write call graph index", e);
+            return;
+        }
+        if (saved.graph() != null) {
+            snapshot = saved;
+            graph = saved.graph();
+            fileEntries.clear();
+        }
+        generation = nextGeneration;
+        CallGraphStorage.deleteGenerationsBefore(storageDirectory, generation);
+    }
+
+    /**
+     * Runs a computation in a non-blocking read action on the current thread, or directly if read access is already
+     * allowed.
+     *
+     * @param computation The computation.
+     * @param <T>         The type of the result.
+     * @return The result of the computation.
+     */
+    private <T> T readAction(Computable<T> computation) {
+        if (ApplicationManager.getApplication().isReadAccessAllowed()) {
+            return computation.compute();
+        }
+        return ReadAction.nonBlocking(computation::compute).inSmartMode(project).executeSynchronously();
+    }
+
+    /**
+     * Computes a 64-bit FNV-1a hash of the given text.
+     *
+     * @param text The text to hash.
+     * @return The hash of the text.
+     */
+    private static long hash(CharSequence text) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * The reverse call graph built in memory from the indexed files, keeping the callers of each method as an int
+     * array.
+     */
+    private static final class HeapGraph implements ReverseCallGraph {
+        private final MethodKeyTable methodKeys;
+        private final int[][] callersByCallee;
+        private final BitSet testMethods;
+
+        private HeapGraph(MethodKeyTable methodKeys, int[][] callersByCallee, BitSet testMethods) {
+            this.methodKeys = methodKeys;
+            this.callersByCallee = callersByCallee;
+            this.testMethods = testMethods;
+        }
+
+        @Override
+        public int size() {
+            return methodKeys.size();
+        }
+
+        @Override
+        public int idOf(MethodKey key) {
+            return methodKeys.idOf(key);
+        }
+
+        @Override
+        public MethodKey key(int id) {
+            return methodKeys.get(id);
+        }
+
+        @Override
+        public int[] callers(int id) {
+            return callersByCallee[id];
+        }
+
+        @Override
+        public boolean isTest(int id) {
+            return testMethods.get(id);
+        }
+    }
+}
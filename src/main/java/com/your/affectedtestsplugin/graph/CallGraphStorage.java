@@ -0,0 +1,481 @@
+package com.your.affectedtestsplugin.graph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Reads and writes the call graph index file.
+ * The file holds a string table and a method table built from it, followed by one record per source file
+ * with the stamp of the content it was indexed from and its declared methods, test methods and caller to callee
+ * edges as int ids into the method table. The reverse call graph over the same ids and a lookup of the method table
+ * by hash close the file.
+ * It is read through a memory mapping and decoded lazily: reading only walks the tables to find their offsets and
+ * decodes the file stamps, while methods and file records are decoded when they are first used, so the graph of an
+ * unchanged project is queried straight from the mapped file.
+ * As a mapped file cannot be replaced on every platform, each save writes a new generation of the file next to the
+ * previous ones instead of overwriting it; older generations are deleted once they are no longer mapped.
+ */
+final class CallGraphStorage {
+    private static final int MAGIC = 0x41544347;
+    private static final int VERSION = 4;
+    private static final String FILE_PREFIX = "call-graph-";
+    private static final String FILE_SUFFIX = ".idx";
+
+    private CallGraphStorage() {
+    }
+
+    /**
+     * The stamp of the content a file was indexed from.
+     *
+     * @param contentHash The hash of the file content.
+     * @param timeStamp   The modification time of the file on disk, -1 if the content was read from an unsaved document.
+     * @param length      The length of the file on disk, -1 if the content was read from an unsaved document.
+     */
+    record FileStamp(long contentHash, long timeStamp, long length) {
+    }
+
+    /**
+     * The indexed call graph data of a single source file.
+     *
+     * @param declaredMethods The keys of the methods declared in the file.
+     * @param testMethods     The keys of the test methods declared in the file.
+     * @param edges           The caller and callee key of every call made in the file.
+     */
+    record FileEntry(List<MethodKey> declaredMethods, List<MethodKey> testMethods, List<MethodKey[]> edges) {
+        static final FileEntry EMPTY = new FileEntry(List.of(), List.of(), List.of());
+    }
+
+    /**
+     * Gets the file of a generation of the index.
+     *
+     * @param directory  The directory holding the index files.
+     * @param generation The generation of the index.
+     * @return The path of the index file.
+     */
+    static Path generationFile(Path directory, long generation) {
+        return directory.resolve(FILE_PREFIX + generation + FILE_SUFFIX);
+    }
+
+    /**
+     * Finds the newest generation of the index stored in a directory.
+     *
+     * @param directory The directory holding the index files.
+     * @return The newest generation, or -1 if no index is stored.
+     * @throws IOException If an I/O error occurs while listing the directory.
+     */
+    static long latestGeneration(Path directory) throws IOException {
+        long latest = -1;
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    latest = Math.max(latest, generationOf(file));
+                }
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Deletes the generations of the index older than the given one. Files that cannot be deleted yet, such as files
+     * still mapped on Windows, are left for a later call.
+     *
+     * @param directory  The directory holding the index files.
+     * @param generation The oldest generation to keep.
+     */
+    static void deleteGenerationsBefore(Path directory, long generation) {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                final long fileGeneration = generationOf(file);
+                if (fileGeneration >= 0 && fileGeneration < generation) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException ignored) {
+            // Retried on the next save or load
+        }
+    }
+
+    private static long generationOf(Path file) {
+        final String name = file.getFileName().toString();
+        if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads the index file.
+     *
+     * @param file The path of the index file.
+     * @return The stored index, or an empty snapshot if the file does not exist or has another version.
+     * @throws IOException If an I/O error occurs.
+     */
+    static Snapshot read(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return empty();
+        }
+        final ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return empty();
+        }
+        return new Snapshot(buffer);
+    }
+
+    /**
+     * Creates a snapshot of an empty index.
+     *
+     * @return The empty snapshot.
+     */
+    static Snapshot empty() {
+        return new Snapshot();
+    }
+
+    /**
+     * Writes the index file, replacing any previous version atomically. The file must not be mapped by a snapshot,
+     * so each save writes a new {@link #generationFile generation}. The method table is written in the id order
+     * of the graph, so the graph must hold every method of the entries.
+     *
+     * @param file    The path of the index file.
+     * @param stamps  The stamps of the indexed files keyed by file path.
+     * @param entries The entries of the indexed files keyed by file path, holding an entry for every stamped file.
+     * @param graph   The reverse call graph built from the entries.
+     * @throws IOException If an I/O error occurs.
+     */
+    static void write(Path file, Map<String, FileStamp> stamps, Map<String, FileEntry> entries, ReverseCallGraph graph) throws IOException {
+        final Map<String, Integer> stringIds = new LinkedHashMap<>();
+        stamps.keySet().forEach(path -> stringIds.putIfAbsent(path, stringIds.size()));
+        for (int id = 0; id < graph.size(); id++) {
+            final MethodKey method = graph.key(id);
+            stringIds.putIfAbsent(method.className(), stringIds.size());
+            stringIds.putIfAbsent(method.methodName(), stringIds.size());
+            method.parameterTypes().forEach(type -> stringIds.putIfAbsent(type, stringIds.size()));
+        }
+
+        Files.createDirectories(file.getParent());
+        final Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(stringIds.size());
+            for (String string : stringIds.keySet()) {
+                final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.writeInt(graph.size());
+            for (int id = 0; id < graph.size(); id++) {
+                final MethodKey method = graph.key(id);
+                out.writeInt(stringIds.get(method.className()));
+                out.writeInt(stringIds.get(method.methodName()));
+                out.writeInt(method.parameterTypes().size());
+                for (String type : method.parameterTypes()) {
+                    out.writeInt(stringIds.get(type));
+                }
+            }
+            out.writeInt(stamps.size());
+            for (Map.Entry<String, FileStamp> stamp : stamps.entrySet()) {
+                final FileEntry entry = entries.get(stamp.getKey());
+                out.writeInt(stringIds.get(stamp.getKey()));
+                out.writeLong(stamp.getValue().contentHash());
+                out.writeLong(stamp.getValue().timeStamp());
+                out.writeLong(stamp.getValue().length());
+                writeMethodIds(out, entry.declaredMethods(), graph);
+                writeMethodIds(out, entry.testMethods(), graph);
+                out.writeInt(entry.edges().size());
+                for (MethodKey[] edge : entry.edges()) {
+                    out.writeInt(idOf(graph, edge[0]));
+                    out.writeInt(idOf(graph, edge[1]));
+                }
+            }
+            writeGraph(out, graph);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeMethodIds(DataOutputStream out, List<MethodKey> methods, ReverseCallGraph graph) throws IOException {
+        out.writeInt(methods.size());
+        for (MethodKey method : methods) {
+            out.writeInt(idOf(graph, method));
+        }
+    }
+
+    /**
+     * Writes the callers of every method as offsets into one array of caller ids, the test methods as a bitset and
+     * the method ids sorted by the hash of their key.
+     *
+     * @param out   The stream of the index file.
+     * @param graph The reverse call graph.
+     * @throws IOException If an I/O error occurs.
+     */
+    private static void writeGraph(DataOutputStream out, ReverseCallGraph graph) throws IOException {
+        int callerCount = 0;
+        for (int id = 0; id < graph.size(); id++) {
+            out.writeInt(callerCount);
+            callerCount += graph.callers(id).length;
+        }
+        out.writeInt(callerCount);
+        final BitSet tests = new BitSet();
+        for (int id = 0; id < graph.size(); id++) {
+            for (int caller : graph.callers(id)) {
+                out.writeInt(caller);
+            }
+            if (graph.isTest(id)) {
+                tests.set(id);
+            }
+        }
+        final long[] words = tests.toLongArray();
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+        final long[] hashedIds = new long[graph.size()];
+        for (int id = 0; id < hashedIds.length; id++) {
+            hashedIds[id] = ((long) graph.key(id).hashCode() << 32) | id;
+        }
+        Arrays.sort(hashedIds);
+        for (long hashedId : hashedIds) {
+            out.writeInt((int) (hashedId >> 32));
+        }
+        for (long hashedId : hashedIds) {
+            out.writeInt((int) hashedId);
+        }
+    }
+
+    private static int idOf(ReverseCallGraph graph, MethodKey method) {
+        final int id = graph.idOf(method);
+        if (id < 0) {
+            throw new IllegalArgumentException("Method " + method + " is not in the call graph");
+        }
+        return id;
+    }
+
+    /**
+     * A stored index, decoded lazily from the mapped index file. Decoded strings and methods are cached, so a
+     * snapshot must only be used by one thread at a time.
+     */
+    static final class Snapshot {
+        private final ByteBuffer buffer;
+        private final int[] stringOffsets;
+        private final String[] strings;
+        private final int[] methodOffsets;
+        private final MethodKey[] methods;
+        private final Map<String, FileStamp> stamps = new LinkedHashMap<>();
+        private final Map<String, Integer> entryOffsets = new HashMap<>();
+        private final ReverseCallGraph graph;
+
+        /**
+         * Constructs an empty Snapshot.
+         */
+        private Snapshot() {
+            this.buffer = null;
+            this.stringOffsets = new int[0];
+            this.strings = new String[0];
+            this.methodOffsets = new int[0];
+            this.methods = new MethodKey[0];
+            this.graph = null;
+        }
+
+        /**
+         * Constructs a Snapshot by walking the tables of the index file.
+         *
+         * @param buffer The mapped index file, positioned after its header.
+         */
+        private Snapshot(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.stringOffsets = new int[buffer.getInt()];
+            for (int i = 0; i < stringOffsets.length; i++) {
+                stringOffsets[i] = buffer.position();
+                final int length = buffer.getInt();
+                buffer.position(buffer.position() + length);
+            }
+            this.strings = new String[stringOffsets.length];
+            this.methodOffsets = new int[buffer.getInt()];
+            for (int i = 0; i < methodOffsets.length; i++) {
+                methodOffsets[i] = buffer.position();
+                buffer.position(buffer.position() + 8);
+                skipInts(buffer.getInt());
+            }
+            this.methods = new MethodKey[methodOffsets.length];
+            for (int i = buffer.getInt(); i > 0; i--) {
+                final String path = string(buffer.getInt());
+                stamps.put(path, new FileStamp(buffer.getLong(), buffer.getLong(), buffer.getLong()));
+                entryOffsets.put(path, buffer.position());
+                skipInts(buffer.getInt());
+                skipInts(buffer.getInt());
+                skipInts(2 * buffer.getInt());
+            }
+            this.graph = new StoredGraph();
+        }
+
+        /**
+         * Gets the stamps of the stored files.
+         *
+         * @return The stamps keyed by file path.
+         */
+        Map<String, FileStamp> stamps() {
+            return Collections.unmodifiableMap(stamps);
+        }
+
+        /**
+         * Decodes the entry of a stored file.
+         *
+         * @param path The path of the file.
+         * @return The entry of the file, or null if the file is not stored.
+         */
+        FileEntry entry(String path) {
+            final Integer offset = entryOffsets.get(path);
+            if (offset == null) {
+                return null;
+            }
+            final ByteBuffer record = buffer.duplicate().position(offset);
+            final List<MethodKey> declaredMethods = readMethods(record);
+            final List<MethodKey> testMethods = readMethods(record);
+            final List<MethodKey[]> edges = new ArrayList<>();
+            for (int e = record.getInt(); e > 0; e--) {
+                edges.add(new MethodKey[]{method(record.getInt()), method(record.getInt())});
+            }
+            return new FileEntry(declaredMethods, testMethods, edges);
+        }
+
+        /**
+         * Gets the stored reverse call graph.
+         *
+         * @return The graph, or null if nothing is stored.
+         */
+        ReverseCallGraph graph() {
+            return graph;
+        }
+
+        private List<MethodKey> readMethods(ByteBuffer record) {
+            final List<MethodKey> keys = new ArrayList<>();
+            for (int m = record.getInt(); m > 0; m--) {
+                keys.add(method(record.getInt()));
+            }
+            return keys;
+        }
+
+        private void skipInts(int count) {
+            buffer.position(buffer.position() + 4 * count);
+        }
+
+        private String string(int id) {
+            String string = strings[id];
+            if (string == null) {
+                final byte[] bytes = new byte[buffer.getInt(stringOffsets[id])];
+                buffer.get(stringOffsets[id] + 4, bytes);
+                string = new String(bytes, StandardCharsets.UTF_8);
+                strings[id] = string;
+            }
+            return string;
+        }
+
+        private MethodKey method(int id) {
+            MethodKey method = methods[id];
+            if (method == null) {
+                final int offset = methodOffsets[id];
+                final List<String> parameterTypes = new ArrayList<>();
+                for (int p = 0; p < buffer.getInt(offset + 8); p++) {
+                    parameterTypes.add(string(buffer.getInt(offset + 12 + 4 * p)));
+                }
+                method = new MethodKey(string(buffer.getInt(offset)), string(buffer.getInt(offset + 4)), parameterTypes);
+                methods[id] = method;
+            }
+            return method;
+        }
+
+        /**
+         * The reverse call graph read from the mapped index file. Callers are read from the file on every query and
+         * methods are looked up by a binary search over their hashes.
+         */
+        private final class StoredGraph implements ReverseCallGraph {
+            private final int callerOffsets;
+            private final int callerIds;
+            private final BitSet tests;
+            private final int sortedHashes;
+            private final int idsByHash;
+
+            /**
+             * Constructs a StoredGraph from the graph section of the index file.
+             */
+            private StoredGraph() {
+                this.callerOffsets = buffer.position();
+                this.callerIds = callerOffsets + 4 * (methods.length + 1);
+                buffer.position(callerIds + 4 * buffer.getInt(callerOffsets + 4 * methods.length));
+                final long[] words = new long[buffer.getInt()];
+                for (int i = 0; i < words.length; i++) {
+                    words[i] = buffer.getLong();
+                }
+                this.tests = BitSet.valueOf(words);
+                this.sortedHashes = buffer.position();
+                this.idsByHash = sortedHashes + 4 * methods.length;
+            }
+
+            @Override
+            public int size() {
+                return methods.length;
+            }
+
+            @Override
+            public int idOf(MethodKey key) {
+                final int hash = key.hashCode();
+                int low = 0;
+                int high = methods.length;
+                while (low < high) {
+                    final int middle = (low + high) >>> 1;
+                    if (buffer.getInt(sortedHashes + 4 * middle) < hash) {
+                        low = middle + 1;
+                    } else {
+                        high = middle;
+                    }
+                }
+                for (int i = low; i < methods.length && buffer.getInt(sortedHashes + 4 * i) == hash; i++) {
+                    final int id = buffer.getInt(idsByHash + 4 * i);
+                    if (method(id).equals(key)) {
+                        return id;
+                    }
+                }
+                return -1;
+            }
+
+            @Override
+            public MethodKey key(int id) {
+                return method(id);
+            }
+
+            @Override
+            public int[] callers(int id) {
+                final int from = buffer.getInt(callerOffsets + 4 * id);
+                final int[] callers = new int[buffer.getInt(callerOffsets + 4 * (id + 1)) - from];
+                for (int i = 0; i < callers.length; i++) {
+                    callers[i] = buffer.getInt(callerIds + 4 * (from + i));
+                }
+                return callers;
+            }
+
+            @Override
+            public boolean isTest(int id) {
+                return tests.get(id);
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.your.affectedtestsplugin.graph;
+
+import java.util.*;
+
+/**
+ * Affected set of the changed methods of a working copy, kept up to date file by file.
+ * Every changed method keeps the affected methods, walked edges and tests attributed to it, so diffing a file again
+ * only needs the usages of the methods that became changed, and the impact of the methods that are no longer changed
+ * is dropped. The affected set of the working copy is the union over the changed methods.
+ * The impact of a method that stays changed is not walked again; edits elsewhere make their own methods changed, so
+ * a kept impact can only hold methods and tests that are no longer affected, never miss one.
+ */
+public final class IncrementalImpactSet {
+    private final Map<String, Set<MethodKey>> changesByFile = new HashMap<>();
+    private final Map<MethodKey, ChangeImpact> impacts = new HashMap<>();
+
+    /**
+     * The methods that became changed and the methods that are no longer changed after an update.
+     *
+     * @param added   The methods that became changed, whose usages need to be walked.
+     * @param removed The methods that are no longer changed.
+     */
+    public record Delta(Set<MethodKey> added, Set<MethodKey> removed) {
+
+        /**
+         * Checks whether the update changed nothing.
+         *
+         * @return True if no method became changed or stopped being changed.
+         */
+        public boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty();
+        }
+    }
+
+    /**
+     * The impact attributed to a single changed method.
+     *
+     * @param depths  The affected methods mapped to their depth from the changed method.
+     * @param callees The walked edges between the affected methods, from every caller to its callees.
+     * @param tests   The affected tests.
+     */
+    private record ChangeImpact(Map<MethodKey, Integer> depths, Map<MethodKey, Set<MethodKey>> callees, Set<MethodKey> tests) {
+    }
+
+    /**
+     * Replaces the changed methods of the given files.
+     *
+     * @param changedMethodsByFile The changed methods of every diffed file, keyed by its path; an empty set for files
+     *                             without changes.
+     * @return The methods that became changed and the methods that are no longer changed.
+     */
+    public Delta updateFiles(Map<String, Set<MethodKey>> changedMethodsByFile) {
+        final Set<MethodKey> before = changes();
+        changedMethodsByFile.forEach((path, changedMethods) -> {
+            if (changedMethods.isEmpty()) {
+                changesByFile.remove(path);
+            } else {
+                changesByFile.put(path, new HashSet<>(changedMethods));
+            }
+        });
+        final Set<MethodKey> after = changes();
+
+        final Set<MethodKey> added = new TreeSet<>(after);
+        added.removeAll(before);
+        final Set<MethodKey> removed = new TreeSet<>(before);
+        removed.removeAll(after);
+        removed.forEach(impacts::remove);
+        return new Delta(added, removed);
+    }
+
+    /**
+     * Attributes a usage walk from some of the changed methods to each of them.
+     * Every changed method gets the methods reachable from it over the walked edges within the maximum depth, and
+     * the tests among them. Tests are matched by class and method name, since engines without parameter types, such
+     * as recorded coverage, can reach a test under a key that differs from its declaration.
+     *
+     * @param changes       The changed methods the walk started from.
+     * @param maxDepth      The maximum depth of the walk.
+     * @param walkedCallees The edges of the walk, from every reached caller to the reached methods it calls.
+     * @param tests         The tests the walk reached.
+     */
+    public void addImpact(Collection<MethodKey> changes, int maxDepth, Map<MethodKey, Set<MethodKey>> walkedCallees,
+                          Collection<MethodKey> tests) {
+        final Map<MethodKey, Set<MethodKey>> callers = new HashMap<>();
+        walkedCallees.forEach((caller, callees) -> callees.forEach(callee ->
+                callers.computeIfAbsent(callee, key -> new HashSet<>()).add(caller)));
+        final Map<String, List<MethodKey>> testsByName = new HashMap<>();
+        for (MethodKey test : tests) {
+            testsByName.computeIfAbsent(test.className() + '#' + test.methodName(), name -> new ArrayList<>()).add(test);
+        }
+
+        for (MethodKey change : changes) {
+            final Map<MethodKey, Integer> depths = new HashMap<>();
+            depths.put(change, 0);
+            List<MethodKey> frontier = List.of(change);
+            for (int depth = 1; depth <= maxDepth && !frontier.isEmpty(); depth++) {
+                final List<MethodKey> nextFrontier = new ArrayList<>();
+                for (MethodKey method : frontier) {
+                    for (MethodKey caller : callers.getOrDefault(method, Set.of())) {
+                        if (depths.putIfAbsent(caller, depth) == null) {
+                            nextFrontier.add(caller);
+                        }
+                    }
+                }
+                frontier = nextFrontier;
+            }
+
+            final Map<MethodKey, Set<MethodKey>> callees = new HashMap<>();
+            final Set<MethodKey> reachedTests = new HashSet<>();
+            for (MethodKey method : depths.keySet()) {
+                final Set<MethodKey> reachedCallees = new HashSet<>(walkedCallees.getOrDefault(method, Set.of()));
+                reachedCallees.retainAll(depths.keySet());
+                if (!reachedCallees.isEmpty()) {
+                    callees.put(method, reachedCallees);
+                }
+                reachedTests.addAll(testsByName.getOrDefault(method.className() + '#' + method.methodName(), List.of()));
+            }
+            impacts.put(change, new ChangeImpact(depths, callees, reachedTests));
+        }
+    }
+
+    /**
+     * Gets the changed methods of every file.
+     *
+     * @return The changed methods in sorted order.
+     */
+    public SortedSet<MethodKey> changes() {
+        final SortedSet<MethodKey> changes = new TreeSet<>();
+        changesByFile.values().forEach(changes::addAll);
+        return changes;
+    }
+
+    /**
+     * Gets the affected methods of every changed method.
+     *
+     * @return The affected methods mapped to their minimal depth from a changed method.
+     */
+    public Map<MethodKey, Integer> affectedMethods() {
+        final Map<MethodKey, Integer> affectedMethods = new HashMap<>();
+        impacts.values().forEach(impact -> impact.depths().forEach((method, depth) -> affectedMethods.merge(method, depth, Math::min)));
+        return affectedMethods;
+    }
+
+    /**
+     * Gets the walked edges of every changed method.
+     *
+     * @return The walked callees of every affected caller.
+     */
+    public Map<MethodKey, Set<MethodKey>> affectedCallees() {
+        final Map<MethodKey, Set<MethodKey>> affectedCallees = new HashMap<>();
+        impacts.values().forEach(impact -> impact.callees().forEach((caller, callees) ->
+                affectedCallees.computeIfAbsent(caller, key -> new HashSet<>()).addAll(callees)));
+        return affectedCallees;
+    }
+
+    /**
+     * Gets the tests affected by every changed method.
+     *
+     * @return The affected tests.
+     */
+    public Set<MethodKey> tests() {
+        final Set<MethodKey> tests = new HashSet<>();
+        impacts.values().forEach(impact -> tests.addAll(impact.tests()));
+        return tests;
+    }
+
+    /**
+     * Forgets every changed method and its impact.
+     */
+    public void clear() {
+        changesByFile.clear();
+        impacts.clear();
+    }
+}
@@ -0,0 +1,181 @@
+package com.your.affectedtestsplugin.graph;
+
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.TypeDeclaration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Structured identity of a method: the fully qualified name of its class, its name and its normalized
+ * parameter types. Parameter types are normalized once on construction to their erased simple names, so keys built
+ * from JavaParser, PSI, resolved declarations and bytecode signatures compare equal, and the hash is precomputed,
+ * which keeps lookups free of string parsing and regex work. Type variables keep their name, as erasing them to their
+ * bound needs the declaration; bytecode keys of such methods therefore differ from their source keys.
+ */
+public final class MethodKey implements Comparable<MethodKey> {
+    private final String className;
+    private final String methodName;
+    private final List<String> parameterTypes;
+    private final int hash;
+
+    /**
+     * Constructs a MethodKey.
+     *
+     * @param className      The fully qualified name of the declaring class.
+     * @param methodName     The name of the method.
+     * @param parameterTypes The parameter types as written in source or named in bytecode, normalized by this constructor.
+     */
+    public MethodKey(String className, String methodName, List<String> parameterTypes) {
+        this.className = className;
+        this.methodName = methodName;
+        final List<String> normalizedTypes = new ArrayList<>(parameterTypes.size());
+        for (String parameterType : parameterTypes) {
+            normalizedTypes.add(normalizeType(parameterType));
+        }
+        this.parameterTypes = Collections.unmodifiableList(normalizedTypes);
+        this.hash = Objects.hash(className, methodName, this.parameterTypes);
+    }
+
+    /**
+     * Builds the key of a JavaParser method or constructor declaration.
+     * Constructors are named after their class, like PSI constructors.
+     *
+     * @param method            The method or constructor declaration.
+     * @param fallbackClassName The class name used when the method is not declared directly in a named type.
+     * @return The key of the method.
+     */
+    public static MethodKey of(CallableDeclaration<?> method, String fallbackClassName) {
+        String className = fallbackClassName;
+        if (method.getParentNode().orElse(null) instanceof TypeDeclaration<?> type) {
+            className = type.getFullyQualifiedName().orElse(fallbackClassName);
+        }
+        final List<String> parameterTypes = new ArrayList<>(method.getParameters().size());
+        for (Parameter parameter : method.getParameters()) {
+            parameterTypes.add(parameter.getType().asString() + (parameter.isVarArgs() ? "..." : ""));
+        }
+        return new MethodKey(className, method.getNameAsString(), parameterTypes);
+    }
+
+    /**
+     * Normalizes a type as written in source or as named in bytecode the way the compiler erases it: whitespace and
+     * type arguments are removed, varargs become arrays, and qualified and binary names of nested types are reduced
+     * to their simple name.
+     *
+     * @param type The type as written in source, such as {@code java.util.Map.Entry<K, V>...}.
+     * @return The normalized type, such as {@code Entry[]}.
+     */
+    public static String normalizeType(String type) {
+        final StringBuilder normalized = new StringBuilder(type.length());
+        int segmentStart = 0;
+        boolean newSegment = true;
+        int typeArgumentDepth = 0;
+        for (int i = 0; i < type.length(); i++) {
+            final char ch = type.charAt(i);
+            if (ch == '<') {
+                typeArgumentDepth++;
+            } else if (ch == '>') {
+                typeArgumentDepth--;
+                newSegment = true;
+            } else if (typeArgumentDepth > 0) {
+                continue;
+            } else if (Character.isWhitespace(ch)) {
+                newSegment = true;
+            } else if (type.startsWith("...", i)) {
+                normalized.append("[]");
+                i += 2;
+                newSegment = true;
+            } else if (ch == '.' || ch == '$') {
+                normalized.setLength(segmentStart);
+                newSegment = false;
+            } else {
+                if (!Character.isJavaIdentifierPart(ch)) {
+                    newSegment = true;
+                } else if (newSegment) {
+                    segmentStart = normalized.length();
+                    newSegment = false;
+                }
+                normalized.append(ch);
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Gets the fully qualified name of the declaring class.
+     *
+     * @return The class name.
+     */
+    public String className() {
+        return className;
+    }
+
+    /**
+     * Gets the simple name of the declaring class.
+     *
+     * @return The simple class name.
+     */
+    public String simpleClassName() {
+        return className.substring(className.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Gets the name of the method.
+     *
+     * @return The method name.
+     */
+    public String methodName() {
+        return methodName;
+    }
+
+    /**
+     * Gets the normalized parameter types.
+     *
+     * @return The unmodifiable list of parameter types.
+     */
+    public List<String> parameterTypes() {
+        return parameterTypes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MethodKey other)) {
+            return false;
+        }
+        return hash == other.hash && className.equals(other.className) && methodName.equals(other.methodName)
+                && parameterTypes.equals(other.parameterTypes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public int compareTo(MethodKey other) {
+        int result = className.compareTo(other.className);
+        if (result == 0) {
+            result = methodName.compareTo(other.methodName);
+        }
+        for (int i = 0; result == 0 && i < Math.min(parameterTypes.size(), other.parameterTypes.size()); i++) {
+            result = parameterTypes.get(i).compareTo(other.parameterTypes.get(i));
+        }
+        return result != 0 ? result : Integer.compare(parameterTypes.size(), other.parameterTypes.size());
+    }
+
+    /**
+     * Formats the key as "className.methodName(parameterTypes)".
+     *
+     * @return The signature of the method.
+     */
+    @Override
+    public String toString() {
+        return className + "." + methodName + "(" + String.join(",", parameterTypes) + ")";
+    }
+}
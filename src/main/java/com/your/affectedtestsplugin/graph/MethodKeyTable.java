@@ -0,0 +1,61 @@
+package com.your.affectedtestsplugin.graph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interning table assigning a dense int id to every distinct MethodKey, so graph traversals can keep
+ * their per-method state in primitive arrays and bitsets indexed by id.
+ */
+public final class MethodKeyTable {
+    private final Map<MethodKey, Integer> ids = new HashMap<>();
+    private final List<MethodKey> keys = new ArrayList<>();
+
+    /**
+     * Returns the id of a key, assigning the next free id if the key is new.
+     *
+     * @param key The method key.
+     * @return The dense id of the key.
+     */
+    public int intern(MethodKey key) {
+        Integer id = ids.get(key);
+        if (id == null) {
+            id = keys.size();
+            ids.put(key, id);
+            keys.add(key);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of a key without assigning one.
+     *
+     * @param key The method key.
+     * @return The id of the key, or -1 if the key is unknown.
+     */
+    public int idOf(MethodKey key) {
+        final Integer id = ids.get(key);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Returns the key with the given id.
+     *
+     * @param id The id of the key.
+     * @return The interned key.
+     */
+    public MethodKey get(int id) {
+        return keys.get(id);
+    }
+
+    /**
+     * Gets the number of interned keys.
+     *
+     * @return The number of keys, which is also the exclusive upper bound of the ids.
+     */
+    public int size() {
+        return keys.size();
+    }
+}
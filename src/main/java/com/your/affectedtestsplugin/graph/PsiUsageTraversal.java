@@ -0,0 +1,154 @@
+package com.your.affectedtestsplugin.graph;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiReference;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.searches.ReferencesSearch;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.your.affectedtestsplugin.helperandutils.CustomUtil;
+
+import java.util.*;
+
+/**
+ * Level-synchronous breadth first traversal of method usages driven by reference searches.
+ * All changed methods form the first frontier; each level is expanded as one batch whose searches run
+ * concurrently, and the callers found for a method are memoized for the whole run, so every method is searched
+ * at most once and is reached at its minimal depth regardless of how many paths lead to it.
+ * The traversal checks the progress of the calling thread for cancellation between levels and callers, and reports
+ * the level being searched on it. A {@link TraversalBudget} decides before every level whether to go deeper, from the
+ * size of the frontier to search and the time the previous levels took.
+ */
+public final class PsiUsageTraversal {
+    private final GlobalSearchScope scope;
+    private final ReferenceSearchExecutor searchExecutor;
+    private final Map<PsiMethod, List<PsiMethod>> callersByMethod = new HashMap<>();
+    private final Map<PsiMethod, Set<PsiMethod>> walkedCallees = new HashMap<>();
+
+    /**
+     * Constructs a PsiUsageTraversal.
+     *
+     * @param scope          The scope of the reference searches.
+     * @param searchExecutor The executor running the reference searches of a level.
+     */
+    public PsiUsageTraversal(GlobalSearchScope scope, ReferenceSearchExecutor searchExecutor) {
+        this.scope = scope;
+        this.searchExecutor = searchExecutor;
+    }
+
+    /**
+     * Collects the methods reachable from the seeds through usages, up to the maximum depth.
+     *
+     * @param seeds    The changed methods.
+     * @param maxDepth The maximum depth for method usage search.
+     * @return The reached methods mapped to the minimal depth they were reached at, in discovery order.
+     */
+    public Map<PsiMethod, Integer> traverse(Collection<PsiMethod> seeds, int maxDepth) {
+        return traverse(seeds, TraversalBudget.fixed(maxDepth));
+    }
+
+    /**
+     * Collects the methods reachable from the seeds through usages, deepening level by level while the budget allows.
+     * The reached tests are only counted when the budget has a test limit.
+     *
+     * @param seeds  The changed methods.
+     * @param budget The budget bounding the traversal, which records whether it stopped the traversal.
+     * @return The reached methods mapped to the minimal depth they were reached at, in discovery order.
+     */
+    public Map<PsiMethod, Integer> traverse(Collection<PsiMethod> seeds, TraversalBudget budget) {
+        final Map<PsiMethod, Integer> depths = new LinkedHashMap<>();
+        List<PsiMethod> frontier = new ArrayList<>();
+        for (PsiMethod seed : seeds) {
+            if (depths.putIfAbsent(seed, 0) == null) {
+                frontier.add(seed);
+            }
+        }
+        int testsReached = countTests(budget, frontier);
+
+        final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+        for (int depth = 1; !frontier.isEmpty() && budget.allowsLevel(depth, testsReached, frontier.size()); depth++) {
+            ProgressManager.checkCanceled();
+            if (indicator != null) {
+                indicator.setText2("Depth " + depth + ": searching the callers of " + frontier.size() + " methods");
+            }
+            final List<PsiMethod> nextFrontier = new ArrayList<>();
+            for (Map.Entry<PsiMethod, List<PsiMethod>> entry : findCallers(frontier).entrySet()) {
+                ProgressManager.checkCanceled();
+                for (PsiMethod caller : entry.getValue()) {
+                    walkedCallees.computeIfAbsent(caller, method -> new LinkedHashSet<>()).add(entry.getKey());
+                    if (depths.putIfAbsent(caller, depth) == null) {
+                        nextFrontier.add(caller);
+                    }
+                }
+            }
+            testsReached += countTests(budget, nextFrontier);
+            frontier = nextFrontier;
+        }
+        return depths;
+    }
+
+    /**
+     * Gets the edges the traversal went through, from every reached caller to the reached methods it calls.
+     *
+     * @return The walked callees of every reached caller.
+     */
+    public Map<PsiMethod, Set<PsiMethod>> walkedCallees() {
+        return Collections.unmodifiableMap(walkedCallees);
+    }
+
+    /**
+     * Finds the callers of every method of a frontier level, searching only methods not searched before.
+     *
+     * @param frontier The methods of the current level.
+     * @return The callers of each frontier method, in frontier order.
+     */
+    private Map<PsiMethod, List<PsiMethod>> findCallers(List<PsiMethod> frontier) {
+        final List<PsiMethod> unsearched = new ArrayList<>();
+        for (PsiMethod method : frontier) {
+            if (!callersByMethod.containsKey(method)) {
+                unsearched.add(method);
+            }
+        }
+        callersByMethod.putAll(searchExecutor.searchAll(unsearched, this::searchCallers));
+
+        final Map<PsiMethod, List<PsiMethod>> levelCallers = new LinkedHashMap<>();
+        for (PsiMethod method : frontier) {
+            levelCallers.put(method, callersByMethod.get(method));
+        }
+        return levelCallers;
+    }
+
+    /**
+     * Counts the tests among newly reached methods, if the budget needs them.
+     *
+     * @param budget  The budget bounding the traversal.
+     * @param methods The newly reached methods.
+     * @return The number of tests, 0 if the budget has no test limit.
+     */
+    private static int countTests(TraversalBudget budget, List<PsiMethod> methods) {
+        if (!budget.countsTests() || methods.isEmpty()) {
+            return 0;
+        }
+        return ReadAction.compute(() -> (int) methods.stream().filter(CustomUtil::isTestMethod).count());
+    }
+
+    /**
+     * Searches the references of a method and collects the methods containing them. Runs inside a read action.
+     *
+     * @param method The method whose references are searched.
+     * @return The distinct methods containing a reference to the method.
+     */
+    private List<PsiMethod> searchCallers(PsiMethod method) {
+        final Set<PsiMethod> callers = new LinkedHashSet<>();
+        for (PsiReference reference : ReferencesSearch.search(method, scope).findAll()) {
+            ProgressManager.checkCanceled();
+            final PsiMethod containingMethod = PsiTreeUtil.getParentOfType(reference.getElement(), PsiMethod.class);
+            if (containingMethod != null) {
+                callers.add(containingMethod);
+            }
+        }
+        return new ArrayList<>(callers);
+    }
+}
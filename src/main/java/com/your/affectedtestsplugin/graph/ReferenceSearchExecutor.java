@@ -0,0 +1,136 @@
+package com.your.affectedtestsplugin.graph;
+
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiMethod;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.concurrency.CancellablePromise;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Runs the reference searches of independent methods concurrently on a bounded number of workers.
+ * Every search is a cancellable non-blocking read action, so a pending write action restarts the searches
+ * instead of waiting for them, and cancelling the calling progress cancels all outstanding searches.
+ */
+public final class ReferenceSearchExecutor {
+    private static final long POLL_MILLIS = 50;
+    private final Project project;
+    private final Executor executor;
+    private final int workers;
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+
+    /**
+     * Constructs a ReferenceSearchExecutor.
+     *
+     * @param project The project the searches run in.
+     * @param workers The maximum number of searches running at the same time.
+     */
+    public ReferenceSearchExecutor(Project project, int workers) {
+        this.project = project;
+        this.workers = Math.max(1, workers);
+        this.executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Affected Tests Reference Search", this.workers);
+    }
+
+    /**
+     * Runs a search for each of the given methods and waits for all of them.
+     * The searches run sequentially in the calling thread when only one worker is configured or when the calling
+     * background thread already holds a read action, which would otherwise block write actions and the workers.
+     *
+     * @param methods The methods to search.
+     * @param search  The search run for each method inside a read action.
+     * @return The search result of each method, in the order of the given methods.
+     */
+    public Map<PsiMethod, List<PsiMethod>> searchAll(List<PsiMethod> methods, Function<PsiMethod, List<PsiMethod>> search) {
+        final Map<PsiMethod, List<PsiMethod>> results = new LinkedHashMap<>();
+        final Application application = ApplicationManager.getApplication();
+        if (workers == 1 || methods.size() == 1 || application.isReadAccessAllowed() && !application.isDispatchThread()) {
+            for (PsiMethod method : methods) {
+                ProgressManager.checkCanceled();
+                results.put(method, ReadAction.compute(() -> timedSearch(search, method)));
+            }
+            return results;
+        }
+
+        final Map<PsiMethod, CancellablePromise<List<PsiMethod>>> promises = new LinkedHashMap<>();
+        for (PsiMethod method : methods) {
+            promises.put(method, ReadAction.nonBlocking(() -> timedSearch(search, method))
+                    .expireWith(project)
+                    .submit(executor));
+        }
+        try {
+            for (Map.Entry<PsiMethod, CancellablePromise<List<PsiMethod>>> entry : promises.entrySet()) {
+                results.put(entry.getKey(), await(entry.getValue()));
+            }
+        } finally {
+            promises.values().forEach(promise -> promise.cancel(true));
+        }
+        return results;
+    }
+
+    /**
+     * Runs a search and records its latency. Searches restarted by a write action are not recorded.
+     *
+     * @param search The search.
+     * @param method The method to search.
+     * @return The search result.
+     */
+    private List<PsiMethod> timedSearch(Function<PsiMethod, List<PsiMethod>> search, PsiMethod method) {
+        final long start = System.nanoTime();
+        final List<PsiMethod> result = search.apply(method);
+        searchNanos.add(System.nanoTime() - start);
+        searches.increment();
+        return result;
+    }
+
+    /**
+     * Gets the number of searches completed by this executor.
+     *
+     * @return The number of completed searches.
+     */
+    public long searchCount() {
+        return searches.sum();
+    }
+
+    /**
+     * Gets the summed latency of the searches completed by this executor.
+     *
+     * @return The total search time in nanoseconds.
+     */
+    public long searchNanos() {
+        return searchNanos.sum();
+    }
+
+    /**
+     * Waits for a search while checking the progress of the calling thread for cancellation.
+     *
+     * @param promise The pending search.
+     * @return The result of the search.
+     */
+    private List<PsiMethod> await(CancellablePromise<List<PsiMethod>> promise) {
+        while (true) {
+            ProgressManager.checkCanceled();
+            try {
+                final List<PsiMethod> result = promise.get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                return result != null ? result : Collections.emptyList();
+            } catch (TimeoutException ignored) {
+                // keep waiting, checking for cancellation in between
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Reference search interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Reference search failed", e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.your.affectedtestsplugin.graph;
+
+/**
+ * Reverse call graph over dense method ids, mapping every method to the methods calling it.
+ * A graph is either built in memory from the indexed files or read straight from a stored index file.
+ */
+interface ReverseCallGraph {
+
+    /**
+     * Gets the number of methods in the graph.
+     *
+     * @return The number of methods, which is also the exclusive upper bound of the ids.
+     */
+    int size();
+
+    /**
+     * Returns the id of a method.
+     *
+     * @param key The method key.
+     * @return The id of the method, or -1 if the method is not in the graph.
+     */
+    int idOf(MethodKey key);
+
+    /**
+     * Returns the method with the given id.
+     *
+     * @param id The id of the method.
+     * @return The key of the method.
+     */
+    MethodKey key(int id);
+
+    /**
+     * Returns the methods calling the method with the given id.
+     *
+     * @param id The id of the method.
+     * @return The ids of the callers.
+     */
+    int[] callers(int id);
+
+    /**
+     * Checks if the method with the given id is a test method.
+     *
+     * @param id The id of the method.
+     * @return True if the method is annotated as a test.
+     */
+    boolean isTest(int id);
+}
@@ -0,0 +1,134 @@
+package com.your.affectedtestsplugin.graph;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounds the usage walk of a single analysis and records whether it was stopped early.
+ * A fixed budget walks every level up to the maximum depth. An adaptive budget deepens the walk level by level, up
+ * to the maximum depth, for as long as its wall-clock time is not spent and fewer tests than its limit were reached.
+ * The budget is only checked between levels, so every level is either walked completely or not at all and the
+ * affected set always holds every method up to the deepest level reached. To keep a wide level from running far past
+ * the time, a level is also skipped when its projected cost, its frontier size times the average time per method
+ * expanded so far, exceeds the remaining time.
+ * A budget is used by the thread running the walk only.
+ */
+public final class TraversalBudget {
+    private final int maxDepth;
+    private final long startNanos;
+    private final long budgetNanos;
+    private final int maxTests;
+    private final LongSupplier clock;
+    private long expandedMethods;
+    private boolean exhausted;
+
+    /**
+     * Constructs a TraversalBudget starting now.
+     *
+     * @param maxDepth     The maximum depth for the walk.
+     * @param budgetMillis The wall-clock time the walk may take, 0 for no limit.
+     * @param maxTests     The number of reached tests after which the walk stops deepening, 0 for no limit.
+     * @param clock        The monotonic clock in nanoseconds.
+     */
+    TraversalBudget(int maxDepth, long budgetMillis, int maxTests, LongSupplier clock) {
+        this.maxDepth = maxDepth;
+        this.startNanos = clock.getAsLong();
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, budgetMillis));
+        this.maxTests = maxTests;
+        this.clock = clock;
+    }
+
+    /**
+     * Creates a budget walking every level up to the given depth.
+     *
+     * @param maxDepth The maximum depth for the walk.
+     * @return The budget.
+     */
+    public static TraversalBudget fixed(int maxDepth) {
+        return new TraversalBudget(maxDepth, 0, 0, System::nanoTime);
+    }
+
+    /**
+     * Creates a budget deepening the walk until its time is spent or enough tests were reached. Its time starts now.
+     *
+     * @param maxDepth     The maximum depth for the walk.
+     * @param budgetMillis The wall-clock time the walk may take, 0 for no limit.
+     * @param maxTests     The number of reached tests after which the walk stops deepening, 0 for no limit.
+     * @return The budget.
+     */
+    public static TraversalBudget adaptive(int maxDepth, long budgetMillis, int maxTests) {
+        return new TraversalBudget(maxDepth, budgetMillis, maxTests, System::nanoTime);
+    }
+
+    /**
+     * Gets the maximum depth for the walk.
+     *
+     * @return The maximum depth.
+     */
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Checks whether the budget limits the walk by anything else than its depth.
+     *
+     * @return True if the walk deepens adaptively
+     */
+    public boolean isAdaptive() {
+        return budgetNanos > 0 || maxTests > 0;
+    }
+
+    /**
+     * Checks whether the number of reached tests is needed by the budget, so walks only count tests when it is.
+     *
+     * @return True if the budget has a test limit
+     */
+    public boolean countsTests() {
+        return maxTests > 0;
+    }
+
+    /**
+     * Checks whether the walk may go on to the given level. If the time is spent, the projected cost of the level
+     * exceeds the remaining time or the test limit is reached while the level is within the maximum depth, the walk is
+     * recorded as stopped by the budget. The first level has no projected cost, as nothing was measured yet.
+     *
+     * @param depth        The depth of the next level.
+     * @param testsReached The number of tests reached so far, counted only if {@link #countsTests()}.
+     * @param frontierSize The number of methods the level expands.
+     * @return True if the level may be walked
+     */
+    public boolean allowsLevel(int depth, int testsReached, int frontierSize) {
+        if (depth > maxDepth) {
+            return false;
+        }
+        if ((maxTests > 0 && testsReached >= maxTests) || (budgetNanos > 0 && exceedsTime(frontierSize))) {
+            exhausted = true;
+            return false;
+        }
+        expandedMethods += frontierSize;
+        return true;
+    }
+
+    /**
+     * Checks whether the time is spent or a level expanding the given number of methods is projected to overrun it.
+     *
+     * @param frontierSize The number of methods the level expands.
+     * @return True if the level does not fit in the remaining time
+     */
+    private boolean exceedsTime(int frontierSize) {
+        final long elapsedNanos = clock.getAsLong() - startNanos;
+        if (elapsedNanos >= budgetNanos) {
+            return true;
+        }
+        return expandedMethods > 0 && (double) elapsedNanos / expandedMethods * frontierSize > budgetNanos - elapsedNanos;
+    }
+
+    /**
+     * Checks whether the walk went as deep as it could, up to the maximum depth, without being stopped by the budget.
+     *
+     * @return True if the result is complete
+     */
+    public boolean isComplete() {
+        return !exhausted;
+    }
+}
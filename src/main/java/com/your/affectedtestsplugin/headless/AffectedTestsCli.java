@@ -0,0 +1,114 @@
+package com.your.affectedtestsplugin.headless;
+
+import com.your.affectedtestsplugin.graph.MethodKey;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Command line entry point printing the test filters of the tests affected by a commit range, for CI builds
+ * without an IDE. The filters are written to standard output; a summary is written to standard error.
+ * <pre>
+ * java ... AffectedTestsCli --repo . --from origin/master --to HEAD --merge-base --depth 2 --format gradle
+ * </pre>
+ * The working tree must be checked out at the end of the range, since callers are searched in it.
+ */
+public final class AffectedTestsCli {
+    private static final int EXIT_FAILURE = 1;
+    private static final int EXIT_USAGE = 2;
+    private static final String USAGE = "Usage: AffectedTestsCli [--repo <dir>] [--from <rev>] [--to <rev>] [--merge-base]"
+            + " [--depth <n>] [--format gradle|surefire]";
+
+    private AffectedTestsCli() {
+    }
+
+    /**
+     * Runs the selection and prints the filters.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        String repo = ".";
+        String from = "origin/master";
+        String to = "HEAD";
+        boolean fromMergeBase = false;
+        int depth = 1;
+        String format = "gradle";
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--repo" -> repo = args[++i];
+                    case "--from" -> from = args[++i];
+                    case "--to" -> to = args[++i];
+                    case "--merge-base" -> fromMergeBase = true;
+                    case "--depth" -> depth = Integer.parseInt(args[++i]);
+                    case "--format" -> format = args[++i];
+                    default -> throw new IllegalArgumentException("Unknown argument " + args[i]);
+                }
+            }
+            if (depth < 1 || !format.equals("gradle") && !format.equals("surefire")) {
+                throw new IllegalArgumentException("Invalid depth or format");
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(USAGE);
+            System.exit(EXIT_USAGE);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        final HeadlessSelector.Selection selection;
+        try {
+            final Path repoRoot = Paths.get(repo).toAbsolutePath().normalize();
+            selection = new HeadlessSelector(repoRoot).select(from, to, fromMergeBase, depth);
+        } catch (IOException e) {
+            System.err.println("Cannot select the affected tests: " + e.getMessage());
+            System.exit(EXIT_FAILURE);
+            return;
+        }
+
+        for (String filter : format.equals("gradle") ? gradleFilters(selection.affectedTests().keySet())
+                : surefireFilters(selection.affectedTests().keySet())) {
+            System.out.println(filter);
+        }
+        for (String unparsedFile : selection.unparsedFiles()) {
+            System.err.println("Could not diff " + unparsedFile);
+        }
+        System.err.printf("%d changed methods, %d affected tests, %d files indexed in %d ms%n", selection.changedMethods().size(),
+                selection.affectedTests().size(), selection.indexedFiles(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Formats test methods as Gradle test filters.
+     *
+     * @param tests The test methods.
+     * @return One {@code --tests} option per test method.
+     */
+    static List<String> gradleFilters(Collection<MethodKey> tests) {
+        final Set<String> filters = new LinkedHashSet<>();
+        for (MethodKey test : tests) {
+            filters.add("--tests " + test.className() + "." + test.methodName());
+        }
+        return new ArrayList<>(filters);
+    }
+
+    /**
+     * Formats test methods as a Surefire test filter.
+     *
+     * @param tests The test methods.
+     * @return A single {@code -Dtest} option grouping the methods by class, or nothing if there are no tests.
+     */
+    static List<String> surefireFilters(Collection<MethodKey> tests) {
+        final Map<String, Set<String>> methodsByClass = new TreeMap<>();
+        for (MethodKey test : tests) {
+            methodsByClass.computeIfAbsent(test.className(), className -> new TreeSet<>()).add(test.methodName());
+        }
+        if (methodsByClass.isEmpty()) {
+            return List.of();
+        }
+        final StringJoiner filter = new StringJoiner(",", "-Dtest=", "");
+        methodsByClass.forEach((className, methods) -> filter.add(className + "#" + String.join("+", methods)));
+        return List.of(filter.toString());
+    }
+}
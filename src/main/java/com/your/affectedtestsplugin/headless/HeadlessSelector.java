@@ -0,0 +1,280 @@
+package com.your.affectedtestsplugin.headless;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.expr.AnnotationExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.MethodReferenceExpr;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.resolution.declarations.ResolvedMethodDeclaration;
+import com.your.affectedtestsplugin.diff.MethodDiffPipeline;
+import com.your.affectedtestsplugin.graph.MethodKey;
+import com.your.affectedtestsplugin.vcs.GitRepositorySession;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Selects the tests affected by a commit range without an IDE.
+ * The changed methods are found by the same diff pipeline as the plugin; their callers are then found level by
+ * level with JavaParser and its symbol solver. Each level only parses the files whose tokens call one of the
+ * frontier names, and call sites are resolved once however many levels revisit their file.
+ * A call resolving to a method that a frontier method overrides matches it, as the call may dispatch to the
+ * override, and a call site the symbol solver cannot resolve matches a frontier method with the same name and arity.
+ * The selection is still approximate: calls through reflection or through types whose hierarchy cannot be solved,
+ * such as subtypes of missing library types, can be missed.
+ */
+public final class HeadlessSelector {
+    private static final Set<String> TEST_ANNOTATIONS = Set.of("Test", "ParameterizedTest", "RepeatedTest", "TestFactory", "TestTemplate");
+    private static final MethodKey UNRESOLVED = new MethodKey("", "", List.of());
+
+    private final Path repoRoot;
+    private final Map<Node, MethodKey> resolvedSites = new IdentityHashMap<>();
+
+    /**
+     * Constructs a HeadlessSelector.
+     *
+     * @param repoRoot The working tree of the repository, checked out at the end of the analyzed range.
+     */
+    public HeadlessSelector(Path repoRoot) {
+        this.repoRoot = repoRoot;
+    }
+
+    /**
+     * The outcome of a selection.
+     *
+     * @param changedMethods The methods changed in the range.
+     * @param affectedTests  The affected test methods with the call depth at which they were reached, 0 for changed tests.
+     * @param unparsedFiles  The changed files that could not be diffed.
+     * @param indexedFiles   The number of Java files of the working tree.
+     */
+    public record Selection(SortedSet<MethodKey> changedMethods, SortedMap<MethodKey, Integer> affectedTests,
+                            List<String> unparsedFiles, int indexedFiles) {
+    }
+
+    /**
+     * Selects the tests affected by a commit range.
+     *
+     * @param fromRevision  The start of the range.
+     * @param toRevision    The end of the range.
+     * @param fromMergeBase True to start the range at the merge base of both revisions.
+     * @param maxDepth      The maximum number of caller levels to follow from a changed method.
+     * @return The selection.
+     * @throws IOException If the repository or the working tree cannot be read.
+     */
+    public Selection select(String fromRevision, String toRevision, boolean fromMergeBase, int maxDepth) throws IOException {
+        final List<MethodDiffPipeline.FileRevision> revisions = new ArrayList<>();
+        final List<String> changedPaths = new ArrayList<>();
+        try (GitRepositorySession session = GitRepositorySession.open(repoRoot.toFile())) {
+            for (GitRepositorySession.RangeChange change : session.readRangeChanges(fromRevision, toRevision, fromMergeBase)) {
+                final String path = change.newPath() != null ? change.newPath() : change.oldPath();
+                final String className = classNameOf(path);
+                final String newContent = change.newFile() != null ? change.newFile().content() : "";
+                if (change.oldFile() == null) {
+                    revisions.add(new MethodDiffPipeline.FileRevision(className, "", newContent));
+                } else {
+                    revisions.add(new MethodDiffPipeline.FileRevision(className, change.oldFile().blobId().name(),
+                            change.oldFile().content(), newContent));
+                }
+                if (change.newPath() != null) {
+                    changedPaths.add(change.newPath());
+                }
+            }
+        }
+        final MethodDiffPipeline.Result diff;
+        try (MethodDiffPipeline pipeline = new MethodDiffPipeline()) {
+            diff = pipeline.diff(revisions);
+        }
+
+        final SourceIndex index = SourceIndex.build(repoRoot);
+        final SortedMap<MethodKey, Integer> affectedTests = new TreeMap<>();
+        final Set<MethodKey> changedTests = new HashSet<>();
+        for (String changedPath : changedPaths) {
+            final int fileIndex = index.indexOf(changedPath);
+            if (fileIndex >= 0) {
+                index.parse(fileIndex).ifPresent(unit -> collectTests(unit, classNameOf(changedPath), changedTests));
+            }
+        }
+        for (MethodKey changedMethod : diff.changedMethods()) {
+            if (changedTests.contains(changedMethod)) {
+                affectedTests.put(changedMethod, 0);
+            }
+        }
+
+        final Set<MethodKey> visited = new HashSet<>(diff.changedMethods());
+        Set<MethodKey> frontier = new HashSet<>(diff.changedMethods());
+        for (int depth = 1; depth <= maxDepth && !frontier.isEmpty(); depth++) {
+            final Set<MethodKey> nextFrontier = new HashSet<>();
+            final Map<String, List<MethodKey>> frontierByName = new HashMap<>();
+            for (MethodKey key : frontier) {
+                frontierByName.computeIfAbsent(key.methodName(), name -> new ArrayList<>()).add(key);
+            }
+            for (Map.Entry<Integer, CompilationUnit> entry : index.parseAll(index.filesCalling(frontierByName.keySet())).entrySet()) {
+                final String fallbackClassName = classNameOf(index.relativePath(entry.getKey()));
+                for (Node site : callSites(entry.getValue(), frontierByName.keySet())) {
+                    if (!callsFrontier(site, frontier, frontierByName, index)) {
+                        continue;
+                    }
+                    final CallableDeclaration<?> caller = enclosingMember(site);
+                    if (caller == null) {
+                        continue;
+                    }
+                    final MethodKey callerKey = MethodKey.of(caller, fallbackClassName);
+                    if (visited.add(callerKey)) {
+                        nextFrontier.add(callerKey);
+                        if (isTest(caller)) {
+                            affectedTests.put(callerKey, depth);
+                        }
+                    }
+                }
+            }
+            frontier = nextFrontier;
+        }
+        return new Selection(diff.changedMethods(), affectedTests, diff.unparsedFiles(), index.size());
+    }
+
+    private static List<Node> callSites(CompilationUnit unit, Set<String> names) {
+        final List<Node> sites = new ArrayList<>();
+        unit.walk(MethodCallExpr.class, call -> {
+            if (names.contains(call.getNameAsString())) {
+                sites.add(call);
+            }
+        });
+        unit.walk(MethodReferenceExpr.class, reference -> {
+            if (names.contains(reference.getIdentifier())) {
+                sites.add(reference);
+            }
+        });
+        return sites;
+    }
+
+    /**
+     * Checks whether a call site may invoke a frontier method.
+     *
+     * @param site           The method call or method reference.
+     * @param frontier       The frontier methods.
+     * @param frontierByName The frontier methods grouped by name.
+     * @param index          The index solving the supertypes of the frontier classes.
+     * @return True if the site resolves to a frontier method or to a method a frontier method may override, or cannot
+     * be resolved and matches one by name and arity.
+     */
+    private boolean callsFrontier(Node site, Set<MethodKey> frontier, Map<String, List<MethodKey>> frontierByName, SourceIndex index) {
+        final MethodKey callee = resolve(site);
+        if (callee != UNRESOLVED) {
+            return frontier.contains(callee) || overridesCallee(callee, frontierByName.getOrDefault(callee.methodName(), List.of()), index);
+        }
+        if (!(site instanceof MethodCallExpr call)) {
+            return true;
+        }
+        final int arguments = call.getArguments().size();
+        for (MethodKey candidate : frontierByName.get(call.getNameAsString())) {
+            final List<String> parameterTypes = candidate.parameterTypes();
+            // Varargs are normalized to arrays, so a trailing array parameter may take any number of arguments
+            final boolean varargs = !parameterTypes.isEmpty() && parameterTypes.get(parameterTypes.size() - 1).endsWith("[]");
+            if (parameterTypes.size() == arguments || varargs && arguments >= parameterTypes.size() - 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether one of the candidates may override a resolved callee. Parameter types are only compared by
+     * count, since an override of a generic method has other erased types than the method it overrides.
+     *
+     * @param callee     The resolved callee.
+     * @param candidates The frontier methods with the name of the callee.
+     * @param index      The index solving the supertypes of the candidate classes.
+     * @return True if a candidate with the same arity is declared in a subtype of the callee's class.
+     */
+    private static boolean overridesCallee(MethodKey callee, List<MethodKey> candidates, SourceIndex index) {
+        for (MethodKey candidate : candidates) {
+            if (candidate.parameterTypes().size() == callee.parameterTypes().size()
+                    && index.supertypesOf(candidate.className()).contains(callee.className())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private MethodKey resolve(Node site) {
+        MethodKey callee = resolvedSites.get(site);
+        if (callee == null) {
+            try {
+                final ResolvedMethodDeclaration method = site instanceof MethodCallExpr call
+                        ? call.resolve() : ((MethodReferenceExpr) site).resolve();
+                callee = keyOf(method);
+            } catch (RuntimeException e) {
+                callee = UNRESOLVED;
+            }
+            resolvedSites.put(site, callee);
+        }
+        return callee;
+    }
+
+    /**
+     * Builds the key of a resolved method.
+     *
+     * @param method The resolved method.
+     * @return The key of the method, comparable with the keys of the diff pipeline.
+     */
+    private static MethodKey keyOf(ResolvedMethodDeclaration method) {
+        final List<String> parameterTypes = new ArrayList<>(method.getNumberOfParams());
+        for (int i = 0; i < method.getNumberOfParams(); i++) {
+            parameterTypes.add(method.getParam(i).getType().describe());
+        }
+        return new MethodKey(method.declaringType().getQualifiedName(), method.getName(), parameterTypes);
+    }
+
+    /**
+     * Finds the member a call site belongs to. Methods of anonymous and local classes are attributed to the member
+     * declaring them, like the diff pipeline attributes their bodies.
+     *
+     * @param site The call site.
+     * @return The enclosing method or constructor, or null if the site is in a field or initializer.
+     */
+    private static CallableDeclaration<?> enclosingMember(Node site) {
+        Node current = site.getParentNode().orElse(null);
+        while (current != null) {
+            final Node parent = current.getParentNode().orElse(null);
+            if (current instanceof CallableDeclaration<?> callable && parent instanceof TypeDeclaration<?> type
+                    && !(type.getParentNode().orElse(null) instanceof Statement)) {
+                return callable;
+            }
+            current = parent;
+        }
+        return null;
+    }
+
+    private static void collectTests(CompilationUnit unit, String fallbackClassName, Set<MethodKey> collector) {
+        unit.walk(CallableDeclaration.class, callable -> {
+            if (isTest(callable)) {
+                collector.add(MethodKey.of(callable, fallbackClassName));
+            }
+        });
+    }
+
+    private static boolean isTest(CallableDeclaration<?> callable) {
+        for (AnnotationExpr annotation : callable.getAnnotations()) {
+            if (TEST_ANNOTATIONS.contains(annotation.getName().getIdentifier())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the simple class name declared by a source file.
+     *
+     * @param path The path of the file.
+     * @return The file name without its extension.
+     */
+    private static String classNameOf(String path) {
+        final int start = path.lastIndexOf('/') + 1;
+        final int end = path.lastIndexOf('.');
+        return end > start ? path.substring(start, end) : path.substring(start);
+    }
+}
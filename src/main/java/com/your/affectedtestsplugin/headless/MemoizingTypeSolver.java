@@ -0,0 +1,54 @@
+package com.your.affectedtestsplugin.headless;
+
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Type solver remembering every lookup of the solver it wraps, including the names that could not be solved.
+ * The symbol solver asks for the same names over and over while resolving call sites, and a miss is the most
+ * expensive lookup since every source root and the JRE are probed before giving up.
+ * The wrapper becomes the parent of the wrapped solver, so nested lookups made while solving a type are memoized too.
+ */
+final class MemoizingTypeSolver implements TypeSolver {
+    private final TypeSolver delegate;
+    private final Map<String, SymbolReference<ResolvedReferenceTypeDeclaration>> solvedTypes = new ConcurrentHashMap<>();
+    private TypeSolver parent;
+
+    /**
+     * Constructs a MemoizingTypeSolver.
+     *
+     * @param delegate The solver performing the lookups, which must not have a parent yet.
+     */
+    MemoizingTypeSolver(TypeSolver delegate) {
+        this.delegate = delegate;
+        delegate.setParent(this);
+    }
+
+    @Override
+    public TypeSolver getParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(TypeSolver parent) {
+        if (parent == this) {
+            throw new IllegalStateException("A type solver cannot be its own parent");
+        }
+        this.parent = parent;
+    }
+
+    @Override
+    public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+        // Not computeIfAbsent: solving a type looks up other names through this solver
+        SymbolReference<ResolvedReferenceTypeDeclaration> reference = solvedTypes.get(name);
+        if (reference == null) {
+            reference = delegate.tryToSolveType(name);
+            solvedTypes.put(name, reference);
+        }
+        return reference;
+    }
+}
@@ -0,0 +1,298 @@
+package com.your.affectedtestsplugin.headless;
+
+import com.github.javaparser.GeneratedJavaParserConstants;
+import com.github.javaparser.GeneratedJavaParserTokenManager;
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.SimpleCharStream;
+import com.github.javaparser.StringProvider;
+import com.github.javaparser.Token;
+import com.github.javaparser.TokenMgrException;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+import com.github.javaparser.resolution.types.ResolvedReferenceType;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Index of the Java sources of a working tree for the headless selection.
+ * Every file is lexed once, in parallel, to record the names it calls and its package; files are only parsed, with
+ * symbol resolution attached, when they call a name of interest. The source roots used by the type solver are
+ * derived from the package declarations, so no build model is needed.
+ */
+final class SourceIndex {
+    private static final Set<String> SKIPPED_DIRECTORIES = Set.of(".git", ".gradle", ".idea", "build", "out", "target", "node_modules");
+
+    private final Path repoRoot;
+    private final List<Path> files;
+    private final Map<Path, Integer> fileIndexes;
+    private final Map<String, BitSet> filesByCalledName;
+    private final Map<Integer, Optional<CompilationUnit>> parsedUnits = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> supertypes = new ConcurrentHashMap<>();
+    private final TypeSolver typeSolver;
+    private final ThreadLocal<JavaParser> parser;
+
+    private SourceIndex(Path repoRoot, List<Path> files, Map<String, BitSet> filesByCalledName, Set<Path> sourceRoots) {
+        this.repoRoot = repoRoot;
+        this.files = files;
+        this.filesByCalledName = filesByCalledName;
+        this.fileIndexes = new HashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            fileIndexes.put(files.get(i), i);
+        }
+
+        final CombinedTypeSolver combinedSolver = new CombinedTypeSolver(new ReflectionTypeSolver());
+        for (Path sourceRoot : sourceRoots) {
+            combinedSolver.add(new JavaParserTypeSolver(sourceRoot));
+        }
+        this.typeSolver = new MemoizingTypeSolver(combinedSolver);
+        final ParserConfiguration configuration = new ParserConfiguration()
+                .setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_17)
+                .setSymbolResolver(new JavaSymbolSolver(typeSolver));
+        this.parser = ThreadLocal.withInitial(() -> new JavaParser(configuration));
+    }
+
+    /**
+     * Lexes every Java file of a working tree.
+     *
+     * @param repoRoot The root of the working tree.
+     * @return The index of the working tree.
+     * @throws IOException If the working tree cannot be walked.
+     */
+    static SourceIndex build(Path repoRoot) throws IOException {
+        final Path root = repoRoot.toAbsolutePath().normalize();
+        final List<Path> files = listJavaFiles(root);
+        final LexedFile[] lexedFiles = new LexedFile[files.size()];
+        try {
+            IntStream.range(0, files.size()).parallel().forEach(i -> lexedFiles[i] = lex(files.get(i)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        final Map<String, BitSet> filesByCalledName = new HashMap<>();
+        final Set<Path> sourceRoots = new LinkedHashSet<>();
+        for (int i = 0; i < lexedFiles.length; i++) {
+            for (String calledName : lexedFiles[i].calledNames()) {
+                filesByCalledName.computeIfAbsent(calledName, name -> new BitSet()).set(i);
+            }
+            final Path sourceRoot = sourceRootOf(files.get(i), lexedFiles[i].packageName());
+            if (sourceRoot != null) {
+                sourceRoots.add(sourceRoot);
+            }
+        }
+        return new SourceIndex(root, files, filesByCalledName, sourceRoots);
+    }
+
+    /**
+     * Returns the number of indexed files.
+     *
+     * @return The number of Java files of the working tree.
+     */
+    int size() {
+        return files.size();
+    }
+
+    /**
+     * Finds the files that may call a method with one of the given names.
+     *
+     * @param names The method names.
+     * @return The indexes of the files containing a call or method reference to one of the names.
+     */
+    BitSet filesCalling(Collection<String> names) {
+        final BitSet candidates = new BitSet(files.size());
+        for (String name : names) {
+            final BitSet callers = filesByCalledName.get(name);
+            if (callers != null) {
+                candidates.or(callers);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns the index of a file of the working tree.
+     *
+     * @param relativePath The path of the file relative to the working tree root.
+     * @return The index of the file, or -1 if it is not indexed.
+     */
+    int indexOf(String relativePath) {
+        return fileIndexes.getOrDefault(repoRoot.resolve(relativePath).normalize(), -1);
+    }
+
+    /**
+     * Returns the path of an indexed file relative to the working tree root.
+     *
+     * @param fileIndex The index of the file.
+     * @return The relative path.
+     */
+    String relativePath(int fileIndex) {
+        return repoRoot.relativize(files.get(fileIndex)).toString().replace('\\', '/');
+    }
+
+    /**
+     * Parses the given files in parallel, reusing the units parsed before.
+     *
+     * @param fileIndexes The indexes of the files.
+     * @return The parsed units by file index; files that cannot be read or parsed are left out.
+     */
+    SortedMap<Integer, CompilationUnit> parseAll(BitSet fileIndexes) {
+        fileIndexes.stream().parallel().forEach(this::parse);
+        final SortedMap<Integer, CompilationUnit> units = new TreeMap<>();
+        fileIndexes.stream().forEach(fileIndex -> parsedUnits.get(fileIndex).ifPresent(unit -> units.put(fileIndex, unit)));
+        return units;
+    }
+
+    /**
+     * Parses a single file, reusing the unit parsed before.
+     *
+     * @param fileIndex The index of the file.
+     * @return The parsed unit, or empty if the file cannot be read or parsed.
+     */
+    Optional<CompilationUnit> parse(int fileIndex) {
+        return parsedUnits.computeIfAbsent(fileIndex, index -> {
+            try {
+                final ParseResult<CompilationUnit> result = parser.get().parse(Files.readString(files.get(index), StandardCharsets.UTF_8));
+                return result.isSuccessful() ? result.getResult() : Optional.empty();
+            } catch (IOException e) {
+                return Optional.empty();
+            }
+        });
+    }
+
+    /**
+     * Finds the supertypes of a type, as far as they can be solved.
+     *
+     * @param qualifiedName The qualified name of the type.
+     * @return The qualified names of the classes and interfaces the type extends or implements, directly or not,
+     * empty if the type cannot be solved.
+     */
+    Set<String> supertypesOf(String qualifiedName) {
+        final Set<String> known = supertypes.get(qualifiedName);
+        if (known != null) {
+            return known;
+        }
+        final Set<String> names = new HashSet<>();
+        try {
+            final SymbolReference<ResolvedReferenceTypeDeclaration> type = typeSolver.tryToSolveType(qualifiedName);
+            final Deque<ResolvedReferenceTypeDeclaration> pending = new ArrayDeque<>();
+            if (type.isSolved()) {
+                pending.add(type.getCorrespondingDeclaration());
+            }
+            while (!pending.isEmpty()) {
+                for (ResolvedReferenceType ancestor : pending.poll().getAncestors(true)) {
+                    if (names.add(ancestor.getQualifiedName())) {
+                        ancestor.getTypeDeclaration().ifPresent(pending::add);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // Keep the supertypes solved so far; the rest of the hierarchy is unknown
+        }
+        supertypes.put(qualifiedName, names);
+        return names;
+    }
+
+    /**
+     * The names a file calls and the package it declares.
+     *
+     * @param calledNames The names followed by an argument list or preceded by a method reference operator.
+     * @param packageName The declared package, empty for the default package.
+     */
+    private record LexedFile(Set<String> calledNames, String packageName) {
+    }
+
+    private static LexedFile lex(Path file) {
+        final String content;
+        try {
+            content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final Set<String> calledNames = new HashSet<>();
+        final StringBuilder packageName = new StringBuilder();
+        final GeneratedJavaParserTokenManager lexer = new GeneratedJavaParserTokenManager(new SimpleCharStream(new StringProvider(content)));
+        try {
+            int previousKind = -1;
+            String previousImage = null;
+            boolean inPackage = false;
+            for (Token token = lexer.getNextToken(); token.kind != GeneratedJavaParserConstants.EOF; token = lexer.getNextToken()) {
+                if (previousKind == GeneratedJavaParserConstants.IDENTIFIER && token.kind == GeneratedJavaParserConstants.LPAREN) {
+                    calledNames.add(previousImage);
+                } else if (previousKind == GeneratedJavaParserConstants.DOUBLECOLON && token.kind == GeneratedJavaParserConstants.IDENTIFIER) {
+                    calledNames.add(token.image);
+                }
+                if (token.kind == GeneratedJavaParserConstants.PACKAGE && packageName.length() == 0) {
+                    inPackage = true;
+                } else if (inPackage && token.kind == GeneratedJavaParserConstants.SEMICOLON) {
+                    inPackage = false;
+                } else if (inPackage && (token.kind == GeneratedJavaParserConstants.IDENTIFIER || token.kind == GeneratedJavaParserConstants.DOT)) {
+                    packageName.append(token.image);
+                }
+                previousKind = token.kind;
+                previousImage = token.image;
+            }
+        } catch (TokenMgrException e) {
+            // Keep what was lexed before the error; the file only loses its chance to be parsed for later names
+        }
+        return new LexedFile(calledNames, packageName.toString());
+    }
+
+    /**
+     * Derives the source root of a file from its declared package.
+     *
+     * @param file        The absolute path of the file.
+     * @param packageName The declared package.
+     * @return The source root, or null if the directory of the file does not match its package.
+     */
+    private static Path sourceRootOf(Path file, String packageName) {
+        Path directory = file.getParent();
+        if (!packageName.isEmpty()) {
+            final String[] segments = packageName.split("\\.");
+            for (int i = segments.length - 1; i >= 0; i--) {
+                if (directory == null || !directory.getFileName().toString().equals(segments[i])) {
+                    return null;
+                }
+                directory = directory.getParent();
+            }
+        }
+        return directory;
+    }
+
+    private static List<Path> listJavaFiles(Path root) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return !dir.equals(root) && SKIPPED_DIRECTORIES.contains(dir.getFileName().toString())
+                        ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && file.getFileName().toString().endsWith(".java")) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(files);
+        return files;
+    }
+}
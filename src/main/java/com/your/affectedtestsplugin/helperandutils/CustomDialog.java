@@ -1,25 +1,31 @@
 package com.your.affectedtestsplugin.helperandutils;
 
 import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.ui.ValidationInfo;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.awt.*;
 
 /**
- * Custom dialog for inputting depth level and selecting the option to check the previous commit.
+ * Custom dialog for inputting the depth level of the usage search and choosing whether it deepens adaptively.
  */
 public class CustomDialog extends DialogWrapper {
-    private JTextField depthField;
-    private JCheckBox checkPreviousCommitCheckBox;
+    private final JTextField depthField;
+    private final JCheckBox adaptiveDepthCheckBox;
 
     /**
      * Constructs a CustomDialog.
+     *
+     * @param depth         the depth level shown initially
+     * @param adaptiveDepth whether the adaptive deepening is selected initially
      */
-    public CustomDialog() {
+    public CustomDialog(int depth, boolean adaptiveDepth) {
         super(true); // use current window as parent
+        depthField = new JTextField(String.valueOf(depth));
+        adaptiveDepthCheckBox = new JCheckBox("Stop deepening once the time budget or the test limit is reached", adaptiveDepth);
         init();
-        setTitle("Input Depth Level and Check Previous Commit");
+        setTitle("Input Depth Level");
     }
 
     @Nullable
@@ -27,19 +33,35 @@ public class CustomDialog extends DialogWrapper {
     protected JComponent createCenterPanel() {
         JPanel dialogPanel = new JPanel(new BorderLayout());
 
-        depthField = new JTextField();
-        checkPreviousCommitCheckBox = new JCheckBox("Check Previous Commit");
-
-        JPanel inputPanel = new JPanel(new GridLayout(3, 1)); // Adjusted GridLayout to have 3 rows
+        JPanel inputPanel = new JPanel(new GridLayout(3, 1));
         inputPanel.add(new JLabel("Enter the depth level for the method usage search:"));
         inputPanel.add(depthField);
-        inputPanel.add(checkPreviousCommitCheckBox); // Directly adding checkbox without alignment
+        inputPanel.add(adaptiveDepthCheckBox);
 
         dialogPanel.add(inputPanel, BorderLayout.CENTER);
 
         return dialogPanel;
     }
 
+    @Nullable
+    @Override
+    public JComponent getPreferredFocusedComponent() {
+        return depthField;
+    }
+
+    @Nullable
+    @Override
+    protected ValidationInfo doValidate() {
+        try {
+            if (Integer.parseInt(depthField.getText().trim()) >= 0) {
+                return null;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        return new ValidationInfo("Enter a depth of 0 or more", depthField);
+    }
+
     /**
      * Gets the depth level input by the user.
      *
@@ -50,11 +72,11 @@ public class CustomDialog extends DialogWrapper {
     }
 
     /**
-     * Checks if the "Check Previous Commit" option is selected.
+     * Checks if the usage search should stop deepening once its budget is spent.
      *
      * @return true if the checkbox is selected, false otherwise
      */
-    public boolean isCheckPreviousCommit() {
-        return checkPreviousCommitCheckBox.isSelected();
+    public boolean isAdaptiveDepth() {
+        return adaptiveDepthCheckBox.isSelected();
     }
 }
@@ -10,6 +10,7 @@ import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
 import com.intellij.psi.util.PsiTreeUtil;
+import com.your.affectedtestsplugin.graph.MethodKey;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -161,18 +162,94 @@ public class CustomUtil {
      * @return True if the parameter types match, false otherwise.
      */
     public static boolean isMatchingParameters(PsiMethod method, String[] parameterTypes) {
+        return isMatchingParameters(getPresentableParameterTypes(method), parameterTypes);
+    }
+
+    /**
+     * Checks if the presentable parameter types of a method match the specified parameter types, ignoring whitespace.
+     *
+     * @param presentableTypes The presentable parameter types of the method.
+     * @param parameterTypes   The expected parameter types.
+     * @return True if the parameter types match, false otherwise.
+     */
+    public static boolean isMatchingParameters(String[] presentableTypes, String[] parameterTypes) {
+        if (presentableTypes.length != parameterTypes.length) {
+            return false;
+        }
+        for (int i = 0; i < presentableTypes.length; i++) {
+            if (!presentableTypes[i].replaceAll("\\s+", "").equals(parameterTypes[i].replaceAll("\\s+", ""))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the structured key of a PsiMethod.
+     *
+     * @param method The PsiMethod whose key is to be built.
+     * @return The key of the method, or null if its class has no qualified name.
+     */
+    public static MethodKey getMethodKey(PsiMethod method) {
+        PsiClass containingClass = method.getContainingClass();
+        String className = containingClass != null ? containingClass.getQualifiedName() : null;
+        if (className == null) {
+            return null;
+        }
         PsiParameter[] parameters = method.getParameterList().getParameters();
-        if (parameters.length != parameterTypes.length) {
+        List<String> parameterTypes = new ArrayList<>(parameters.length);
+        for (PsiParameter parameter : parameters) {
+            parameterTypes.add(parameter.getType().getPresentableText());
+        }
+        return new MethodKey(className, method.getName(), parameterTypes);
+    }
+
+    /**
+     * Checks if the parameter types of a given PsiMethod match the parameter types of a method key.
+     *
+     * @param method The PsiMethod to be checked.
+     * @param key    The key of the expected method.
+     * @return True if the parameter types match, false otherwise.
+     */
+    public static boolean isMatchingParameters(PsiMethod method, MethodKey key) {
+        return isMatchingParameters(getPresentableParameterTypes(method), key);
+    }
+
+    /**
+     * Checks if the presentable parameter types of a method match the parameter types of a method key.
+     *
+     * @param presentableTypes The presentable parameter types of the method.
+     * @param key              The key of the expected method.
+     * @return True if the parameter types match, false otherwise.
+     */
+    public static boolean isMatchingParameters(String[] presentableTypes, MethodKey key) {
+        List<String> parameterTypes = key.parameterTypes();
+        if (presentableTypes.length != parameterTypes.size()) {
             return false;
         }
-        for (int i = 0; i < parameters.length; i++) {
-            if (!parameters[i].getType().getPresentableText().replaceAll("\\s+", "").equals(parameterTypes[i].replaceAll("\\s+", ""))) {
+        for (int i = 0; i < presentableTypes.length; i++) {
+            if (!MethodKey.normalizeType(presentableTypes[i]).equals(parameterTypes.get(i))) {
                 return false;
             }
         }
         return true;
     }
 
+    /**
+     * Gets the presentable parameter types of a PsiMethod.
+     *
+     * @param method The PsiMethod.
+     * @return The presentable text of the type of every parameter.
+     */
+    private static String[] getPresentableParameterTypes(PsiMethod method) {
+        PsiParameter[] parameters = method.getParameterList().getParameters();
+        String[] presentableTypes = new String[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            presentableTypes[i] = parameters[i].getType().getPresentableText();
+        }
+        return presentableTypes;
+    }
+
     /**
      * Checks if a given PsiMethod is a test method.
      *
@@ -0,0 +1,72 @@
+package com.your.affectedtestsplugin.history;
+
+import com.your.affectedtestsplugin.graph.MethodKey;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Fingerprint of the inputs of a test on the current changes.
+ * The inputs of a test are the methods on its affected paths: the test itself and every method the usage walk
+ * went through from the changed methods to it. The fingerprint hashes their bodies together with the identity of
+ * the code around them, so a test whose fingerprint did not change since it last passed cannot be affected by the
+ * changes.
+ */
+public final class TestFingerprint {
+
+    private TestFingerprint() {
+    }
+
+    /**
+     * Computes the fingerprint of a test.
+     *
+     * @param environment   The identity of the unchanged code, such as the baseline and HEAD commits.
+     * @param pattern       The test pattern.
+     * @param tests         The keys of the test methods selected by the pattern.
+     * @param walkedCallees The affected methods the usage walk reached every affected method from.
+     * @param bodies        Gets the current body of a method, or null if it does not exist anymore.
+     * @return The hex encoded SHA-256 fingerprint.
+     */
+    public static String of(String environment, String pattern, Collection<MethodKey> tests,
+                            Map<MethodKey, Set<MethodKey>> walkedCallees, Function<MethodKey, String> bodies) {
+        final SortedSet<MethodKey> inputs = new TreeSet<>();
+        final Deque<MethodKey> pending = new ArrayDeque<>(tests);
+        while (!pending.isEmpty()) {
+            final MethodKey method = pending.pop();
+            if (inputs.add(method)) {
+                pending.addAll(walkedCallees.getOrDefault(method, Set.of()));
+            }
+        }
+
+        final MessageDigest digest = sha256();
+        update(digest, environment);
+        update(digest, pattern);
+        for (MethodKey input : inputs) {
+            update(digest, input.toString());
+            final String body = bodies.apply(input);
+            update(digest, body != null ? body : "");
+            digest.update((byte) (body != null ? 1 : 0));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.your.affectedtestsplugin.history;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.util.messages.MessageBusConnection;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Cache of the tests that passed, keyed by the {@link TestFingerprint} of their inputs.
+ * A test whose fingerprint matches the one of its latest passing run is a cached pass and does not need to run again.
+ * Fingerprints of scheduled tests are kept until their results are reported; a pass stores the fingerprint and a
+ * failure removes it. The least recently used tests are evicted beyond a fixed size, and the whole cache is
+ * invalidated when the classpath of a module or a build file changes, since neither is part of the fingerprints.
+ */
+@Service(Service.Level.PROJECT)
+public final class TestResultCache implements Disposable {
+    private static final Logger LOG = Logger.getInstance(TestResultCache.class);
+    private static final int MAX_ENTRIES = 10_000;
+    private static final Set<String> BUILD_FILES = Set.of("build.gradle", "build.gradle.kts", "settings.gradle",
+            "settings.gradle.kts", "gradle.properties", "libs.versions.toml", "pom.xml");
+    private final Map<String, String> passedFingerprints = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private final Map<String, String> scheduledFingerprints = new HashMap<>();
+
+    /**
+     * Constructs a TestResultCache instance for the specified project.
+     *
+     * @param project The IntelliJ project instance.
+     */
+    public TestResultCache(Project project) {
+        final MessageBusConnection connection = project.getMessageBus().connect(this);
+        connection.subscribe(ModuleRootListener.TOPIC, new ModuleRootListener() {
+            @Override
+            public void rootsChanged(@NotNull ModuleRootEvent event) {
+                invalidate("the project roots changed");
+            }
+        });
+        connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends @NotNull VFileEvent> events) {
+                for (VFileEvent event : events) {
+                    final String fileName = event.getPath().substring(event.getPath().lastIndexOf('/') + 1);
+                    if (BUILD_FILES.contains(fileName)) {
+                        invalidate(fileName + " changed");
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Finds the tests whose latest passing run had the same fingerprint.
+     *
+     * @param fingerprints The current fingerprint of every test, keyed by test pattern.
+     * @return The patterns of the cached passes.
+     */
+    public synchronized Set<String> cachedPasses(Map<String, String> fingerprints) {
+        final Set<String> cachedPasses = new LinkedHashSet<>();
+        fingerprints.forEach((pattern, fingerprint) -> {
+            if (fingerprint.equals(passedFingerprints.get(pattern))) {
+                cachedPasses.add(pattern);
+            }
+        });
+        return cachedPasses;
+    }
+
+    /**
+     * Keeps the fingerprints of tests about to run, until their results are reported.
+     *
+     * @param fingerprints The fingerprint of every scheduled test, keyed by test pattern.
+     */
+    public synchronized void schedule(Map<String, String> fingerprints) {
+        scheduledFingerprints.putAll(fingerprints);
+    }
+
+    /**
+     * Updates the cache with the results of a test run.
+     *
+     * @param results The results of the tests of the run.
+     */
+    public synchronized void recordOutcomes(Collection<TestResultStore.TestResult> results) {
+        for (TestResultStore.TestResult result : results) {
+            final String fingerprint = scheduledFingerprints.remove(result.testId());
+            if (result.outcome() == TestResultStore.Outcome.FAILED) {
+                passedFingerprints.remove(result.testId());
+            } else if (result.outcome() == TestResultStore.Outcome.PASSED && fingerprint != null) {
+                passedFingerprints.put(result.testId(), fingerprint);
+            }
+        }
+    }
+
+    /**
+     * Drops every cached pass.
+     *
+     * @param reason The reason of the invalidation, for the log.
+     */
+    public synchronized void invalidate(String reason) {
+        if (!passedFingerprints.isEmpty() || !scheduledFingerprints.isEmpty()) {
+            LOG.info("Invalidating " + passedFingerprints.size() + " cached test passes, " + reason);
+        }
+        passedFingerprints.clear();
+        scheduledFingerprints.clear();
+    }
+
+    @Override
+    public void dispose() {
+    }
+}
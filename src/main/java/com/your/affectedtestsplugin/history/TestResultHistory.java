@@ -0,0 +1,137 @@
+package com.your.affectedtestsplugin.history;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Results of the tests run in the project, keyed by their test pattern ("className,methodName").
+ * Every finished test is appended to a {@link TestResultStore} under the IDE system directory together with its
+ * duration, outcome and the commit it ran on, and the latest runs of every test are kept for planning test runs.
+ */
+@Service(Service.Level.PROJECT)
+public final class TestResultHistory {
+    private static final Logger LOG = Logger.getInstance(TestResultHistory.class);
+    private static final int RETAINED_RUNS = 20;
+    private final Project project;
+    private final Path storageFile;
+    private TestResultStore store;
+
+    /**
+     * Constructs a TestResultHistory instance for the specified project.
+     *
+     * @param project The IntelliJ project instance.
+     */
+    public TestResultHistory(Project project) {
+        this.project = project;
+        this.storageFile = Path.of(PathManager.getSystemPath(), "affected-tests", project.getLocationHash(), "test-results.log");
+    }
+
+    /**
+     * Records the results of a finished test run.
+     *
+     * @param results The results of the tests of the run.
+     */
+    public synchronized void recordAll(List<TestResultStore.TestResult> results) {
+        try {
+            loadIfNeeded().appendAll(results);
+        } catch (IOException e) {
+            LOG.warn("Cannot save the test results to " + storageFile, e);
+        }
+    }
+
+    /**
+     * Gets the statistics of a test over its latest runs.
+     *
+     * @param pattern The test pattern.
+     * @return The statistics, or null if the test has no recorded run.
+     */
+    public synchronized TestResultStore.TestStats statsOf(String pattern) {
+        return loadIfNeeded().stats(pattern);
+    }
+
+    /**
+     * Gets the statistics of the given tests over their latest runs.
+     *
+     * @param patterns The test patterns.
+     * @return The statistics of every test with a recorded run.
+     */
+    public synchronized Map<String, TestResultStore.TestStats> statsOf(Collection<String> patterns) {
+        final TestResultStore resultStore = loadIfNeeded();
+        final Map<String, TestResultStore.TestStats> known = new HashMap<>();
+        for (String pattern : patterns) {
+            final TestResultStore.TestStats stats = resultStore.stats(pattern);
+            if (stats != null) {
+                known.put(pattern, stats);
+            }
+        }
+        return known;
+    }
+
+    /**
+     * Gets the recorded durations of the given tests.
+     *
+     * @param patterns The test patterns.
+     * @return The average duration in milliseconds over the latest runs of every test that ran before.
+     */
+    public synchronized Map<String, Long> durationsOf(Collection<String> patterns) {
+        final TestResultStore resultStore = loadIfNeeded();
+        final Map<String, Long> known = new HashMap<>();
+        for (String pattern : patterns) {
+            final TestResultStore.TestStats stats = resultStore.stats(pattern);
+            if (stats != null) {
+                known.put(pattern, (long) stats.averageDurationMillis());
+            }
+        }
+        return known;
+    }
+
+    /**
+     * Resolves the commit checked out in the project repository.
+     *
+     * @return The id of the HEAD commit, or null if the project is not a Git repository.
+     */
+    public String currentCommit() {
+        final String basePath = project.getBasePath();
+        if (basePath == null) {
+            return null;
+        }
+        try (Git git = Git.open(new File(basePath))) {
+            final ObjectId head = git.getRepository().resolve(Constants.HEAD);
+            return head != null ? head.name() : null;
+        } catch (IOException e) {
+            LOG.debug("Cannot resolve HEAD of " + basePath, e);
+            return null;
+        }
+    }
+
+    private TestResultStore loadIfNeeded() {
+        if (store == null) {
+            try {
+                store = TestResultStore.open(storageFile, RETAINED_RUNS);
+            } catch (IOException e) {
+                LOG.info("Cannot read the test results, starting from scratch", e);
+                try {
+                    Files.deleteIfExists(storageFile);
+                    store = TestResultStore.open(storageFile, RETAINED_RUNS);
+                } catch (IOException deleteFailure) {
+                    throw new IllegalStateException("Cannot reset the test results at " + storageFile, deleteFailure);
+                }
+            }
+        }
+        return store;
+    }
+}
@@ -0,0 +1,340 @@
+package com.your.affectedtestsplugin.history;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Append-only store of the results of test runs.
+ * Every result is appended to a log file as a fixed-size record referring to its test by an id, which is defined
+ * by a name record the first time the test is seen. Only the latest results of every test are retained: they are
+ * kept in memory in a ring per test, so statistics cost a hash lookup and a scan of a bounded window, and the log
+ * is compacted to the retained results once it grows to twice their size.
+ * A record torn by a crash while appending is dropped when the store is opened.
+ */
+public final class TestResultStore {
+    private static final int MAGIC = 0x41545452;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final byte NAME_RECORD = 'N';
+    private static final byte RESULT_RECORD = 'R';
+    private static final int RESULT_RECORD_SIZE = 1 + 4 + 8 + 4 + 1 + Constants.OBJECT_ID_LENGTH;
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+
+    private final Path file;
+    private final int retainedRuns;
+    private final Map<String, TestHistory> histories = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private int recordsOnDisk;
+    private int retainedRecords;
+
+    /**
+     * The outcome of a test run.
+     */
+    public enum Outcome {
+        PASSED,
+        FAILED,
+        IGNORED
+    }
+
+    /**
+     * The result of a single run of a test.
+     *
+     * @param testId          The test pattern ("className,methodName").
+     * @param timestampMillis The time the run finished, in epoch milliseconds.
+     * @param durationMillis  The duration of the run in milliseconds.
+     * @param outcome         The outcome of the run.
+     * @param commitId        The commit checked out during the run, or null if unknown.
+     */
+    public record TestResult(String testId, long timestampMillis, int durationMillis, Outcome outcome, String commitId) {
+    }
+
+    /**
+     * Statistics over the retained runs of a test, ignored runs excluded.
+     *
+     * @param runs                  The number of runs.
+     * @param failures              The number of failed runs.
+     * @param lastDurationMillis    The duration of the latest run.
+     * @param averageDurationMillis The average duration of the runs.
+     * @param flakyFlips            The number of outcome changes between consecutive runs of the same commit.
+     */
+    public record TestStats(int runs, int failures, int lastDurationMillis, int averageDurationMillis, int flakyFlips) {
+
+        /**
+         * Gets the share of failed runs.
+         *
+         * @return The failure rate between 0 and 1.
+         */
+        public double failureRate() {
+            return runs == 0 ? 0 : (double) failures / runs;
+        }
+    }
+
+    private TestResultStore(Path file, int retainedRuns) {
+        this.file = file;
+        this.retainedRuns = retainedRuns;
+    }
+
+    /**
+     * Opens a store, replaying its log.
+     *
+     * @param file         The path of the log file.
+     * @param retainedRuns The number of latest runs retained per test.
+     * @return The opened store, empty if the file does not exist or has another version.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static TestResultStore open(Path file, int retainedRuns) throws IOException {
+        final TestResultStore store = new TestResultStore(file, retainedRuns);
+        if (!Files.isRegularFile(file)) {
+            return store;
+        }
+        long validLength = 0;
+        boolean otherVersion = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            otherVersion = in.readInt() != MAGIC || in.readInt() != VERSION;
+            if (otherVersion) {
+                return store;
+            }
+            validLength = HEADER_SIZE;
+            while (true) {
+                final byte kind = in.readByte();
+                if (kind == NAME_RECORD) {
+                    final byte[] name = new byte[in.readUnsignedShort()];
+                    in.readFully(name);
+                    store.nameIds.put(new String(name, StandardCharsets.UTF_8), store.names.size());
+                    store.names.add(new String(name, StandardCharsets.UTF_8));
+                    validLength += 1 + 2 + name.length;
+                } else if (kind == RESULT_RECORD) {
+                    final int nameId = in.readInt();
+                    final long timestampMillis = in.readLong();
+                    final int durationMillis = in.readInt();
+                    final Outcome outcome = Outcome.values()[in.readByte()];
+                    final byte[] commit = new byte[Constants.OBJECT_ID_LENGTH];
+                    in.readFully(commit);
+                    store.retain(new TestResult(store.names.get(nameId), timestampMillis, durationMillis, outcome, commitName(commit)));
+                    store.recordsOnDisk++;
+                    validLength += RESULT_RECORD_SIZE;
+                } else {
+                    break;
+                }
+            }
+        } catch (EOFException e) {
+            // The end of the log, possibly in the middle of a torn record
+        } catch (IndexOutOfBoundsException e) {
+            // A record torn in a way that still decodes; the log is cut before it
+        } finally {
+            // Deleted once the log is closed, as an open file cannot be deleted on every platform
+            if (otherVersion) {
+                Files.delete(file);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            if (channel.size() > validLength) {
+                channel.truncate(validLength);
+            }
+        }
+        if (store.shouldCompact()) {
+            store.compact();
+        }
+        return store;
+    }
+
+    /**
+     * Appends the results of a test run to the log.
+     *
+     * @param results The results of the tests of the run.
+     * @throws IOException If an I/O error occurs.
+     */
+    public synchronized void appendAll(Collection<TestResult> results) throws IOException {
+        if (results.isEmpty()) {
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        final boolean newFile = !Files.isRegularFile(file) || Files.size(file) == 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+            if (newFile) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+            for (TestResult result : results) {
+                writeResult(out, result, names, nameIds);
+                retain(result);
+                recordsOnDisk++;
+            }
+        }
+        if (shouldCompact()) {
+            compact();
+        }
+    }
+
+    /**
+     * Gets the statistics of a test over its retained runs.
+     *
+     * @param testId The test pattern.
+     * @return The statistics, or null if the test never ran or all its retained runs were ignored.
+     */
+    public synchronized TestStats stats(String testId) {
+        final TestHistory history = histories.get(testId);
+        return history != null ? history.stats() : null;
+    }
+
+    /**
+     * Gets the retained results of a test.
+     *
+     * @param testId The test pattern.
+     * @return The retained results, oldest first.
+     */
+    public synchronized List<TestResult> results(String testId) {
+        final TestHistory history = histories.get(testId);
+        return history != null ? history.results() : List.of();
+    }
+
+    /**
+     * Writes a result record, preceded by a name record if its test has no id in the given name table yet.
+     *
+     * @param out     The stream of the log.
+     * @param result  The result to write.
+     * @param names   The names of the log by id, extended with new names.
+     * @param nameIds The ids of the names of the log, extended with new names.
+     * @throws IOException If an I/O error occurs.
+     */
+    private static void writeResult(DataOutputStream out, TestResult result, List<String> names, Map<String, Integer> nameIds) throws IOException {
+        Integer nameId = nameIds.get(result.testId());
+        if (nameId == null) {
+            nameId = names.size();
+            nameIds.put(result.testId(), nameId);
+            names.add(result.testId());
+            final byte[] name = result.testId().getBytes(StandardCharsets.UTF_8);
+            out.writeByte(NAME_RECORD);
+            out.writeShort(name.length);
+            out.write(name);
+        }
+        out.writeByte(RESULT_RECORD);
+        out.writeInt(nameId);
+        out.writeLong(result.timestampMillis());
+        out.writeInt(result.durationMillis());
+        out.writeByte(result.outcome().ordinal());
+        final byte[] commit = new byte[Constants.OBJECT_ID_LENGTH];
+        if (result.commitId() != null) {
+            ObjectId.fromString(result.commitId()).copyRawTo(commit, 0);
+        }
+        out.write(commit);
+    }
+
+    private void retain(TestResult result) {
+        final TestHistory history = histories.computeIfAbsent(result.testId(), testId -> new TestHistory(retainedRuns));
+        if (history.add(result)) {
+            retainedRecords++;
+        }
+    }
+
+    private boolean shouldCompact() {
+        return recordsOnDisk > MIN_COMPACTION_RECORDS && recordsOnDisk > 2 * retainedRecords;
+    }
+
+    /**
+     * Rewrites the log with the retained results only, replacing it atomically. The name table of the rewritten log
+     * only replaces the current one once the log is replaced, so a failed compaction keeps appending to the old log
+     * with its own ids.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    private void compact() throws IOException {
+        final List<String> compactedNames = new ArrayList<>();
+        final Map<String, Integer> compactedNameIds = new HashMap<>();
+        final Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (TestHistory history : histories.values()) {
+                for (TestResult result : history.results()) {
+                    writeResult(out, result, compactedNames, compactedNameIds);
+                }
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        names.clear();
+        names.addAll(compactedNames);
+        nameIds.clear();
+        nameIds.putAll(compactedNameIds);
+        recordsOnDisk = retainedRecords;
+    }
+
+    private static String commitName(byte[] commit) {
+        final ObjectId commitId = ObjectId.fromRaw(commit);
+        return commitId.equals(ObjectId.zeroId()) ? null : commitId.name();
+    }
+
+    /**
+     * The retained runs of a single test, in a ring buffer.
+     */
+    private static final class TestHistory {
+        private final TestResult[] ring;
+        private int next;
+        private int size;
+
+        TestHistory(int capacity) {
+            this.ring = new TestResult[capacity];
+        }
+
+        /**
+         * Adds a run, overwriting the oldest one once the ring is full.
+         *
+         * @param result The result of the run.
+         * @return True if the number of retained runs grew.
+         */
+        boolean add(TestResult result) {
+            ring[next] = result;
+            next = (next + 1) % ring.length;
+            if (size < ring.length) {
+                size++;
+                return true;
+            }
+            return false;
+        }
+
+        List<TestResult> results() {
+            final List<TestResult> results = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                results.add(ring[(next - size + i + ring.length) % ring.length]);
+            }
+            return results;
+        }
+
+        TestStats stats() {
+            int runs = 0;
+            int failures = 0;
+            int lastDuration = 0;
+            long totalDuration = 0;
+            int flakyFlips = 0;
+            TestResult previous = null;
+            for (TestResult result : results()) {
+                if (result.outcome() == Outcome.IGNORED) {
+                    continue;
+                }
+                runs++;
+                if (result.outcome() == Outcome.FAILED) {
+                    failures++;
+                }
+                lastDuration = result.durationMillis();
+                totalDuration += result.durationMillis();
+                if (previous != null && previous.outcome() != result.outcome() && result.commitId() != null
+                        && result.commitId().equals(previous.commitId())) {
+                    flakyFlips++;
+                }
+                previous = result;
+            }
+            return runs == 0 ? null : new TestStats(runs, failures, lastDuration, (int) (totalDuration / runs), flakyFlips);
+        }
+    }
+}
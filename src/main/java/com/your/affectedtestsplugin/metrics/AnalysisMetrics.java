@@ -0,0 +1,172 @@
+package com.your.affectedtestsplugin.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Records the timers and counters of a single run while it is in progress.
+ * Phases are timed with a monotonic clock and can be recorded from several threads; times of phases running on
+ * several workers at once, such as parsing or reference searches, add up and can exceed the wall time of the run.
+ */
+public final class AnalysisMetrics {
+    /**
+     * The wall time of the analysis.
+     */
+    public static final String TOTAL = "total";
+    /**
+     * The time spent reading baselines and commit ranges from the repository.
+     */
+    public static final String GIT = "git";
+    /**
+     * The time spent scanning and parsing sources.
+     */
+    public static final String PARSE = "parse";
+    /**
+     * The time spent diffing lines and comparing methods.
+     */
+    public static final String DIFF = "diff";
+    /**
+     * The wall time of the usage search, whichever engine ran it.
+     */
+    public static final String USAGES = "usages";
+    /**
+     * The summed latency of the reference searches.
+     */
+    public static final String REFERENCE_SEARCH = "referenceSearch";
+    /**
+     * The time spent looking up PSI classes and methods by key.
+     */
+    public static final String PSI_LOOKUP = "psiLookup";
+    /**
+     * The time spent creating and launching run configurations.
+     */
+    public static final String TEST_LAUNCH = "testLaunch";
+    /**
+     * The time from the launch of the first test configuration to the end of the last one.
+     */
+    public static final String TEST_EXECUTION = "testExecution";
+    /**
+     * The number of diffed files.
+     */
+    public static final String FILES = "files";
+    /**
+     * The number of changed methods.
+     */
+    public static final String CHANGED_METHODS = "changedMethods";
+    /**
+     * The number of reference searches.
+     */
+    public static final String REFERENCE_SEARCHES = "referenceSearches";
+    /**
+     * The number of PSI lookups by key.
+     */
+    public static final String PSI_LOOKUPS = "psiLookups";
+    /**
+     * The deepest depth at which an affected method was reached.
+     */
+    public static final String DEPTH_REACHED = "depthReached";
+    /**
+     * The number of usage walks stopped by their time budget or test limit before their maximum depth.
+     */
+    public static final String BUDGET_STOPS = "budgetStops";
+    /**
+     * The number of affected tests.
+     */
+    public static final String AFFECTED_TESTS = "affectedTests";
+    /**
+     * The number of tests launched.
+     */
+    public static final String TESTS_RUN = "testsRun";
+
+    private final String kind;
+    private final long startedMillis;
+    private final long startedNanos;
+    private final Map<String, Long> timings = new ConcurrentHashMap<>();
+    private final Map<String, Long> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Starts recording a run.
+     *
+     * @param kind The kind of the run.
+     */
+    public AnalysisMetrics(String kind) {
+        this.kind = kind;
+        this.startedMillis = System.currentTimeMillis();
+        this.startedNanos = System.nanoTime();
+    }
+
+    /**
+     * Runs a phase and adds its duration to the phase timer.
+     *
+     * @param phase The name of the phase.
+     * @param work  The work of the phase.
+     * @param <T>   The type of the result of the phase.
+     * @return The result of the phase.
+     */
+    public <T> T time(String phase, Supplier<T> work) {
+        final long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            addTime(phase, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Runs a phase and adds its duration to the phase timer.
+     *
+     * @param phase The name of the phase.
+     * @param work  The work of the phase.
+     */
+    public void time(String phase, Runnable work) {
+        final long start = System.nanoTime();
+        try {
+            work.run();
+        } finally {
+            addTime(phase, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Adds a duration measured elsewhere to a phase timer.
+     *
+     * @param phase The name of the phase.
+     * @param nanos The duration in nanoseconds.
+     */
+    public void addTime(String phase, long nanos) {
+        timings.merge(phase, nanos, Long::sum);
+    }
+
+    /**
+     * Adds to a counter.
+     *
+     * @param counter The name of the counter.
+     * @param delta   The value added.
+     */
+    public void increment(String counter, long delta) {
+        counters.merge(counter, delta, Long::sum);
+    }
+
+    /**
+     * Raises a maximum to the given value.
+     *
+     * @param counter The name of the maximum.
+     * @param value   The observed value.
+     */
+    public void recordMax(String counter, long value) {
+        counters.merge(counter, value, Math::max);
+    }
+
+    /**
+     * Ends the run, timing its total from the start.
+     *
+     * @return The recorded metrics of the run.
+     */
+    public RunMetrics finish() {
+        final Map<String, Long> finishedTimings = new TreeMap<>(timings);
+        finishedTimings.put(TOTAL, System.nanoTime() - startedNanos);
+        return new RunMetrics(kind, startedMillis, finishedTimings, new TreeMap<>(counters));
+    }
+}
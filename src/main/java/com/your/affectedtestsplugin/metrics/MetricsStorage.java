@@ -0,0 +1,126 @@
+package com.your.affectedtestsplugin.metrics;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Reads and writes the metrics history file, and exports it as JSON.
+ * The file holds the metrics of the latest runs in run order, every run with its named timers and counters.
+ */
+final class MetricsStorage {
+    private static final int MAGIC = 0x4154504D;
+    private static final int VERSION = 1;
+
+    private MetricsStorage() {
+    }
+
+    /**
+     * Reads the history file.
+     *
+     * @param file The path of the history file.
+     * @return The metrics of the runs in run order, or an empty list if the file does not exist or has another version.
+     * @throws IOException If an I/O error occurs.
+     */
+    static List<RunMetrics> read(Path file) throws IOException {
+        final List<RunMetrics> runs = new ArrayList<>();
+        if (!Files.isRegularFile(file)) {
+            return runs;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return runs;
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                final String kind = in.readUTF();
+                final long startedMillis = in.readLong();
+                runs.add(new RunMetrics(kind, startedMillis, readValues(in), readValues(in)));
+            }
+        } catch (EOFException e) {
+            return new ArrayList<>();
+        }
+        return runs;
+    }
+
+    /**
+     * Writes the history file, replacing any previous version atomically.
+     *
+     * @param file The path of the history file.
+     * @param runs The metrics of the runs in run order.
+     * @throws IOException If an I/O error occurs.
+     */
+    static void write(Path file, List<RunMetrics> runs) throws IOException {
+        Files.createDirectories(file.getParent());
+        final Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(runs.size());
+            for (RunMetrics run : runs) {
+                out.writeUTF(run.kind());
+                out.writeLong(run.startedMillis());
+                writeValues(out, run.timings());
+                writeValues(out, run.counters());
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the metrics of the runs as a JSON array, one object per run with its timers in nanoseconds.
+     *
+     * @param writer The writer of the export.
+     * @param runs   The metrics of the runs in run order.
+     * @throws IOException If an I/O error occurs.
+     */
+    static void writeJson(Writer writer, List<RunMetrics> runs) throws IOException {
+        writer.write("[");
+        for (int i = 0; i < runs.size(); i++) {
+            final RunMetrics run = runs.get(i);
+            writer.write(i == 0 ? "\n" : ",\n");
+            writer.write("  {\"kind\":\"" + escapeJson(run.kind()) + "\",\"startedAt\":\""
+                    + DateTimeFormatter.ISO_INSTANT.format(Instant.ofEpochMilli(run.startedMillis())) + "\",\"startedMillis\":"
+                    + run.startedMillis() + ",\"timingsNanos\":");
+            writeJsonValues(writer, run.timings());
+            writer.write(",\"counters\":");
+            writeJsonValues(writer, run.counters());
+            writer.write("}");
+        }
+        writer.write(runs.isEmpty() ? "]\n" : "\n]\n");
+    }
+
+    private static Map<String, Long> readValues(DataInputStream in) throws IOException {
+        final Map<String, Long> values = new TreeMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            final String name = in.readUTF();
+            values.put(name, in.readLong());
+        }
+        return values;
+    }
+
+    private static void writeValues(DataOutputStream out, Map<String, Long> values) throws IOException {
+        out.writeInt(values.size());
+        for (Map.Entry<String, Long> value : values.entrySet()) {
+            out.writeUTF(value.getKey());
+            out.writeLong(value.getValue());
+        }
+    }
+
+    private static void writeJsonValues(Writer writer, Map<String, Long> values) throws IOException {
+        writer.write("{");
+        String separator = "";
+        for (Map.Entry<String, Long> value : new TreeMap<>(values).entrySet()) {
+            writer.write(separator + "\"" + escapeJson(value.getKey()) + "\":" + value.getValue());
+            separator = ",";
+        }
+        writer.write("}");
+    }
+
+    private static String escapeJson(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,115 @@
+package com.your.affectedtestsplugin.metrics;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import com.your.affectedtestsplugin.helperandutils.CustomUtil;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Tool window listing the timers and counters of the latest runs, newest first, with an export of the history as JSON.
+ * The depth of a run whose usage walk was stopped by its budget is marked with a {@code +}.
+ */
+public class MetricsToolWindowFactory implements ToolWindowFactory, DumbAware {
+    private static final DateTimeFormatter STARTED = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+    private static final String[] COLUMNS = {"Started", "Kind", "Total ms", "Git ms", "Parse ms", "Diff ms", "Usages ms",
+            "Searches", "Search avg ms", "PSI lookups", "PSI ms", "Depth", "Changed methods", "Affected tests",
+            "Launch ms", "Execution ms", "Tests run"};
+
+    @Override
+    public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+        final DefaultTableModel model = new DefaultTableModel(COLUMNS, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        final JButton exportButton = new JButton("Export JSON...");
+        exportButton.addActionListener(event -> exportJson(project));
+        final JPanel toolbar = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        toolbar.add(exportButton);
+
+        final JPanel panel = new JPanel(new BorderLayout());
+        panel.add(toolbar, BorderLayout.NORTH);
+        panel.add(new JScrollPane(new JTable(model)), BorderLayout.CENTER);
+        final Content content = ContentFactory.getInstance().createContent(panel, "", false);
+        toolWindow.getContentManager().addContent(content);
+
+        refresh(project, model);
+        project.getMessageBus().connect(toolWindow.getDisposable()).subscribe(PerformanceMetrics.TOPIC,
+                () -> ApplicationManager.getApplication().invokeLater(() -> refresh(project, model), project.getDisposed()));
+    }
+
+    /**
+     * Fills the table with the history, newest run first.
+     *
+     * @param project The IntelliJ project instance.
+     * @param model   The model of the table.
+     */
+    private void refresh(Project project, DefaultTableModel model) {
+        final List<RunMetrics> runs = project.getService(PerformanceMetrics.class).runs();
+        model.setRowCount(0);
+        for (int i = runs.size() - 1; i >= 0; i--) {
+            final RunMetrics run = runs.get(i);
+            final long searches = run.count(AnalysisMetrics.REFERENCE_SEARCHES);
+            model.addRow(new Object[]{
+                    STARTED.format(Instant.ofEpochMilli(run.startedMillis())),
+                    run.kind(),
+                    millis(run.nanos(AnalysisMetrics.TOTAL)),
+                    millis(run.nanos(AnalysisMetrics.GIT)),
+                    millis(run.nanos(AnalysisMetrics.PARSE)),
+                    millis(run.nanos(AnalysisMetrics.DIFF)),
+                    millis(run.nanos(AnalysisMetrics.USAGES)),
+                    searches,
+                    searches == 0 ? "" : millis(run.nanos(AnalysisMetrics.REFERENCE_SEARCH) / searches),
+                    run.count(AnalysisMetrics.PSI_LOOKUPS),
+                    millis(run.nanos(AnalysisMetrics.PSI_LOOKUP)),
+                    run.count(AnalysisMetrics.DEPTH_REACHED) + (run.count(AnalysisMetrics.BUDGET_STOPS) > 0 ? "+" : ""),
+                    run.count(AnalysisMetrics.CHANGED_METHODS),
+                    run.count(AnalysisMetrics.AFFECTED_TESTS),
+                    millis(run.nanos(AnalysisMetrics.TEST_LAUNCH)),
+                    millis(run.nanos(AnalysisMetrics.TEST_EXECUTION)),
+                    run.count(AnalysisMetrics.TESTS_RUN)});
+        }
+    }
+
+    /**
+     * Asks for a file and exports the history to it as JSON.
+     *
+     * @param project The IntelliJ project instance.
+     */
+    private void exportJson(Project project) {
+        final FileSaverDescriptor descriptor = new FileSaverDescriptor("Export Affected Tests Metrics", "Export the metrics history as JSON", "json");
+        final VirtualFileWrapper target = FileChooserFactory.getInstance().createSaveFileDialog(descriptor, project)
+                .save("affected-tests-metrics.json");
+        if (target == null) {
+            return;
+        }
+        try {
+            project.getService(PerformanceMetrics.class).exportJson(target.getFile().toPath());
+            CustomUtil.displayNotification(project, "Affected Tests Plugin", "Exported the metrics to " + target.getFile());
+        } catch (IOException e) {
+            CustomUtil.showErrorDialog(project, "Cannot export the metrics: " + e.getMessage(), "EXPORT FAILED");
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1_000_000.0);
+    }
+}
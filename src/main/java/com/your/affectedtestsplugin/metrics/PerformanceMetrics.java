@@ -0,0 +1,156 @@
+package com.your.affectedtestsplugin.metrics;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.messages.Topic;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * History of the timers and counters of the latest runs of the plugin.
+ * Every analysis records its phases into an {@link AnalysisMetrics}; the finished run is added to the history, and
+ * the timers of the tests it launched are added to it once they ended. The history is persisted under the IDE system
+ * directory on a background executor, so performance regressions of the plugin stay visible across releases.
+ */
+@Service(Service.Level.PROJECT)
+public final class PerformanceMetrics {
+    /**
+     * Topic notified whenever the history changed.
+     */
+    public static final Topic<MetricsListener> TOPIC = Topic.create("Affected Tests Metrics", MetricsListener.class);
+    private static final Logger LOG = Logger.getInstance(PerformanceMetrics.class);
+    private static final int RETAINED_RUNS = 200;
+    private static final ExecutorService WRITER = AppExecutorUtil.createBoundedApplicationPoolExecutor("Affected Tests Metrics", 1);
+    private final Project project;
+    private final Path file;
+    private List<RunMetrics> runs;
+
+    /**
+     * Listener of the metrics history.
+     */
+    public interface MetricsListener {
+        /**
+         * Called after a run was added to the history or updated.
+         */
+        void metricsChanged();
+    }
+
+    /**
+     * Constructs a PerformanceMetrics instance for the specified project.
+     *
+     * @param project The IntelliJ project instance.
+     */
+    public PerformanceMetrics(Project project) {
+        this.project = project;
+        this.file = Path.of(PathManager.getSystemPath(), "affected-tests", project.getLocationHash(), "metrics.bin");
+    }
+
+    /**
+     * Starts recording a run.
+     *
+     * @param kind The kind of the run, such as "changes" or "range".
+     * @return The recorder of the run.
+     */
+    public AnalysisMetrics startRun(String kind) {
+        return new AnalysisMetrics(kind);
+    }
+
+    /**
+     * Adds a finished run to the history.
+     *
+     * @param metrics The recorder of the run.
+     */
+    public void finishRun(AnalysisMetrics metrics) {
+        final RunMetrics run = metrics.finish();
+        synchronized (this) {
+            loadedRuns().add(run);
+            if (runs.size() > RETAINED_RUNS) {
+                runs.subList(0, runs.size() - RETAINED_RUNS).clear();
+            }
+        }
+        changed();
+    }
+
+    /**
+     * Adds the timers of the tests launched after the latest run to it.
+     *
+     * @param launchNanos    The time spent creating and launching the run configurations.
+     * @param executionNanos The time from the launch of the first configuration to the end of the last one.
+     * @param testsRun       The number of tests launched.
+     */
+    public void recordTestRun(long launchNanos, long executionNanos, long testsRun) {
+        synchronized (this) {
+            final List<RunMetrics> history = loadedRuns();
+            if (history.isEmpty()) {
+                return;
+            }
+            history.set(history.size() - 1, history.get(history.size() - 1).withTestRun(launchNanos, executionNanos, testsRun));
+        }
+        changed();
+    }
+
+    /**
+     * Gets the history.
+     *
+     * @return The metrics of the latest runs in run order.
+     */
+    public synchronized List<RunMetrics> runs() {
+        return new ArrayList<>(loadedRuns());
+    }
+
+    /**
+     * Exports the history as a JSON array.
+     *
+     * @param target The path of the exported file.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void exportJson(Path target) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            MetricsStorage.writeJson(writer, runs());
+        }
+    }
+
+    /**
+     * Persists the history in the background and notifies the listeners.
+     */
+    private void changed() {
+        final List<RunMetrics> snapshot = runs();
+        WRITER.execute(() -> {
+            try {
+                MetricsStorage.write(file, snapshot);
+            } catch (IOException e) {
+                LOG.info("Cannot write the metrics history " + file, e);
+            }
+        });
+        if (!project.isDisposed()) {
+            project.getMessageBus().syncPublisher(TOPIC).metricsChanged();
+        }
+    }
+
+    /**
+     * Gets the history, reading it from disk on first use.
+     *
+     * @return The mutable history.
+     */
+    private List<RunMetrics> loadedRuns() {
+        if (runs == null) {
+            try {
+                runs = MetricsStorage.read(file);
+            } catch (IOException e) {
+                LOG.info("Cannot read the metrics history " + file, e);
+                runs = new ArrayList<>();
+            }
+        }
+        return runs;
+    }
+}
@@ -0,0 +1,52 @@
+package com.your.affectedtestsplugin.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The timers and counters recorded by a single run of the plugin.
+ *
+ * @param kind          The kind of the run, such as "changes" or "range".
+ * @param startedMillis The time the run started, in epoch milliseconds.
+ * @param timings       The time spent in every phase in nanoseconds, keyed by phase name.
+ * @param counters      The counters and maxima of the run, keyed by name.
+ */
+public record RunMetrics(String kind, long startedMillis, Map<String, Long> timings, Map<String, Long> counters) {
+
+    /**
+     * Gets the time spent in a phase.
+     *
+     * @param phase The name of the phase.
+     * @return The time in nanoseconds, 0 if the phase was not recorded.
+     */
+    public long nanos(String phase) {
+        return timings.getOrDefault(phase, 0L);
+    }
+
+    /**
+     * Gets a counter.
+     *
+     * @param counter The name of the counter.
+     * @return The value of the counter, 0 if it was not recorded.
+     */
+    public long count(String counter) {
+        return counters.getOrDefault(counter, 0L);
+    }
+
+    /**
+     * Adds the timers and counters of the tests launched after the analysis.
+     *
+     * @param launchNanos    The time spent creating and launching the run configurations.
+     * @param executionNanos The time from the launch of the first configuration to the end of the last one.
+     * @param testsRun       The number of tests launched.
+     * @return The metrics of the run including its tests.
+     */
+    public RunMetrics withTestRun(long launchNanos, long executionNanos, long testsRun) {
+        final Map<String, Long> newTimings = new TreeMap<>(timings);
+        newTimings.put(AnalysisMetrics.TEST_LAUNCH, launchNanos);
+        newTimings.put(AnalysisMetrics.TEST_EXECUTION, executionNanos);
+        final Map<String, Long> newCounters = new TreeMap<>(counters);
+        newCounters.put(AnalysisMetrics.TESTS_RUN, testsRun);
+        return new RunMetrics(kind, startedMillis, newTimings, newCounters);
+    }
+}
@@ -2,75 +2,124 @@ package com.your.affectedtestsplugin.reportListener;
 
 import com.intellij.execution.testframework.AbstractTestProxy;
 import com.intellij.execution.testframework.TestStatusListener;
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.project.ProjectManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.your.affectedtestsplugin.history.TestResultCache;
+import com.your.affectedtestsplugin.history.TestResultHistory;
+import com.your.affectedtestsplugin.history.TestResultStore;
+import com.your.affectedtestsplugin.runner.IntelliJTestRunner;
+import org.jetbrains.annotations.Nullable;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Stack;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 /**
- * Listener for test suite completion to generate test reports.
+ * Listener for test suite completion to record the results and generate test reports.
+ * The finished test tree is copied on the listener thread, and the results are recorded and written as JUnit XML and
+ * JSON lines reports on a background executor, so large suites do not stall the thread finishing the run.
  */
 public class TestReportListener extends TestStatusListener {
 
-    private static int count = 0;
     private static final Logger logger = Logger.getInstance(TestReportListener.class);
+    private static final int RETAINED_REPORTS = 20;
+    private static final ExecutorService REPORT_EXECUTOR = AppExecutorUtil.createBoundedApplicationPoolExecutor("Affected Tests Reports", 1);
 
     @Override
-    public void testSuiteFinished(AbstractTestProxy root) {
-        Project project = getCurrentProject();
-        if (project != null) {
-            generateTestReport(project, root);
-        }
+    public void testSuiteFinished(@Nullable AbstractTestProxy root) {
+        // Reports need the project owning the run, see testSuiteFinished(AbstractTestProxy, Project)
     }
 
-    /**
-     * Generates the test report and writes it to a file.
-     *
-     * @param project the current project
-     * @param root    the root test proxy
-     */
-    private void generateTestReport(Project project, AbstractTestProxy root) {
-        try (FileWriter writer = new FileWriter(project.getBasePath() + "/testReport" + count++ + ".txt")) {
-            writer.write("Test Report\n");
-            writer.write("===========\n\n");
-            generateReport(root, writer);
-        } catch (IOException e) {
-            logger.error("Exception encountered in report generation for /testReport" + count, e);
+    @Override
+    public void testSuiteFinished(@Nullable AbstractTestProxy root, Project project) {
+        if (root == null || project == null || project.isDisposed()) {
+            return;
         }
+        final String suiteName = root.getName();
+        final long finishedMillis = System.currentTimeMillis();
+        final List<TestReportWriter.TestCaseResult> results = collectResults(root);
+        REPORT_EXECUTOR.execute(() -> {
+            if (project.isDisposed()) {
+                return;
+            }
+            recordResults(project, finishedMillis, results);
+            generateTestReport(project, suiteName, finishedMillis, results);
+        });
     }
 
     /**
-     * Generates the test report content.
+     * Copies the results of the finished tests out of the test tree.
      *
-     * @param root   the root test proxy
-     * @param writer the file writer
-     * @throws IOException if an I/O error occurs
+     * @param root the root test proxy
+     * @return the results of the leaf tests
      */
-    private void generateReport(AbstractTestProxy root, FileWriter writer) throws IOException {
-        Stack<AbstractTestProxy> stack = new Stack<>();
+    private List<TestReportWriter.TestCaseResult> collectResults(AbstractTestProxy root) {
+        final List<TestReportWriter.TestCaseResult> results = new ArrayList<>();
+        final Deque<AbstractTestProxy> stack = new ArrayDeque<>();
         stack.push(root);
         while (!stack.isEmpty()) {
-            AbstractTestProxy current = stack.pop();
+            final AbstractTestProxy current = stack.pop();
             if (current.isLeaf()) {
-                String result = current.isPassed() ? "PASSED" : "FAILED";
-                writer.write(current + ": " + result + "\n");
+                final String pattern = IntelliJTestRunner.testPatternOfLocation(current.getLocationUrl());
+                final AbstractTestProxy parent = current.getParent();
+                final String className = pattern != null ? pattern.substring(0, pattern.indexOf(','))
+                        : parent != null ? parent.getName() : "";
+                final TestResultStore.Outcome outcome = current.isIgnored() ? TestResultStore.Outcome.IGNORED
+                        : current.isPassed() ? TestResultStore.Outcome.PASSED : TestResultStore.Outcome.FAILED;
+                final Long duration = current.getDuration();
+                results.add(new TestReportWriter.TestCaseResult(className, current.getName(), pattern, outcome,
+                        duration != null ? duration : 0, current.getErrorMessage(), current.getStacktrace()));
+            }
+            final List<? extends AbstractTestProxy> children = current.getChildren();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.push(children.get(i));
             }
-            for (AbstractTestProxy child : current.getChildren()) {
-                stack.push(child);
+        }
+        return results;
+    }
+
+    /**
+     * Records the duration and outcome of every finished test, so later runs can be planned from them.
+     *
+     * @param project        the project owning the run
+     * @param finishedMillis the time the run finished
+     * @param results        the results of the tests
+     */
+    private void recordResults(Project project, long finishedMillis, List<TestReportWriter.TestCaseResult> results) {
+        final TestResultHistory history = project.getService(TestResultHistory.class);
+        final String commit = history.currentCommit();
+        final List<TestResultStore.TestResult> testResults = new ArrayList<>();
+        for (TestReportWriter.TestCaseResult result : results) {
+            if (result.pattern() != null) {
+                testResults.add(new TestResultStore.TestResult(result.pattern(), finishedMillis,
+                        (int) Math.min(result.durationMillis(), Integer.MAX_VALUE), result.outcome(), commit));
             }
         }
+        history.recordAll(testResults);
+        project.getService(TestResultCache.class).recordOutcomes(testResults);
     }
 
     /**
-     * Gets the current project.
+     * Generates the test reports under the IDE system directory, keeping the reports of the latest runs.
      *
-     * @return the first open project, or null if no projects are open
+     * @param project        the project owning the run
+     * @param suiteName      the name of the run
+     * @param finishedMillis the time the run finished
+     * @param results        the results of the tests
      */
-    private Project getCurrentProject() {
-        Project[] projects = ProjectManager.getInstance().getOpenProjects();
-        return projects.length > 0 ? projects[0] : null;
+    private void generateTestReport(Project project, String suiteName, long finishedMillis, List<TestReportWriter.TestCaseResult> results) {
+        final Path reportDirectory = Path.of(PathManager.getSystemPath(), "affected-tests", project.getLocationHash(), "reports");
+        try {
+            final Path report = new TestReportWriter(reportDirectory, RETAINED_REPORTS).write(suiteName, finishedMillis, results);
+            logger.info("Wrote the test report " + report);
+        } catch (IOException e) {
+            logger.warn("Exception encountered in report generation in " + reportDirectory, e);
+        }
     }
 }
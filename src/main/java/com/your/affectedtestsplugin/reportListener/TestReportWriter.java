@@ -0,0 +1,222 @@
+package com.your.affectedtestsplugin.reportListener;
+
+import com.your.affectedtestsplugin.history.TestResultStore;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Writes the results of a test run as a JUnit XML report and a JSON lines report.
+ * Both reports are streamed test by test through a buffered writer over a file channel, written to a temporary file
+ * and moved into place, so a reader never sees a partial report. Only the latest reports are kept in the directory.
+ */
+public final class TestReportWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS").withZone(ZoneOffset.UTC);
+
+    private final Path directory;
+    private final int retainedReports;
+
+    /**
+     * The result of a single test of a run.
+     *
+     * @param className      The name of the test class.
+     * @param name           The name of the test.
+     * @param pattern        The test pattern ("className,methodName"), or null if the test is not a Java test method.
+     * @param outcome        The outcome of the test.
+     * @param durationMillis The duration of the test in milliseconds.
+     * @param message        The failure message, or null.
+     * @param stacktrace     The failure stacktrace, or null.
+     */
+    public record TestCaseResult(String className, String name, String pattern, TestResultStore.Outcome outcome,
+                                 long durationMillis, String message, String stacktrace) {
+    }
+
+    /**
+     * Constructs a TestReportWriter.
+     *
+     * @param directory       The directory the reports are written to.
+     * @param retainedReports The number of latest runs whose reports are kept.
+     */
+    public TestReportWriter(Path directory, int retainedReports) {
+        this.directory = directory;
+        this.retainedReports = retainedReports;
+    }
+
+    /**
+     * Writes the reports of a test run and deletes the reports of the oldest runs.
+     *
+     * @param suiteName       The name of the run.
+     * @param timestampMillis The time the run finished, in epoch milliseconds.
+     * @param results         The results of the tests of the run.
+     * @return The path of the JUnit XML report; the JSON lines report has the same name with the .jsonl extension.
+     * @throws IOException If an I/O error occurs.
+     */
+    public Path write(String suiteName, long timestampMillis, List<TestCaseResult> results) throws IOException {
+        Files.createDirectories(directory);
+        String baseName = "TEST-" + FILE_TIMESTAMP.format(Instant.ofEpochMilli(timestampMillis));
+        for (int attempt = 1; Files.exists(directory.resolve(baseName + ".xml")); attempt++) {
+            baseName = "TEST-" + FILE_TIMESTAMP.format(Instant.ofEpochMilli(timestampMillis)) + "-" + attempt;
+        }
+        final Path xmlReport = directory.resolve(baseName + ".xml");
+        writeAtomically(xmlReport, writer -> writeJUnitXml(writer, suiteName, timestampMillis, results));
+        writeAtomically(directory.resolve(baseName + ".jsonl"), writer -> writeJsonLines(writer, suiteName, timestampMillis, results));
+        rotate();
+        return xmlReport;
+    }
+
+    /**
+     * Streams a JUnit XML report.
+     *
+     * @param writer          The writer of the report.
+     * @param suiteName       The name of the run.
+     * @param timestampMillis The time the run finished, in epoch milliseconds.
+     * @param results         The results of the tests of the run.
+     * @throws IOException If an I/O error occurs.
+     */
+    static void writeJUnitXml(Writer writer, String suiteName, long timestampMillis, List<TestCaseResult> results) throws IOException {
+        int failures = 0;
+        int skipped = 0;
+        long totalMillis = 0;
+        for (TestCaseResult result : results) {
+            failures += result.outcome() == TestResultStore.Outcome.FAILED ? 1 : 0;
+            skipped += result.outcome() == TestResultStore.Outcome.IGNORED ? 1 : 0;
+            totalMillis += result.durationMillis();
+        }
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<testsuite name=\"" + escapeXml(suiteName) + "\" tests=\"" + results.size() + "\" failures=\"" + failures
+                + "\" errors=\"0\" skipped=\"" + skipped + "\" time=\"" + seconds(totalMillis) + "\" timestamp=\""
+                + DateTimeFormatter.ISO_INSTANT.format(Instant.ofEpochMilli(timestampMillis)) + "\">\n");
+        for (TestCaseResult result : results) {
+            writer.write("  <testcase classname=\"" + escapeXml(result.className()) + "\" name=\"" + escapeXml(result.name())
+                    + "\" time=\"" + seconds(result.durationMillis()) + "\"");
+            if (result.outcome() == TestResultStore.Outcome.FAILED) {
+                writer.write(">\n    <failure message=\"" + escapeXml(result.message()) + "\">" + escapeXml(result.stacktrace())
+                        + "</failure>\n  </testcase>\n");
+            } else if (result.outcome() == TestResultStore.Outcome.IGNORED) {
+                writer.write(">\n    <skipped/>\n  </testcase>\n");
+            } else {
+                writer.write("/>\n");
+            }
+        }
+        writer.write("</testsuite>\n");
+    }
+
+    /**
+     * Streams a JSON lines report, one object per test.
+     *
+     * @param writer          The writer of the report.
+     * @param suiteName       The name of the run.
+     * @param timestampMillis The time the run finished, in epoch milliseconds.
+     * @param results         The results of the tests of the run.
+     * @throws IOException If an I/O error occurs.
+     */
+    static void writeJsonLines(Writer writer, String suiteName, long timestampMillis, List<TestCaseResult> results) throws IOException {
+        for (TestCaseResult result : results) {
+            writer.write("{\"suite\":" + jsonString(suiteName) + ",\"timestamp\":" + timestampMillis
+                    + ",\"class\":" + jsonString(result.className()) + ",\"name\":" + jsonString(result.name())
+                    + ",\"test\":" + jsonString(result.pattern()) + ",\"outcome\":\"" + result.outcome()
+                    + "\",\"durationMillis\":" + result.durationMillis() + ",\"message\":" + jsonString(result.message()) + "}\n");
+        }
+    }
+
+    /**
+     * Deletes the reports of the oldest runs, keeping the retained number of runs.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    private void rotate() throws IOException {
+        final List<Path> xmlReports;
+        try (Stream<Path> files = Files.list(directory)) {
+            xmlReports = files.filter(file -> file.getFileName().toString().startsWith("TEST-") && file.getFileName().toString().endsWith(".xml"))
+                    .sorted().toList();
+        }
+        for (int i = 0; i < xmlReports.size() - retainedReports; i++) {
+            final String xmlName = xmlReports.get(i).getFileName().toString();
+            Files.deleteIfExists(xmlReports.get(i));
+            Files.deleteIfExists(directory.resolve(xmlName.substring(0, xmlName.length() - ".xml".length()) + ".jsonl"));
+        }
+    }
+
+    private static void writeAtomically(Path file, ReportContent content) throws IOException {
+        final Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            content.writeTo(writer);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the content of a report.
+     */
+    @FunctionalInterface
+    private interface ReportContent {
+        void writeTo(Writer writer) throws IOException;
+    }
+
+    private static String seconds(long millis) {
+        return millis / 1000 + "." + String.format("%03d", millis % 1000);
+    }
+
+    private static String escapeXml(String text) {
+        if (text == null) {
+            return "";
+        }
+        final StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            final char ch = text.charAt(i);
+            switch (ch) {
+                case '<' -> escaped.append("&lt;");
+                case '>' -> escaped.append("&gt;");
+                case '&' -> escaped.append("&amp;");
+                case '"' -> escaped.append("&quot;");
+                case '\n', '\r', '\t' -> escaped.append(ch);
+                default -> {
+                    if (ch >= 0x20) {
+                        escaped.append(ch);
+                    }
+                }
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String jsonString(String text) {
+        if (text == null) {
+            return "null";
+        }
+        final StringBuilder escaped = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            final char ch = text.charAt(i);
+            switch (ch) {
+                case '"' -> escaped.append("\\\"");
+                case '\\' -> escaped.append("\\\\");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                case '\t' -> escaped.append("\\t");
+                default -> {
+                    if (ch < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        escaped.append(ch);
+                    }
+                }
+            }
+        }
+        return escaped.append('"').toString();
+    }
+}
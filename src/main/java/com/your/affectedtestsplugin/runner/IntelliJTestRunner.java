@@ -10,31 +10,31 @@ import com.intellij.execution.configurations.ConfigurationTypeUtil;
 import com.intellij.execution.executors.DefaultRunExecutor;
 import com.intellij.execution.junit.JUnitConfiguration;
 import com.intellij.execution.junit.JUnitConfigurationType;
-import com.intellij.execution.process.ProcessAdapter;
-import com.intellij.execution.process.ProcessEvent;
 import com.intellij.execution.runners.ExecutionEnvironment;
 import com.intellij.execution.runners.ExecutionEnvironmentBuilder;
 import com.intellij.execution.runners.ExecutionUtil;
 import com.intellij.execution.testframework.TestSearchScope;
 import com.intellij.execution.ui.RunContentDescriptor;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.roots.ModuleRootManager;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiMethod;
-import org.jetbrains.annotations.NotNull;
+import com.your.affectedtestsplugin.coverage.CoverageImpactIndex;
+import com.your.affectedtestsplugin.history.TestResultHistory;
+import com.your.affectedtestsplugin.settings.AffectedTestsSettings;
 
-import java.util.HashSet;
-import java.util.LinkedHashSet;
-import java.util.Objects;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -42,22 +42,31 @@ import java.util.stream.Collectors;
  */
 public class IntelliJTestRunner {
     private static final Logger logger = Logger.getInstance(IntelliJTestRunner.class);
-    public static final LinkedHashSet<String> TEST_PATTERNS = new LinkedHashSet<>();
 
     public static final String TEST_MODULE = "sprinklr.test.test";
+    private final Disposable parentDisposable;
+
+    /**
+     * Constructs an IntelliJTestRunner.
+     *
+     * @param parentDisposable The disposable the listeners of unfinished test runs are disposed with.
+     */
+    public IntelliJTestRunner(Disposable parentDisposable) {
+        this.parentDisposable = parentDisposable;
+    }
 
     /**
      * Runs the specified set of JUnit test methods within the given IntelliJ project.
      *
      * @param project     The IntelliJ project in which to run the tests.
      * @param testMethods The set of test methods to be run.
-     * @param latch       The CountDownLatch to synchronize the test run completion.
+     * @param distances   The call-graph distance from the changes to every test pattern, used to order the tests.
+     * @param latch       The CountDownLatch to synchronize the test run completion, released once every batch terminated.
      */
-    public void runTests(Project project, Set<PsiMethod> testMethods, CountDownLatch latch) {
-        RunnerAndConfigurationSettings settings = createTestConfiguration(project, testMethods, "AffectedTestConfigurationNoChange");
-        ExecutionEnvironment environment = buildExecutionEnvironment(settings, latch);
+    public void runTests(Project project, Set<PsiMethod> testMethods, Map<String, Integer> distances, CountDownLatch latch) {
         logger.info("Invoking Run Configuration");
-        ApplicationManager.getApplication().invokeLater(() -> startingRunProfile(project, environment, latch));
+        scheduleBatches(project, testMethods, distances, 0, "AffectedTestConfigurationNoChange",
+                settings -> startingRunProfile(project, buildExecutionEnvironment(settings)), latch::countDown);
     }
 
     /**
@@ -65,23 +74,104 @@ public class IntelliJTestRunner {
      *
      * @param project     The IntelliJ project in which to run the tests.
      * @param testMethods The set of test methods to be run.
+     * @param distances    The call-graph distance from the changes to every test pattern, used to order the tests.
+     * @param cachedPasses The number of affected tests skipped as cached passes, reported with the run.
      */
-    public void runTestsForPrevious(Project project, Set<PsiMethod> testMethods) {
-        RunnerAndConfigurationSettings settings = createTestConfiguration(project, testMethods, "AffectedTestConfigurationChanges");
-        ExecutionUtil.runConfiguration(settings, DefaultRunExecutor.getRunExecutorInstance());
+    public void runTestsForPrevious(Project project, Set<PsiMethod> testMethods, Map<String, Integer> distances, int cachedPasses) {
+        scheduleBatches(project, testMethods, distances, cachedPasses, "AffectedTestConfigurationChanges",
+                settings -> ExecutionUtil.runConfiguration(settings, DefaultRunExecutor.getRunExecutorInstance()), () -> {
+                });
     }
 
     /**
-     * Creates a JUnit test configuration for the specified test methods.
+     * Splits the specified test methods into batches and runs them back to back.
+     * Every affected test is run: the patterns are ordered, cut into batches bounded by the configured batch size so
+     * that no single configuration grows huge, and the configurations of a batch are created while the previous batch
+     * runs.
      *
      * @param project     The IntelliJ project.
-     * @param testMethods The set of test methods to be included in the configuration.
-     * @param configName  The name for the configuration.
-     * @return The created RunnerAndConfigurationSettings.
+     * @param testMethods The set of test methods to be run.
+     * @param distances    The call-graph distance from the changes to every test pattern.
+     * @param cachedPasses The number of affected tests skipped as cached passes, reported with the run.
+     * @param configName   The name for the configurations, suffixed with the batch and shard numbers.
+     * @param launcher     Launches a run configuration.
+     * @param onFinished   Called once every batch terminated.
      */
-    private RunnerAndConfigurationSettings createTestConfiguration(Project project, Set<PsiMethod> testMethods, String configName) {
-        final Set<PsiMethod> testMethodsSubSet = createSafeSubset(testMethods);
+    private void scheduleBatches(Project project, Set<PsiMethod> testMethods, Map<String, Integer> distances, int cachedPasses,
+                                 String configName, Consumer<RunnerAndConfigurationSettings> launcher, Runnable onFinished) {
+        final Set<String> testPatterns = ApplicationManager.getApplication().runReadAction(
+                (Computable<Set<String>>) () -> collectMethodPatterns(filterTestMethodsByModule(testMethods, TEST_MODULE)));
+
+        final AffectedTestsSettings.State state = AffectedTestsSettings.getInstance(project).getState();
+        List<String> patterns = new ArrayList<>(testPatterns);
+        if (state.prioritizeTests) {
+            patterns = TestPrioritizer.prioritize(patterns, distances, project.getService(TestResultHistory.class).statsOf(patterns));
+        }
+        final List<List<String>> batches = TestShardPlanner.batches(patterns, state.testBatchSize);
+        new TestBatchScheduler(project, batches, testMethods.size(), cachedPasses,
+                (batch, batchPatterns) -> createTestConfigurations(project, batchPatterns,
+                        batches.size() > 1 ? configName + " (batch " + (batch + 1) + "/" + batches.size() + ")" : configName),
+                settings -> {
+                    recordCoverage(project, settings);
+                    launcher.accept(settings);
+                }, onFinished, parentDisposable).start();
+    }
 
+    /**
+     * Attaches the coverage agent to a test configuration about to be launched and starts recording its run, when
+     * the coverage impact map is enabled. Configurations prepared ahead of their batch are only recorded once they
+     * are launched.
+     *
+     * @param project  The IntelliJ project.
+     * @param settings The test configuration about to be launched.
+     */
+    private void recordCoverage(Project project, RunnerAndConfigurationSettings settings) {
+        if (!AffectedTestsSettings.getInstance(project).getState().useCoverageImpactMap) {
+            return;
+        }
+        final String agentOption = project.getService(CoverageImpactIndex.class).startRecording(settings);
+        if (agentOption != null) {
+            final JUnitConfiguration configuration = (JUnitConfiguration) settings.getConfiguration();
+            configuration.setVMParameters(configuration.getVMParameters() + " " + agentOption);
+        }
+    }
+
+    /**
+     * Creates the JUnit test configurations for the specified test patterns.
+     * When sharding is configured, the test patterns are split into shards balanced by the recorded test durations
+     * and every shard gets its own configuration, so the shards run concurrently in separate JVMs. Every shard keeps
+     * the order of the patterns.
+     *
+     * @param project    The IntelliJ project.
+     * @param patterns   The test patterns to be included in the configurations, in run order.
+     * @param configName The name for the configuration, suffixed with the shard number when sharded.
+     * @return The created RunnerAndConfigurationSettings, one per shard.
+     */
+    private List<RunnerAndConfigurationSettings> createTestConfigurations(Project project, List<String> patterns, String configName) {
+        final int shardCount = AffectedTestsSettings.getInstance(project).getState().testShards;
+        final Map<String, Long> durations = project.getService(TestResultHistory.class).durationsOf(patterns);
+        final List<List<String>> shards = TestShardPlanner.plan(patterns, durations, shardCount);
+        if (shards.size() <= 1) {
+            return List.of(createTestConfiguration(project, configName, new LinkedHashSet<>(patterns)));
+        }
+        final List<RunnerAndConfigurationSettings> configurations = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            final String shardName = configName + " [" + (i + 1) + "/" + shards.size() + "]";
+            configurations.add(createTestConfiguration(project, shardName, new LinkedHashSet<>(shards.get(i))));
+        }
+        RunManager.getInstance(project).setSelectedConfiguration(configurations.get(0));
+        return configurations;
+    }
+
+    /**
+     * Creates a JUnit test configuration for the specified test patterns.
+     *
+     * @param project    The IntelliJ project.
+     * @param configName The name for the configuration.
+     * @param patterns   The test patterns to be included in the configuration.
+     * @return The created RunnerAndConfigurationSettings.
+     */
+    private RunnerAndConfigurationSettings createTestConfiguration(Project project, String configName, LinkedHashSet<String> patterns) {
         final RunManager runManager = RunManager.getInstance(project);
         final ConfigurationType junitConfigType = ConfigurationTypeUtil.findConfigurationType(JUnitConfigurationType.class);
         final ConfigurationFactory junitConfigFactory = junitConfigType.getConfigurationFactories()[0];
@@ -89,7 +179,7 @@ public class IntelliJTestRunner {
         final RunnerAndConfigurationSettings settings = runManager.createConfiguration(configName, Objects.requireNonNull(junitConfigFactory));
         final JUnitConfiguration configuration = (JUnitConfiguration) settings.getConfiguration();
 
-        ApplicationManager.getApplication().runReadAction(() -> setupTestConfigurationData(configuration, testMethodsSubSet));
+        ApplicationManager.getApplication().runReadAction(() -> setupTestConfigurationData(configuration, patterns));
 
         configuration.setWorkingDirectory(project.getBasePath());
 
@@ -100,17 +190,15 @@ public class IntelliJTestRunner {
     }
 
     /**
-     * Sets up the test configuration data with the given test methods.
+     * Sets up the test configuration data with the given test patterns.
      *
      * @param configuration The JUnit configuration to set up.
-     * @param testMethods   The set of test methods to be run.
+     * @param patterns      The test patterns to be run.
      */
-    private void setupTestConfigurationData(JUnitConfiguration configuration, Set<PsiMethod> testMethods) {
+    private void setupTestConfigurationData(JUnitConfiguration configuration, LinkedHashSet<String> patterns) {
         final JUnitConfiguration.Data data = configuration.getPersistentData();
         data.TEST_OBJECT = JUnitConfiguration.TEST_PATTERN;
-        final Set<PsiMethod> filteredMethods = filterTestMethodsByModule(testMethods, TEST_MODULE);
-        collectMethodPatterns(filteredMethods);
-        data.setPatterns(TEST_PATTERNS);
+        data.setPatterns(patterns);
         data.setScope(TestSearchScope.SINGLE_MODULE);
 
         final ModuleManager moduleManager = ModuleManager.getInstance(configuration.getProject());
@@ -202,12 +290,10 @@ public class IntelliJTestRunner {
      * Collects method patterns from the given set of test methods.
      *
      * @param testMethods The set of test methods to collect patterns from.
+     * @return The test patterns, in the order of the test methods.
      */
-    private void collectMethodPatterns(Set<PsiMethod> testMethods) {
-        if (!TEST_PATTERNS.isEmpty()) {
-            return;
-        }
-
+    private Set<String> collectMethodPatterns(Set<PsiMethod> testMethods) {
+        final Set<String> testPatterns = new LinkedHashSet<>();
         for (PsiMethod method : testMethods) {
             PsiClass psiClass = method.getContainingClass();
             if (psiClass == null || isExcludedClass(psiClass)) {
@@ -217,55 +303,75 @@ public class IntelliJTestRunner {
             final String className = psiClass.getQualifiedName();
             final String methodName = method.getName();
             if (className != null) {
-                TEST_PATTERNS.add(className + "," + methodName);
+                testPatterns.add(testPattern(className, methodName));
             }
         }
+        return testPatterns;
+    }
+
+    /**
+     * Builds the pattern selecting a test method in a JUnit configuration.
+     *
+     * @param className  The fully qualified name of the test class.
+     * @param methodName The name of the test method.
+     * @return The test pattern.
+     */
+    public static String testPattern(String className, String methodName) {
+        return className + "," + methodName;
+    }
+
+    /**
+     * Builds the pattern of a test from its location URL, such as {@code java:test://p.FooTest/testBar}.
+     *
+     * @param locationUrl The location URL of the test.
+     * @return The test pattern, or null if the location is not a Java test method.
+     */
+    public static String testPatternOfLocation(String locationUrl) {
+        final String prefix = "java:test://";
+        if (locationUrl == null || !locationUrl.startsWith(prefix)) {
+            return null;
+        }
+        final int separator = locationUrl.indexOf('/', prefix.length());
+        if (separator < 0 || separator == locationUrl.length() - 1) {
+            return null;
+        }
+        return testPattern(locationUrl.substring(prefix.length(), separator).replace('$', '.'), locationUrl.substring(separator + 1));
     }
 
     /**
      * Builds the execution environment for running the tests.
      *
      * @param settings The RunnerAndConfigurationSettings.
-     * @param latch    The CountDownLatch to synchronize the test run completion.
      * @return The built ExecutionEnvironment.
      */
-    private static ExecutionEnvironment buildExecutionEnvironment(RunnerAndConfigurationSettings settings, CountDownLatch latch) {
+    private static ExecutionEnvironment buildExecutionEnvironment(RunnerAndConfigurationSettings settings) {
         try {
             return ExecutionEnvironmentBuilder.create(DefaultRunExecutor.getRunExecutorInstance(), settings).build();
         } catch (ExecutionException e) {
-            latch.countDown();
             throw new RuntimeException(e);
         }
     }
 
     /**
      * Starts the run profile for the specified execution environment.
+     * Its termination is published on the execution topic, where the batch scheduler tracks it.
      *
      * @param project     The IntelliJ project.
      * @param environment The ExecutionEnvironment.
-     * @param latch       The CountDownLatch to synchronize the test run completion.
      */
-    private static void startingRunProfile(Project project, ExecutionEnvironment environment, CountDownLatch latch) {
+    private static void startingRunProfile(Project project, ExecutionEnvironment environment) {
         try {
             ExecutionManager.getInstance(project).startRunProfile(environment, state -> {
                 try {
                     var handler = state.execute(environment.getExecutor(), environment.getRunner());
                     if (handler != null) {
-                        handler.getProcessHandler().addProcessListener(new ProcessAdapter() {
-                            @Override
-                            public void processTerminated(@NotNull ProcessEvent event) {
-                                latch.countDown(); // Release the latch when the process terminates
-                            }
-                        });
                         return new RunContentDescriptor(handler.getExecutionConsole(), handler.getProcessHandler(),
                                 handler.getExecutionConsole().getComponent(), "Run Tests");
                     } else {
-                        latch.countDown(); // Release the latch if the process handler is null
                         throw new ExecutionException("Failed to start the run configuration.");
                     }
                 } catch (ExecutionException e) {
                     logger.error("Execution failed", e);
-                    latch.countDown(); // Ensure latch is released in case of exception
                     throw e;
                 }
             });
@@ -307,21 +413,4 @@ public class IntelliJTestRunner {
         }
         return false;
     }
-
-    /**
-     * Creates a safe subset of the given set of test methods.
-     *
-     * @param testMethods The original set of test methods.
-     * @return A subset containing up to 20 elements.
-     */
-    private static Set<PsiMethod> createSafeSubset(Set<PsiMethod> testMethods) {
-        if (testMethods == null || testMethods.isEmpty()) {
-            return new HashSet<>();  // Return an empty set if input is null or empty
-        }
-        //return testMethods;
-        // Return a subset with at most 100 elements
-        return testMethods.stream()
-                .limit(100)
-                .collect(Collectors.toCollection(HashSet::new));
-    }
 }
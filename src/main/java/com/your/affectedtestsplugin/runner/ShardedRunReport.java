@@ -0,0 +1,142 @@
+package com.your.affectedtestsplugin.runner;
+
+import com.intellij.execution.ExecutionListener;
+import com.intellij.execution.ExecutionManager;
+import com.intellij.execution.RunnerAndConfigurationSettings;
+import com.intellij.execution.configurations.RunConfiguration;
+import com.intellij.execution.runners.ExecutionEnvironment;
+import com.intellij.execution.testframework.AbstractTestProxy;
+import com.intellij.execution.testframework.TestConsoleProperties;
+import com.intellij.execution.testframework.sm.runner.SMTRunnerEventsAdapter;
+import com.intellij.execution.testframework.sm.runner.SMTRunnerEventsListener;
+import com.intellij.execution.testframework.sm.runner.SMTestProxy;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.messages.MessageBusConnection;
+import com.your.affectedtestsplugin.helperandutils.CustomUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Merges the results of the shards of a sharded test run into a single report.
+ * Every shard runs in its own run configuration and console; once all of them finished, the counts, the
+ * failed tests, named by the pattern of their class and method, and the duration of every shard are shown together
+ * with the wall-clock time of the whole run.
+ */
+final class ShardedRunReport {
+    private final Project project;
+    private final Map<RunConfiguration, Integer> shardIndexes = new HashMap<>();
+    private final String[] shardSummaries;
+    private final SortedSet<String> failedTests = new TreeSet<>();
+    private final long startMillis = System.currentTimeMillis();
+    private int passed;
+    private int failed;
+    private int ignored;
+    private int remainingShards;
+    private Disposable listeners;
+
+    /**
+     * Constructs a ShardedRunReport.
+     *
+     * @param project The IntelliJ project instance.
+     * @param shards  The run configurations of the shards.
+     */
+    ShardedRunReport(Project project, List<RunnerAndConfigurationSettings> shards) {
+        this.project = project;
+        for (int i = 0; i < shards.size(); i++) {
+            shardIndexes.put(shards.get(i).getConfiguration(), i);
+        }
+        this.shardSummaries = new String[shards.size()];
+        this.remainingShards = shards.size();
+    }
+
+    /**
+     * Starts listening to the results of the shards. Must be called before the shards are run.
+     *
+     * @param parent The disposable the listeners are disposed with if a shard never reports.
+     */
+    void start(Disposable parent) {
+        listeners = Disposer.newDisposable("Affected Tests Sharded Run");
+        Disposer.register(parent, listeners);
+        final MessageBusConnection connection = project.getMessageBus().connect(listeners);
+        connection.subscribe(SMTRunnerEventsListener.TEST_STATUS, new SMTRunnerEventsAdapter() {
+            @Override
+            public void onTestingFinished(@NotNull SMTestProxy.SMRootTestProxy testsRoot) {
+                final TestConsoleProperties properties = testsRoot.getTestConsoleProperties();
+                final Integer shard = properties != null ? shardIndexes.get(properties.getConfiguration()) : null;
+                if (shard != null) {
+                    shardFinished(shard, testsRoot);
+                }
+            }
+        });
+        connection.subscribe(ExecutionManager.EXECUTION_TOPIC, new ExecutionListener() {
+            @Override
+            public void processNotStarted(@NotNull String executorId, @NotNull ExecutionEnvironment env) {
+                final Integer shard = shardIndexes.get(env.getRunProfile());
+                if (shard != null) {
+                    shardFinished(shard, null);
+                }
+            }
+        });
+    }
+
+    private void shardFinished(int shard, AbstractTestProxy root) {
+        if (shardSummaries[shard] != null) {
+            return;
+        }
+        int shardPassed = 0;
+        int shardFailed = 0;
+        int shardIgnored = 0;
+        final Deque<AbstractTestProxy> stack = new ArrayDeque<>();
+        if (root != null) {
+            stack.push(root);
+        }
+        while (!stack.isEmpty()) {
+            final AbstractTestProxy current = stack.pop();
+            if (current.isLeaf()) {
+                if (current.isIgnored()) {
+                    shardIgnored++;
+                } else if (current.isPassed()) {
+                    shardPassed++;
+                } else {
+                    shardFailed++;
+                    failedTests.add(testName(current));
+                }
+            }
+            current.getChildren().forEach(stack::push);
+        }
+        passed += shardPassed;
+        failed += shardFailed;
+        ignored += shardIgnored;
+        final Long duration = root != null ? root.getDuration() : null;
+        shardSummaries[shard] = root == null ? "Shard " + (shard + 1) + ": not started"
+                : "Shard " + (shard + 1) + ": " + shardPassed + " passed, " + shardFailed + " failed, " + shardIgnored
+                + " ignored in " + (duration != null ? duration : 0) + " ms";
+        if (--remainingShards == 0) {
+            Disposer.dispose(listeners);
+            report();
+        }
+    }
+
+    /**
+     * Names a test by the pattern of its location, so tests of the same name in different classes are told apart.
+     *
+     * @param test The test.
+     * @return The test pattern, or the plain name of the test if it has no Java test location.
+     */
+    private static String testName(AbstractTestProxy test) {
+        final String pattern = IntelliJTestRunner.testPatternOfLocation(test.getLocationUrl());
+        return pattern != null ? pattern : test.getName();
+    }
+
+    private void report() {
+        final Set<String> lines = new LinkedHashSet<>();
+        lines.add(passed + " passed, " + failed + " failed, " + ignored + " ignored in "
+                + (System.currentTimeMillis() - startMillis) + " ms across " + shardSummaries.length + " shards");
+        lines.addAll(Arrays.asList(shardSummaries));
+        failedTests.forEach(test -> lines.add("FAILED " + test));
+        CustomUtil.displayFlow(project, "Sharded Test Run", lines, null);
+    }
+}
@@ -0,0 +1,192 @@
+package com.your.affectedtestsplugin.runner;
+
+import com.intellij.execution.ExecutionListener;
+import com.intellij.execution.ExecutionManager;
+import com.intellij.execution.RunManager;
+import com.intellij.execution.RunnerAndConfigurationSettings;
+import com.intellij.execution.configurations.RunProfile;
+import com.intellij.execution.process.ProcessHandler;
+import com.intellij.execution.runners.ExecutionEnvironment;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.messages.MessageBusConnection;
+import com.your.affectedtestsplugin.helperandutils.CustomUtil;
+import com.your.affectedtestsplugin.metrics.PerformanceMetrics;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Runs the batches of an affected test run back to back.
+ * Every batch is turned into its run configurations only when needed: the configurations of the next batch are
+ * prepared on the EDT right after the current batch is launched, while its tests run in their own JVMs, and the next
+ * batch is launched as soon as every configuration of the current one terminated. Stopping a batch cancels the
+ * remaining ones and removes the configurations prepared for the next one. How many of the affected tests ran is
+ * reported once the run ends, together with the number of tests skipped as cached passes, and the time spent
+ * launching and running the batches is added to the metrics of the analysis.
+ * All the state is confined to the EDT.
+ */
+final class TestBatchScheduler {
+    private static final Logger LOG = Logger.getInstance(TestBatchScheduler.class);
+    private final Project project;
+    private final List<List<String>> batches;
+    private final int affectedTests;
+    private final int cachedPasses;
+    private final BatchPreparer preparer;
+    private final Consumer<RunnerAndConfigurationSettings> launcher;
+    private final Runnable onFinished;
+    private final Disposable parent;
+    private final Set<RunProfile> running = new HashSet<>();
+    private List<RunnerAndConfigurationSettings> prepared;
+    private int nextBatch;
+    private int ranTests;
+    private boolean stopped;
+    private long startedNanos;
+    private long launchNanos;
+    private Disposable listeners;
+
+    /**
+     * Creates the run configurations of a batch.
+     */
+    @FunctionalInterface
+    interface BatchPreparer {
+        /**
+         * Creates the run configurations of a batch.
+         *
+         * @param batch    The index of the batch.
+         * @param patterns The test patterns of the batch.
+         * @return The run configurations of the batch, one per shard.
+         */
+        List<RunnerAndConfigurationSettings> prepare(int batch, List<String> patterns);
+    }
+
+    /**
+     * Constructs a TestBatchScheduler.
+     *
+     * @param project       The IntelliJ project instance.
+     * @param batches       The test patterns of every batch, in run order.
+     * @param affectedTests The number of affected test methods the batches were built from.
+     * @param cachedPasses  The number of affected tests skipped because they passed before with the same inputs.
+     * @param preparer      Creates the run configurations of a batch.
+     * @param launcher      Launches a run configuration.
+     * @param onFinished    Called once the last batch terminated or the run was stopped.
+     * @param parent        The disposable the listeners of the run are disposed with if the run never ends.
+     */
+    TestBatchScheduler(Project project, List<List<String>> batches, int affectedTests, int cachedPasses, BatchPreparer preparer,
+                       Consumer<RunnerAndConfigurationSettings> launcher, Runnable onFinished, Disposable parent) {
+        this.project = project;
+        this.batches = batches;
+        this.affectedTests = affectedTests;
+        this.cachedPasses = cachedPasses;
+        this.preparer = preparer;
+        this.launcher = launcher;
+        this.onFinished = onFinished;
+        this.parent = parent;
+    }
+
+    /**
+     * Starts running the batches.
+     */
+    void start() {
+        ApplicationManager.getApplication().invokeLater(() -> {
+            if (batches.isEmpty()) {
+                CustomUtil.displayNotification(project, "Affected Tests Plugin", "None of the " + affectedTests + " affected tests can be run");
+                onFinished.run();
+                return;
+            }
+            listeners = Disposer.newDisposable("Affected Tests Batches");
+            Disposer.register(parent, listeners);
+            final MessageBusConnection connection = project.getMessageBus().connect(listeners);
+            connection.subscribe(ExecutionManager.EXECUTION_TOPIC, new ExecutionListener() {
+                @Override
+                public void processTerminated(@NotNull String executorId, @NotNull ExecutionEnvironment env,
+                                              @NotNull ProcessHandler handler, int exitCode) {
+                    final boolean stopRequested = Boolean.TRUE.equals(handler.getUserData(ProcessHandler.TERMINATION_REQUESTED));
+                    ApplicationManager.getApplication().invokeLater(() -> configurationFinished(env.getRunProfile(), stopRequested));
+                }
+
+                @Override
+                public void processNotStarted(@NotNull String executorId, @NotNull ExecutionEnvironment env) {
+                    ApplicationManager.getApplication().invokeLater(() -> configurationFinished(env.getRunProfile(), false));
+                }
+            });
+            startedNanos = System.nanoTime();
+            launchNextBatch();
+        });
+    }
+
+    private void launchNextBatch() {
+        final long launchStart = System.nanoTime();
+        final int batch = nextBatch++;
+        final List<RunnerAndConfigurationSettings> configurations = prepared != null ? prepared : preparer.prepare(batch, batches.get(batch));
+        prepared = null;
+        configurations.forEach(settings -> running.add(settings.getConfiguration()));
+        ranTests += batches.get(batch).size();
+        if (batches.size() > 1) {
+            CustomUtil.displayNotification(project, "Affected Tests Plugin", "Batch " + (batch + 1) + "/" + batches.size()
+                    + ": running " + batches.get(batch).size() + " tests (" + ranTests + " of " + affectedTests + " affected tests)");
+        }
+        if (configurations.size() > 1) {
+            new ShardedRunReport(project, configurations).start(parent);
+        }
+        for (RunnerAndConfigurationSettings settings : configurations) {
+            try {
+                launcher.accept(settings);
+            } catch (RuntimeException e) {
+                LOG.warn("Cannot launch " + settings.getName(), e);
+                running.remove(settings.getConfiguration());
+            }
+        }
+        launchNanos += System.nanoTime() - launchStart;
+        if (nextBatch < batches.size()) {
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (!stopped && prepared == null && nextBatch < batches.size()) {
+                    final long prepareStart = System.nanoTime();
+                    prepared = preparer.prepare(nextBatch, batches.get(nextBatch));
+                    launchNanos += System.nanoTime() - prepareStart;
+                }
+            });
+        }
+        if (running.isEmpty()) {
+            batchFinished();
+        }
+    }
+
+    private void configurationFinished(RunProfile profile, boolean stopRequested) {
+        if (!running.remove(profile)) {
+            return;
+        }
+        stopped |= stopRequested;
+        if (running.isEmpty()) {
+            batchFinished();
+        }
+    }
+
+    private void batchFinished() {
+        if (!stopped && nextBatch < batches.size()) {
+            launchNextBatch();
+            return;
+        }
+        Disposer.dispose(listeners);
+        if (prepared != null) {
+            prepared.forEach(RunManager.getInstance(project)::removeConfiguration);
+            prepared = null;
+        }
+        project.getService(PerformanceMetrics.class).recordTestRun(launchNanos, System.nanoTime() - startedNanos, ranTests);
+        final String summary = (stopped
+                ? "Stopped after batch " + nextBatch + "/" + batches.size() + ": " + ranTests + " of " + affectedTests + " affected tests ran"
+                : "All " + ranTests + " runnable tests of " + affectedTests + " affected tests ran in " + batches.size() + " batches")
+                + (cachedPasses > 0 ? ", " + cachedPasses + " skipped as cached passes" : "");
+        LOG.info(summary);
+        if (batches.size() > 1 || stopped || cachedPasses > 0) {
+            CustomUtil.displayNotification(project, "Affected Tests Plugin", summary);
+        }
+        onFinished.run();
+    }
+}
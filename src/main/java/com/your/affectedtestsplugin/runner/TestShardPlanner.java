@@ -0,0 +1,89 @@
+package com.your.affectedtestsplugin.runner;
+
+import java.util.*;
+
+/**
+ * Splits test patterns into batches run one after the other, and batches into shards of balanced expected duration.
+ * Patterns are assigned longest first to the least loaded shard, which keeps the longest shard within 4/3 of the
+ * optimal makespan. Patterns without a recorded duration are assumed to take the median recorded duration.
+ */
+final class TestShardPlanner {
+
+    private TestShardPlanner() {
+    }
+
+    /**
+     * Cuts the test patterns of a run into the fewest batches within the maximum batch size, of even sizes.
+     * Batches are contiguous, so the run order of the patterns is kept across batches.
+     *
+     * @param patterns     The test patterns, in run order.
+     * @param maxBatchSize The maximum number of patterns in a batch.
+     * @return The non-empty batches, in run order.
+     */
+    static List<List<String>> batches(List<String> patterns, int maxBatchSize) {
+        final int batchCount = (patterns.size() + Math.max(maxBatchSize, 1) - 1) / Math.max(maxBatchSize, 1);
+        final List<List<String>> batches = new ArrayList<>(batchCount);
+        for (int batch = 0; batch < batchCount; batch++) {
+            final int from = (int) ((long) patterns.size() * batch / batchCount);
+            final int to = (int) ((long) patterns.size() * (batch + 1) / batchCount);
+            batches.add(new ArrayList<>(patterns.subList(from, to)));
+        }
+        return batches;
+    }
+
+    /**
+     * Plans the shards of a test run.
+     *
+     * @param patterns   The test patterns, in run order.
+     * @param durations  The recorded duration in milliseconds of the patterns that ran before.
+     * @param shardCount The maximum number of shards.
+     * @return The non-empty shards, each keeping the run order of its patterns.
+     */
+    static List<List<String>> plan(List<String> patterns, Map<String, Long> durations, int shardCount) {
+        final int shards = Math.min(Math.max(shardCount, 1), patterns.size());
+        if (shards == 0) {
+            return List.of();
+        }
+        final long[] expectedDurations = new long[patterns.size()];
+        final long defaultDuration = medianDuration(patterns, durations);
+        for (int i = 0; i < patterns.size(); i++) {
+            expectedDurations[i] = durations.getOrDefault(patterns.get(i), defaultDuration);
+        }
+
+        final Integer[] byDuration = new Integer[patterns.size()];
+        for (int i = 0; i < byDuration.length; i++) {
+            byDuration[i] = i;
+        }
+        Arrays.sort(byDuration, (a, b) -> Long.compare(expectedDurations[b], expectedDurations[a]));
+
+        final long[] loads = new long[shards];
+        final PriorityQueue<Integer> leastLoaded = new PriorityQueue<>(
+                Comparator.<Integer>comparingLong(shard -> loads[shard]).thenComparingInt(shard -> shard));
+        for (int shard = 0; shard < shards; shard++) {
+            leastLoaded.add(shard);
+        }
+        final List<SortedSet<Integer>> assigned = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            assigned.add(new TreeSet<>());
+        }
+        for (int pattern : byDuration) {
+            final int shard = leastLoaded.poll();
+            assigned.get(shard).add(pattern);
+            loads[shard] += expectedDurations[pattern];
+            leastLoaded.add(shard);
+        }
+
+        final List<List<String>> plan = new ArrayList<>(shards);
+        for (SortedSet<Integer> shardPatterns : assigned) {
+            final List<String> shard = new ArrayList<>(shardPatterns.size());
+            shardPatterns.forEach(pattern -> shard.add(patterns.get(pattern)));
+            plan.add(shard);
+        }
+        return plan;
+    }
+
+    private static long medianDuration(List<String> patterns, Map<String, Long> durations) {
+        final long[] known = patterns.stream().filter(durations::containsKey).mapToLong(durations::get).sorted().toArray();
+        return known.length == 0 ? 1 : Math.max(known[known.length / 2], 1);
+    }
+}
@@ -0,0 +1,75 @@
+package com.your.affectedtestsplugin.service;
+
+import com.intellij.psi.PsiMethod;
+import com.your.affectedtestsplugin.graph.MethodKey;
+import com.your.affectedtestsplugin.runner.IntelliJTestRunner;
+
+import java.util.*;
+
+/**
+ * Immutable result of a single analysis run: the changed methods, the methods affected by them with their depth,
+ * the edges walked to reach them and the affected tests.
+ * Every run builds its own session, so analyses of several projects, or a new analysis while the tests of the
+ * previous one are still running, never share state.
+ *
+ * @param kind             The kind of the run, such as "changes" or "range".
+ * @param baselineIdentity The identity of the baseline the changes were diffed against, or null if the results of
+ *                         the run cannot be cached.
+ * @param changes          The keys of the changed methods.
+ * @param affectedMethods  The keys of the affected methods mapped to their call-graph distance from the changes.
+ * @param affectedCallees  The walked callees of every affected caller.
+ * @param tests            The affected tests.
+ * @param complete         False if the usage walk was stopped by its time budget or test limit before its maximum
+ *                         depth, so tests further away from the changes may be missing.
+ */
+public record AnalysisSession(String kind, String baselineIdentity, SortedSet<MethodKey> changes, Map<MethodKey, Integer> affectedMethods,
+                              Map<MethodKey, Set<MethodKey>> affectedCallees, Set<PsiMethod> tests, boolean complete) {
+    /**
+     * Constructs an AnalysisSession holding unmodifiable copies of the given collections.
+     */
+    public AnalysisSession {
+        changes = Collections.unmodifiableSortedSet(new TreeSet<>(changes));
+        affectedMethods = Map.copyOf(affectedMethods);
+        final Map<MethodKey, Set<MethodKey>> callees = new HashMap<>();
+        affectedCallees.forEach((caller, callerCallees) -> callees.put(caller, Set.copyOf(callerCallees)));
+        affectedCallees = Collections.unmodifiableMap(callees);
+        tests = Set.copyOf(tests);
+    }
+
+    /**
+     * Checks whether the run found affected tests.
+     *
+     * @return True if affected tests were found
+     */
+    public boolean hasTests() {
+        return !tests.isEmpty();
+    }
+
+    /**
+     * Gets the deepest level of the usage walk that affected methods were reached at.
+     *
+     * @return The depth reached, 0 if no caller of the changes was reached.
+     */
+    public int depthReached() {
+        int depthReached = 0;
+        for (int depth : affectedMethods.values()) {
+            depthReached = Math.max(depthReached, depth);
+        }
+        return depthReached;
+    }
+
+    /**
+     * Gets the call-graph distance from the changes to every affected method, keyed by test pattern.
+     * Overloads share a pattern and keep the shortest distance.
+     *
+     * @return The distances keyed by test pattern.
+     */
+    public Map<String, Integer> testDistances() {
+        final Map<String, Integer> distances = new HashMap<>();
+        for (Map.Entry<MethodKey, Integer> entry : affectedMethods.entrySet()) {
+            distances.merge(IntelliJTestRunner.testPattern(entry.getKey().className(), entry.getKey().methodName()),
+                    entry.getValue(), Math::min);
+        }
+        return distances;
+    }
+}
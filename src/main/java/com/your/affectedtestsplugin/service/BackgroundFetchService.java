@@ -0,0 +1,69 @@
+package com.your.affectedtestsplugin.service;
+
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.your.affectedtestsplugin.settings.AffectedTestsSettings;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Refreshes the remote tracking refs of the project repository in the background.
+ * Fetches are optional, throttled to the configured interval and never awaited by the change analysis,
+ * which always reads its baseline from the local object database.
+ */
+@Service(Service.Level.PROJECT)
+public final class BackgroundFetchService {
+    private static final Logger LOG = Logger.getInstance(BackgroundFetchService.class);
+    private final Project project;
+    private final AtomicBoolean fetchInProgress = new AtomicBoolean();
+    private volatile long lastFetchMillis;
+
+    /**
+     * Constructs a BackgroundFetchService instance for the specified project.
+     *
+     * @param project The IntelliJ project instance.
+     */
+    public BackgroundFetchService(Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Schedules a fetch on a pooled thread if background fetching is enabled, the configured interval
+     * has passed since the last fetch and no other fetch is running. Returns immediately.
+     */
+    public void requestRefresh() {
+        final AffectedTestsSettings.State settings = AffectedTestsSettings.getInstance(project).getState();
+        final long intervalMillis = TimeUnit.MINUTES.toMillis(Math.max(1, settings.fetchIntervalMinutes));
+        if (!settings.backgroundFetch || System.currentTimeMillis() - lastFetchMillis < intervalMillis) {
+            return;
+        }
+        final String projectBasePath = project.getBasePath();
+        if (projectBasePath == null || !fetchInProgress.compareAndSet(false, true)) {
+            return;
+        }
+        AppExecutorUtil.getAppExecutorService().execute(() -> fetch(new File(projectBasePath)));
+    }
+
+    /**
+     * Fetches from the default remote of the repository.
+     *
+     * @param repoDir The working tree of the repository.
+     */
+    private void fetch(File repoDir) {
+        try (Git git = Git.open(repoDir)) {
+            git.fetch().call();
+        } catch (IOException | GitAPIException e) {
+            LOG.info("Background fetch failed", e);
+        } finally {
+            lastFetchMillis = System.currentTimeMillis();
+            fetchInProgress.set(false);
+        }
+    }
+}
@@ -1,42 +1,45 @@
 package com.your.affectedtestsplugin.service;
 
-import com.github.javaparser.JavaParser;
-import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
-import com.github.javaparser.ast.body.MethodDeclaration;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.vcs.changes.Change;
 import com.intellij.openapi.vcs.changes.ChangeListManager;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.PsiShortNamesCache;
-import com.intellij.psi.search.searches.ReferencesSearch;
-import com.intellij.psi.util.PsiTreeUtil;
+import com.your.affectedtestsplugin.coverage.CoverageImpactIndex;
+import com.your.affectedtestsplugin.coverage.CoverageImpactMap;
+import com.your.affectedtestsplugin.diff.MethodDiffPipeline;
+import com.your.affectedtestsplugin.graph.CallGraphIndex;
+import com.your.affectedtestsplugin.graph.IncrementalImpactSet;
+import com.your.affectedtestsplugin.graph.MethodKey;
+import com.your.affectedtestsplugin.graph.PsiUsageTraversal;
+import com.your.affectedtestsplugin.graph.ReferenceSearchExecutor;
+import com.your.affectedtestsplugin.graph.TraversalBudget;
 import com.your.affectedtestsplugin.helperandutils.CustomUtil;
 import com.your.affectedtestsplugin.helperandutils.PrivateMethodUsageFinder;
+import com.your.affectedtestsplugin.history.TestFingerprint;
+import com.your.affectedtestsplugin.history.TestResultCache;
+import com.your.affectedtestsplugin.metrics.AnalysisMetrics;
+import com.your.affectedtestsplugin.metrics.PerformanceMetrics;
 import com.your.affectedtestsplugin.runner.IntelliJTestRunner;
+import com.your.affectedtestsplugin.settings.AffectedTestsSettings;
+import com.your.affectedtestsplugin.vcs.GitRepositorySession;
 import kotlinx.coroutines.CoroutineScope;
-import org.apache.commons.lang3.StringUtils;
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.ObjectReader;
-import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.treewalk.TreeWalk;
-import org.eclipse.jgit.treewalk.filter.PathFilter;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.CountDownLatch;
 
@@ -44,16 +47,87 @@ import java.util.concurrent.CountDownLatch;
  * This class contains the main logic of the plugin for tracking code changes and running relevant tests.
  * It tracks changes in local files, compares old and new versions, identifies affected methods,
  * and runs corresponding tests.
+ * Every analysis collects its results in its own run and returns them as an immutable {@link AnalysisSession}, so
+ * analyses may run concurrently; only the affected set of watch mode is kept between analyses.
  */
 @Service(Service.Level.PROJECT)
-public final class ChangeTrackingService {
+public final class ChangeTrackingService implements Disposable {
     private final IntelliJTestRunner runner;
     private static final Logger LOG = Logger.getInstance(ChangeTrackingService.class);
     private final Project project;
-    private final Set<String> CHANGES = new HashSet<>();
-    private final Map<String, Integer> AFFECTED_METHODS = new HashMap<>();
-    private final Set<PsiMethod> PUBLIC_METHOD_TESTS = new HashSet<>();
-    private final Set<PsiMethod> ALL_AFFECTED_TESTS = new HashSet<>();
+    private final MethodDiffPipeline diffPipeline = new MethodDiffPipeline();
+    private final Object watchUpdateLock = new Object();
+    private final IncrementalImpactSet watchedImpact = new IncrementalImpactSet();
+    private String watchedIdentity;
+    private int watchedDepth = -1;
+    private volatile WatchedImpact watchedSnapshot;
+
+    /**
+     * An immutable copy of the watched affected set, published after every watch update.
+     *
+     * @param baselineIdentity The identity of the baseline the set was computed against.
+     * @param maxDepth         The depth the set was walked to.
+     * @param changes          The changed methods.
+     * @param affectedMethods  The affected methods mapped to their minimal depth.
+     * @param affectedCallees  The walked callees of every affected caller.
+     * @param tests            The affected tests.
+     */
+    private record WatchedImpact(String baselineIdentity, int maxDepth, Set<MethodKey> changes, Map<MethodKey, Integer> affectedMethods,
+                                 Map<MethodKey, Set<MethodKey>> affectedCallees, Set<MethodKey> tests) {
+    }
+
+    /**
+     * The affected tests selected to run after an analysis.
+     *
+     * @param tests        The tests to run.
+     * @param distances    The call-graph distance from the changes to every test pattern.
+     * @param cachedPasses The number of affected tests skipped because they passed before with the same inputs.
+     */
+    public record TestSelection(Set<PsiMethod> tests, Map<String, Integer> distances, int cachedPasses) {
+        /**
+         * Checks whether no test is selected.
+         *
+         * @return True if there is no test to run
+         */
+        public boolean isEmpty() {
+            return tests.isEmpty();
+        }
+    }
+
+    /**
+     * The results of a single analysis while it runs. Only the thread running the analysis touches them, until
+     * they are frozen into a session.
+     */
+    private static final class Run {
+        private final String kind;
+        private final AnalysisMetrics metrics;
+        private final SortedSet<MethodKey> changes = new TreeSet<>();
+        private final Map<MethodKey, Integer> affectedMethods = new HashMap<>();
+        private final Map<MethodKey, Set<MethodKey>> affectedCallees = new HashMap<>();
+        private final Set<PsiMethod> tests = new HashSet<>();
+        private String baselineIdentity;
+        private TraversalBudget budget = TraversalBudget.fixed(0);
+
+        /**
+         * Constructs a Run.
+         *
+         * @param kind    The kind of the run.
+         * @param metrics The recorder of the run.
+         */
+        private Run(String kind, AnalysisMetrics metrics) {
+            this.kind = kind;
+            this.metrics = metrics;
+        }
+
+        /**
+         * Freezes the results of the run.
+         *
+         * @return The session holding the results.
+         */
+        private AnalysisSession toSession() {
+            return new AnalysisSession(kind, baselineIdentity, changes, affectedMethods, affectedCallees, tests, budget.isComplete());
+        }
+    }
 
     /**
      * Constructs a ChangeTrackingService instance for the specified project.
@@ -62,130 +136,427 @@ public final class ChangeTrackingService {
      */
     public ChangeTrackingService(Project project) {
         this.project = project;
-        this.runner = new IntelliJTestRunner();
+        this.runner = new IntelliJTestRunner(this);
     }
 
     public ChangeTrackingService(Project project, CoroutineScope scope) {
         this.project = project;
-        this.runner = new IntelliJTestRunner();
+        this.runner = new IntelliJTestRunner(this);
     }
 
     /**
      * Tracks changes in the project files and identifies affected methods.
      *
-     * @param maxDepth The maximum depth for method usage search.
-     * @return True if no error is detected
+     * @param maxDepth      The maximum depth for method usage search.
+     * @param adaptiveDepth True to stop deepening the search once the configured budget is spent.
+     * @return The results of the analysis, without tests if an error is detected
+     */
+    public AnalysisSession trackChangesAndTests(int maxDepth, boolean adaptiveDepth) {
+        final Run run = startRun("changes");
+        try {
+            trackChanges(run, maxDepth, adaptiveDepth);
+        } finally {
+            finishRun(run);
+        }
+        return run.toSession();
+    }
+
+    /**
+     * Tracks changes in the project files and identifies affected methods, reusing the watched affected set when it
+     * includes every edit and was walked to the same fixed depth.
+     *
+     * @param run           The run collecting the results.
+     * @param maxDepth      The maximum depth for method usage search.
+     * @param adaptiveDepth True to stop deepening the search once the configured budget is spent.
      */
-    public synchronized boolean trackChangesAndTests(int maxDepth) {
+    private void trackChanges(Run run, int maxDepth, boolean adaptiveDepth) {
+        if (!adaptiveDepth && project.getService(ImpactWatchService.class).isUpToDate()
+                && copyWatchedImpact(run, maxDepth, run.metrics.time(AnalysisMetrics.GIT, this::currentBaselineIdentity))) {
+            // Watch mode already applied every edit to the affected set
+            showChangedMethods(run);
+            reportAffectedTests(run);
+            return;
+        }
         final ChangeListManager changeListManager = ChangeListManager.getInstance(project);
         // Get the list of local changes
         final @NotNull Collection<Change> changes = changeListManager.getAllChanges();
         if (changes.isEmpty()) {
             LOG.info("File is null");
             CustomUtil.showErrorDialog(project, "No file are changed", "NO CHANGES RECOGNIZED");
-            return false;
+            return;
         }
 
-        // Iterate over changes and process them
+        final List<VirtualFile> changedFiles = new ArrayList<>();
         for (Change change : changes) {
             VirtualFile file = change.getVirtualFile();
-            if (file != null) {
-                identifyChangedMethodsByComparing(file);
-            } else {
-                return false;
+            if (file == null) {
+                return;
             }
+            changedFiles.add(file);
         }
 
-        CustomUtil.displayFlow(project, "Changed Methods", CHANGES, null);
-        //DFS Traversal to get Usages
-        findMethodUsages(maxDepth);
+        phase("Reading the baseline of " + changedFiles.size() + " changed files", 0.05);
+        // Read every baseline from the local repository in one session, then parse and diff the changes in parallel
+        final Map<String, GitRepositorySession.FileVersion> baselineContents = run.metrics.time(AnalysisMetrics.GIT,
+                () -> loadBaselineContents(run, changedFiles));
+        identifyChangedMethodsByComparing(run, changedFiles, baselineContents);
+        findAffectedTests(run, maxDepth, adaptiveDepth);
+    }
 
-        //Getting the affected methods
-        gettingAffectedTests();
-        if (ALL_AFFECTED_TESTS.isEmpty()) {
-            LOG.info("No Tests Affected");
-            CustomUtil.showErrorDialog(project, "No Tests are affected", "NO TESTS RECOGNIZED");
-            return false;
+    /**
+     * Tracks the changes of the configured commit range, such as the commits of a branch since its merge base,
+     * and identifies affected methods.
+     *
+     * @param maxDepth      The maximum depth for method usage search.
+     * @param adaptiveDepth True to stop deepening the search once the configured budget is spent.
+     * @return The results of the analysis, without tests if an error is detected
+     */
+    public AnalysisSession trackRangeAndTests(int maxDepth, boolean adaptiveDepth) {
+        final Run run = startRun("range");
+        try {
+            trackRange(run, maxDepth, adaptiveDepth);
+        } finally {
+            finishRun(run);
         }
+        return run.toSession();
+    }
 
-        //clearing unwanted cache
-        clearCache();
-        return true;
+    /**
+     * Tracks the changes of the configured commit range and identifies affected methods.
+     *
+     * @param run           The run collecting the results.
+     * @param maxDepth      The maximum depth for method usage search.
+     * @param adaptiveDepth True to stop deepening the search once the configured budget is spent.
+     */
+    private void trackRange(Run run, int maxDepth, boolean adaptiveDepth) {
+        final AffectedTestsSettings.State settings = AffectedTestsSettings.getInstance(project).getState();
+        final String range = settings.rangeFrom + (settings.rangeFromMergeBase ? "..." : "..") + settings.rangeTo;
+        phase("Reading the commit range " + range, 0.05);
+        final List<MethodDiffPipeline.FileRevision> revisions = run.metrics.time(AnalysisMetrics.GIT, () -> loadRangeRevisions(settings));
+        if (revisions == null) {
+            CustomUtil.showErrorDialog(project, "Cannot read the commit range " + range, "INVALID COMMIT RANGE");
+            return;
+        }
+        if (revisions.isEmpty()) {
+            LOG.info("No Java file changed in " + range);
+            CustomUtil.showErrorDialog(project, "No file are changed in " + range, "NO CHANGES RECOGNIZED");
+            return;
+        }
+
+        phase("Diffing " + revisions.size() + " changed files", 0.2);
+        diffRevisions(run, revisions);
+        findAffectedTests(run, maxDepth, adaptiveDepth);
     }
 
     /**
-     * Clearing the unwanted cache so that plugin could rerun
+     * Identifies the tests affected by the given changed methods, without reading the working copy or the repository.
+     * Used when the changes are known up front, such as by the benchmarks of the impact analysis.
+     *
+     * @param changedMethods The keys of the changed methods.
+     * @param maxDepth       The maximum depth for method usage search.
+     * @return The results of the analysis
      */
-    private void clearCache() {
-        CHANGES.clear();
-        AFFECTED_METHODS.clear();
-        PUBLIC_METHOD_TESTS.clear();
+    public AnalysisSession trackMethodsAndTests(Collection<MethodKey> changedMethods, int maxDepth) {
+        final Run run = startRun("methods");
+        try {
+            run.changes.addAll(changedMethods);
+            findAffectedTests(run, maxDepth, false);
+        } finally {
+            finishRun(run);
+        }
+        return run.toSession();
     }
 
     /**
-     * Updates the list of changed methods by comparing the old and new versions of a given file.
+     * Finds the tests affected by the changed methods. An adaptive search deepens level by level until the time
+     * budget or the test limit of the settings is reached, and reports the depth it stopped at.
      *
-     * @param file The virtual file to be compared.
+     * @param run           The run collecting the results.
+     * @param maxDepth      The maximum depth for method usage search.
+     * @param adaptiveDepth True to stop deepening the search once the configured budget is spent.
      */
-    private void identifyChangedMethodsByComparing(VirtualFile file) {
-        final String sourceFilePath = file.getPath();
+    private void findAffectedTests(Run run, int maxDepth, boolean adaptiveDepth) {
+        showChangedMethods(run);
+        //Traversal of the call graph index, or BFS over reference searches, to get Usages
+        phase("Searching the usages of " + run.changes.size() + " changed methods", 0.4);
+        final AffectedTestsSettings.State settings = AffectedTestsSettings.getInstance(project).getState();
+        run.budget = adaptiveDepth ? TraversalBudget.adaptive(maxDepth, settings.depthBudgetMillis, settings.depthTestLimit)
+                : TraversalBudget.fixed(maxDepth);
+        run.metrics.time(AnalysisMetrics.USAGES, () -> findMethodUsages(run, run.changes));
+        if (!run.budget.isComplete()) {
+            final int depthReached = run.affectedMethods.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+            LOG.info("Usage search stopped by its budget at depth " + depthReached + " of " + maxDepth);
+            CustomUtil.displayNotification(project, "Affected Tests Plugin", "Usage search stopped at depth " + depthReached
+                    + " of " + maxDepth + " by its budget, tests further from the changes are not selected");
+        }
 
-        String className = CustomUtil.getClassNameFromFilePath(sourceFilePath);
-        // Get old and new content of the file
-        final String newContent = getFileContent(file, this::getNewFileContent);
-        final String oldContent = getFileContent(file, this::getOldFileContent);
+        phase("Collecting the affected tests", 0.9);
+        reportAffectedTests(run);
+    }
 
-        if (oldContent != null) {
-            compareFileContents(oldContent, newContent, className);
-        } else {
-            LOG.info("Past Commit Content is null");
+    /**
+     * Reports the phase of the analysis to the progress indicator of the calling thread, if any, and stops the
+     * analysis there if it was cancelled.
+     *
+     * @param text     The description of the phase.
+     * @param fraction The share of the analysis done when the phase starts.
+     */
+    private static void phase(String text, double fraction) {
+        final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+        if (indicator != null) {
+            indicator.checkCanceled();
+            indicator.setText(text);
+            indicator.setText2("");
+            if (!indicator.isIndeterminate()) {
+                indicator.setFraction(fraction);
+            }
         }
     }
 
     /**
-     * Retrieves the content of the file using the provided content retriever.
+     * Starts a recorded analysis.
      *
-     * @param file             The virtual file whose content is to be retrieved.
-     * @param contentRetriever The content retriever function.
-     * @return The content of the file as a string.
+     * @param kind The kind of the analysis, such as "changes" or "range".
+     * @return The run collecting the results.
      */
-    private String getFileContent(VirtualFile file, ContentRetriever contentRetriever) {
-        try {
-            return contentRetriever.retrieve(file);
-        } catch (IOException | RuntimeException e) {
-            String message = e instanceof IOException ? "OLD" : "NEW";
-            LOG.info("Cannot get " + message + " file content");
-            return "";
-            //To handle if a completely new file is added Otherwise put null
+    private Run startRun(String kind) {
+        return new Run(kind, project.getService(PerformanceMetrics.class).startRun(kind));
+    }
+
+    /**
+     * Adds the counters of the analysis to its metrics and records the run.
+     *
+     * @param run The finished run.
+     */
+    private void finishRun(Run run) {
+        run.metrics.increment(AnalysisMetrics.CHANGED_METHODS, run.changes.size());
+        run.metrics.increment(AnalysisMetrics.AFFECTED_TESTS, run.tests.size());
+        run.affectedMethods.values().forEach(depth -> run.metrics.recordMax(AnalysisMetrics.DEPTH_REACHED, depth));
+        if (!run.budget.isComplete()) {
+            run.metrics.increment(AnalysisMetrics.BUDGET_STOPS, 1);
+        }
+        project.getService(PerformanceMetrics.class).finishRun(run.metrics);
+    }
+
+    /**
+     * Displays the changed methods.
+     *
+     * @param run The run holding the changed methods.
+     */
+    private void showChangedMethods(Run run) {
+        final Set<String> changedSignatures = new LinkedHashSet<>();
+        run.changes.forEach(change -> changedSignatures.add(change.toString()));
+        CustomUtil.displayFlow(project, "Changed Methods", changedSignatures, null);
+    }
+
+    /**
+     * Reports an error if no test is affected by the changes.
+     *
+     * @param run The run holding the affected tests.
+     */
+    private void reportAffectedTests(Run run) {
+        if (run.tests.isEmpty()) {
+            LOG.info("No Tests Affected");
+            CustomUtil.showErrorDialog(project, "No Tests are affected", "NO TESTS RECOGNIZED");
+        }
+    }
+
+    /**
+     * Diffs the given files against the baseline again and applies the difference to the watched affected set,
+     * walking only the usages of the methods that became changed. The whole working copy is diffed when nothing is
+     * watched yet, or when the baseline or the depth changed since the last update. Nothing is displayed, so the
+     * update can run in the background while files are edited. Updates run one at a time and publish the new set
+     * once done, so analyses reading the watched set never wait for the usage walk of an update.
+     *
+     * @param files    The files edited since the last update.
+     * @param maxDepth The maximum depth for method usage search.
+     * @return The methods that became changed and the methods that are no longer changed.
+     */
+    public IncrementalImpactSet.Delta updateWatchedFiles(Collection<VirtualFile> files, int maxDepth) {
+        synchronized (watchUpdateLock) {
+            final IncrementalImpactSet.Delta delta = applyWatchedFiles(files, maxDepth);
+            watchedSnapshot = new WatchedImpact(watchedIdentity, watchedDepth,
+                    Collections.unmodifiableSet(watchedImpact.changes()),
+                    Collections.unmodifiableMap(watchedImpact.affectedMethods()),
+                    Collections.unmodifiableMap(watchedImpact.affectedCallees()),
+                    Collections.unmodifiableSet(watchedImpact.tests()));
+            return delta;
         }
     }
 
     /**
-     * Compares the contents of the old and new versions of a file.
+     * Applies the edited files to the watched affected set. Must be called while holding the watch update lock.
      *
-     * @param oldContent The content of the old version of the file.
-     * @param newContent The content of the new version of the file.
-     * @param className  The name of the class containing the methods.
+     * @param files    The files edited since the last update.
+     * @param maxDepth The maximum depth for method usage search.
+     * @return The methods that became changed and the methods that are no longer changed.
      */
-    private void compareFileContents(String oldContent, String newContent, String className) {
-        final JavaParser parser = new JavaParser();
+    private IncrementalImpactSet.Delta applyWatchedFiles(Collection<VirtualFile> files, int maxDepth) {
+        final Run run = new Run("watch", new AnalysisMetrics("watch"));
+        List<VirtualFile> javaFiles = new ArrayList<>();
+        for (VirtualFile file : files) {
+            if (file.getName().endsWith(".java")) {
+                javaFiles.add(file);
+            }
+        }
+        Map<String, GitRepositorySession.FileVersion> baselineContents = loadBaselineContents(run, javaFiles);
+        if (watchedDepth != maxDepth || !Objects.equals(run.baselineIdentity, watchedIdentity)) {
+            watchedImpact.clear();
+            final Set<VirtualFile> allFiles = new LinkedHashSet<>(javaFiles);
+            for (Change change : ChangeListManager.getInstance(project).getAllChanges()) {
+                final VirtualFile file = change.getVirtualFile();
+                if (file != null && file.getName().endsWith(".java")) {
+                    allFiles.add(file);
+                }
+            }
+            javaFiles = new ArrayList<>(allFiles);
+            baselineContents = loadBaselineContents(run, javaFiles);
+            watchedIdentity = run.baselineIdentity;
+            watchedDepth = maxDepth;
+        }
 
-        final CompilationUnit oldCompilationUnit = parseContent(parser, oldContent);
-        final CompilationUnit newCompilationUnit = parseContent(parser, newContent);
+        final boolean hunkScoped = AffectedTestsSettings.getInstance(project).getState().hunkScopedDiff;
+        final Map<String, Set<MethodKey>> changesByFile = new HashMap<>();
+        for (VirtualFile file : javaFiles) {
+            final String className = CustomUtil.getClassNameFromFilePath(file.getPath());
+            final String newContent = file.isValid() ? getFileContent(file, this::getNewFileContent) : "";
+            final GitRepositorySession.FileVersion baselineFile = baselineContents.get(getRelativePath(file));
+            final MethodDiffPipeline.FileRevision revision = baselineFile == null
+                    ? new MethodDiffPipeline.FileRevision(className, "", newContent)
+                    : new MethodDiffPipeline.FileRevision(className, baselineFile.blobId().name(), baselineFile.content(), newContent);
+            final MethodDiffPipeline.Result result = diffPipeline.diff(List.of(revision), hunkScoped);
+            run.metrics.addTime(AnalysisMetrics.PARSE, result.parseNanos());
+            run.metrics.addTime(AnalysisMetrics.DIFF, result.compareNanos());
+            changesByFile.put(getRelativePath(file), result.changedMethods());
+        }
 
-        // Compare methods
-        compareMethods(oldCompilationUnit, newCompilationUnit, className);
+        final IncrementalImpactSet.Delta delta = watchedImpact.updateFiles(changesByFile);
+        if (!delta.added().isEmpty()) {
+            run.budget = TraversalBudget.fixed(maxDepth);
+            findMethodUsages(run, delta.added());
+            final Set<MethodKey> tests = new HashSet<>();
+            ReadAction.run(() -> run.tests.forEach(test -> {
+                final MethodKey key = CustomUtil.getMethodKey(test);
+                if (key != null) {
+                    tests.add(key);
+                }
+            }));
+            watchedImpact.addImpact(delta.added(), maxDepth, run.affectedCallees, tests);
+        }
+        return delta;
+    }
+
+    /**
+     * Forgets the watched affected set, so the next update diffs the whole working copy.
+     */
+    public void resetWatchedChanges() {
+        synchronized (watchUpdateLock) {
+            watchedImpact.clear();
+            watchedIdentity = null;
+            watchedDepth = -1;
+            watchedSnapshot = null;
+        }
     }
 
     /**
-     * Parses the content of a file into a CompilationUnit.
+     * Gets the watched affected set as the results of an analysis, without displaying anything.
      *
-     * @param parser  The JavaParser instance.
-     * @param content The content to be parsed.
-     * @return The parsed CompilationUnit.
+     * @param maxDepth The maximum depth the watched set must have been walked to.
+     * @return The results of the watch, without tests if nothing is watched at that depth against the current baseline
      */
-    private CompilationUnit parseContent(JavaParser parser, String content) {
-        return parser.parse(new ByteArrayInputStream(content.getBytes())).getResult().orElse(null);
+    public AnalysisSession watchedSession(int maxDepth) {
+        final Run run = new Run("watch", new AnalysisMetrics("watch"));
+        copyWatchedImpact(run, maxDepth, currentBaselineIdentity());
+        return run.toSession();
+    }
+
+    /**
+     * Copies the watched affected set into a run if it was walked to the given depth against the given baseline.
+     * The set is read from the copy published by the last update, so an update in progress is not waited for.
+     *
+     * @param run              The run receiving the watched results.
+     * @param maxDepth         The maximum depth for method usage search.
+     * @param baselineIdentity The identity of the current baseline.
+     * @return True if the watched set was copied
+     */
+    private boolean copyWatchedImpact(Run run, int maxDepth, String baselineIdentity) {
+        final WatchedImpact watched = watchedSnapshot;
+        if (watched == null || watched.maxDepth() != maxDepth || !Objects.equals(baselineIdentity, watched.baselineIdentity())) {
+            return false;
+        }
+        run.baselineIdentity = watched.baselineIdentity();
+        run.changes.addAll(watched.changes());
+        run.affectedMethods.putAll(watched.affectedMethods());
+        run.affectedCallees.putAll(watched.affectedCallees());
+        for (MethodKey test : watched.tests()) {
+            run.tests.addAll(findPsiMethods(run, test, true));
+        }
+        return true;
+    }
+
+    /**
+     * Updates the list of changed methods by comparing the old and new versions of the given files.
+     *
+     * @param run              The run collecting the results.
+     * @param files            The virtual files to be compared.
+     * @param baselineContents The baseline versions of the changed files keyed by their relative path.
+     */
+    private void identifyChangedMethodsByComparing(Run run, List<VirtualFile> files, Map<String, GitRepositorySession.FileVersion> baselineContents) {
+        phase("Diffing " + files.size() + " changed files", 0.2);
+        final List<MethodDiffPipeline.FileRevision> revisions = new ArrayList<>(files.size());
+        for (VirtualFile file : files) {
+            String className = CustomUtil.getClassNameFromFilePath(file.getPath());
+            // Get old and new content of the file
+            final String newContent = getFileContent(file, this::getNewFileContent);
+            //To handle if a completely new file is added the old content is empty
+            final GitRepositorySession.FileVersion baselineFile = baselineContents.get(getRelativePath(file));
+            if (baselineFile == null) {
+                revisions.add(new MethodDiffPipeline.FileRevision(className, "", newContent));
+            } else {
+                revisions.add(new MethodDiffPipeline.FileRevision(className, baselineFile.blobId().name(), baselineFile.content(), newContent));
+            }
+        }
+        diffRevisions(run, revisions);
+    }
+
+    /**
+     * Diffs the old and new versions of the changed files and updates the list of changed methods.
+     *
+     * @param run       The run collecting the results.
+     * @param revisions The old and new contents of the changed files.
+     */
+    private void diffRevisions(Run run, List<MethodDiffPipeline.FileRevision> revisions) {
+        final boolean hunkScoped = AffectedTestsSettings.getInstance(project).getState().hunkScopedDiff;
+        final MethodDiffPipeline.Result result = diffPipeline.diff(revisions, hunkScoped);
+        run.metrics.increment(AnalysisMetrics.FILES, revisions.size());
+        run.metrics.addTime(AnalysisMetrics.PARSE, result.parseNanos());
+        run.metrics.addTime(AnalysisMetrics.DIFF, result.compareNanos());
+        for (String unparsedFile : result.unparsedFiles()) {
+            LOG.info("Getting Compilation as null for " + unparsedFile);
+        }
+        run.changes.addAll(result.changedMethods());
+        if (!result.unscopedHunks().isEmpty()) {
+            final Set<String> unscopedChanges = new LinkedHashSet<>();
+            result.unscopedHunks().forEach(hunk -> unscopedChanges.add(hunk.toString()));
+            LOG.info("Changes outside of methods: " + unscopedChanges);
+            CustomUtil.displayFlow(project, "Changes Outside Methods", unscopedChanges, null);
+        }
+    }
+
+    /**
+     * Retrieves the content of the file using the provided content retriever.
+     *
+     * @param file             The virtual file whose content is to be retrieved.
+     * @param contentRetriever The content retriever function.
+     * @return The content of the file as a string.
+     */
+    private String getFileContent(VirtualFile file, ContentRetriever contentRetriever) {
+        try {
+            return contentRetriever.retrieve(file);
+        } catch (IOException | RuntimeException e) {
+            LOG.info("Cannot get NEW file content");
+            return "";
+        }
     }
 
     /**
@@ -197,112 +568,115 @@ public final class ChangeTrackingService {
     }
 
     /**
-     * Retrieves the content of the file from the last commit.
+     * Retrieves the baseline contents of the given files using a single repository session.
+     * The baseline is read from the local object database only; the remote is at most refreshed
+     * in the background and never awaited. Files which do not exist in the baseline are absent from the returned map.
      *
-     * @param file The virtual file whose content is to be retrieved.
-     * @return The content of the file as a string.
-     * @throws IOException If an I/O error occurs.
+     * @param run   The run receiving the identity of the baseline.
+     * @param files The virtual files whose baseline contents are to be retrieved.
+     * @return A map from relative file path to the baseline version of the file.
      */
-    private String getOldFileContent(VirtualFile file) throws IOException {
+    private Map<String, GitRepositorySession.FileVersion> loadBaselineContents(Run run, List<VirtualFile> files) {
         final String projectBasePath = project.getBasePath();
         if (projectBasePath == null) {
             LOG.info("Project's base path is null");
-            throw new IOException("Project's base path is null");
+            return Collections.emptyMap();
+        }
+        final List<String> relativePaths = new ArrayList<>();
+        for (VirtualFile file : files) {
+            relativePaths.add(getRelativePath(file));
         }
-        final String relativeFilePath = CustomUtil.getRelativeFilePath(file, projectBasePath);
-        final File repoDir = new File(projectBasePath);
 
-        try (Git git = Git.open(repoDir)) {
-            git.fetch().call();
-            Repository repository = git.getRepository();
-            ObjectId headId = resolveHead(repository);
-            return getFileContentFromHeadCommit(repository, headId, relativeFilePath);
-        } catch (GitAPIException e) {
-            throw new RuntimeException(e);
+        final AffectedTestsSettings.State settings = AffectedTestsSettings.getInstance(project).getState();
+        project.getService(BackgroundFetchService.class).requestRefresh();
+        try (GitRepositorySession session = GitRepositorySession.open(new File(projectBasePath), settings.baselineSource, settings.baselineRef)) {
+            try {
+                run.baselineIdentity = session.baselineIdentity();
+            } catch (IOException e) {
+                LOG.info("Cannot identify the baseline, test results are not cached", e);
+            }
+            return session.readBaselineContents(relativePaths);
+        } catch (IOException e) {
+            LOG.info("Cannot get OLD file content", e);
+            return Collections.emptyMap();
         }
     }
 
     /**
-     * Resolves the HEAD commit object ID.
+     * Identifies the current baseline without reading any file.
      *
-     * @param repository The repository to resolve the HEAD commit from.
-     * @return The ObjectId of the HEAD commit.
-     * @throws IOException If the HEAD commit cannot be resolved.
+     * @return The identity of the baseline, or null if it cannot be identified.
      */
-    private ObjectId resolveHead(Repository repository) throws IOException {
-        final ObjectId headId = repository.resolve("HEAD");
-        if (headId == null) {
-            throw new IOException("Couldn't resolve HEAD");
+    private String currentBaselineIdentity() {
+        final String projectBasePath = project.getBasePath();
+        if (projectBasePath == null) {
+            return null;
+        }
+        final AffectedTestsSettings.State settings = AffectedTestsSettings.getInstance(project).getState();
+        try (GitRepositorySession session = GitRepositorySession.open(new File(projectBasePath), settings.baselineSource, settings.baselineRef)) {
+            return session.baselineIdentity();
+        } catch (IOException e) {
+            LOG.info("Cannot identify the baseline", e);
+            return null;
         }
-        return headId;
     }
 
     /**
-     * Retrieves the content of the specified file from the HEAD commit.
+     * Reads both versions of every Java file changed in the configured commit range, diffing the two trees
+     * in a single repository pass with rename detection.
      *
-     * @param repository       The repository to retrieve the file content from.
-     * @param headId           The ObjectId of the HEAD commit.
-     * @param relativeFilePath The relative path of the file to retrieve.
-     * @return The content of the file as a string.
-     * @throws IOException If an I/O error occurs or the file is not found.
+     * @param settings The settings holding the commit range.
+     * @return The revisions of the changed files, or null if the range cannot be read.
      */
-    private String getFileContentFromHeadCommit(Repository repository, ObjectId headId, String relativeFilePath) throws IOException {
-        try (RevWalk revWalk = new RevWalk(repository)) {
-            final RevCommit headCommit = revWalk.parseCommit(headId);
-            final ObjectId treeId = headCommit.getTree().getId();
-            return findFileContentInTree(repository, treeId, relativeFilePath);
+    private List<MethodDiffPipeline.FileRevision> loadRangeRevisions(AffectedTestsSettings.State settings) {
+        final String projectBasePath = project.getBasePath();
+        if (projectBasePath == null) {
+            LOG.info("Project's base path is null");
+            return null;
         }
-    }
 
-    /**
-     * Finds the content of the specified file in the given tree.
-     *
-     * @param repository       The repository to search.
-     * @param treeId           The ObjectId of the tree to search in.
-     * @param relativeFilePath The relative path of the file to find.
-     * @return The content of the file as a string.
-     * @throws IOException If an I/O error occurs or the file is not found.
-     */
-    private String findFileContentInTree(Repository repository, ObjectId treeId, String relativeFilePath) throws IOException {
-        try (TreeWalk treeWalk = new TreeWalk(repository)) {
-            treeWalk.addTree(treeId);
-            treeWalk.setRecursive(true);
-            treeWalk.setFilter(PathFilter.create(relativeFilePath));
-
-            while (treeWalk.next()) {
-                final String path = treeWalk.getPathString();
-                if (path.equals(relativeFilePath)) {
-                    return getFileContentFromObjectId(repository, treeWalk.getObjectId(0));
+        project.getService(BackgroundFetchService.class).requestRefresh();
+        try (GitRepositorySession session = GitRepositorySession.open(new File(projectBasePath))) {
+            final List<MethodDiffPipeline.FileRevision> revisions = new ArrayList<>();
+            for (GitRepositorySession.RangeChange change : session.readRangeChanges(settings.rangeFrom, settings.rangeTo, settings.rangeFromMergeBase)) {
+                final String path = change.newPath() != null ? change.newPath() : change.oldPath();
+                final GitRepositorySession.FileVersion oldFile = change.oldFile();
+                final String newContent = change.newFile() != null ? change.newFile().content() : "";
+                if (oldFile == null) {
+                    revisions.add(new MethodDiffPipeline.FileRevision(CustomUtil.getClassNameFromFilePath(path), "", newContent));
+                } else {
+                    revisions.add(new MethodDiffPipeline.FileRevision(CustomUtil.getClassNameFromFilePath(path), oldFile.blobId().name(),
+                            oldFile.content(), newContent));
                 }
             }
-
-            throw new IOException("File not found in the HEAD commit: " + relativeFilePath);
+            return revisions;
+        } catch (IOException e) {
+            LOG.info("Cannot read the commit range", e);
+            return null;
         }
     }
 
     /**
-     * Retrieves the content of the file represented by the given ObjectId.
+     * Converts the path of a file to a path relative to the project base path.
      *
-     * @param repository The repository to read the file from.
-     * @param objectId   The ObjectId of the file.
-     * @return The content of the file as a string.
-     * @throws IOException If an I/O error occurs.
+     * @param file The virtual file.
+     * @return The relative file path.
      */
-    private String getFileContentFromObjectId(Repository repository, ObjectId objectId) throws IOException {
-        try (ObjectReader objectReader = repository.newObjectReader();
-             ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-            objectReader.open(objectId).copyTo(outputStream);
-            return outputStream.toString(StandardCharsets.UTF_8);
-        }
+    private String getRelativePath(VirtualFile file) {
+        return CustomUtil.getRelativeFilePath(file, Objects.requireNonNull(project.getBasePath()));
     }
 
     /**
-     * Retrieves the current content of the file.
+     * Retrieves the current content of the file, as shown by its editor when it has unsaved changes.
      *
      * @param file The virtual file whose content is to be retrieved.
      * @return The content of the file as a string.
      */
     private String getNewFileContent(VirtualFile file) {
+        final Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+        if (document != null) {
+            return document.getImmutableCharSequence().toString();
+        }
         try {
             byte[] content = file.contentsToByteArray();
             return new String(content);
@@ -313,227 +687,299 @@ public final class ChangeTrackingService {
     }
 
     /**
-     * Compares the methods in the old and new versions of a compilation unit.
+     * Finds the usages of changed methods and updates the affected methods map.
      *
-     * @param oldCompilationUnit The old compilation unit.
-     * @param newCompilationUnit The new compilation unit.
-     * @param className          The name of the class containing the methods.
+     * @param run            The run collecting the results, whose budget bounds the search.
+     * @param changedMethods The keys of the changed methods.
      */
-    private void compareMethods(CompilationUnit oldCompilationUnit, CompilationUnit newCompilationUnit, String className) {
-        if (oldCompilationUnit == null || newCompilationUnit == null) {
-            logCompilationUnitStatus(oldCompilationUnit, newCompilationUnit);
-            return;
-        }
-
-        final Map<String, MethodDeclaration> oldMethodsMap = extractMethodsToMap(oldCompilationUnit, className);
-        final List<MethodDeclaration> newMethods = extractMethods(newCompilationUnit);
-        for (MethodDeclaration newMethod : newMethods) {
-            String methodSignature = CustomUtil.getSignOfMethodDeclaration(newMethod, className);
-            if (!oldMethodsMap.containsKey(methodSignature)) {
-                CHANGES.add(methodSignature);
-            } else {
-                MethodDeclaration oldMethod = oldMethodsMap.get(methodSignature);
-                if (!oldMethod.getBody().equals(newMethod.getBody())) {
-                    CHANGES.add(methodSignature);
-                }
-                oldMethodsMap.remove(methodSignature);
+    private void findMethodUsages(Run run, Collection<MethodKey> changedMethods) {
+        Collection<MethodKey> changes = changedMethods;
+        if (AffectedTestsSettings.getInstance(project).getState().useCoverageImpactMap) {
+            changes = findAffectedTestsFromCoverage(run, changedMethods);
+            if (changes.isEmpty()) {
+                return;
             }
+            LOG.info(changes.size() + " changed methods were not executed by any recorded test, searching their usages");
+        }
+        if (AffectedTestsSettings.getInstance(project).getState().useCallGraphIndex && findMethodUsagesFromIndex(run, changes)) {
+            return;
         }
-        CHANGES.addAll(oldMethodsMap.keySet());
+        searchMethodUsages(run, changes);
     }
 
     /**
-     * Logs the status of the compilation units.
+     * Selects the tests executing the changed methods from the recorded per-test coverage.
      *
-     * @param oldCompilationUnit The old compilation unit.
-     * @param newCompilationUnit The new compilation unit.
+     * @param run     The run collecting the results.
+     * @param changes The keys of the changed methods.
+     * @return The changed methods no recorded test executed, whose usages still need to be searched.
      */
-    private void logCompilationUnitStatus(CompilationUnit oldCompilationUnit, CompilationUnit newCompilationUnit) {
-        if (oldCompilationUnit == null) {
-            LOG.info("Getting Old Compilation as null");
+    private Set<MethodKey> findAffectedTestsFromCoverage(Run run, Collection<MethodKey> changes) {
+        final CoverageImpactMap.Lookup lookup = project.getService(CoverageImpactIndex.class).lookup(changes);
+        for (MethodKey change : changes) {
+            if (!lookup.unmappedMethods().contains(change)) {
+                run.affectedMethods.putIfAbsent(change, 0);
+            }
         }
-        if (newCompilationUnit == null) {
-            LOG.info("Getting New Compilation as null");
+        final Set<MethodKey> mappedChanges = new HashSet<>(changes);
+        mappedChanges.removeAll(lookup.unmappedMethods());
+        for (MethodKey test : lookup.tests()) {
+            run.affectedMethods.putIfAbsent(test, 1);
+            run.affectedCallees.computeIfAbsent(test, key -> new HashSet<>()).addAll(mappedChanges);
+            findPsiMethods(run, test, false).forEach(method -> addMethodToRelevantSets(run, method));
         }
+        return lookup.unmappedMethods();
     }
 
     /**
-     * Extracts methods from the compilation unit and maps them by their signature.
+     * Finds the usages of changed methods by walking the persistent reverse call graph in memory.
      *
-     * @param compilationUnit The compilation unit to extract methods from.
-     * @param className       The name of the class containing the methods.
-     * @return A map of method signatures to method declarations.
+     * @param run     The run collecting the results.
+     * @param changes The keys of the changed methods.
+     * @return True if the call graph index was available, false if the usages still need to be searched.
      */
-    private Map<String, MethodDeclaration> extractMethodsToMap(CompilationUnit compilationUnit, String className) {
-        List<MethodDeclaration> methods = extractMethods(compilationUnit);
-        Map<String, MethodDeclaration> methodsMap = new HashMap<>();
-        for (MethodDeclaration method : methods) {
-            String methodSignature = CustomUtil.getSignOfMethodDeclaration(method, className);
-            methodsMap.put(methodSignature, method);
+    private boolean findMethodUsagesFromIndex(Run run, Collection<MethodKey> changes) {
+        final CallGraphIndex callGraphIndex = project.getService(CallGraphIndex.class);
+        if (!callGraphIndex.update()) {
+            LOG.info("Call graph index is not ready, searching references instead");
+            return false;
         }
-        return methodsMap;
+        run.affectedMethods.putAll(callGraphIndex.collectAffectedMethods(changes, run.budget, run.affectedCallees));
+        for (MethodKey affectedMethod : run.affectedMethods.keySet()) {
+            if (callGraphIndex.isTestMethod(affectedMethod)) {
+                findPsiMethods(run, affectedMethod, true).forEach(method -> addMethodToRelevantSets(run, method));
+            }
+        }
+        return true;
     }
 
     /**
-     * Extracts methods from the compilation unit.
+     * Finds the project methods matching a method key, counting the lookup in the metrics of a run.
      *
-     * @param compilationUnit The compilation unit to extract methods from.
-     * @return A list of method declarations.
+     * @param run             The run recording the lookup.
+     * @param key             The method key.
+     * @param matchParameters False to match every overload, for keys that do not carry parameter types.
+     * @return The matching methods.
      */
-    private List<MethodDeclaration> extractMethods(CompilationUnit compilationUnit) {
-        List<MethodDeclaration> methods = new ArrayList<>();
-        compilationUnit.accept(new MethodVisitor(), methods);
-        return methods;
+    private List<PsiMethod> findPsiMethods(Run run, MethodKey key, boolean matchParameters) {
+        run.metrics.increment(AnalysisMetrics.PSI_LOOKUPS, 1);
+        return run.metrics.time(AnalysisMetrics.PSI_LOOKUP, () -> findPsiMethods(key, matchParameters));
     }
 
-
     /**
-     * Visitor class for extracting method declarations from a compilation unit.
+     * Finds the project methods matching a method key, inside a read action so it also runs in the background.
+     * Classes are looked up by their fully qualified name, falling back to the simple name for keys of types
+     * without one.
+     *
+     * @param key             The method key.
+     * @param matchParameters False to match every overload, for keys that do not carry parameter types.
+     * @return The matching methods.
      */
-    private static class MethodVisitor extends VoidVisitorAdapter<List<MethodDeclaration>> {
-        @Override
-        public void visit(ClassOrInterfaceDeclaration classOrInterfaceDeclaration, List<MethodDeclaration> collector) {
-            super.visit(classOrInterfaceDeclaration, collector);
-            classOrInterfaceDeclaration.getMembers().forEach(member -> {
-                if (member instanceof MethodDeclaration method) {
-                    collector.add(method);
+    private List<PsiMethod> findPsiMethods(MethodKey key, boolean matchParameters) {
+        return ReadAction.compute(() -> {
+            final List<PsiMethod> matchingMethods = new ArrayList<>();
+            final GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+            PsiClass[] psiClasses = JavaPsiFacade.getInstance(project).findClasses(key.className(), scope);
+            if (psiClasses.length == 0) {
+                psiClasses = PsiShortNamesCache.getInstance(project).getClassesByName(key.simpleClassName(), scope);
+            }
+            for (PsiClass psiClass : psiClasses) {
+                for (PsiMethod method : psiClass.findMethodsByName(key.methodName(), false)) {
+                    if (!matchParameters || CustomUtil.isMatchingParameters(method, key)) {
+                        matchingMethods.add(method);
+                    }
                 }
-            });
-        }
+            }
+            return matchingMethods;
+        });
     }
 
     /**
-     * Finds the usages of changed methods and updates the affected methods map.
+     * Searches the usages of changed methods with a breadth first traversal over reference searches.
      *
-     * @param maxDepth The maximum depth for method usage search.
+     * @param run     The run collecting the results.
+     * @param changes The keys of the changed methods.
      */
-    public void findMethodUsages(int maxDepth) {
-        for (String change : CHANGES) {
-            findUsagesForMethod(change, maxDepth, 0, new HashSet<>());
+    private void searchMethodUsages(Run run, Collection<MethodKey> changes) {
+        final List<PsiMethod> seeds = new ArrayList<>();
+        for (MethodKey change : changes) {
+            seeds.addAll(findPsiMethods(run, change, true));
         }
-    }
 
-    private void findUsagesForMethod(String callingMethod, int maxDepth, int currentDepth, Set<String> currentPath) {
-        if (shouldStopSearch(callingMethod, maxDepth, currentDepth, currentPath)) {
-            return;
-        }
-        currentPath.add(callingMethod);
-        AFFECTED_METHODS.put(callingMethod, currentDepth);
-        String changeClass = CustomUtil.extractClassName(callingMethod);
-        String methodName = CustomUtil.extractMethodName(callingMethod);
-        String[] parameterTypes = CustomUtil.extractParameterTypes(callingMethod);
+        final int workers = AffectedTestsSettings.getInstance(project).getState().referenceSearchWorkers;
+        final ReferenceSearchExecutor searchExecutor = new ReferenceSearchExecutor(project, workers);
+        final PsiUsageTraversal traversal = new PsiUsageTraversal(GlobalSearchScope.projectScope(project), searchExecutor);
+        final Map<PsiMethod, Integer> depths = traversal.traverse(seeds, run.budget);
+        run.metrics.increment(AnalysisMetrics.REFERENCE_SEARCHES, searchExecutor.searchCount());
+        run.metrics.addTime(AnalysisMetrics.REFERENCE_SEARCH, searchExecutor.searchNanos());
+        ReadAction.run(() -> collectTraversal(run, depths, traversal.walkedCallees()));
+    }
 
-        if (StringUtils.isBlank(changeClass) || StringUtils.isBlank(methodName)) {
-            return;
+    /**
+     * Adds the methods and edges reached by a reference search traversal to the affected methods. Runs inside a
+     * read action.
+     *
+     * @param run           The run collecting the results.
+     * @param depths        The reached methods mapped to their depth.
+     * @param walkedCallees The walked callees of every reached caller.
+     */
+    private void collectTraversal(Run run, Map<PsiMethod, Integer> depths, Map<PsiMethod, Set<PsiMethod>> walkedCallees) {
+        for (Map.Entry<PsiMethod, Integer> entry : depths.entrySet()) {
+            final PsiMethod method = entry.getKey();
+            final MethodKey key = CustomUtil.getMethodKey(method);
+            if (key != null) {
+                run.affectedMethods.putIfAbsent(key, entry.getValue());
+            }
+            addMethodToRelevantSets(run, method);
         }
-
-        PsiClass[] psiClasses = PsiShortNamesCache.getInstance(project).getClassesByName(changeClass, GlobalSearchScope.projectScope(project));
-        for (PsiClass psiClass : psiClasses) {
-            PsiMethod[] methods = psiClass.getMethods();
-            for (PsiMethod method : methods) {
-                if (method.getName().equals(methodName) && CustomUtil.isMatchingParameters(method, parameterTypes)) {
-                    addMethodToRelevantSets(method);
-                    gettingReferences(method, GlobalSearchScope.projectScope(project), changeClass, maxDepth, currentDepth, currentPath);
+        for (Map.Entry<PsiMethod, Set<PsiMethod>> entry : walkedCallees.entrySet()) {
+            final MethodKey caller = CustomUtil.getMethodKey(entry.getKey());
+            if (caller == null) {
+                continue;
+            }
+            for (PsiMethod callee : entry.getValue()) {
+                final MethodKey calleeKey = CustomUtil.getMethodKey(callee);
+                if (calleeKey != null) {
+                    run.affectedCallees.computeIfAbsent(caller, key -> new HashSet<>()).add(calleeKey);
                 }
             }
         }
-
-        currentPath.remove(callingMethod);
     }
 
     /**
-     * Getting the Usages of the method in a collection and traversing it.
+     * Adds the given method to the affected tests of a run if it is a test.
      *
-     * @param method       The method whose references are checked
-     * @param scope        The scope of searching
-     * @param className    The name of the class containing the method.
-     * @param maxDepth     The maximum depth for the search.
-     * @param currentDepth The current depth of the search.
-     * @param currentPath  The current path of visited methods to detect cycles.
+     * @param run    The run collecting the results.
+     * @param method The method to be added.
      */
-    private void gettingReferences(PsiMethod method, GlobalSearchScope scope,
-                                   String className, int maxDepth, int currentDepth, Set<String> currentPath) {
-        Collection<PsiReference> references = ReferencesSearch.search(method, scope).findAll();
-        for (PsiReference reference : references) {
-            handleMethodReference(reference, className, maxDepth, currentDepth, currentPath);
+    private void addMethodToRelevantSets(Run run, PsiMethod method) {
+        if (ReadAction.compute(() -> CustomUtil.isTestMethod(method))) {
+            run.tests.add(method);
         }
     }
 
     /**
-     * Handles a method reference by finding the containing method and recursively finding its usages.
+     * Removes the tests that passed before with the same inputs, reporting them as cached passes.
+     * Tests are only cached when the changes are local changes against an identified baseline.
      *
-     * @param reference    The reference to the method.
-     * @param className    The name of the class containing the method.
-     * @param maxDepth     The maximum depth for the search.
-     * @param currentDepth The current depth of the search.
-     * @param currentPath  The current path of visited methods to detect cycles.
+     * @param session The results of the analysis.
+     * @return The tests that still need to run, with the number of skipped tests.
      */
-    private void handleMethodReference(PsiReference reference, String className, int maxDepth, int currentDepth, Set<String> currentPath) {
-        PsiElement element = reference.getElement();
-        String containingClass = CustomUtil.findDeclaringClassName(element);
-        if (containingClass != null && Objects.equals(containingClass, className)) {
-            PsiMethod containingMethod = PsiTreeUtil.getParentOfType(element, PsiMethod.class);
-            if (containingMethod != null) {
-                String methodClass = Objects.requireNonNull(containingMethod.getContainingClass()).getName();
-                String methodSignature = CustomUtil.getMethodSignatureForPsiElement(containingMethod, methodClass);
-                findUsagesForMethod(methodSignature, maxDepth, currentDepth + 1, currentPath);
-            }
+    private TestSelection skipCachedPasses(AnalysisSession session) {
+        if (!AffectedTestsSettings.getInstance(project).getState().useTestResultCache || session.baselineIdentity() == null) {
+            return new TestSelection(session.tests(), session.testDistances(), 0);
+        }
+        final TestResultCache cache = project.getService(TestResultCache.class);
+        final Map<String, String> fingerprints = ApplicationManager.getApplication().runReadAction(
+                (Computable<Map<String, String>>) () -> fingerprintTests(session));
+        final Set<String> cachedPasses = cache.cachedPasses(fingerprints);
+        if (!cachedPasses.isEmpty()) {
+            final Set<String> lines = new LinkedHashSet<>();
+            cachedPasses.forEach(pattern -> lines.add("CACHED PASS " + pattern));
+            CustomUtil.displayFlow(project, "Cached Passes", lines, null);
         }
+        fingerprints.keySet().removeAll(cachedPasses);
+        cache.schedule(fingerprints);
+
+        final Set<PsiMethod> testsToRun = ReadAction.compute(() -> {
+            final Set<PsiMethod> tests = new HashSet<>();
+            for (PsiMethod test : session.tests()) {
+                final PsiClass testClass = test.getContainingClass();
+                if (testClass == null || !cachedPasses.contains(IntelliJTestRunner.testPattern(testClass.getQualifiedName(), test.getName()))) {
+                    tests.add(test);
+                }
+            }
+            return tests;
+        });
+        return new TestSelection(testsToRun, session.testDistances(), session.tests().size() - testsToRun.size());
     }
+
     /**
-     * Determines if the search should stop based on the current depth, maximum depth, and presence of cycles.
+     * Computes the fingerprint of the inputs of every test, from the bodies of the methods the usage walk went
+     * through to reach it.
      *
-     * @param callingMethod The method whose usages are being searched.
-     * @param maxDepth      The maximum depth for the search.
-     * @param currentDepth  The current depth of the search.
-     * @param currentPath   The current path of visited methods to detect cycles.
-     * @return True if the search should stop, false otherwise.
+     * @param session The results of the analysis.
+     * @return The fingerprints keyed by test pattern.
      */
-    private boolean shouldStopSearch(String callingMethod, int maxDepth, int currentDepth, Set<String> currentPath) {
-        return currentDepth > maxDepth || currentPath.contains(callingMethod) || AFFECTED_METHODS.containsKey(callingMethod) && AFFECTED_METHODS.get(callingMethod) <= currentDepth;
+    private Map<String, String> fingerprintTests(AnalysisSession session) {
+        final Map<String, List<MethodKey>> testsByPattern = new HashMap<>();
+        for (PsiMethod test : session.tests()) {
+            final PsiClass testClass = test.getContainingClass();
+            final MethodKey key = CustomUtil.getMethodKey(test);
+            if (testClass != null && testClass.getQualifiedName() != null && key != null) {
+                testsByPattern.computeIfAbsent(IntelliJTestRunner.testPattern(testClass.getQualifiedName(), test.getName()),
+                        pattern -> new ArrayList<>()).add(key);
+            }
+        }
+        final Map<MethodKey, String> bodies = new HashMap<>();
+        final Map<String, String> fingerprints = new HashMap<>();
+        testsByPattern.forEach((pattern, keys) -> fingerprints.put(pattern, TestFingerprint.of(session.baselineIdentity(), pattern, keys,
+                session.affectedCallees(), method -> bodies.computeIfAbsent(method, this::methodBody))));
+        return fingerprints;
     }
 
     /**
-     * Adds the given method to the relevant sets of private methods and public method tests.
+     * Gets the current source of a method, joining the sources of every matching declaration.
      *
-     * @param method The method to be added.
+     * @param key The method key.
+     * @return The source, or null if no declaration matches the key.
      */
-    private void addMethodToRelevantSets(PsiMethod method) {
-        if (CustomUtil.isTestMethod(method)) {
-            PUBLIC_METHOD_TESTS.add(method);
+    private String methodBody(MethodKey key) {
+        final List<PsiMethod> methods = findPsiMethods(key, true);
+        if (methods.isEmpty()) {
+            return null;
         }
+        final StringBuilder body = new StringBuilder();
+        methods.forEach(method -> body.append(method.getText()).append('\n'));
+        return body.toString();
     }
 
     /**
-     * Makes up the set of all affected tests by the changes
+     * Calls for the running tests for the stashed changes file while checking the test availability
+     *
+     * @param session The results of the analysis.
+     * @param latch   For keeping track of lock
      */
-    public void gettingAffectedTests() {
-        ALL_AFFECTED_TESTS.clear();
-        ALL_AFFECTED_TESTS.addAll(PUBLIC_METHOD_TESTS);
+    public void runTestsOnHeadCommitFiles(AnalysisSession session, CountDownLatch latch) {
+        if (session.hasTests()) {
+            runner.runTests(project, session.tests(), session.testDistances(), latch);
+        } else {
+            CustomUtil.showErrorDialog(project, "No test are affected by the changes", "No Test affected");
+        }
     }
 
     /**
-     * Calls for the running tests for the stashed changes file while checking the test availability
+     * Selects the affected tests that still need to run, skipping the tests that passed before with the same inputs.
+     * Reads the PSI and the test result cache, so it runs in the background after the analysis.
      *
-     * @param latch For keeping track of lock
+     * @param session The results of the analysis.
+     * @return The tests to run, empty if no test is affected or every affected test passed before
      */
-    public void runTestsOnHeadCommitFiles(CountDownLatch latch) {
-        if (!ALL_AFFECTED_TESTS.isEmpty()) {
-            runner.runTests(project, ALL_AFFECTED_TESTS, latch);
-        } else {
-            CustomUtil.showErrorDialog(project, "No test are affected by the changes", "No Test affected");
+    public TestSelection selectTestsToRun(AnalysisSession session) {
+        if (!session.hasTests()) {
+            return new TestSelection(Collections.emptySet(), Collections.emptyMap(), 0);
         }
+        phase("Selecting the tests to run", 0.95);
+        return skipCachedPasses(session);
     }
 
     /**
-     * Calls for the running tests for the un-stashed files (with the changes)
+     * Runs the selected tests on the current state of the files (with the changes). Runs on the event dispatch thread.
+     * The number of tests skipped as cached passes is reported with the run, or on its own if no test is left.
+     *
+     * @param selection The tests selected after the analysis.
      */
-    public void runTestsOnCurrentState() {
-        if (!ALL_AFFECTED_TESTS.isEmpty()) {
-            runner.runTestsForPrevious(project, ALL_AFFECTED_TESTS);
-        } else {
-            CustomUtil.showErrorDialog(project, "No test are affected by the changes", "No Test affected");
+    public void runTests(TestSelection selection) {
+        if (!selection.isEmpty()) {
+            runner.runTestsForPrevious(project, selection.tests(), selection.distances(), selection.cachedPasses());
+        } else if (selection.cachedPasses() > 0) {
+            CustomUtil.displayNotification(project, "Affected Tests Plugin", "All " + selection.cachedPasses()
+                    + " affected tests passed before with the same inputs and were skipped");
         }
     }
-}
 
+    @Override
+    public void dispose() {
+        diffPipeline.close();
+    }
+}
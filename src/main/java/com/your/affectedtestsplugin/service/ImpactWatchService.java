@@ -0,0 +1,223 @@
+package com.your.affectedtestsplugin.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.FileDocumentManagerListener;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.util.Alarm;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.your.affectedtestsplugin.graph.IncrementalImpactSet;
+import com.your.affectedtestsplugin.settings.AffectedTestsSettings;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the affected tests of the working copy up to date while files are edited.
+ * Edits of Java documents and changes of Java files on disk mark the files dirty. Once no event arrived for the
+ * debounce delay and the documents are committed, only the dirty files are diffed again on a background thread and
+ * their delta is applied to the affected set, see {@link ChangeTrackingService#updateWatchedFiles}. The run action
+ * uses the affected set as it is while no edit is pending, and saving a file can optionally run the affected tests.
+ */
+@Service(Service.Level.PROJECT)
+public final class ImpactWatchService implements Disposable {
+    private static final Logger LOG = Logger.getInstance(ImpactWatchService.class);
+    private static final int DEBOUNCE_MILLIS = 500;
+    private final Project project;
+    private final ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Affected Tests Watch", 1);
+    private final Alarm alarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, this);
+    private final Set<VirtualFile> dirtyFiles = ConcurrentHashMap.newKeySet();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Disposable listeners;
+    private volatile boolean upToDate;
+    private volatile boolean runRequested;
+    private volatile boolean resetRequested;
+
+    /**
+     * Constructs an ImpactWatchService instance for the specified project.
+     *
+     * @param project The IntelliJ project instance.
+     */
+    public ImpactWatchService(Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Starts or stops watching the project.
+     *
+     * @param watching True to watch the project.
+     */
+    public synchronized void setWatching(boolean watching) {
+        if (watching == (listeners != null)) {
+            return;
+        }
+        if (!watching) {
+            Disposer.dispose(listeners);
+            listeners = null;
+            upToDate = false;
+            dirtyFiles.clear();
+            executor.execute(() -> project.getService(ChangeTrackingService.class).resetWatchedChanges());
+            LOG.info("Stopped watching the affected tests");
+            return;
+        }
+        listeners = Disposer.newDisposable("Affected Tests Watch");
+        Disposer.register(this, listeners);
+        EditorFactory.getInstance().getEventMulticaster().addDocumentListener(new DocumentListener() {
+            @Override
+            public void documentChanged(@NotNull DocumentEvent event) {
+                markDirty(FileDocumentManager.getInstance().getFile(event.getDocument()));
+            }
+        }, listeners);
+        project.getMessageBus().connect(listeners).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends @NotNull VFileEvent> events) {
+                for (VFileEvent event : events) {
+                    if (event instanceof VFileMoveEvent || event instanceof VFilePropertyChangeEvent propertyEvent && propertyEvent.isRename()) {
+                        // The changes are kept by path, so a moved file is diffed with the whole working copy
+                        resetRequested = true;
+                        scheduleUpdate();
+                    } else if (isBaselineFile(event.getPath())) {
+                        scheduleUpdate();
+                    } else {
+                        markDirty(event.getFile());
+                    }
+                }
+            }
+        });
+        ApplicationManager.getApplication().getMessageBus().connect(listeners).subscribe(FileDocumentManagerListener.TOPIC, new FileDocumentManagerListener() {
+            @Override
+            public void afterDocumentSaved(@NotNull Document document) {
+                final VirtualFile file = FileDocumentManager.getInstance().getFile(document);
+                if (isWatched(file) && AffectedTestsSettings.getInstance(project).getState().runTestsOnSave) {
+                    runRequested = true;
+                    markDirty(file);
+                }
+            }
+        });
+        LOG.info("Watching the affected tests");
+        scheduleUpdate();
+    }
+
+    /**
+     * Checks whether the watched affected set includes every edit.
+     *
+     * @return True if the project is watched and no edit is waiting to be applied.
+     */
+    public boolean isUpToDate() {
+        return upToDate;
+    }
+
+    /**
+     * Marks a file dirty if it is a watched source file and schedules an update.
+     *
+     * @param file The edited file, or null.
+     */
+    private void markDirty(VirtualFile file) {
+        if (isWatched(file)) {
+            dirtyFiles.add(file);
+            scheduleUpdate();
+        }
+    }
+
+    /**
+     * Checks whether a file is a Java file of the project.
+     *
+     * @param file The file, or null.
+     * @return True if edits of the file can change the affected tests.
+     */
+    private boolean isWatched(VirtualFile file) {
+        final String basePath = project.getBasePath();
+        return file != null && basePath != null && file.getName().endsWith(".java") && file.getPath().startsWith(basePath + "/");
+    }
+
+    /**
+     * Checks whether a path is one of the git files that move the baseline, such as HEAD, the index or a ref.
+     *
+     * @param path The path of the changed file.
+     * @return True if the change can move the baseline.
+     */
+    private boolean isBaselineFile(String path) {
+        final String gitPath = project.getBasePath() + "/.git/";
+        return path.startsWith(gitPath) && (path.endsWith("/HEAD") || path.endsWith("/index") || path.endsWith("/packed-refs")
+                || path.startsWith(gitPath + "refs/"));
+    }
+
+    /**
+     * Invalidates the watched affected set and restarts the debounce delay.
+     */
+    private void scheduleUpdate() {
+        generation.incrementAndGet();
+        upToDate = false;
+        alarm.cancelAllRequests();
+        alarm.addRequest(() -> PsiDocumentManager.getInstance(project).performLaterWhenAllCommitted(
+                () -> executor.execute(this::update)), DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * Applies the dirty files to the watched affected set, then runs the affected tests if a save requested it.
+     */
+    private void update() {
+        if (project.isDisposed() || listeners == null) {
+            return;
+        }
+        final long startGeneration = generation.get();
+        final List<VirtualFile> files = new ArrayList<>(dirtyFiles);
+        dirtyFiles.removeAll(files);
+        final ChangeTrackingService changeTrackingService = project.getService(ChangeTrackingService.class);
+        // The watched set is walked to the configured depth, a fixed depth even when the run action deepens adaptively
+        final int maxDepth = AffectedTestsSettings.getInstance(project).getState().maxDepth;
+        if (resetRequested) {
+            resetRequested = false;
+            changeTrackingService.resetWatchedChanges();
+        }
+        try {
+            final IncrementalImpactSet.Delta delta = changeTrackingService.updateWatchedFiles(files, maxDepth);
+            if (!delta.isEmpty()) {
+                LOG.info("Watched changes: " + delta.added().size() + " methods became changed, " + delta.removed().size() + " were reverted");
+            }
+        } catch (ProcessCanceledException e) {
+            dirtyFiles.addAll(files);
+            scheduleUpdate();
+            return;
+        } catch (RuntimeException e) {
+            LOG.warn("Cannot update the watched affected tests", e);
+            changeTrackingService.resetWatchedChanges();
+            return;
+        }
+        upToDate = listeners != null && generation.get() == startGeneration;
+        if (upToDate && runRequested) {
+            runRequested = false;
+            // Select the tests here in the background, the event dispatch thread only launches them
+            final ChangeTrackingService.TestSelection selection = changeTrackingService.selectTestsToRun(
+                    changeTrackingService.watchedSession(maxDepth));
+            if (!selection.isEmpty() || selection.cachedPasses() > 0) {
+                ApplicationManager.getApplication().invokeLater(() -> changeTrackingService.runTests(selection), project.getDisposed());
+            }
+        }
+    }
+
+    @Override
+    public void dispose() {
+    }
+}
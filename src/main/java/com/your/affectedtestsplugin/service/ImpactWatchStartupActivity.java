@@ -0,0 +1,20 @@
+package com.your.affectedtestsplugin.service;
+
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import com.your.affectedtestsplugin.settings.AffectedTestsSettings;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Starts watching the affected tests of a project once it is opened, if watch mode is enabled in its settings.
+ */
+public class ImpactWatchStartupActivity implements StartupActivity, DumbAware {
+
+    @Override
+    public void runActivity(@NotNull Project project) {
+        if (AffectedTestsSettings.getInstance(project).getState().watchMode) {
+            project.getService(ImpactWatchService.class).setWatching(true);
+        }
+    }
+}
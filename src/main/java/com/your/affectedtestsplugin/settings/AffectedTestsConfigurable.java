@@ -0,0 +1,211 @@
+package com.your.affectedtestsplugin.settings;
+
+import com.intellij.openapi.options.Configurable;
+import com.intellij.openapi.project.Project;
+import com.your.affectedtestsplugin.service.ImpactWatchService;
+import com.your.affectedtestsplugin.vcs.BaselineSource;
+import org.jetbrains.annotations.Nls;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.Objects;
+
+/**
+ * Settings page of the affected tests plugin under Settings | Tools.
+ */
+public class AffectedTestsConfigurable implements Configurable {
+    private final Project project;
+    private JComboBox<BaselineSource> baselineSourceBox;
+    private JTextField baselineRefField;
+    private JCheckBox backgroundFetchCheckBox;
+    private JSpinner fetchIntervalSpinner;
+    private JSpinner maxDepthSpinner;
+    private JCheckBox adaptiveDepthCheckBox;
+    private JSpinner depthBudgetSpinner;
+    private JSpinner depthTestLimitSpinner;
+    private JCheckBox useCallGraphIndexCheckBox;
+    private JSpinner referenceSearchWorkersSpinner;
+    private JCheckBox hunkScopedDiffCheckBox;
+    private JTextField rangeFromField;
+    private JTextField rangeToField;
+    private JCheckBox rangeFromMergeBaseCheckBox;
+    private JCheckBox useCoverageImpactMapCheckBox;
+    private JSpinner testShardsSpinner;
+    private JCheckBox prioritizeTestsCheckBox;
+    private JSpinner testBatchSizeSpinner;
+    private JCheckBox useTestResultCacheCheckBox;
+    private JCheckBox watchModeCheckBox;
+    private JCheckBox runTestsOnSaveCheckBox;
+
+    /**
+     * Constructs an AffectedTestsConfigurable for the specified project.
+     *
+     * @param project The IntelliJ project instance.
+     */
+    public AffectedTestsConfigurable(Project project) {
+        this.project = project;
+    }
+
+    @Override
+    public @Nls String getDisplayName() {
+        return "Affected Tests";
+    }
+
+    @Nullable
+    @Override
+    public JComponent createComponent() {
+        baselineSourceBox = new JComboBox<>(BaselineSource.values());
+        baselineRefField = new JTextField();
+        backgroundFetchCheckBox = new JCheckBox("Fetch the remote in the background");
+        fetchIntervalSpinner = new JSpinner(new SpinnerNumberModel(15, 1, 24 * 60, 1));
+        maxDepthSpinner = new JSpinner(new SpinnerNumberModel(1, 0, 100, 1));
+        adaptiveDepthCheckBox = new JCheckBox("Deepen the usage search until the budget is spent");
+        depthBudgetSpinner = new JSpinner(new SpinnerNumberModel(2000, 0, 600_000, 100));
+        depthTestLimitSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 100_000, 10));
+        useCallGraphIndexCheckBox = new JCheckBox("Find usages with the persistent call graph index");
+        referenceSearchWorkersSpinner = new JSpinner(new SpinnerNumberModel(1, 1, 64, 1));
+        hunkScopedDiffCheckBox = new JCheckBox("Only compare methods touched by diff hunks");
+        rangeFromField = new JTextField();
+        rangeToField = new JTextField();
+        rangeFromMergeBaseCheckBox = new JCheckBox("Start the range at the merge base");
+        useCoverageImpactMapCheckBox = new JCheckBox("Select tests from recorded coverage");
+        testShardsSpinner = new JSpinner(new SpinnerNumberModel(1, 1, 64, 1));
+        prioritizeTestsCheckBox = new JCheckBox("Run the tests most likely to fail first");
+        testBatchSizeSpinner = new JSpinner(new SpinnerNumberModel(100, 1, 100_000, 10));
+        useTestResultCacheCheckBox = new JCheckBox("Skip tests that passed with the same inputs");
+        watchModeCheckBox = new JCheckBox("Watch edits and keep the affected tests up to date");
+        runTestsOnSaveCheckBox = new JCheckBox("Run the affected tests on save");
+
+        JPanel inputPanel = new JPanel(new GridLayout(0, 2));
+        inputPanel.add(new JLabel("Compare changes against:"));
+        inputPanel.add(baselineSourceBox);
+        inputPanel.add(new JLabel("Baseline ref (for REF):"));
+        inputPanel.add(baselineRefField);
+        inputPanel.add(backgroundFetchCheckBox);
+        inputPanel.add(new JLabel());
+        inputPanel.add(new JLabel("Minutes between fetches:"));
+        inputPanel.add(fetchIntervalSpinner);
+        inputPanel.add(new JLabel("Maximum usage search depth:"));
+        inputPanel.add(maxDepthSpinner);
+        inputPanel.add(adaptiveDepthCheckBox);
+        inputPanel.add(new JLabel());
+        inputPanel.add(new JLabel("Usage search budget in ms (0 for none):"));
+        inputPanel.add(depthBudgetSpinner);
+        inputPanel.add(new JLabel("Stop deepening after tests (0 for none):"));
+        inputPanel.add(depthTestLimitSpinner);
+        inputPanel.add(useCallGraphIndexCheckBox);
+        inputPanel.add(new JLabel());
+        inputPanel.add(new JLabel("Concurrent reference searches:"));
+        inputPanel.add(referenceSearchWorkersSpinner);
+        inputPanel.add(hunkScopedDiffCheckBox);
+        inputPanel.add(new JLabel());
+        inputPanel.add(new JLabel("Commit range start:"));
+        inputPanel.add(rangeFromField);
+        inputPanel.add(new JLabel("Commit range end:"));
+        inputPanel.add(rangeToField);
+        inputPanel.add(rangeFromMergeBaseCheckBox);
+        inputPanel.add(new JLabel());
+        inputPanel.add(useCoverageImpactMapCheckBox);
+        inputPanel.add(new JLabel());
+        inputPanel.add(new JLabel("Concurrent test shards:"));
+        inputPanel.add(testShardsSpinner);
+        inputPanel.add(prioritizeTestsCheckBox);
+        inputPanel.add(new JLabel());
+        inputPanel.add(new JLabel("Tests per batch:"));
+        inputPanel.add(testBatchSizeSpinner);
+        inputPanel.add(useTestResultCacheCheckBox);
+        inputPanel.add(new JLabel());
+        inputPanel.add(watchModeCheckBox);
+        inputPanel.add(new JLabel());
+        inputPanel.add(runTestsOnSaveCheckBox);
+        inputPanel.add(new JLabel());
+
+        JPanel settingsPanel = new JPanel(new BorderLayout());
+        settingsPanel.add(inputPanel, BorderLayout.NORTH);
+        return settingsPanel;
+    }
+
+    @Override
+    public boolean isModified() {
+        final AffectedTestsSettings.State state = getSettingsState();
+        return baselineSourceBox.getSelectedItem() != state.baselineSource
+                || !Objects.equals(baselineRefField.getText().trim(), state.baselineRef)
+                || backgroundFetchCheckBox.isSelected() != state.backgroundFetch
+                || (int) fetchIntervalSpinner.getValue() != state.fetchIntervalMinutes
+                || (int) maxDepthSpinner.getValue() != state.maxDepth
+                || adaptiveDepthCheckBox.isSelected() != state.adaptiveDepth
+                || (int) depthBudgetSpinner.getValue() != state.depthBudgetMillis
+                || (int) depthTestLimitSpinner.getValue() != state.depthTestLimit
+                || useCallGraphIndexCheckBox.isSelected() != state.useCallGraphIndex
+                || (int) referenceSearchWorkersSpinner.getValue() != state.referenceSearchWorkers
+                || hunkScopedDiffCheckBox.isSelected() != state.hunkScopedDiff
+                || !Objects.equals(rangeFromField.getText().trim(), state.rangeFrom)
+                || !Objects.equals(rangeToField.getText().trim(), state.rangeTo)
+                || rangeFromMergeBaseCheckBox.isSelected() != state.rangeFromMergeBase
+                || useCoverageImpactMapCheckBox.isSelected() != state.useCoverageImpactMap
+                || (int) testShardsSpinner.getValue() != state.testShards
+                || prioritizeTestsCheckBox.isSelected() != state.prioritizeTests
+                || (int) testBatchSizeSpinner.getValue() != state.testBatchSize
+                || useTestResultCacheCheckBox.isSelected() != state.useTestResultCache
+                || watchModeCheckBox.isSelected() != state.watchMode
+                || runTestsOnSaveCheckBox.isSelected() != state.runTestsOnSave;
+    }
+
+    @Override
+    public void apply() {
+        final AffectedTestsSettings.State state = getSettingsState();
+        state.baselineSource = (BaselineSource) baselineSourceBox.getSelectedItem();
+        state.baselineRef = baselineRefField.getText().trim();
+        state.backgroundFetch = backgroundFetchCheckBox.isSelected();
+        state.fetchIntervalMinutes = (int) fetchIntervalSpinner.getValue();
+        state.maxDepth = (int) maxDepthSpinner.getValue();
+        state.adaptiveDepth = adaptiveDepthCheckBox.isSelected();
+        state.depthBudgetMillis = (int) depthBudgetSpinner.getValue();
+        state.depthTestLimit = (int) depthTestLimitSpinner.getValue();
+        state.useCallGraphIndex = useCallGraphIndexCheckBox.isSelected();
+        state.referenceSearchWorkers = (int) referenceSearchWorkersSpinner.getValue();
+        state.hunkScopedDiff = hunkScopedDiffCheckBox.isSelected();
+        state.rangeFrom = rangeFromField.getText().trim();
+        state.rangeTo = rangeToField.getText().trim();
+        state.rangeFromMergeBase = rangeFromMergeBaseCheckBox.isSelected();
+        state.useCoverageImpactMap = useCoverageImpactMapCheckBox.isSelected();
+        state.testShards = (int) testShardsSpinner.getValue();
+        state.prioritizeTests = prioritizeTestsCheckBox.isSelected();
+        state.testBatchSize = (int) testBatchSizeSpinner.getValue();
+        state.useTestResultCache = useTestResultCacheCheckBox.isSelected();
+        state.watchMode = watchModeCheckBox.isSelected();
+        state.runTestsOnSave = runTestsOnSaveCheckBox.isSelected();
+        project.getService(ImpactWatchService.class).setWatching(state.watchMode);
+    }
+
+    @Override
+    public void reset() {
+        final AffectedTestsSettings.State state = getSettingsState();
+        baselineSourceBox.setSelectedItem(state.baselineSource);
+        baselineRefField.setText(state.baselineRef);
+        backgroundFetchCheckBox.setSelected(state.backgroundFetch);
+        fetchIntervalSpinner.setValue(state.fetchIntervalMinutes);
+        maxDepthSpinner.setValue(state.maxDepth);
+        adaptiveDepthCheckBox.setSelected(state.adaptiveDepth);
+        depthBudgetSpinner.setValue(state.depthBudgetMillis);
+        depthTestLimitSpinner.setValue(state.depthTestLimit);
+        useCallGraphIndexCheckBox.setSelected(state.useCallGraphIndex);
+        referenceSearchWorkersSpinner.setValue(state.referenceSearchWorkers);
+        hunkScopedDiffCheckBox.setSelected(state.hunkScopedDiff);
+        rangeFromField.setText(state.rangeFrom);
+        rangeToField.setText(state.rangeTo);
+        rangeFromMergeBaseCheckBox.setSelected(state.rangeFromMergeBase);
+        useCoverageImpactMapCheckBox.setSelected(state.useCoverageImpactMap);
+        testShardsSpinner.setValue(state.testShards);
+        prioritizeTestsCheckBox.setSelected(state.prioritizeTests);
+        testBatchSizeSpinner.setValue(state.testBatchSize);
+        useTestResultCacheCheckBox.setSelected(state.useTestResultCache);
+        watchModeCheckBox.setSelected(state.watchMode);
+        runTestsOnSaveCheckBox.setSelected(state.runTestsOnSave);
+    }
+
+    private AffectedTestsSettings.State getSettingsState() {
+        return AffectedTestsSettings.getInstance(project).getState();
+    }
+}
@@ -0,0 +1,130 @@
+package com.your.affectedtestsplugin.settings;
+
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.components.StoragePathMacros;
+import com.intellij.openapi.project.Project;
+import com.your.affectedtestsplugin.vcs.BaselineSource;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Project level settings of the affected tests plugin, persisted in the workspace.
+ */
+@Service(Service.Level.PROJECT)
+@State(name = "AffectedTestsSettings", storages = @Storage(StoragePathMacros.WORKSPACE_FILE))
+public final class AffectedTestsSettings implements PersistentStateComponent<AffectedTestsSettings.State> {
+    private State state = new State();
+
+    /**
+     * Gets the settings of the given project.
+     *
+     * @param project The IntelliJ project instance.
+     * @return The settings of the project.
+     */
+    public static AffectedTestsSettings getInstance(Project project) {
+        return project.getService(AffectedTestsSettings.class);
+    }
+
+    @Override
+    public @NotNull State getState() {
+        return state;
+    }
+
+    @Override
+    public void loadState(@NotNull State state) {
+        this.state = state;
+    }
+
+    /**
+     * The persisted values of the settings.
+     */
+    public static class State {
+        /**
+         * The local git state the working copy is compared against.
+         */
+        public BaselineSource baselineSource = BaselineSource.HEAD;
+        /**
+         * The ref used as the baseline when the source is {@link BaselineSource#REF}.
+         */
+        public String baselineRef = "origin/master";
+        /**
+         * Whether the remote is fetched in the background to keep the baseline ref fresh.
+         */
+        public boolean backgroundFetch = false;
+        /**
+         * The minimum number of minutes between two background fetches.
+         */
+        public int fetchIntervalMinutes = 15;
+        /**
+         * The maximum depth of the usage walk from the changed methods, also the depth of the watched affected set.
+         */
+        public int maxDepth = 1;
+        /**
+         * Whether the usage walk deepens level by level, up to the maximum depth, until its time budget is spent or
+         * the test limit is reached.
+         */
+        public boolean adaptiveDepth = false;
+        /**
+         * The wall-clock milliseconds an adaptive usage walk may take, 0 for no limit.
+         */
+        public int depthBudgetMillis = 2000;
+        /**
+         * The number of reached tests after which an adaptive usage walk stops deepening, 0 for no limit.
+         */
+        public int depthTestLimit = 0;
+        /**
+         * Whether usages are taken from the persistent call graph index instead of reference searches.
+         */
+        public boolean useCallGraphIndex = true;
+        /**
+         * The maximum number of reference searches running concurrently.
+         */
+        public int referenceSearchWorkers = Runtime.getRuntime().availableProcessors();
+        /**
+         * Whether only the methods spanned by line-level diff hunks are compared.
+         */
+        public boolean hunkScopedDiff = false;
+        /**
+         * The start of the commit range analysed by the range mode.
+         */
+        public String rangeFrom = "origin/master";
+        /**
+         * The end of the commit range analysed by the range mode.
+         */
+        public String rangeTo = "HEAD";
+        /**
+         * Whether the range starts at the merge base of both ends, which selects the changes of a branch.
+         */
+        public boolean rangeFromMergeBase = true;
+        /**
+         * Whether tests are selected from the recorded per-test coverage, which every test run then records.
+         */
+        public boolean useCoverageImpactMap = false;
+        /**
+         * The number of concurrent run configurations the affected tests are split into, 1 to run them in a single JVM.
+         */
+        public int testShards = 1;
+        /**
+         * Whether the tests most likely to fail per expected millisecond run first.
+         */
+        public boolean prioritizeTests = true;
+        /**
+         * The maximum number of tests in a run configuration; larger runs are split into batches run one after the other.
+         */
+        public int testBatchSize = 100;
+        /**
+         * Whether tests that passed before with the same inputs are skipped and reported as cached passes.
+         */
+        public boolean useTestResultCache = false;
+        /**
+         * Whether edits are applied to the affected tests in the background, so they are ready when the action runs.
+         */
+        public boolean watchMode = false;
+        /**
+         * Whether saving a watched file runs the affected tests.
+         */
+        public boolean runTestsOnSave = false;
+    }
+}
@@ -0,0 +1,19 @@
+package com.your.affectedtestsplugin.vcs;
+
+/**
+ * The local git state the working copy is compared against when detecting changed methods.
+ */
+public enum BaselineSource {
+    /**
+     * The tree of the current HEAD commit.
+     */
+    HEAD,
+    /**
+     * The staged contents of the git index.
+     */
+    INDEX,
+    /**
+     * The tree of a configured ref such as a remote tracking branch.
+     */
+    REF
+}
@@ -0,0 +1,72 @@
+package com.your.affectedtestsplugin.vcs;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded least-recently-used cache of decoded blob contents keyed by their git object id.
+ * A blob id identifies its content exactly, so entries never need invalidation; they are only evicted
+ * once the total number of cached characters exceeds the configured budget.
+ */
+public final class BlobContentCache {
+    private final long maxChars;
+    private final LinkedHashMap<ObjectId, String> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long currentChars;
+
+    /**
+     * Constructs a BlobContentCache.
+     *
+     * @param maxChars The maximum number of characters kept across all cached blobs.
+     */
+    public BlobContentCache(long maxChars) {
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * Returns the cached content of a blob.
+     *
+     * @param blobId The id of the blob.
+     * @return The decoded content, or null if it is not cached.
+     */
+    public synchronized String get(AnyObjectId blobId) {
+        return entries.get(blobId);
+    }
+
+    /**
+     * Caches the decoded content of a blob, evicting the least recently used entries if needed.
+     *
+     * @param blobId  The id of the blob.
+     * @param content The decoded content of the blob.
+     */
+    public synchronized void put(AnyObjectId blobId, String content) {
+        if (content.length() > maxChars) {
+            return;
+        }
+        final String previous = entries.put(blobId.copy(), content);
+        if (previous != null) {
+            currentChars -= previous.length();
+        }
+        currentChars += content.length();
+        evictIfNeeded();
+    }
+
+    /**
+     * Removes every cached entry.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        currentChars = 0;
+    }
+
+    private void evictIfNeeded() {
+        final Iterator<Map.Entry<ObjectId, String>> iterator = entries.entrySet().iterator();
+        while (currentChars > maxChars && iterator.hasNext()) {
+            currentChars -= iterator.next().getValue().length();
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.your.affectedtestsplugin.vcs;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.CanceledException;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A repository session scoped to a single change analysis.
+ * The repository is opened and the baseline is resolved once; baseline contents of every changed file are then read
+ * with one multi-path TreeWalk and a shared ObjectReader instead of re-opening the repository per file.
+ * Sessions only read the local object database and never contact a remote.
+ */
+public final class GitRepositorySession implements AutoCloseable {
+    private static final BlobContentCache CONTENT_CACHE = new BlobContentCache(32L * 1024 * 1024);
+
+    private final Git git;
+    private final Repository repository;
+    private final ObjectReader reader;
+    private final ObjectId baselineTreeId;
+    private final DirCache index;
+    private final Map<String, ObjectId> treeEntries = new HashMap<>();
+
+    private GitRepositorySession(Git git, BaselineSource source, String baselineRef) throws IOException {
+        this.git = git;
+        this.repository = git.getRepository();
+        this.reader = repository.newObjectReader();
+        if (source == BaselineSource.INDEX) {
+            this.index = repository.readDirCache();
+            this.baselineTreeId = null;
+        } else {
+            this.index = null;
+            this.baselineTreeId = resolveTree(source == BaselineSource.REF ? baselineRef : Constants.HEAD);
+        }
+    }
+
+    /**
+     * Opens a session on the repository located at the given directory, using HEAD as the baseline.
+     *
+     * @param repoDir The working tree of the repository.
+     * @return The opened session.
+     * @throws IOException If the repository cannot be opened or HEAD cannot be resolved.
+     */
+    public static GitRepositorySession open(File repoDir) throws IOException {
+        return open(repoDir, BaselineSource.HEAD, null);
+    }
+
+    /**
+     * Opens a session on the repository located at the given directory.
+     *
+     * @param repoDir     The working tree of the repository.
+     * @param source      The local state used as the baseline.
+     * @param baselineRef The ref used as the baseline when the source is {@link BaselineSource#REF}.
+     * @return The opened session.
+     * @throws IOException If the repository cannot be opened or the baseline cannot be resolved.
+     */
+    public static GitRepositorySession open(File repoDir, BaselineSource source, String baselineRef) throws IOException {
+        final Git git = Git.open(repoDir);
+        try {
+            return new GitRepositorySession(git, source, baselineRef);
+        } catch (IOException e) {
+            git.close();
+            throw e;
+        }
+    }
+
+    /**
+     * A version of a file stored in the repository.
+     *
+     * @param blobId  The id of the blob holding the content, which identifies the content exactly.
+     * @param content The decoded content of the file.
+     */
+    public record FileVersion(ObjectId blobId, String content) {
+    }
+
+    /**
+     * Reads the baseline contents of all the given files.
+     * Files that do not exist in the baseline are absent from the returned map.
+     *
+     * @param relativePaths The repository relative paths of the files.
+     * @return A map from relative path to the file in the baseline.
+     * @throws IOException If an I/O error occurs while reading the repository.
+     */
+    public Map<String, FileVersion> readBaselineContents(Collection<String> relativePaths) throws IOException {
+        final Map<String, ObjectId> blobIds = index != null ? resolveIndexBlobIds(relativePaths) : resolveBlobIds(relativePaths);
+        final Map<String, FileVersion> contents = new HashMap<>();
+        for (Map.Entry<String, ObjectId> entry : blobIds.entrySet()) {
+            contents.put(entry.getKey(), readVersion(entry.getValue()));
+        }
+        return contents;
+    }
+
+    /**
+     * A Java file changed between the two trees of a commit range.
+     *
+     * @param oldPath The path in the old tree, or null if the file was added.
+     * @param newPath The path in the new tree, or null if the file was deleted.
+     * @param oldFile The version in the old tree, or null if the file was added.
+     * @param newFile The version in the new tree, or null if the file was deleted.
+     */
+    public record RangeChange(String oldPath, String newPath, FileVersion oldFile, FileVersion newFile) {
+    }
+
+    /**
+     * Reads every Java file changed in a commit range.
+     * The trees of both ends are diffed in a single TreeWalk and renames are detected,
+     * so a moved file is reported once with both of its versions. Each path appears once however many commits
+     * of the range touched it.
+     *
+     * @param fromRevision  The start of the range, such as a branch name.
+     * @param toRevision    The end of the range, such as HEAD.
+     * @param fromMergeBase True to start the range at the merge base of both revisions instead of the start revision.
+     * @return The changed files with their old and new versions.
+     * @throws IOException If a revision cannot be resolved or an I/O error occurs while reading the repository.
+     */
+    public List<RangeChange> readRangeChanges(String fromRevision, String toRevision, boolean fromMergeBase) throws IOException {
+        final ObjectId fromTree;
+        final ObjectId toTree;
+        try (RevWalk revWalk = new RevWalk(reader)) {
+            final RevCommit to = revWalk.parseCommit(resolveCommit(toRevision));
+            RevCommit from = revWalk.parseCommit(resolveCommit(fromRevision));
+            if (fromMergeBase) {
+                revWalk.setRevFilter(RevFilter.MERGE_BASE);
+                revWalk.markStart(from);
+                revWalk.markStart(to);
+                from = revWalk.next();
+                if (from == null) {
+                    throw new IOException("No merge base of " + fromRevision + " and " + toRevision);
+                }
+            }
+            fromTree = from.getTree().copy();
+            toTree = to.getTree().copy();
+        }
+
+        final List<DiffEntry> entries;
+        try (TreeWalk treeWalk = new TreeWalk(repository, reader)) {
+            treeWalk.addTree(fromTree);
+            treeWalk.addTree(toTree);
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(AndTreeFilter.create(TreeFilter.ANY_DIFF, PathSuffixFilter.create(".java")));
+            final RenameDetector renameDetector = new RenameDetector(repository);
+            renameDetector.addAll(DiffEntry.scan(treeWalk));
+            entries = renameDetector.compute(reader, NullProgressMonitor.INSTANCE);
+        } catch (CanceledException e) {
+            throw new IOException("Rename detection was cancelled", e);
+        }
+
+        final List<RangeChange> changes = new ArrayList<>(entries.size());
+        for (DiffEntry entry : entries) {
+            final boolean added = entry.getChangeType() == DiffEntry.ChangeType.ADD;
+            final boolean deleted = entry.getChangeType() == DiffEntry.ChangeType.DELETE;
+            final FileVersion oldFile = added ? null : readVersion(entry.getOldId().toObjectId());
+            final FileVersion newFile = deleted ? null : readVersion(entry.getNewId().toObjectId());
+            changes.add(new RangeChange(added ? null : entry.getOldPath(), deleted ? null : entry.getNewPath(), oldFile, newFile));
+        }
+        return changes;
+    }
+
+    private FileVersion readVersion(ObjectId blobId) throws IOException {
+        return new FileVersion(blobId, readBlob(blobId));
+    }
+
+    /**
+     * Resolves the blob ids of the given paths from the staged entries of the index.
+     *
+     * @param relativePaths The repository relative paths of the files.
+     * @return A map from relative path to the staged blob id.
+     */
+    private Map<String, ObjectId> resolveIndexBlobIds(Collection<String> relativePaths) {
+        final Map<String, ObjectId> blobIds = new HashMap<>();
+        for (String path : relativePaths) {
+            final DirCacheEntry entry = index.getEntry(path);
+            if (entry != null) {
+                blobIds.put(path, entry.getObjectId());
+            }
+        }
+        return blobIds;
+    }
+
+    /**
+     * Resolves the blob ids of the given paths in the baseline tree.
+     * Paths already resolved by an earlier call of this session are answered from memory.
+     *
+     * @param relativePaths The repository relative paths of the files.
+     * @return A map from relative path to the blob id in the baseline tree.
+     * @throws IOException If an I/O error occurs while walking the tree.
+     */
+    private Map<String, ObjectId> resolveBlobIds(Collection<String> relativePaths) throws IOException {
+        final Set<String> unresolved = new HashSet<>(relativePaths);
+        unresolved.removeAll(treeEntries.keySet());
+        if (!unresolved.isEmpty()) {
+            walkTree(unresolved, treeEntries);
+        }
+
+        final Map<String, ObjectId> blobIds = new HashMap<>();
+        for (String path : relativePaths) {
+            ObjectId blobId = treeEntries.get(path);
+            if (blobId != null && !ObjectId.zeroId().equals(blobId)) {
+                blobIds.put(path, blobId);
+            }
+        }
+        return blobIds;
+    }
+
+    /**
+     * Identifies the code the changes are compared against: the commit checked out and the baseline tree, which
+     * together determine the content of every file outside the changes.
+     * The tree of an index baseline is computed without being written to the repository.
+     *
+     * @return The identity of the HEAD commit and of the baseline tree.
+     * @throws IOException If HEAD cannot be resolved or the index has unmerged paths.
+     */
+    public String baselineIdentity() throws IOException {
+        final ObjectId baseline = index != null ? index.writeTree(new ObjectInserter.Formatter()) : baselineTreeId;
+        return resolveCommit(Constants.HEAD).name() + ":" + baseline.name();
+    }
+
+    /**
+     * Walks the baseline tree once for all the given paths.
+     * Paths missing from the tree are remembered with the zero id so they are not walked again.
+     *
+     * @param paths     The paths to resolve.
+     * @param collector The map receiving the resolved blob ids.
+     * @throws IOException If an I/O error occurs while walking the tree.
+     */
+    private void walkTree(Set<String> paths, Map<String, ObjectId> collector) throws IOException {
+        try (TreeWalk treeWalk = new TreeWalk(repository, reader)) {
+            treeWalk.addTree(baselineTreeId);
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(PathFilterGroup.createFromStrings(paths));
+            while (treeWalk.next()) {
+                final String path = treeWalk.getPathString();
+                if (paths.contains(path)) {
+                    collector.put(path, treeWalk.getObjectId(0));
+                }
+            }
+        }
+        for (String path : paths) {
+            collector.putIfAbsent(path, ObjectId.zeroId());
+        }
+    }
+
+    /**
+     * Reads and decodes a blob, using the shared content cache when possible.
+     *
+     * @param blobId The id of the blob.
+     * @return The decoded content of the blob.
+     * @throws IOException If an I/O error occurs while reading the blob.
+     */
+    private String readBlob(ObjectId blobId) throws IOException {
+        String content = CONTENT_CACHE.get(blobId);
+        if (content == null) {
+            final byte[] bytes = reader.open(blobId, Constants.OBJ_BLOB).getCachedBytes(Integer.MAX_VALUE);
+            content = new String(bytes, StandardCharsets.UTF_8);
+            CONTENT_CACHE.put(blobId, content);
+        }
+        return content;
+    }
+
+    /**
+     * Resolves the tree of the commit a revision points to.
+     *
+     * @param revision The revision to resolve, such as HEAD or a branch name.
+     * @return The ObjectId of the commit's tree.
+     * @throws IOException If the revision cannot be resolved.
+     */
+    private ObjectId resolveTree(String revision) throws IOException {
+        final ObjectId commitId = resolveCommit(revision);
+        try (RevWalk revWalk = new RevWalk(reader)) {
+            return revWalk.parseCommit(commitId).getTree().copy();
+        }
+    }
+
+    /**
+     * Resolves the commit a revision points to.
+     *
+     * @param revision The revision to resolve, such as HEAD or a branch name.
+     * @return The ObjectId of the commit.
+     * @throws IOException If the revision cannot be resolved.
+     */
+    private ObjectId resolveCommit(String revision) throws IOException {
+        if (revision == null || revision.isBlank()) {
+            throw new IOException("No revision configured");
+        }
+        final ObjectId commitId = repository.resolve(revision);
+        if (commitId == null) {
+            throw new IOException("Couldn't resolve " + revision);
+        }
+        return commitId;
+    }
+
+    @Override
+    public void close() {
+        treeEntries.clear();
+        reader.close();
+        git.close();
+    }
+}
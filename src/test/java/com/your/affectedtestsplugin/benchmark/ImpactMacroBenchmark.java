@@ -0,0 +1,154 @@
+package com.your.affectedtestsplugin.benchmark;
+
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase;
+import com.your.affectedtestsplugin.graph.MethodKey;
+import com.your.affectedtestsplugin.metrics.AnalysisMetrics;
+import com.your.affectedtestsplugin.metrics.PerformanceMetrics;
+import com.your.affectedtestsplugin.metrics.RunMetrics;
+import com.your.affectedtestsplugin.service.ChangeTrackingService;
+import com.your.affectedtestsplugin.settings.AffectedTestsSettings;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * End-to-end benchmark of the impact analysis on a synthetic project in a light fixture.
+ * For both the call graph index and the reference search traversal, the analysis is run at every depth for every
+ * changelist size, and its median latency, the memory allocated by all threads and the heap retained after it are
+ * written as CSV curves. The growth exponent of the latency between two changelist sizes shows where the analysis
+ * scales superlinearly; an exponent above 1 is worse than linear.
+ * The fixture has no version control, so the changelists are handed to the analysis as changed methods; the cost of
+ * reading and diffing the changes is covered by the micro-benchmarks.
+ * Run with {@code ./gradlew macroBenchmark}; the shape of the project and the curves are set by the
+ * {@code affected.benchmark.*} system properties.
+ */
+public class ImpactMacroBenchmark extends LightJavaCodeInsightFixtureTestCase {
+    private static final String HEADER = "mode,maxDepth,changes,medianMs,allocatedMb,retainedMb,referenceSearches,depthReached,affectedTests,exponent";
+
+    public void testScaling() throws IOException {
+        final SyntheticProjectGenerator.SyntheticProject syntheticProject = SyntheticProjectGenerator.generate(options());
+        myFixture.addClass("package org.junit; public @interface Test {}");
+        syntheticProject.sources().forEach(myFixture::addFileToProject);
+
+        final AffectedTestsSettings.State settings = AffectedTestsSettings.getInstance(getProject()).getState();
+        settings.useCoverageImpactMap = false;
+        final ChangeTrackingService service = getProject().getService(ChangeTrackingService.class);
+        final List<MethodKey> leaves = changeCandidates(syntheticProject);
+        final int iterations = Integer.getInteger("affected.benchmark.iterations", 3);
+        final List<String> rows = new ArrayList<>();
+        rows.add(HEADER);
+        for (boolean useCallGraphIndex : new boolean[]{true, false}) {
+            settings.useCallGraphIndex = useCallGraphIndex;
+            for (int maxDepth : intsProperty("affected.benchmark.depths", "1,2,3,4")) {
+                double previousMillis = 0;
+                int previousSize = 0;
+                for (int size : intsProperty("affected.benchmark.changes", "1,10,50,100")) {
+                    if (size > leaves.size()) {
+                        break;
+                    }
+                    final List<MethodKey> changes = leaves.subList(0, size);
+                    // Warm up the PSI caches and the call graph index before measuring
+                    assertTrue(service.trackMethodsAndTests(changes, maxDepth).hasTests());
+
+                    final double[] millis = new double[iterations];
+                    final long allocatedBefore = allocatedBytes();
+                    for (int i = 0; i < iterations; i++) {
+                        final long start = System.nanoTime();
+                        service.trackMethodsAndTests(changes, maxDepth);
+                        millis[i] = (System.nanoTime() - start) / 1_000_000.0;
+                    }
+                    final long allocated = (allocatedBytes() - allocatedBefore) / iterations;
+                    final long retained = retainedBytes();
+                    Arrays.sort(millis);
+                    final double medianMillis = millis[iterations / 2];
+                    final List<RunMetrics> runs = getProject().getService(PerformanceMetrics.class).runs();
+                    final RunMetrics run = runs.get(runs.size() - 1);
+                    final String exponent = previousSize == 0 || previousMillis <= 0 ? ""
+                            : String.format("%.2f", Math.log(medianMillis / previousMillis) / Math.log((double) size / previousSize));
+                    rows.add(String.join(",", useCallGraphIndex ? "index" : "search", String.valueOf(maxDepth), String.valueOf(size),
+                            String.format("%.1f", medianMillis), String.format("%.1f", allocated / 1_048_576.0),
+                            String.format("%.1f", retained / 1_048_576.0), String.valueOf(run.count(AnalysisMetrics.REFERENCE_SEARCHES)),
+                            String.valueOf(run.count(AnalysisMetrics.DEPTH_REACHED)), String.valueOf(run.count(AnalysisMetrics.AFFECTED_TESTS)),
+                            exponent));
+                    previousMillis = medianMillis;
+                    previousSize = size;
+                }
+            }
+        }
+
+        final Path output = Path.of(System.getProperty("affected.benchmark.output", "build/reports/affected-tests-benchmark/impact-macro.csv"));
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        Files.write(output, rows, StandardCharsets.UTF_8);
+        rows.forEach(System.out::println);
+    }
+
+    /**
+     * Reads the shape of the synthetic project from the system properties.
+     *
+     * @return The options of the generator.
+     */
+    private static SyntheticProjectGenerator.Options options() {
+        final SyntheticProjectGenerator.Options defaults = SyntheticProjectGenerator.Options.defaults();
+        return new SyntheticProjectGenerator.Options(
+                Integer.getInteger("affected.benchmark.layers", defaults.layers()),
+                Integer.getInteger("affected.benchmark.classesPerLayer", defaults.classesPerLayer()),
+                Integer.getInteger("affected.benchmark.methodsPerClass", defaults.methodsPerClass()),
+                Integer.getInteger("affected.benchmark.fanOut", defaults.fanOut()),
+                Integer.getInteger("affected.benchmark.fanIn", defaults.fanIn()),
+                Double.parseDouble(System.getProperty("affected.benchmark.testDensity", String.valueOf(defaults.testDensity()))),
+                Long.getLong("affected.benchmark.seed", defaults.seed()));
+    }
+
+    /**
+     * Orders the leaves of the call graph as changelists are taken from them. The first leaf is called by a test,
+     * so every changelist affects at least one test; the other leaves follow in generation order, which puts the
+     * leaves called by the layer above first.
+     *
+     * @param syntheticProject The generated project.
+     * @return The leaves in changelist order.
+     */
+    private static List<MethodKey> changeCandidates(SyntheticProjectGenerator.SyntheticProject syntheticProject) {
+        final List<MethodKey> leaves = new ArrayList<>(syntheticProject.methodsByLayer().get(0));
+        for (int i = 0; i < leaves.size(); i++) {
+            if (syntheticProject.testedMethods().contains(leaves.get(i))) {
+                leaves.add(0, leaves.remove(i));
+                return leaves;
+            }
+        }
+        throw new IllegalStateException("No leaf is called by a test, raise affected.benchmark.testDensity");
+    }
+
+    /**
+     * Gets the number of bytes allocated so far by the live threads. Threads ended in the meantime are not counted.
+     *
+     * @return The allocated bytes.
+     */
+    private static long allocatedBytes() {
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocated = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            allocated += Math.max(0, bytes);
+        }
+        return allocated;
+    }
+
+    /**
+     * Gets the heap used after a full collection, which holds the results kept by the last analysis.
+     *
+     * @return The retained bytes.
+     */
+    private static long retainedBytes() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static int[] intsProperty(String name, String defaults) {
+        return Arrays.stream(System.getProperty(name, defaults).split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+}
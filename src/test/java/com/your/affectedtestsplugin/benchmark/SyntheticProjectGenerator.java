@@ -0,0 +1,130 @@
+package com.your.affectedtestsplugin.benchmark;
+
+import com.your.affectedtestsplugin.graph.MethodKey;
+
+import java.util.*;
+
+/**
+ * Generates synthetic Java projects with a layered call graph for the macro benchmarks.
+ * Production classes are arranged in layers; every method of a layer calls {@code fanOut} methods of the layer
+ * below, picked among a subset of its methods sized so that every picked method has about {@code fanIn} callers.
+ * The methods of layer 0 are the leaves, so a change to them reaches up to {@code layers - 1} levels of callers.
+ * Tests call production methods of every layer directly, one test for a share of the methods set by the test density.
+ * The same options always give the same project.
+ */
+public final class SyntheticProjectGenerator {
+    /**
+     * The root package of the generated classes.
+     */
+    public static final String PACKAGE = "bench";
+
+    /**
+     * The shape of a generated project.
+     *
+     * @param layers          The number of layers of production classes, the depth of the call graph.
+     * @param classesPerLayer The number of production classes in every layer.
+     * @param methodsPerClass The number of methods of every production class.
+     * @param fanOut          The number of calls of every method to the layer below.
+     * @param fanIn           The average number of callers of every called method.
+     * @param testDensity     The share of production methods which are called by a test, from 0 to 1.
+     * @param seed            The seed of the random choices.
+     */
+    public record Options(int layers, int classesPerLayer, int methodsPerClass, int fanOut, int fanIn, double testDensity, long seed) {
+        /**
+         * Gets the options of a mid-sized project.
+         *
+         * @return The default options.
+         */
+        public static Options defaults() {
+            return new Options(5, 40, 5, 3, 6, 0.5, 42L);
+        }
+    }
+
+    /**
+     * A generated project.
+     *
+     * @param sources        The contents of the source files keyed by their path relative to the source root.
+     * @param methodsByLayer The keys of the production methods of every layer, from the leaves up.
+     * @param testedMethods  The keys of the production methods called directly by a test.
+     */
+    public record SyntheticProject(Map<String, String> sources, List<List<MethodKey>> methodsByLayer, Set<MethodKey> testedMethods) {
+    }
+
+    private SyntheticProjectGenerator() {
+    }
+
+    /**
+     * Generates a project.
+     *
+     * @param options The shape of the project.
+     * @return The generated project.
+     */
+    public static SyntheticProject generate(Options options) {
+        final Random random = new Random(options.seed());
+        final Map<String, String> sources = new LinkedHashMap<>();
+        final List<List<MethodKey>> methodsByLayer = new ArrayList<>();
+        final Set<MethodKey> testedMethods = new LinkedHashSet<>();
+        final StringBuilder testMethods = new StringBuilder();
+        for (int layer = 0; layer < options.layers(); layer++) {
+            final List<MethodKey> methods = new ArrayList<>();
+            for (int index = 0; index < options.classesPerLayer(); index++) {
+                final String simpleName = className(layer, index);
+                final String packageName = PACKAGE + ".layer" + layer;
+                final StringBuilder source = new StringBuilder();
+                source.append("package ").append(packageName).append(";\n\n")
+                        .append("public class ").append(simpleName).append(" {\n");
+                for (int method = 0; method < options.methodsPerClass(); method++) {
+                    source.append("    public static int op").append(method).append("(int value) {\n")
+                            .append("        int total = value + ").append(method).append(";\n");
+                    if (layer > 0) {
+                        for (int call = 0; call < options.fanOut(); call++) {
+                            source.append("        total += ").append(callTarget(options, layer - 1, random)).append("(total);\n");
+                        }
+                    }
+                    source.append("        return total;\n")
+                            .append("    }\n\n");
+                    final MethodKey key = new MethodKey(packageName + "." + simpleName, "op" + method, List.of("int"));
+                    methods.add(key);
+                    if (random.nextDouble() < options.testDensity()) {
+                        testMethods.append("    @org.junit.Test\n")
+                                .append("    public void test").append(simpleName).append("Op").append(method).append("() {\n")
+                                .append("        ").append(packageName).append('.').append(simpleName).append(".op").append(method).append("(1);\n")
+                                .append("    }\n\n");
+                        testedMethods.add(key);
+                    }
+                }
+                source.append("}\n");
+                sources.put(packageName.replace('.', '/') + "/" + simpleName + ".java", source.toString());
+            }
+            methodsByLayer.add(Collections.unmodifiableList(methods));
+            if (!testMethods.isEmpty()) {
+                final String testName = "Layer" + layer + "Test";
+                sources.put(PACKAGE + "/tests/" + testName + ".java", "package " + PACKAGE + ".tests;\n\n"
+                        + "public class " + testName + " {\n" + testMethods + "}\n");
+                testMethods.setLength(0);
+            }
+        }
+        return new SyntheticProject(sources, Collections.unmodifiableList(methodsByLayer), Collections.unmodifiableSet(testedMethods));
+    }
+
+    /**
+     * Picks the method called by a method of the layer above. Calls only target the first methods of the layer,
+     * as many as needed for every target to have about {@code fanIn} callers.
+     *
+     * @param options The shape of the project.
+     * @param layer   The layer of the called method.
+     * @param random  The random choices.
+     * @return The qualified name of the called method.
+     */
+    private static String callTarget(Options options, int layer, Random random) {
+        final int methodsPerLayer = options.classesPerLayer() * options.methodsPerClass();
+        final int targets = Math.max(1, Math.min(methodsPerLayer, methodsPerLayer * options.fanOut() / Math.max(1, options.fanIn())));
+        final int target = random.nextInt(targets);
+        return PACKAGE + ".layer" + layer + "." + className(layer, target / options.methodsPerClass())
+                + ".op" + target % options.methodsPerClass();
+    }
+
+    private static String className(int layer, int index) {
+        return "Layer" + layer + "Class" + index;
+    }
+}
@@ -0,0 +1,66 @@
+package com.your.affectedtestsplugin.coverage;
+
+import com.your.affectedtestsplugin.graph.MethodKey;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+public class CoverageImpactMapTest {
+
+    private static final MethodKey TEST_A = new MethodKey("p.ServiceTest", "testA", List.of());
+    private static final MethodKey TEST_B = new MethodKey("p.ServiceTest", "testB", List.of());
+    private static final MethodKey RUN = new MethodKey("p.Service", "run", List.of("java.util.List", "java.lang.String[]"));
+    private static final MethodKey APPLY = new MethodKey("p.Service", "apply", List.of("java.lang.Object"));
+    private static final MethodKey HELP = new MethodKey("p.Helper", "help", List.of());
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testChangedMethodsAreErasedBeforeLookup() {
+        CoverageImpactMap map = new CoverageImpactMap();
+        map.recordTest(TEST_A, Set.of(RUN, HELP));
+        map.recordTest(TEST_B, Set.of(APPLY));
+
+        CoverageImpactMap.Lookup lookup = map.lookup(List.of(
+                new MethodKey("p.Service", "run", List.of("List<Map<String, Integer>>", "String...")),
+                new MethodKey("p.Service", "apply", List.of("T")),
+                new MethodKey("p.Service", "added", List.of())));
+
+        Assert.assertEquals(Set.of(TEST_A, TEST_B), lookup.tests());
+        Assert.assertEquals(Set.of(new MethodKey("p.Service", "added", List.of())), lookup.unmappedMethods());
+    }
+
+    @Test
+    public void testRecordingReplacesThePreviousCoverageOfATest() {
+        CoverageImpactMap map = new CoverageImpactMap();
+        map.recordTest(TEST_A, Set.of(RUN, HELP));
+        map.recordTest(TEST_A, Set.of(HELP));
+
+        CoverageImpactMap.Lookup lookup = map.lookup(List.of(RUN));
+
+        Assert.assertTrue(lookup.tests().isEmpty());
+        Assert.assertTrue(lookup.unmappedMethods().isEmpty());
+        Assert.assertEquals(Set.of(TEST_A), map.lookup(List.of(HELP)).tests());
+    }
+
+    @Test
+    public void testMapSurvivesRoundTrip() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("index/coverage-impact.idx");
+        CoverageImpactMap map = new CoverageImpactMap();
+        map.recordTest(TEST_A, Set.of(RUN));
+        map.recordTest(TEST_B, Set.of(RUN, HELP));
+        map.save(file);
+
+        CoverageImpactMap read = CoverageImpactMap.load(file);
+
+        Assert.assertEquals(Set.of(TEST_A, TEST_B), read.lookup(List.of(RUN)).tests());
+        Assert.assertEquals(Set.of(TEST_B), read.lookup(List.of(HELP)).tests());
+        Assert.assertTrue(CoverageImpactMap.load(temporaryFolder.getRoot().toPath().resolve("absent.idx")).isEmpty());
+    }
+}
@@ -0,0 +1,93 @@
+package com.your.affectedtestsplugin.diff;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.your.affectedtestsplugin.graph.MethodKey;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class MethodDiffPipelineTest {
+
+    private static MethodDiffPipeline.Result diff(List<MethodDiffPipeline.FileRevision> revisions) {
+        return diff(revisions, false);
+    }
+
+    private static MethodDiffPipeline.Result diff(List<MethodDiffPipeline.FileRevision> revisions, boolean hunkScoped) {
+        try (MethodDiffPipeline pipeline = new MethodDiffPipeline(2)) {
+            return pipeline.diff(revisions, hunkScoped);
+        }
+    }
+
+    @Test
+    public void testChangedMethodsAreCollectedInSortedOrder() {
+        String oldSource = "package p; class B { void keep() { } void edit() { int a = 1; } void drop() { } }";
+        String newSource = "package p; class B { void keep() { } void edit() { int a = 2; } void add(java.util.List<String> x) { } }";
+        String addedSource = "class A { void first() { } }";
+
+        MethodDiffPipeline.Result result = diff(List.of(
+                new MethodDiffPipeline.FileRevision("B", oldSource, newSource),
+                new MethodDiffPipeline.FileRevision("A", "", addedSource)));
+
+        List<String> changedMethods = result.changedMethods().stream().map(Object::toString).toList();
+        Assert.assertEquals(List.of("A.first()", "p.B.add(List)", "p.B.drop()", "p.B.edit()"), changedMethods);
+        Assert.assertTrue(result.unparsedFiles().isEmpty());
+    }
+
+    @Test
+    public void testWhitespaceAndCommentChangesAreIgnored() {
+        String oldSource = "class C { int shift(int a) { return a >> 1; } void keep() { } }";
+        String newSource = "class C {\n  int shift(int a) {\n    // shifted\n    return a >>   1;\n  }\n  /** kept */ void keep() {}\n}";
+
+        MethodDiffPipeline.Result result = diff(List.of(
+                new MethodDiffPipeline.FileRevision("C", "blob-c", oldSource, newSource)));
+
+        Assert.assertTrue(result.changedMethods().isEmpty());
+    }
+
+    @Test
+    public void testFingerprintKeysMatchParsedMethodKeys() {
+        String source = "package p; class D<T> { <K> java.util.Map<K, T> map(final @Deprecated java.util.List<? extends K> keys, String... rest) { return null; }"
+                + " static class Inner { int[] dims(int a[]) { return null; } } interface I { void run(); } }";
+
+        Set<MethodKey> parsedKeys = new HashSet<>();
+        new JavaParser().parse(source).getResult().orElseThrow().findAll(MethodDeclaration.class)
+                .forEach(method -> parsedKeys.add(MethodKey.of(method, "D")));
+
+        Assert.assertEquals(parsedKeys, MethodFingerprinter.scan(source).fingerprints().keySet());
+    }
+
+    @Test
+    public void testHunkScopedModeComparesTouchedMethodsAndClassifiesOtherHunks() {
+        String oldSource = String.join("\n",
+                "package p;",
+                "import java.util.List;",
+                "class E {",
+                "    int limit = 1;",
+                "    void first() { }",
+                "    void second() {",
+                "        int a = 1;",
+                "    }",
+                "}");
+        String newSource = String.join("\n",
+                "package p;",
+                "import java.util.Set;",
+                "class E {",
+                "    int limit = 2;",
+                "    void first() { }",
+                "    void second() {",
+                "        int a = 2;",
+                "    }",
+                "}");
+
+        MethodDiffPipeline.Result result = diff(List.of(
+                new MethodDiffPipeline.FileRevision("E", oldSource, newSource)), true);
+
+        Assert.assertEquals(List.of("p.E.second()"), result.changedMethods().stream().map(Object::toString).toList());
+        Assert.assertEquals(List.of("E IMPORTS lines 2-2", "E MEMBER lines 4-4"),
+                result.unscopedHunks().stream().map(Object::toString).toList());
+    }
+}
@@ -0,0 +1,115 @@
+package com.your.affectedtestsplugin.graph;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class CallGraphStorageTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final MethodKey test = new MethodKey("p.ServiceTest", "testRun", List.of());
+    private final MethodKey run = new MethodKey("p.Service", "run", List.of("int", "java.util.Map<String, Integer>"));
+    private final MethodKey help = new MethodKey("p.Helper", "help", List.of());
+
+    @Test
+    public void testEntriesSurviveRoundTrip() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("index/call-graph.idx");
+        CallGraphStorage.FileEntry entry = new CallGraphStorage.FileEntry(List.of(test), List.of(test),
+                List.of(new MethodKey[]{test, run}, new MethodKey[]{run, help}));
+        CallGraphStorage.FileStamp stamp = new CallGraphStorage.FileStamp(42L, 1000L, 12L);
+
+        CallGraphStorage.write(file, Map.of("/src/ServiceTest.java", stamp), Map.of("/src/ServiceTest.java", entry), graph());
+        CallGraphStorage.Snapshot read = CallGraphStorage.read(file);
+
+        Assert.assertEquals(Map.of("/src/ServiceTest.java", stamp), read.stamps());
+        CallGraphStorage.FileEntry readEntry = read.entry("/src/ServiceTest.java");
+        Assert.assertEquals(List.of(test), readEntry.declaredMethods());
+        Assert.assertEquals(List.of(test), readEntry.testMethods());
+        Assert.assertEquals(2, readEntry.edges().size());
+        Assert.assertArrayEquals(new MethodKey[]{run, help}, readEntry.edges().get(1));
+        Assert.assertEquals(List.of("int", "Map"), readEntry.edges().get(1)[0].parameterTypes());
+        Assert.assertNull(read.entry("/src/Absent.java"));
+    }
+
+    @Test
+    public void testGraphIsQueriedFromTheStoredFile() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("call-graph.idx");
+        CallGraphStorage.FileEntry entry = new CallGraphStorage.FileEntry(List.of(), List.of(), List.of());
+        CallGraphStorage.write(file, Map.of("/src/A.java", new CallGraphStorage.FileStamp(1L, 2L, 3L)), Map.of("/src/A.java", entry), graph());
+
+        ReverseCallGraph stored = CallGraphStorage.read(file).graph();
+
+        Assert.assertEquals(3, stored.size());
+        Assert.assertEquals(help, stored.key(stored.idOf(help)));
+        Assert.assertArrayEquals(new int[]{stored.idOf(run)}, stored.callers(stored.idOf(help)));
+        Assert.assertArrayEquals(new int[0], stored.callers(stored.idOf(test)));
+        Assert.assertTrue(stored.isTest(stored.idOf(test)));
+        Assert.assertFalse(stored.isTest(stored.idOf(run)));
+        Assert.assertEquals(-1, stored.idOf(new MethodKey("p.Helper", "help", List.of("int"))));
+    }
+
+    @Test
+    public void testMissingFileReadsAsEmpty() throws Exception {
+        CallGraphStorage.Snapshot read = CallGraphStorage.read(temporaryFolder.getRoot().toPath().resolve("absent.idx"));
+
+        Assert.assertTrue(read.stamps().isEmpty());
+        Assert.assertNull(read.graph());
+    }
+
+    @Test
+    public void testNewGenerationIsWrittenWhileTheOldOneIsMapped() throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath().resolve("index");
+        Assert.assertEquals(-1, CallGraphStorage.latestGeneration(directory));
+        Map<String, CallGraphStorage.FileStamp> stamps = Map.of("/src/A.java", new CallGraphStorage.FileStamp(1L, 2L, 3L));
+        Map<String, CallGraphStorage.FileEntry> entries = Map.of("/src/A.java", CallGraphStorage.FileEntry.EMPTY);
+        CallGraphStorage.write(CallGraphStorage.generationFile(directory, 0), stamps, entries, graph());
+        CallGraphStorage.Snapshot mapped = CallGraphStorage.read(CallGraphStorage.generationFile(directory, 0));
+
+        CallGraphStorage.write(CallGraphStorage.generationFile(directory, 1), stamps, entries, graph());
+
+        Assert.assertEquals(1, CallGraphStorage.latestGeneration(directory));
+        Assert.assertEquals(3, mapped.graph().size());
+        CallGraphStorage.deleteGenerationsBefore(directory, 1);
+        Assert.assertEquals(3, CallGraphStorage.read(CallGraphStorage.generationFile(directory, 1)).graph().size());
+    }
+
+    private ReverseCallGraph graph() {
+        MethodKeyTable table = new MethodKeyTable();
+        List.of(test, run, help).forEach(table::intern);
+        Map<MethodKey, Set<MethodKey>> callers = Map.of(run, Set.of(test), help, Set.of(run));
+        return new ReverseCallGraph() {
+            @Override
+            public int size() {
+                return table.size();
+            }
+
+            @Override
+            public int idOf(MethodKey key) {
+                return table.idOf(key);
+            }
+
+            @Override
+            public MethodKey key(int id) {
+                return table.get(id);
+            }
+
+            @Override
+            public int[] callers(int id) {
+                return callers.getOrDefault(table.get(id), Set.of()).stream().mapToInt(table::idOf).toArray();
+            }
+
+            @Override
+            public boolean isTest(int id) {
+                return table.get(id).equals(test);
+            }
+        };
+    }
+}
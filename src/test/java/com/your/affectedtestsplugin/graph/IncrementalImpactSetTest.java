@@ -0,0 +1,60 @@
+package com.your.affectedtestsplugin.graph;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class IncrementalImpactSetTest {
+
+    private final MethodKey run = new MethodKey("p.Service", "run", List.of("int"));
+    private final MethodKey help = new MethodKey("p.Helper", "help", List.of());
+    private final MethodKey caller = new MethodKey("p.Service", "start", List.of());
+    private final MethodKey runTest = new MethodKey("p.ServiceTest", "testRun", List.of());
+    private final MethodKey helpTest = new MethodKey("p.HelperTest", "testHelp", List.of());
+
+    @Test
+    public void testOnlyMethodsThatBecameChangedAreWalked() {
+        IncrementalImpactSet impactSet = new IncrementalImpactSet();
+        IncrementalImpactSet.Delta first = impactSet.updateFiles(Map.of("Service.java", Set.of(run)));
+        Assert.assertEquals(Set.of(run), first.added());
+        impactSet.addImpact(first.added(), 2, Map.of(caller, Set.of(run), runTest, Set.of(caller)), List.of(runTest));
+
+        IncrementalImpactSet.Delta second = impactSet.updateFiles(Map.of("Service.java", Set.of(run), "Helper.java", Set.of(help)));
+        Assert.assertEquals(Set.of(help), second.added());
+        Assert.assertTrue(second.removed().isEmpty());
+        impactSet.addImpact(second.added(), 2, Map.of(helpTest, Set.of(help)), List.of(helpTest));
+
+        Assert.assertEquals(Set.of(runTest, helpTest), impactSet.tests());
+        Assert.assertEquals(Integer.valueOf(2), impactSet.affectedMethods().get(runTest));
+        Assert.assertEquals(Set.of(caller), impactSet.affectedCallees().get(runTest));
+    }
+
+    @Test
+    public void testRevertedFileDropsItsImpact() {
+        IncrementalImpactSet impactSet = new IncrementalImpactSet();
+        impactSet.updateFiles(Map.of("Service.java", Set.of(run), "Helper.java", Set.of(help)));
+        impactSet.addImpact(List.of(run, help), 1, Map.of(runTest, Set.of(run), helpTest, Set.of(help)), List.of(runTest, helpTest));
+
+        IncrementalImpactSet.Delta delta = impactSet.updateFiles(Map.of("Helper.java", Set.of()));
+
+        Assert.assertEquals(Set.of(help), delta.removed());
+        Assert.assertEquals(Set.of(run), impactSet.changes());
+        Assert.assertEquals(Set.of(runTest), impactSet.tests());
+        Assert.assertNull(impactSet.affectedMethods().get(helpTest));
+    }
+
+    @Test
+    public void testTestsAreMatchedByNameAndWalkStopsAtMaxDepth() {
+        IncrementalImpactSet impactSet = new IncrementalImpactSet();
+        MethodKey coveredTest = new MethodKey("p.ServiceTest", "testRun", List.of());
+        MethodKey declaredTest = new MethodKey("p.ServiceTest", "testRun", List.of("TestInfo"));
+        impactSet.updateFiles(Map.of("Service.java", Set.of(run)));
+        impactSet.addImpact(List.of(run), 1, Map.of(coveredTest, Set.of(run), helpTest, Set.of(coveredTest)),
+                List.of(declaredTest, helpTest));
+
+        Assert.assertEquals(Set.of(declaredTest), impactSet.tests());
+    }
+}
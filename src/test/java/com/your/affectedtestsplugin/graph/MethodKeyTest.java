@@ -0,0 +1,67 @@
+package com.your.affectedtestsplugin.graph;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class MethodKeyTest {
+
+    @Test
+    public void testQualifiedNamesAreReducedToSimpleNames() {
+        Assert.assertEquals("String", MethodKey.normalizeType("java.lang.String"));
+        Assert.assertEquals("String", MethodKey.normalizeType("String"));
+        Assert.assertEquals("String", MethodKey.normalizeType(" java . lang . String "));
+    }
+
+    @Test
+    public void testNestedTypesMatchTheirBinaryNames() {
+        Assert.assertEquals("Inner", MethodKey.normalizeType("p.Outer.Inner"));
+        Assert.assertEquals("Inner", MethodKey.normalizeType("p.Outer$Inner"));
+        Assert.assertEquals("Inner", MethodKey.normalizeType("Outer<String>.Inner"));
+    }
+
+    @Test
+    public void testTypeArgumentsAreErased() {
+        Assert.assertEquals("List", MethodKey.normalizeType("List<String>"));
+        Assert.assertEquals("Map", MethodKey.normalizeType("java.util.Map<String, java.util.List<? extends Number>>"));
+        Assert.assertEquals("Entry[]", MethodKey.normalizeType("Map.Entry<K, V>[]"));
+    }
+
+    @Test
+    public void testTypeVariablesKeepTheirName() {
+        Assert.assertEquals("T", MethodKey.normalizeType("T"));
+        Assert.assertEquals("T[]", MethodKey.normalizeType("T..."));
+    }
+
+    @Test
+    public void testVarargsMatchArrays() {
+        Assert.assertEquals("String[]", MethodKey.normalizeType("String..."));
+        Assert.assertEquals("String[]", MethodKey.normalizeType("java.lang.String[]"));
+        Assert.assertEquals("int[][]", MethodKey.normalizeType("int[] ..."));
+        Assert.assertEquals("int[][]", MethodKey.normalizeType("int [][]"));
+    }
+
+    @Test
+    public void testPrimitivesAreKept() {
+        Assert.assertEquals("int", MethodKey.normalizeType("int"));
+        Assert.assertEquals("boolean", MethodKey.normalizeType(" boolean "));
+    }
+
+    @Test
+    public void testSourceKeyMatchesBytecodeKey() {
+        MethodDeclaration method = StaticJavaParser.parseBodyDeclaration(
+                "void run(java.util.List<String> names, Outer.Inner inner, int count, String... args) { }").asMethodDeclaration();
+
+        MethodKey sourceKey = MethodKey.of(method, "p.Service");
+        // Parameter types as named by Type.getClassName() for the descriptor of the compiled method
+        MethodKey bytecodeKey = new MethodKey("p.Service", "run",
+                List.of("java.util.List", "p.Outer$Inner", "int", "java.lang.String[]"));
+
+        Assert.assertEquals(bytecodeKey, sourceKey);
+        Assert.assertEquals(bytecodeKey.hashCode(), sourceKey.hashCode());
+        Assert.assertEquals(List.of("List", "Inner", "int", "String[]"), sourceKey.parameterTypes());
+    }
+}
@@ -0,0 +1,68 @@
+package com.your.affectedtestsplugin.graph;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PsiUsageTraversalTest extends LightJavaCodeInsightFixtureTestCase {
+    private static final String CHAIN = """
+            public class Chain {
+                void leaf() {}
+                void b() { leaf(); }
+                void c() { b(); }
+                void d() { c(); leaf(); }
+            }
+            """;
+
+    public void testMethodsAreReachedAtTheirMinimalDepth() {
+        PsiClass chain = myFixture.addClass(CHAIN);
+
+        Map<PsiMethod, Integer> depths = traversal().traverse(List.of(method(chain, "leaf")), 3);
+
+        assertEquals(4, depths.size());
+        assertEquals(Integer.valueOf(0), depths.get(method(chain, "leaf")));
+        assertEquals(Integer.valueOf(1), depths.get(method(chain, "b")));
+        assertEquals(Integer.valueOf(2), depths.get(method(chain, "c")));
+        // d calls leaf directly, so reaching it again through c does not make it deeper
+        assertEquals(Integer.valueOf(1), depths.get(method(chain, "d")));
+    }
+
+    public void testWalkStopsAtMaxDepth() {
+        PsiClass chain = myFixture.addClass(CHAIN);
+        TraversalBudget budget = TraversalBudget.fixed(1);
+
+        Map<PsiMethod, Integer> depths = traversal().traverse(List.of(method(chain, "leaf")), budget);
+
+        assertEquals(3, depths.size());
+        assertFalse(depths.containsKey(method(chain, "c")));
+        assertTrue(budget.isComplete());
+    }
+
+    public void testLevelProjectedToOverrunTheBudgetIsSkipped() {
+        PsiClass chain = myFixture.addClass(CHAIN);
+        AtomicLong nanos = new AtomicLong();
+        // Every reading of the clock advances it by 40 ms: when the second level is checked 80 of the 100 ms are spent
+        // on one method, so its two methods are projected to take 160 ms although the time is not spent yet
+        TraversalBudget budget = new TraversalBudget(3, 100, 0, () -> nanos.getAndAdd(TimeUnit.MILLISECONDS.toNanos(40)));
+
+        Map<PsiMethod, Integer> depths = traversal().traverse(List.of(method(chain, "leaf")), budget);
+
+        assertEquals(3, depths.size());
+        assertFalse(depths.containsKey(method(chain, "c")));
+        assertFalse(budget.isComplete());
+    }
+
+    private PsiUsageTraversal traversal() {
+        return new PsiUsageTraversal(GlobalSearchScope.projectScope(getProject()), new ReferenceSearchExecutor(getProject(), 1));
+    }
+
+    private static PsiMethod method(PsiClass psiClass, String name) {
+        return psiClass.findMethodsByName(name, false)[0];
+    }
+}
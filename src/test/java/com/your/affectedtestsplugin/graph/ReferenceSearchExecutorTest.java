@@ -0,0 +1,61 @@
+package com.your.affectedtestsplugin.graph;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ReferenceSearchExecutorTest extends LightJavaCodeInsightFixtureTestCase {
+    private static final String DIAMOND = """
+            public class Diamond {
+                void leaf() {}
+                void otherLeaf() {}
+                void left() { leaf(); }
+                void right() { leaf(); otherLeaf(); }
+                void top() { left(); right(); }
+            }
+            """;
+
+    public void testEveryMethodOfADiamondIsSearchedOnce() throws Exception {
+        PsiClass diamond = myFixture.addClass(DIAMOND);
+        ReferenceSearchExecutor executor = new ReferenceSearchExecutor(getProject(), 2);
+        PsiUsageTraversal traversal = new PsiUsageTraversal(GlobalSearchScope.projectScope(getProject()), executor);
+        List<PsiMethod> seeds = List.of(method(diamond, "leaf"), method(diamond, "otherLeaf"));
+
+        // Traversing from a background thread runs the searches of a level concurrently on the workers
+        Map<PsiMethod, Integer> depths = ApplicationManager.getApplication()
+                .executeOnPooledThread(() -> traversal.traverse(seeds, 3)).get();
+
+        assertEquals(5, depths.size());
+        assertEquals(Integer.valueOf(2), depths.get(method(diamond, "top")));
+        // right is shared by both changed methods and top is reached through left and right, yet each is searched once
+        assertEquals(5, executor.searchCount());
+        assertEquals(Set.of(method(diamond, "leaf"), method(diamond, "otherLeaf")),
+                traversal.walkedCallees().get(method(diamond, "right")));
+        assertEquals(Set.of(method(diamond, "left"), method(diamond, "right")),
+                traversal.walkedCallees().get(method(diamond, "top")));
+    }
+
+    public void testCallersAreMemoizedAcrossTraversals() {
+        PsiClass diamond = myFixture.addClass(DIAMOND);
+        ReferenceSearchExecutor executor = new ReferenceSearchExecutor(getProject(), 1);
+        PsiUsageTraversal traversal = new PsiUsageTraversal(GlobalSearchScope.projectScope(getProject()), executor);
+
+        traversal.traverse(List.of(method(diamond, "leaf")), 3);
+        long searches = executor.searchCount();
+        traversal.traverse(List.of(method(diamond, "otherLeaf")), 3);
+
+        // Only otherLeaf was not searched before, its caller right was already searched from leaf
+        assertEquals(4, searches);
+        assertEquals(5, executor.searchCount());
+    }
+
+    private static PsiMethod method(PsiClass psiClass, String name) {
+        return psiClass.findMethodsByName(name, false)[0];
+    }
+}
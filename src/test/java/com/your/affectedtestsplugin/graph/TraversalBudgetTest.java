@@ -0,0 +1,68 @@
+package com.your.affectedtestsplugin.graph;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TraversalBudgetTest {
+
+    private final AtomicLong nanos = new AtomicLong(-TimeUnit.SECONDS.toNanos(5));
+
+    @Test
+    public void testFixedBudgetStopsAtMaxDepthAndStaysComplete() {
+        TraversalBudget budget = TraversalBudget.fixed(2);
+
+        Assert.assertTrue(budget.allowsLevel(1, 1000, 1));
+        Assert.assertTrue(budget.allowsLevel(2, 1000, 1));
+        Assert.assertFalse(budget.allowsLevel(3, 1000, 1));
+        Assert.assertFalse(budget.isAdaptive());
+        Assert.assertTrue(budget.isComplete());
+    }
+
+    @Test
+    public void testSpentTimeStopsDeepening() {
+        TraversalBudget budget = new TraversalBudget(10, 100, 0, nanos::get);
+        Assert.assertTrue(budget.allowsLevel(1, 0, 1000));
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(99));
+        Assert.assertTrue(budget.allowsLevel(2, 0, 1));
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+
+        Assert.assertFalse(budget.allowsLevel(3, 0, 1));
+        Assert.assertFalse(budget.isComplete());
+    }
+
+    @Test
+    public void testLevelProjectedToOverrunIsSkipped() {
+        TraversalBudget budget = new TraversalBudget(10, 100, 0, nanos::get);
+        Assert.assertTrue(budget.allowsLevel(1, 0, 1));
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(40));
+        Assert.assertTrue(budget.allowsLevel(2, 0, 1));
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(20));
+
+        Assert.assertFalse(budget.allowsLevel(3, 0, 2));
+        Assert.assertFalse(budget.isComplete());
+    }
+
+    @Test
+    public void testTestLimitStopsDeepening() {
+        TraversalBudget budget = new TraversalBudget(10, 0, 5, nanos::get);
+        Assert.assertTrue(budget.countsTests());
+        Assert.assertTrue(budget.allowsLevel(1, 4, 1));
+
+        Assert.assertFalse(budget.allowsLevel(2, 5, 1));
+        Assert.assertFalse(budget.isComplete());
+    }
+
+    @Test
+    public void testReachingMaxDepthIsNotABudgetStop() {
+        TraversalBudget budget = new TraversalBudget(1, 100, 5, nanos::get);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        Assert.assertFalse(budget.allowsLevel(2, 10, 1));
+        Assert.assertTrue(budget.isComplete());
+    }
+}
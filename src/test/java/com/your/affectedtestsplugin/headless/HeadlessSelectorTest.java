@@ -0,0 +1,53 @@
+package com.your.affectedtestsplugin.headless;
+
+import com.your.affectedtestsplugin.graph.MethodKey;
+import org.eclipse.jgit.api.Git;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class HeadlessSelectorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testCallThroughInterfaceSelectsTestsOfChangedImplementation() throws Exception {
+        Path repo = temporaryFolder.getRoot().toPath();
+        try (Git git = Git.init().setDirectory(repo.toFile()).call()) {
+            write(repo, "src/main/java/p/Greeter.java", "package p; public interface Greeter { String greet(String name); }");
+            write(repo, "src/main/java/p/LoudGreeter.java",
+                    "package p; public class LoudGreeter implements Greeter { public String greet(String name) { return name; } }");
+            write(repo, "src/test/java/p/GreeterTest.java", "package p; import org.junit.Test; public class GreeterTest {"
+                    + " @Test public void testGreet() { Greeter greeter = new LoudGreeter(); greeter.greet(\"a\"); } }");
+            commit(git, "Add greeters");
+            write(repo, "src/main/java/p/LoudGreeter.java",
+                    "package p; public class LoudGreeter implements Greeter { public String greet(String name) { return name.toUpperCase(); } }");
+            commit(git, "Shout");
+        }
+
+        HeadlessSelector.Selection selection = new HeadlessSelector(repo).select("HEAD~1", "HEAD", false, 1);
+
+        MethodKey changed = new MethodKey("p.LoudGreeter", "greet", List.of("String"));
+        Assert.assertEquals(List.of(changed), List.copyOf(selection.changedMethods()));
+        Assert.assertEquals(Integer.valueOf(1), selection.affectedTests().get(new MethodKey("p.GreeterTest", "testGreet", List.of())));
+    }
+
+    private static void write(Path repo, String relativePath, String content) throws Exception {
+        Path file = repo.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+    }
+
+    private static void commit(Git git, String message) throws Exception {
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage(message).setAuthor("Test", "test@example.com").setCommitter("Test", "test@example.com")
+                .setSign(false).call();
+    }
+}
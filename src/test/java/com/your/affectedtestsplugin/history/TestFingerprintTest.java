@@ -0,0 +1,41 @@
+package com.your.affectedtestsplugin.history;
+
+import com.your.affectedtestsplugin.graph.MethodKey;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class TestFingerprintTest {
+
+    private static final MethodKey TEST = new MethodKey("p.ServiceTest", "testRun", List.of());
+    private static final MethodKey RUN = new MethodKey("p.Service", "run", List.of());
+    private static final MethodKey HELP = new MethodKey("p.Helper", "help", List.of("int"));
+    private static final MethodKey OTHER = new MethodKey("p.Other", "other", List.of());
+    private static final Map<MethodKey, Set<MethodKey>> CALLEES = Map.of(TEST, Set.of(RUN), RUN, Set.of(HELP), OTHER, Set.of(HELP));
+
+    @Test
+    public void testFingerprintCoversTheAffectedPath() {
+        Map<MethodKey, String> bodies = new HashMap<>(Map.of(TEST, "t", RUN, "r", HELP, "h", OTHER, "o"));
+        String fingerprint = TestFingerprint.of("env", "p.ServiceTest,testRun", List.of(TEST), CALLEES, bodies::get);
+
+        bodies.put(OTHER, "o2");
+        Assert.assertEquals(fingerprint, TestFingerprint.of("env", "p.ServiceTest,testRun", List.of(TEST), CALLEES, bodies::get));
+
+        bodies.put(HELP, "h2");
+        Assert.assertTrue(!fingerprint.equals(TestFingerprint.of("env", "p.ServiceTest,testRun", List.of(TEST), CALLEES, bodies::get)));
+    }
+
+    @Test
+    public void testFingerprintDependsOnTheEnvironmentAndDeletedMethods() {
+        Map<MethodKey, String> bodies = new HashMap<>(Map.of(TEST, "t", RUN, "", HELP, "h"));
+        String fingerprint = TestFingerprint.of("env", "p.ServiceTest,testRun", List.of(TEST), CALLEES, bodies::get);
+
+        Assert.assertTrue(!fingerprint.equals(TestFingerprint.of("env2", "p.ServiceTest,testRun", List.of(TEST), CALLEES, bodies::get)));
+        bodies.remove(RUN);
+        Assert.assertTrue(!fingerprint.equals(TestFingerprint.of("env", "p.ServiceTest,testRun", List.of(TEST), CALLEES, bodies::get)));
+    }
+}
@@ -0,0 +1,105 @@
+package com.your.affectedtestsplugin.history;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestResultStoreTest {
+
+    private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testResultsSurviveReopening() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("results.log");
+        TestResultStore store = TestResultStore.open(file, 10);
+        store.appendAll(List.of(
+                result("p.ATest,one", 100, TestResultStore.Outcome.PASSED, COMMIT),
+                result("p.ATest,two", 40, TestResultStore.Outcome.IGNORED, null)));
+        store.appendAll(List.of(result("p.ATest,one", 300, TestResultStore.Outcome.FAILED, null)));
+
+        TestResultStore reopened = TestResultStore.open(file, 10);
+
+        Assert.assertEquals(new TestResultStore.TestStats(2, 1, 300, 200, 0), reopened.stats("p.ATest,one"));
+        Assert.assertEquals(COMMIT, reopened.results("p.ATest,one").get(0).commitId());
+        Assert.assertNull(reopened.stats("p.ATest,two"));
+        Assert.assertNull(reopened.stats("p.ATest,unknown"));
+    }
+
+    @Test
+    public void testOnlyTheLatestRunsAreRetained() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("results.log");
+        TestResultStore store = TestResultStore.open(file, 3);
+        List<TestResultStore.TestResult> results = new ArrayList<>();
+        for (int run = 1; run <= 2000; run++) {
+            results.add(result("p.ATest,one", run, run % 2 == 0 ? TestResultStore.Outcome.FAILED : TestResultStore.Outcome.PASSED, COMMIT));
+        }
+        store.appendAll(results);
+
+        Assert.assertEquals(new TestResultStore.TestStats(3, 2, 2000, 1999, 2), store.stats("p.ATest,one"));
+        long compactedSize = Files.size(file);
+        Assert.assertTrue(compactedSize < 200);
+        Assert.assertEquals(store.stats("p.ATest,one"), TestResultStore.open(file, 3).stats("p.ATest,one"));
+    }
+
+    @Test
+    public void testTornRecordIsDropped() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("results.log");
+        TestResultStore.open(file, 10).appendAll(List.of(
+                result("p.ATest,one", 100, TestResultStore.Outcome.PASSED, null),
+                result("p.ATest,one", 200, TestResultStore.Outcome.PASSED, null)));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        TestResultStore store = TestResultStore.open(file, 10);
+        store.appendAll(List.of(result("p.ATest,one", 400, TestResultStore.Outcome.PASSED, null)));
+
+        Assert.assertEquals(new TestResultStore.TestStats(2, 0, 400, 250, 0), TestResultStore.open(file, 10).stats("p.ATest,one"));
+    }
+
+    @Test
+    public void testFailedCompactionKeepsTheNameIdsOfTheLog() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("results.log");
+        Path tempFile = Files.createDirectories(file.resolveSibling("results.log.tmp"));
+        Files.createFile(tempFile.resolve("blocker"));
+        TestResultStore store = TestResultStore.open(file, 1);
+        List<TestResultStore.TestResult> results = new ArrayList<>();
+        for (int run = 1; run <= 1100; run++) {
+            results.add(result("p.ATest,one", run, TestResultStore.Outcome.PASSED, null));
+        }
+        Assert.assertThrows(IOException.class, () -> store.appendAll(results));
+        Assert.assertThrows(IOException.class, () -> store.appendAll(List.of(result("p.BTest,two", 7, TestResultStore.Outcome.FAILED, null))));
+        Files.delete(tempFile.resolve("blocker"));
+        Files.delete(tempFile);
+
+        TestResultStore reopened = TestResultStore.open(file, 1);
+
+        Assert.assertEquals(new TestResultStore.TestStats(1, 0, 1100, 1100, 0), reopened.stats("p.ATest,one"));
+        Assert.assertEquals(new TestResultStore.TestStats(1, 1, 7, 7, 0), reopened.stats("p.BTest,two"));
+    }
+
+    @Test
+    public void testLogOfAnotherVersionIsDeleted() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("results.log");
+        Files.write(file, new byte[]{0, 0, 0, 1, 0, 0, 0, 1});
+
+        Assert.assertNull(TestResultStore.open(file, 10).stats("p.ATest,one"));
+        Assert.assertFalse(Files.exists(file));
+    }
+
+    private static TestResultStore.TestResult result(String testId, int durationMillis, TestResultStore.Outcome outcome, String commit) {
+        return new TestResultStore.TestResult(testId, 1_000L * durationMillis, durationMillis, outcome, commit);
+    }
+}
@@ -0,0 +1,58 @@
+package com.your.affectedtestsplugin.metrics;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+public class MetricsStorageTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testRunsSurviveRoundTrip() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("metrics/metrics.bin");
+        AnalysisMetrics metrics = new AnalysisMetrics("changes");
+        metrics.addTime(AnalysisMetrics.GIT, 1_500_000);
+        metrics.addTime(AnalysisMetrics.GIT, 500_000);
+        metrics.increment(AnalysisMetrics.REFERENCE_SEARCHES, 3);
+        metrics.recordMax(AnalysisMetrics.DEPTH_REACHED, 2);
+        metrics.recordMax(AnalysisMetrics.DEPTH_REACHED, 1);
+        RunMetrics run = metrics.finish().withTestRun(10, 20, 5);
+
+        MetricsStorage.write(file, List.of(run));
+        List<RunMetrics> read = MetricsStorage.read(file);
+
+        Assert.assertEquals(List.of(run), read);
+        Assert.assertEquals(2_000_000, read.get(0).nanos(AnalysisMetrics.GIT));
+        Assert.assertEquals(2, read.get(0).count(AnalysisMetrics.DEPTH_REACHED));
+        Assert.assertEquals(5, read.get(0).count(AnalysisMetrics.TESTS_RUN));
+        Assert.assertTrue(read.get(0).nanos(AnalysisMetrics.TOTAL) > 0);
+    }
+
+    @Test
+    public void testMissingFileReadsAsEmpty() throws Exception {
+        Assert.assertTrue(MetricsStorage.read(temporaryFolder.getRoot().toPath().resolve("absent.bin")).isEmpty());
+    }
+
+    @Test
+    public void testJsonExportHasOneObjectPerRun() throws Exception {
+        RunMetrics first = new AnalysisMetrics("changes").finish();
+        RunMetrics second = new RunMetrics("range", 0, Map.of(AnalysisMetrics.PARSE, 42L), Map.of(AnalysisMetrics.FILES, 7L));
+        StringWriter writer = new StringWriter();
+
+        MetricsStorage.writeJson(writer, List.of(first, second));
+
+        String json = writer.toString();
+        Assert.assertTrue(json.startsWith("[\n  {\"kind\":\"changes\""));
+        Assert.assertTrue(json.contains("{\"kind\":\"range\",\"startedAt\":\"1970-01-01T00:00:00Z\",\"startedMillis\":0,"
+                + "\"timingsNanos\":{\"parse\":42},\"counters\":{\"files\":7}}"));
+        Assert.assertTrue(json.endsWith("\n]\n"));
+    }
+}
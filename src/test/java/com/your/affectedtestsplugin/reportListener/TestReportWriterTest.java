@@ -0,0 +1,72 @@
+package com.your.affectedtestsplugin.reportListener;
+
+import com.your.affectedtestsplugin.history.TestResultStore;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class TestReportWriterTest {
+
+    private static final List<TestReportWriter.TestCaseResult> RESULTS = List.of(
+            new TestReportWriter.TestCaseResult("p.ATest", "passes", "p.ATest,passes", TestResultStore.Outcome.PASSED, 1500, null, null),
+            new TestReportWriter.TestCaseResult("p.ATest", "fails", "p.ATest,fails", TestResultStore.Outcome.FAILED, 7,
+                    "expected <1> but was \"2\"", "at p.ATest.fails(ATest.java:3)"),
+            new TestReportWriter.TestCaseResult("p.ATest", "skipped", "p.ATest,skipped", TestResultStore.Outcome.IGNORED, 0, null, null));
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testJUnitXmlIsEscaped() throws Exception {
+        StringWriter writer = new StringWriter();
+
+        TestReportWriter.writeJUnitXml(writer, "Suite & Co", 0, RESULTS);
+
+        Assert.assertEquals("""
+                <?xml version="1.0" encoding="UTF-8"?>
+                <testsuite name="Suite &amp; Co" tests="3" failures="1" errors="0" skipped="1" time="1.507" timestamp="1970-01-01T00:00:00Z">
+                  <testcase classname="p.ATest" name="passes" time="1.500"/>
+                  <testcase classname="p.ATest" name="fails" time="0.007">
+                    <failure message="expected &lt;1&gt; but was &quot;2&quot;">at p.ATest.fails(ATest.java:3)</failure>
+                  </testcase>
+                  <testcase classname="p.ATest" name="skipped" time="0.000">
+                    <skipped/>
+                  </testcase>
+                </testsuite>
+                """, writer.toString());
+    }
+
+    @Test
+    public void testJsonLinesHaveOneObjectPerTest() throws Exception {
+        StringWriter writer = new StringWriter();
+
+        TestReportWriter.writeJsonLines(writer, "Suite", 42, RESULTS.subList(1, 2));
+
+        Assert.assertEquals("{\"suite\":\"Suite\",\"timestamp\":42,\"class\":\"p.ATest\",\"name\":\"fails\",\"test\":\"p.ATest,fails\","
+                + "\"outcome\":\"FAILED\",\"durationMillis\":7,\"message\":\"expected <1> but was \\\"2\\\"\"}\n", writer.toString());
+    }
+
+    @Test
+    public void testOnlyTheLatestReportsAreKept() throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath().resolve("reports");
+        TestReportWriter reportWriter = new TestReportWriter(directory, 2);
+
+        reportWriter.write("Suite", 1_000, RESULTS);
+        reportWriter.write("Suite", 2_000, RESULTS);
+        Path latest = reportWriter.write("Suite", 3_000, RESULTS);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            Assert.assertEquals(List.of("TEST-19700101-000002-000.jsonl", "TEST-19700101-000002-000.xml",
+                    "TEST-19700101-000003-000.jsonl", "TEST-19700101-000003-000.xml"),
+                    files.map(file -> file.getFileName().toString()).sorted().toList());
+        }
+        Assert.assertEquals(directory.resolve("TEST-19700101-000003-000.xml"), latest);
+    }
+}
@@ -0,0 +1,46 @@
+package com.your.affectedtestsplugin.runner;
+
+import com.your.affectedtestsplugin.history.TestResultStore;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class TestPrioritizerTest {
+
+    @Test
+    public void testCloserTestsRunFirst() {
+        Map<String, TestResultStore.TestStats> stats = Map.of(
+                "p.ATest,far", new TestResultStore.TestStats(10, 0, 100, 100, 0),
+                "p.ATest,near", new TestResultStore.TestStats(10, 0, 100, 100, 0),
+                "p.ATest,changed", new TestResultStore.TestStats(10, 0, 100, 100, 0));
+
+        List<String> ordered = TestPrioritizer.prioritize(List.of("p.ATest,far", "p.ATest,near", "p.ATest,changed"),
+                Map.of("p.ATest,far", 3, "p.ATest,near", 1, "p.ATest,changed", 0), stats);
+
+        Assert.assertEquals(List.of("p.ATest,changed", "p.ATest,near", "p.ATest,far"), ordered);
+    }
+
+    @Test
+    public void testFailingAndCheapTestsRunFirst() {
+        Map<String, TestResultStore.TestStats> stats = Map.of(
+                "p.ATest,stable", new TestResultStore.TestStats(20, 0, 100, 100, 0),
+                "p.ATest,failing", new TestResultStore.TestStats(20, 10, 100, 100, 0),
+                "p.ATest,slowFailing", new TestResultStore.TestStats(20, 10, 5000, 5000, 0),
+                "p.ATest,flaky", new TestResultStore.TestStats(20, 10, 100, 100, 10));
+
+        List<String> ordered = TestPrioritizer.prioritize(
+                List.of("p.ATest,slowFailing", "p.ATest,stable", "p.ATest,flaky", "p.ATest,failing"),
+                Map.of("p.ATest,stable", 2, "p.ATest,failing", 2, "p.ATest,slowFailing", 2, "p.ATest,flaky", 2), stats);
+
+        Assert.assertEquals(List.of("p.ATest,failing", "p.ATest,flaky", "p.ATest,stable", "p.ATest,slowFailing"), ordered);
+    }
+
+    @Test
+    public void testTestsWithoutHistoryAreLikelyToFail() {
+        Assert.assertTrue(TestPrioritizer.failureProbability(2, null)
+                > TestPrioritizer.failureProbability(2, new TestResultStore.TestStats(20, 0, 100, 100, 0)));
+        Assert.assertTrue(TestPrioritizer.failureProbability(0, null) == 1.0);
+    }
+}
@@ -0,0 +1,47 @@
+package com.your.affectedtestsplugin.runner;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class TestShardPlannerTest {
+
+    @Test
+    public void testShardsAreBalancedByDuration() {
+        List<String> patterns = List.of("p.A,slow", "p.A,fast", "p.B,medium", "p.B,medium2", "p.C,fast2");
+        Map<String, Long> durations = Map.of("p.A,slow", 900L, "p.A,fast", 100L, "p.B,medium", 500L,
+                "p.B,medium2", 400L, "p.C,fast2", 100L);
+
+        List<List<String>> shards = TestShardPlanner.plan(patterns, durations, 2);
+
+        Assert.assertEquals(List.of(List.of("p.A,slow", "p.A,fast"), List.of("p.B,medium", "p.B,medium2", "p.C,fast2")), shards);
+    }
+
+    @Test
+    public void testUnknownDurationsUseTheMedian() {
+        List<String> patterns = List.of("p.A,long", "p.A,unknown", "p.B,medium", "p.C,short");
+        Map<String, Long> durations = Map.of("p.A,long", 1000L, "p.B,medium", 300L, "p.C,short", 10L);
+
+        List<List<String>> shards = TestShardPlanner.plan(patterns, durations, 3);
+
+        Assert.assertEquals(List.of(List.of("p.A,long"), List.of("p.A,unknown", "p.C,short"), List.of("p.B,medium")), shards);
+    }
+
+    @Test
+    public void testShardCountIsBoundedByTheTests() {
+        Assert.assertEquals(List.of(List.of("p.A,one")), TestShardPlanner.plan(List.of("p.A,one"), Map.of(), 16));
+        Assert.assertEquals(List.of(), TestShardPlanner.plan(List.of(), Map.of(), 4));
+    }
+
+    @Test
+    public void testBatchesKeepTheRunOrderAndEvenSizes() {
+        List<String> patterns = List.of("p.A,1", "p.A,2", "p.A,3", "p.A,4", "p.A,5", "p.A,6", "p.A,7");
+
+        Assert.assertEquals(List.of(List.of("p.A,1", "p.A,2"), List.of("p.A,3", "p.A,4"), List.of("p.A,5", "p.A,6", "p.A,7")),
+                TestShardPlanner.batches(patterns, 3));
+        Assert.assertEquals(List.of(patterns), TestShardPlanner.batches(patterns, 100));
+        Assert.assertEquals(List.of(), TestShardPlanner.batches(List.of(), 100));
+    }
+}
@@ -0,0 +1,43 @@
+package com.your.affectedtestsplugin.service;
+
+import com.your.affectedtestsplugin.graph.MethodKey;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class AnalysisSessionTest {
+
+    private final MethodKey run = new MethodKey("p.Service", "run", List.of("int"));
+    private final MethodKey runTest = new MethodKey("p.ServiceTest", "testRun", List.of());
+    private final MethodKey runTestOverload = new MethodKey("p.ServiceTest", "testRun", List.of("TestInfo"));
+
+    @Test
+    public void testSessionIsNotChangedByItsRun() {
+        SortedSet<MethodKey> changes = new TreeSet<>(Set.of(run));
+        Map<MethodKey, Integer> affectedMethods = new HashMap<>(Map.of(runTest, 1));
+        Set<MethodKey> callees = new HashSet<>(Set.of(run));
+        Map<MethodKey, Set<MethodKey>> affectedCallees = new HashMap<>(Map.of(runTest, callees));
+        AnalysisSession session = new AnalysisSession("changes", "baseline", changes, affectedMethods, affectedCallees, new HashSet<>(), true);
+
+        changes.clear();
+        affectedMethods.clear();
+        callees.clear();
+
+        Assert.assertEquals(Set.of(run), session.changes());
+        Assert.assertEquals(Map.of(runTest, 1), session.affectedMethods());
+        Assert.assertEquals(Set.of(run), session.affectedCallees().get(runTest));
+        Assert.assertFalse(session.hasTests());
+        Assert.assertThrows(UnsupportedOperationException.class, () -> session.changes().add(runTest));
+        Assert.assertThrows(UnsupportedOperationException.class, () -> session.affectedCallees().get(runTest).add(runTest));
+    }
+
+    @Test
+    public void testOverloadsKeepTheShortestDistanceAndDepthIsTheDeepest() {
+        AnalysisSession session = new AnalysisSession("changes", null, new TreeSet<>(Set.of(run)),
+                Map.of(run, 0, runTest, 2, runTestOverload, 1), Map.of(), Set.of(), false);
+
+        Assert.assertEquals(Map.of("p.Service,run", 0, "p.ServiceTest,testRun", 1), session.testDistances());
+        Assert.assertEquals(2, session.depthReached());
+    }
+}